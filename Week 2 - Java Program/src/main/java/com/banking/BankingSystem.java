@@ -2,65 +2,94 @@ package com.banking;
 
 import com.banking.model.Account;
 import com.banking.exception.AccountNotFoundException;
+import com.banking.jfr.MonthEndEvent;
+import com.banking.store.AccountStore;
+import com.banking.store.HeapAccountStore;
 import java.math.BigDecimal;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class BankingSystem {
-    // Generic collections
-    private final List<Account> accounts = new ArrayList<>();
-    private final Map<String, Account> accountMap = new HashMap<>();
+    // Where the accounts live - plain objects by default
+    private final AccountStore store;
 
-    // Add account to both collections
+    public BankingSystem() {
+        this(new HeapAccountStore());
+    }
+
+    // Use a different storage backend, e.g. OffHeapAccountStore for very many accounts
+    public BankingSystem(AccountStore store) {
+        this.store = Objects.requireNonNull(store, "Account store cannot be null");
+    }
+
+    // Add account to the store
     public void addAccount(Account account) {
         Objects.requireNonNull(account, "Account cannot be null");
-        accounts.add(account);
-        accountMap.put(account.getAccountNumber(), account);
+        store.add(account);
     }
 
-    // Find account using Map for O(1) lookup
+    // Find account using the store's index for O(1) lookup
     public Account findAccount(String accountNumber) {
-        Account account = accountMap.get(accountNumber);
+        Account account = store.find(accountNumber);
         if (account == null) {
             throw new AccountNotFoundException(accountNumber);
         }
         return account;
     }
 
+    // Same as findAccount, but returns null when the account does not exist
+    public Account lookupAccount(String accountNumber) {
+        return store.find(accountNumber);
+    }
+
     // Get accounts sorted by balance
     public List<Account> getAccountsSortedByBalance() {
-        return accounts.stream()
+        return store.stream()
                       .sorted(Comparator.comparing(Account::getBalance))
                       .collect(Collectors.toList());
     }
 
-    // Process monthly fees for all accounts
+    // Process monthly fees for all accounts, in memory only; MonthlyFeeJob also posts them to the DB
     public void processMonthlyFees() {
-        accounts.forEach(Account::processMonthlyFees);
+        MonthEndEvent event = new MonthEndEvent();
+        event.begin();
+        try {
+            store.stream().forEach(Account::processMonthlyFees);
+            event.succeeded = true;
+        } finally {
+            event.job = "in-memory";
+            event.accounts = store.size();
+            event.commit();
+        }
     }
 
     // Get total balance across all accounts
     public BigDecimal getTotalBalance() {
-        return accounts.stream()
+        return store.stream()
                       .map(Account::getBalance)
                       .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
 
     // Get accounts filtered by minimum balance
     public List<Account> getAccountsAboveBalance(BigDecimal minimumBalance) {
-        return accounts.stream()
+        return store.stream()
                       .filter(a -> a.getBalance().compareTo(minimumBalance) > 0)
                       .collect(Collectors.toList());
     }
 
+    // All accounts, in no particular order
+    public Stream<Account> streamAccounts() {
+        return store.stream();
+    }
+
     // Get number of accounts
     public int getNumberOfAccounts() {
-        return accounts.size();
+        return store.size();
     }
 
     // Clear all accounts
     public void clearAccounts() {
-        accounts.clear();
-        accountMap.clear();
+        store.clear();
     }
 }
@@ -5,8 +5,24 @@ import com.banking.model.*;
 import com.banking.service.AccountService;
 import com.banking.exception.*;
 
+import com.banking.db.DatabaseConnection;
+import com.banking.db.JdbcMetrics;
+import com.banking.fx.FxRateSource;
+import com.banking.fx.FxRates;
+import com.banking.jfr.BankingRecording;
+import com.banking.util.StartupTimer;
+
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 import static com.banking.db.DatabaseConnection.ExecuteSQL;
 import static com.banking.db.DatabaseConnection.startH2Server;
@@ -20,26 +36,98 @@ import static com.banking.db.DatabaseConnection.startH2Server;
  * 3. How to withdraw money
  * 4. How to transfer between accounts
  * 5. How to handle errors
+ *
+ * Options:
+ *   --fast                 fast startup, see fastStartup()
+ *   --no-console           with --fast, do not start the H2 web console at all
+ *   --exit-after-startup   stop once startup is done, e.g. for an AppCDS training run
+ *   --fx-rates=FILE        allow cross-currency transfers at the rates in FILE,
+ *                          re-read every minute (see FxRateSource.file)
+ *   --jfr=FILE             record JFR with the banking events to FILE, see BankingRecording
+ *   --sql-stats            print the slowest SQL shapes on exit, see JdbcMetrics
  */
 public class Main {
     public static void main(String[] args) {
+        StartupTimer timer = new StartupTimer();
+        List<String> options = Arrays.asList(args);
+        if (options.contains("--sql-stats")) {
+            JdbcMetrics.global().setEnabled(true);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.print(JdbcMetrics.global().report(20))));
+        }
+        for (String option : options) {
+            if (option.startsWith("--jfr=")) {
+                try {
+                    BankingRecording.start(Paths.get(option.substring("--jfr=".length())));
+                } catch (IOException | ParseException e) {
+                    System.err.println("Could not start the JFR recording: " + e.getMessage());
+                }
+            }
+        }
 
-        // Start H2 Web Console
-        startH2Server();
+        AccountService accountService;
+        if (options.contains("--fast")) {
+            accountService = fastStartup(timer, !options.contains("--no-console"));
+        } else {
+            // Start H2 Web Console
+            startH2Server();
+            timer.phase("web console");
 
-        // Execute SQL
-        ExecuteSQL();
+            // Execute SQL
+            ExecuteSQL();
+            timer.phase("schema");
+
+            accountService = new AccountService(new BankingSystem());
+            timer.phase("services");
+        }
+        for (String option : options) {
+            if (option.startsWith("--fx-rates=")) {
+                FxRates fxRates = new FxRates(FxRateSource.file(Paths.get(option.substring("--fx-rates=".length()))),
+                        Account.DEFAULT_CURRENCY);
+                fxRates.startRefreshing(1, TimeUnit.MINUTES);
+                accountService.setFxRates(fxRates);
+            }
+        }
+        timer.print(System.out);
+
+        if (options.contains("--exit-after-startup")) {
+            System.exit(0);
+        }
 
         //Execute Main menu
-        mainMenu();
+        mainMenu(accountService);
 
     }
 
+    /**
+     * Get to the menu as quickly as possible: the schema comes from the
+     * classpath and is skipped if the tables already exist, and the web
+     * console is started in the background once everything else is up.
+     */
+    private static AccountService fastStartup(StartupTimer timer, boolean console) {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            timer.phase("db connect");
+            boolean applied = DatabaseConnection.applySchemaIfMissing(conn);
+            timer.phase(applied ? "schema" : "schema (skipped)");
+        } catch (SQLException e) {
+            throw new BankingException("Failed to prepare the database: " + e.getMessage(), e);
+        }
+
+        AccountService accountService = new AccountService(new BankingSystem());
+        timer.phase("services");
+
+        if (console) {
+            DatabaseConnection.startH2ServerInBackground();
+        }
+        return accountService;
+    }
+
     public static void mainMenu() {
+        mainMenu(new AccountService(new BankingSystem()));
+    }
+
+    public static void mainMenu(AccountService accountService) {
 
         Scanner scanner = new Scanner(System.in);
-        BankingSystem bankingSystem = new BankingSystem();
-        AccountService accountService = new AccountService(bankingSystem);
         while (true) {
             System.out.println("\n=== Banking System Menu ===");
             System.out.println("1. Create Account");
@@ -57,7 +145,7 @@ public class Main {
                 scanner.nextLine(); // Consume newline
             } catch (Exception e) {
                 System.out.println("Invalid Input!!!");
-                mainMenu();
+                mainMenu(accountService);
             }
 
             try {
@@ -74,11 +162,21 @@ public class Main {
                             scanner.nextLine(); // Consume newline
                         } catch (Exception e) {
                             System.out.println("Invalid Input!!!");
-                            mainMenu();
+                            mainMenu(accountService);
+                        }
+
+                        System.out.print("Enter Currency (blank for " + Account.DEFAULT_CURRENCY + "): ");
+                        String currencyCode = scanner.nextLine().trim().toUpperCase();
+                        Currency currency;
+                        try {
+                            currency = currencyCode.isEmpty() ? Account.DEFAULT_CURRENCY : Currency.getInstance(currencyCode);
+                        } catch (IllegalArgumentException e) {
+                            System.out.println("⚠️ Unknown currency: " + currencyCode);
+                            break;
                         }
 
                         AccountType accountType = AccountType.valueOf(accountTypeStr);
-                        accountService.createAccount(accountType, accountId, initialBalance);
+                        accountService.createAccount(accountType, accountId, initialBalance, currency);
                         System.out.println("✅ Account created successfully!");
                         break;
 
@@ -100,7 +198,7 @@ public class Main {
                             scanner.nextLine(); // Consume newline
                         } catch (Exception e) {
                             System.out.println("Invalid Input!!!");
-                            mainMenu();
+                            mainMenu(accountService);
                         }
 
                         accountService.deposit(depositAccountId, depositAmount);
@@ -117,7 +215,7 @@ public class Main {
                             scanner.nextLine(); // Consume newline
                         } catch (Exception e) {
                             System.out.println("Invalid Input!!!");
-                            mainMenu();
+                            mainMenu(accountService);
                         }
                         accountService.withdraw(withdrawAccountId, withdrawAmount);
                         System.out.println("✅ Withdrawal successful!");
@@ -135,7 +233,7 @@ public class Main {
                             scanner.nextLine(); // Consume newline
                         } catch (Exception e) {
                             System.out.println("Invalid Input!!!");
-                            mainMenu();
+                            mainMenu(accountService);
                         }
 
                         accountService.transfer(fromAccountId, toAccountId, transferAmount);
@@ -0,0 +1,153 @@
+package com.banking.analytics;
+
+import com.banking.exception.BankingException;
+import com.banking.model.AccountType;
+import com.banking.service.AccountChangeListener;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * In-memory copy of the transactions table, laid out for scans.
+ *
+ * Every transaction is one position in three parallel arrays: timestamp
+ * in epoch millis, account key and amount in cents. Account IDs are
+ * dictionary-encoded to small ints, so grouping by account is an array
+ * index instead of a hash lookup. Register the store as a change listener
+ * on AccountService and it appends every transaction as it is recorded;
+ * load() fills in the history that existed before.
+ *
+ * Appends are serialized. Readers never lock: they take the current
+ * column set and size, and positions below that size never change.
+ * Queries go through query(), see TransactionQuery.
+ */
+public class ColumnarTransactionStore implements AccountChangeListener {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Swapped as a unit when the arrays grow
+    static final class Columns {
+        final long[] timestamps;
+        final int[] accountKeys;
+        final long[] amounts;
+
+        Columns(int capacity) {
+            timestamps = new long[capacity];
+            accountKeys = new int[capacity];
+            amounts = new long[capacity];
+        }
+    }
+
+    private volatile Columns columns = new Columns(INITIAL_CAPACITY);
+    // Published after the row is written, so readers only see complete rows
+    private volatile int size;
+
+    // Account ID dictionary, guarded by this
+    private final Map<String, Integer> keys = new HashMap<>();
+    private final List<String> accountIds = new ArrayList<>();
+
+    /**
+     * Load the existing history from the transactions table in one scan.
+     * Call it before any transaction is recorded, or rows will be counted twice.
+     */
+    public synchronized int load(Connection conn) {
+        int loaded = 0;
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT account_id, amount, transaction_date FROM transactions")) {
+                while (rs.next()) {
+                    append(rs.getString(1), rs.getBigDecimal(2), rs.getTimestamp(3));
+                    loaded++;
+                }
+            }
+        } catch (SQLException e) {
+            throw new BankingException("Failed to load transactions: " + e.getMessage(), e);
+        }
+        return loaded;
+    }
+
+    public synchronized void append(String accountId, BigDecimal amount, Timestamp transactionDate) {
+        Columns current = columns;
+        int row = size;
+        if (row == current.timestamps.length) {
+            current = grow(current, row);
+            columns = current;
+        }
+        current.timestamps[row] = transactionDate.getTime();
+        current.accountKeys[row] = keyFor(accountId);
+        current.amounts[row] = toCents(amount);
+        size = row + 1;
+    }
+
+    private static Columns grow(Columns old, int size) {
+        Columns grown = new Columns(old.timestamps.length * 2);
+        System.arraycopy(old.timestamps, 0, grown.timestamps, 0, size);
+        System.arraycopy(old.accountKeys, 0, grown.accountKeys, 0, size);
+        System.arraycopy(old.amounts, 0, grown.amounts, 0, size);
+        return grown;
+    }
+
+    private int keyFor(String accountId) {
+        Integer key = keys.get(accountId);
+        if (key == null) {
+            key = accountIds.size();
+            keys.put(accountId, key);
+            accountIds.add(accountId);
+        }
+        return key;
+    }
+
+    // Key of an account ID, or -1 if it has no transactions
+    synchronized int lookupKey(String accountId) {
+        Integer key = keys.get(accountId);
+        return key == null ? -1 : key;
+    }
+
+    synchronized String accountIdOf(int key) {
+        return accountIds.get(key);
+    }
+
+    // Read size before columns: a newer column set always holds every row below an older size
+    int snapshotSize() {
+        return size;
+    }
+
+    Columns snapshotColumns() {
+        return columns;
+    }
+
+    /**
+     * Start a query over everything appended so far.
+     */
+    public TransactionQuery query() {
+        return new TransactionQuery(this);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public synchronized int getAccountCount() {
+        return accountIds.size();
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    // Only recorded transactions are stored; balances live in the accounts table
+
+    @Override
+    public void accountCreated(String accountId, AccountType type, BigDecimal initialBalance) {
+    }
+
+    @Override
+    public void balanceChanged(String accountId, BigDecimal delta) {
+    }
+
+    @Override
+    public void transactionRecorded(String accountId, BigDecimal amount, Timestamp transactionDate) {
+        append(accountId, amount, transactionDate);
+    }
+}
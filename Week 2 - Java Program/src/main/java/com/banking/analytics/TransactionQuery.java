@@ -0,0 +1,240 @@
+package com.banking.analytics;
+
+import com.banking.db.TransactionRecord;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Filter, group and sum over a ColumnarTransactionStore.
+ *
+ * Filters narrow the rows; a terminal method then scans the store once.
+ * The rows are split into fixed-size chunks that are scanned in parallel,
+ * each into its own partial result, and the partials are merged at the
+ * end. Only the rows present when the terminal method starts are seen.
+ *
+ * Amounts are signed: credits positive, debits negative. Volume means
+ * the sum of absolute amounts.
+ */
+public class TransactionQuery {
+    private static final int CHUNK_ROWS = 64 * 1024;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    // Account filter values
+    private static final int ANY_ACCOUNT = -1;
+    private static final int NO_ACCOUNT = -2;
+
+    private final ColumnarTransactionStore store;
+    private long fromMillis = Long.MIN_VALUE;
+    private long toMillis = Long.MAX_VALUE;
+    private int accountKey = ANY_ACCOUNT;
+    private long minAmount = Long.MIN_VALUE;
+    private long maxAmount = Long.MAX_VALUE;
+    private long minMagnitude;
+
+    TransactionQuery(ColumnarTransactionStore store) {
+        this.store = store;
+    }
+
+    public TransactionQuery account(String accountId) {
+        int key = store.lookupKey(accountId);
+        accountKey = key < 0 ? NO_ACCOUNT : key;
+        return this;
+    }
+
+    // From inclusive, to exclusive
+    public TransactionQuery between(Timestamp from, Timestamp to) {
+        fromMillis = from.getTime();
+        toMillis = to.getTime();
+        return this;
+    }
+
+    public TransactionQuery credits() {
+        minAmount = Math.max(minAmount, 1);
+        return this;
+    }
+
+    public TransactionQuery debits() {
+        maxAmount = Math.min(maxAmount, -1);
+        return this;
+    }
+
+    // Only movements of at least this size, either direction
+    public TransactionQuery atLeast(BigDecimal magnitude) {
+        minMagnitude = magnitude.movePointRight(2).longValue();
+        return this;
+    }
+
+    private boolean matches(ColumnarTransactionStore.Columns columns, int row) {
+        long timestamp = columns.timestamps[row];
+        long amount = columns.amounts[row];
+        return timestamp >= fromMillis && timestamp < toMillis
+                && (accountKey == ANY_ACCOUNT || columns.accountKeys[row] == accountKey)
+                && amount >= minAmount && amount <= maxAmount
+                && Math.abs(amount) >= minMagnitude;
+    }
+
+    public long count() {
+        if (accountKey == NO_ACCOUNT) {
+            return 0;
+        }
+        int size = store.snapshotSize();
+        ColumnarTransactionStore.Columns columns = store.snapshotColumns();
+        return chunks(size).mapToLong(chunk -> {
+            long count = 0;
+            for (int row = chunkStart(chunk); row < chunkEnd(chunk, size); row++) {
+                if (matches(columns, row)) {
+                    count++;
+                }
+            }
+            return count;
+        }).sum();
+    }
+
+    // Net amount of the matching rows
+    public BigDecimal sum() {
+        if (accountKey == NO_ACCOUNT) {
+            return BigDecimal.ZERO.setScale(2);
+        }
+        int size = store.snapshotSize();
+        ColumnarTransactionStore.Columns columns = store.snapshotColumns();
+        long cents = chunks(size).mapToLong(chunk -> {
+            long sum = 0;
+            for (int row = chunkStart(chunk); row < chunkEnd(chunk, size); row++) {
+                if (matches(columns, row)) {
+                    sum += columns.amounts[row];
+                }
+            }
+            return sum;
+        }).sum();
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Net amount per account, for every account with at least one matching row.
+     */
+    public SortedMap<String, BigDecimal> sumByAccount() {
+        SortedMap<String, BigDecimal> result = new TreeMap<>();
+        if (accountKey == NO_ACCOUNT) {
+            return result;
+        }
+        int size = store.snapshotSize();
+        ColumnarTransactionStore.Columns columns = store.snapshotColumns();
+        // Read after the size, so it covers every key used by those rows
+        int keys = store.getAccountCount();
+
+        // [2 * key] = sum, [2 * key + 1] = matching rows
+        long[] totals = chunks(size).mapToObj(chunk -> {
+            long[] partial = new long[2 * keys];
+            for (int row = chunkStart(chunk); row < chunkEnd(chunk, size); row++) {
+                if (matches(columns, row)) {
+                    int key = columns.accountKeys[row];
+                    partial[2 * key] += columns.amounts[row];
+                    partial[2 * key + 1]++;
+                }
+            }
+            return partial;
+        }).reduce(new long[2 * keys], TransactionQuery::add);
+
+        for (int key = 0; key < keys; key++) {
+            if (totals[2 * key + 1] > 0) {
+                result.put(store.accountIdOf(key), BigDecimal.valueOf(totals[2 * key], 2));
+            }
+        }
+        return result;
+    }
+
+    private static long[] add(long[] a, long[] b) {
+        long[] sum = new long[a.length];
+        for (int i = 0; i < a.length; i++) {
+            sum[i] = a[i] + b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Volume per calendar day at the given offset, for days with matching rows.
+     */
+    public SortedMap<LocalDate, BigDecimal> volumeByDay(ZoneOffset offset) {
+        SortedMap<LocalDate, BigDecimal> result = new TreeMap<>();
+        if (accountKey == NO_ACCOUNT) {
+            return result;
+        }
+        int size = store.snapshotSize();
+        ColumnarTransactionStore.Columns columns = store.snapshotColumns();
+        long offsetMillis = offset.getTotalSeconds() * 1000L;
+
+        Map<Long, Long> volumes = chunks(size).mapToObj(chunk -> {
+            Map<Long, Long> partial = new HashMap<>();
+            for (int row = chunkStart(chunk); row < chunkEnd(chunk, size); row++) {
+                if (matches(columns, row)) {
+                    long day = Math.floorDiv(columns.timestamps[row] + offsetMillis, MILLIS_PER_DAY);
+                    partial.merge(day, Math.abs(columns.amounts[row]), Long::sum);
+                }
+            }
+            return partial;
+        }).reduce(new HashMap<>(), (a, b) -> {
+            Map<Long, Long> merged = new HashMap<>(a);
+            b.forEach((day, volume) -> merged.merge(day, volume, Long::sum));
+            return merged;
+        });
+
+        volumes.forEach((day, cents) -> result.put(LocalDate.ofEpochDay(day), BigDecimal.valueOf(cents, 2)));
+        return result;
+    }
+
+    /**
+     * The n largest matching movements by absolute amount, largest first.
+     * Ties go to the earlier row.
+     */
+    public List<TransactionRecord> largest(int n) {
+        if (n <= 0 || accountKey == NO_ACCOUNT) {
+            return new ArrayList<>();
+        }
+        int size = store.snapshotSize();
+        ColumnarTransactionStore.Columns columns = store.snapshotColumns();
+        // Smaller magnitude first, later row first among equals: the head is the one to drop
+        Comparator<Integer> order = Comparator.<Integer>comparingLong(row -> Math.abs(columns.amounts[row]))
+                .thenComparing(Comparator.reverseOrder());
+
+        List<Integer> rows = chunks(size).<List<Integer>>mapToObj(chunk -> {
+            PriorityQueue<Integer> top = new PriorityQueue<>(order);
+            for (int row = chunkStart(chunk); row < chunkEnd(chunk, size); row++) {
+                if (matches(columns, row)) {
+                    top.add(row);
+                    if (top.size() > n) {
+                        top.poll();
+                    }
+                }
+            }
+            return new ArrayList<>(top);
+        }).reduce(new ArrayList<>(), (a, b) -> {
+            List<Integer> merged = new ArrayList<>(a);
+            merged.addAll(b);
+            return merged;
+        });
+
+        rows.sort(order.reversed());
+        List<TransactionRecord> result = new ArrayList<>();
+        for (int row : rows.subList(0, Math.min(n, rows.size()))) {
+            result.add(new TransactionRecord(store.accountIdOf(columns.accountKeys[row]),
+                    BigDecimal.valueOf(columns.amounts[row], 2),
+                    new Timestamp(columns.timestamps[row])));
+        }
+        return result;
+    }
+
+    private static IntStream chunks(int size) {
+        return IntStream.range(0, (size + CHUNK_ROWS - 1) / CHUNK_ROWS).parallel();
+    }
+
+    private static int chunkStart(int chunk) {
+        return chunk * CHUNK_ROWS;
+    }
+
+    private static int chunkEnd(int chunk, int size) {
+        return Math.min(size, (chunk + 1) * CHUNK_ROWS);
+    }
+}
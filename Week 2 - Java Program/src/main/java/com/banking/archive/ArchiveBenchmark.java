@@ -0,0 +1,182 @@
+package com.banking.archive;
+
+import com.banking.db.DatabaseConnection;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+/**
+ * Compares the archive format with the transactions table and the old
+ * TransactionLogger CSV: size on disk, full scan speed and a selective
+ * scan (one account, one day). The table lives in a file database, so its
+ * size is what it takes on disk. Scans are timed as the best of three runs.
+ *
+ * Usage: ArchiveBenchmark [rows] [accounts]
+ */
+public class ArchiveBenchmark {
+    private static final long START_MILLIS = 1_704_067_200_000L;
+
+    public static void main(String[] args) throws SQLException, IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int accounts = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        Path dir = Files.createTempDirectory("archive-bench");
+
+        String url = "jdbc:h2:" + dir.resolve("bench").toAbsolutePath() + ";MODE=MySQL";
+        try (Connection conn = DriverManager.getConnection(url, "sa", "")) {
+            long lastMillis = populate(conn, rows, accounts);
+
+            long tableBytes;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT DISK_SPACE_USED('TRANSACTIONS')")) {
+                rs.next();
+                tableBytes = rs.getLong(1);
+            }
+            long csvBytes = writeCsv(conn, dir.resolve("transactions.txt"));
+
+            Path archive = dir.resolve("transactions.bkar");
+            long start = System.nanoTime();
+            try (ArchiveWriter writer = new ArchiveWriter(archive)) {
+                writer.appendTable(conn);
+            }
+            long writeNanos = System.nanoTime() - start;
+            long archiveBytes = Files.size(archive);
+
+            System.out.printf("%d rows, %d accounts%n", rows, accounts);
+            System.out.printf("Table       %,14d bytes  (%.1f bytes/row)%n", tableBytes, (double) tableBytes / rows);
+            System.out.printf("CSV         %,14d bytes  (%.1f bytes/row)%n", csvBytes, (double) csvBytes / rows);
+            System.out.printf("Archive     %,14d bytes  (%.1f bytes/row, %.1fx smaller than the table, "
+                            + "%.1fx smaller than CSV, written at %.0f rows/s)%n",
+                    archiveBytes, (double) archiveBytes / rows, (double) tableBytes / archiveBytes,
+                    (double) csvBytes / archiveBytes, rows * 1e9 / writeNanos);
+
+            // Full scans: sum every amount
+            long[] tableSum = new long[1];
+            report("Table scan", rows, bestOfThree(() -> {
+                tableSum[0] = 0;
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT account_id, amount, transaction_date FROM transactions")) {
+                    while (rs.next()) {
+                        tableSum[0] += rs.getBigDecimal(2).movePointRight(2).longValue();
+                    }
+                }
+            }));
+
+            ArchiveReader reader = new ArchiveReader(archive);
+            long[] archiveSum = new long[1];
+            report("Archive scan", rows, bestOfThree(() -> {
+                archiveSum[0] = 0;
+                reader.scan(ArchiveFilter.all(), (accountId, amount, timestamp) -> archiveSum[0] += amount);
+            }));
+            if (tableSum[0] != archiveSum[0]) {
+                throw new IllegalStateException("Archive sum " + archiveSum[0] + " differs from table sum " + tableSum[0]);
+            }
+
+            // Selective scans: one account, one day in the middle of the history
+            String accountId = accountId(accounts / 2);
+            Timestamp from = new Timestamp((START_MILLIS + lastMillis) / 2);
+            Timestamp to = new Timestamp(from.getTime() + 86_400_000L);
+            long[] tableMatches = new long[1];
+            long tableNanos = bestOfThree(() -> {
+                tableMatches[0] = 0;
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT amount FROM transactions "
+                        + "WHERE account_id = ? AND transaction_date >= ? AND transaction_date < ?")) {
+                    stmt.setString(1, accountId);
+                    stmt.setTimestamp(2, from);
+                    stmt.setTimestamp(3, to);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            tableMatches[0]++;
+                        }
+                    }
+                }
+            });
+
+            long[] archiveMatches = new long[1];
+            ArchiveFilter filter = ArchiveFilter.all().account(accountId).between(from, to);
+            long archiveNanos = bestOfThree(() -> archiveMatches[0] = reader.scan(filter, (id, amount, timestamp) -> { }));
+            System.out.printf("Selective   table %d rows in %.1f ms (indexed), archive %d rows in %.1f ms, "
+                            + "%d of %d blocks skipped%n",
+                    tableMatches[0], tableNanos / 1e6, archiveMatches[0], archiveNanos / 1e6,
+                    reader.getBlocksSkipped(), reader.getBlocksSkipped() + reader.getBlocksRead());
+        }
+    }
+
+    // Fill the tables with a synthetic history in time order; returns the last timestamp
+    private static long populate(Connection conn, int rows, int accounts) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+            stmt.execute(DatabaseConnection.readSchema());
+        }
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO accounts (account_id, account_type, balance) VALUES (?, 'CHECKING', 0)")) {
+            for (int i = 0; i < accounts; i++) {
+                stmt.setString(1, accountId(i));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+
+        Random random = new Random(42);
+        long millis = START_MILLIS;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO transactions (account_id, amount, transaction_date) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < rows; i++) {
+                millis += random.nextInt(2_000);
+                long cents = random.nextInt(500_000) - 200_000;
+                stmt.setString(1, accountId(random.nextInt(accounts)));
+                stmt.setBigDecimal(2, BigDecimal.valueOf(cents, 2));
+                stmt.setTimestamp(3, new Timestamp(millis));
+                stmt.addBatch();
+                if (i % 10_000 == 9_999) {
+                    stmt.executeBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+        conn.commit();
+        conn.setAutoCommit(true);
+        return millis;
+    }
+
+    // The same rows in TransactionLogger's format: timestamp,accountNumber,amount
+    private static long writeCsv(Connection conn, Path file) throws SQLException, IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT account_id, amount, transaction_date FROM transactions")) {
+            while (rs.next()) {
+                LocalDateTime timestamp = rs.getTimestamp(3).toLocalDateTime();
+                writer.write(String.format("%s,%s,%.2f%n", timestamp, rs.getString(1), rs.getBigDecimal(2)));
+            }
+        }
+        return Files.size(file);
+    }
+
+    private interface Scan {
+        void run() throws SQLException, IOException;
+    }
+
+    private static long bestOfThree(Scan scan) throws SQLException, IOException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            scan.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static void report(String name, long rows, long nanos) {
+        System.out.printf("%-11s %,14.0f rows/s  (%d ms)%n", name, rows * 1e9 / nanos, nanos / 1_000_000);
+    }
+
+    private static String accountId(int i) {
+        return String.format("ACC%06d", i);
+    }
+}
@@ -0,0 +1,51 @@
+package com.banking.archive;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * Which rows of an archive to return. Every condition is also checked
+ * against the block summaries, so blocks that can not match are skipped
+ * without decoding them.
+ */
+public class ArchiveFilter {
+    long fromMillis = Long.MIN_VALUE;
+    long toMillis = Long.MAX_VALUE;
+    long minAmount = Long.MIN_VALUE;
+    long maxAmount = Long.MAX_VALUE;
+    String accountId;
+
+    // Every row
+    public static ArchiveFilter all() {
+        return new ArchiveFilter();
+    }
+
+    // From inclusive, to exclusive
+    public ArchiveFilter between(Timestamp from, Timestamp to) {
+        fromMillis = from.getTime();
+        toMillis = to.getTime();
+        return this;
+    }
+
+    public ArchiveFilter account(String accountId) {
+        this.accountId = accountId;
+        return this;
+    }
+
+    // Both bounds inclusive
+    public ArchiveFilter amountBetween(BigDecimal min, BigDecimal max) {
+        minAmount = min.movePointRight(2).longValue();
+        maxAmount = max.movePointRight(2).longValue();
+        return this;
+    }
+
+    boolean overlapsBlock(long blockMinTimestamp, long blockMaxTimestamp, long blockMinAmount, long blockMaxAmount) {
+        return blockMaxTimestamp >= fromMillis && blockMinTimestamp < toMillis
+                && blockMaxAmount >= minAmount && blockMinAmount <= maxAmount;
+    }
+
+    boolean matches(long timestamp, long amount) {
+        return timestamp >= fromMillis && timestamp < toMillis
+                && amount >= minAmount && amount <= maxAmount;
+    }
+}
@@ -0,0 +1,88 @@
+package com.banking.archive;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Layout of the transaction archive and its integer coding.
+ *
+ * File: MAGIC, VERSION, then blocks until the end of the file.
+ *
+ * Account IDs are dictionary-encoded for the whole file: each ID gets the
+ * next key the first time it is seen, and the block where that happens
+ * carries the new entries. Readers build the dictionary up as they go.
+ *
+ * Block: a summary, then the body. The summary has everything needed to
+ * decide whether a block can be skipped:
+ *   row count, min/max timestamp, min/max amount
+ *   new dictionary entries (count, then length-prefixed UTF-8 IDs)
+ *   presence: byte length, count, then the sorted keys used in the block as deltas
+ *   body byte length
+ * The body holds three columns of rowCount values each:
+ *   timestamps  delta from the previous row (the first from the block min), zigzag
+ *   accounts    dictionary key
+ *   amounts     cents minus the block's min amount
+ *
+ * All integers are LEB128 varints: 7 bits per byte, low bits first, high
+ * bit set on every byte but the last. Signed values are zigzag-mapped
+ * first so small negatives stay short.
+ */
+final class ArchiveFormat {
+    static final byte[] MAGIC = {'B', 'K', 'A', 'R'};
+    static final int VERSION = 1;
+
+    static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static void writeSignedVarLong(OutputStream out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Archive ends inside a number");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in archive");
+    }
+
+    static long readSignedVarLong(InputStream in) throws IOException {
+        long zigzag = readVarLong(in);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    // Like readVarLong, for a part of a block that is already in memory
+    static long readVarLong(byte[] buf, int[] pos) throws IOException {
+        long value = 0;
+        int p = pos[0];
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (p >= buf.length) {
+                throw new EOFException("Block ends inside a number");
+            }
+            int b = buf[p++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                pos[0] = p;
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in archive");
+    }
+
+    private ArchiveFormat() {
+    }
+}
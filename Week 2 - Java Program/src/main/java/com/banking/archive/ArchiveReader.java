@@ -0,0 +1,229 @@
+package com.banking.archive;
+
+import com.banking.db.TransactionRecord;
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads an archive written by ArchiveWriter as a stream of blocks.
+ *
+ * Each scan reads the file front to back once. A block whose summary
+ * rules out the filter (time range, amount range or account not in its
+ * presence list) is skipped without decoding its body; the rest are decoded
+ * into reused column arrays and handed to the consumer row by row.
+ */
+public class ArchiveReader {
+
+    /**
+     * Receives matching rows; amounts are in cents.
+     */
+    public interface RowConsumer {
+        void accept(String accountId, long amountCents, long timestampMillis);
+    }
+
+    private final Path file;
+
+    // Statistics of the last scan
+    private long blocksRead;
+    private long blocksSkipped;
+    private long rowsDecoded;
+
+    // State of the current scan: the file's dictionary so far and the key being looked for
+    private final List<String> dictionary = new ArrayList<>();
+    private int wantedKey;
+
+    // Reused between blocks
+    private byte[] body = new byte[0];
+    private long[] timestamps = new long[0];
+    private int[] keys = new int[0];
+    private long[] amounts = new long[0];
+
+    public ArchiveReader(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Pass every row that matches the filter to the consumer, in archive order.
+     * Returns the number of matching rows.
+     */
+    public long scan(ArchiveFilter filter, RowConsumer consumer) throws IOException {
+        blocksRead = 0;
+        blocksSkipped = 0;
+        rowsDecoded = 0;
+        dictionary.clear();
+        wantedKey = -1;
+        long matched = 0;
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            byte[] magic = new byte[ArchiveFormat.MAGIC.length];
+            if (in.readNBytes(magic, 0, magic.length) != magic.length
+                    || !Arrays.equals(magic, ArchiveFormat.MAGIC)) {
+                throw new IOException(file + " is not a transaction archive");
+            }
+            int version = in.read();
+            if (version != ArchiveFormat.VERSION) {
+                throw new IOException("Unsupported archive version " + version);
+            }
+
+            while (true) {
+                in.mark(1);
+                if (in.read() < 0) {
+                    break;
+                }
+                in.reset();
+                matched += readBlock(in, filter, consumer);
+            }
+        }
+        return matched;
+    }
+
+    private long readBlock(InputStream in, ArchiveFilter filter, RowConsumer consumer) throws IOException {
+        int rows = (int) ArchiveFormat.readVarLong(in);
+        long minTimestamp = ArchiveFormat.readSignedVarLong(in);
+        long maxTimestamp = minTimestamp + ArchiveFormat.readVarLong(in);
+        long minAmount = ArchiveFormat.readSignedVarLong(in);
+        long maxAmount = minAmount + ArchiveFormat.readVarLong(in);
+        int newEntries = (int) ArchiveFormat.readVarLong(in);
+        for (int i = 0; i < newEntries; i++) {
+            byte[] bytes = new byte[(int) ArchiveFormat.readVarLong(in)];
+            readFully(in, bytes, bytes.length);
+            String accountId = new String(bytes, StandardCharsets.UTF_8);
+            if (accountId.equals(filter.accountId)) {
+                wantedKey = dictionary.size();
+            }
+            dictionary.add(accountId);
+        }
+
+        // Only look at the presence list when filtering by account
+        int presenceLength = (int) ArchiveFormat.readVarLong(in);
+        boolean accountPresent;
+        if (filter.accountId != null && wantedKey >= 0) {
+            byte[] presence = new byte[presenceLength];
+            readFully(in, presence, presenceLength);
+            accountPresent = containsKey(presence, wantedKey);
+        } else {
+            // No account filter, or the account has not appeared in the file yet
+            skipFully(in, presenceLength);
+            accountPresent = filter.accountId == null;
+        }
+        int bodyLength = (int) ArchiveFormat.readVarLong(in);
+
+        if (!accountPresent || !filter.overlapsBlock(minTimestamp, maxTimestamp, minAmount, maxAmount)) {
+            skipFully(in, bodyLength);
+            blocksSkipped++;
+            return 0;
+        }
+
+        if (body.length < bodyLength) {
+            body = new byte[bodyLength];
+        }
+        readFully(in, body, bodyLength);
+        if (timestamps.length < rows) {
+            timestamps = new long[rows];
+            keys = new int[rows];
+            amounts = new long[rows];
+        }
+        decodeBody(rows, bodyLength, minTimestamp, minAmount);
+        blocksRead++;
+        rowsDecoded += rows;
+
+        long matched = 0;
+        for (int i = 0; i < rows; i++) {
+            if ((wantedKey < 0 || keys[i] == wantedKey) && filter.matches(timestamps[i], amounts[i])) {
+                consumer.accept(dictionary.get(keys[i]), amounts[i], timestamps[i]);
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    // Decode the three columns; the varint loop is inlined since this is the hot path
+    private void decodeBody(int rows, int length, long minTimestamp, long minAmount) throws IOException {
+        byte[] buf = body;
+        int p = 0;
+        long previous = minTimestamp;
+        for (int column = 0; column < 3; column++) {
+            for (int i = 0; i < rows; i++) {
+                long value = 0;
+                int shift = 0;
+                int b;
+                do {
+                    if (p >= length || shift > 63) {
+                        throw new IOException("Malformed block body in archive");
+                    }
+                    b = buf[p++];
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+
+                if (column == 0) {
+                    previous += (value >>> 1) ^ -(value & 1);
+                    timestamps[i] = previous;
+                } else if (column == 1) {
+                    keys[i] = (int) value;
+                } else {
+                    amounts[i] = minAmount + value;
+                }
+            }
+        }
+    }
+
+    // Walk the sorted key deltas until key is reached or passed
+    private static boolean containsKey(byte[] presence, int key) throws IOException {
+        int[] pos = {0};
+        long count = ArchiveFormat.readVarLong(presence, pos);
+        long current = 0;
+        for (long i = 0; i < count; i++) {
+            current += ArchiveFormat.readVarLong(presence, pos);
+            if (current >= key) {
+                return current == key;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collect the matching rows in a list. Fine for small results; use scan for big ones.
+     */
+    public List<TransactionRecord> read(ArchiveFilter filter) throws IOException {
+        List<TransactionRecord> records = new ArrayList<>();
+        scan(filter, (accountId, amountCents, timestampMillis) -> records.add(
+                new TransactionRecord(accountId, BigDecimal.valueOf(amountCents, 2), new Timestamp(timestampMillis))));
+        return records;
+    }
+
+    private static void readFully(InputStream in, byte[] buf, int length) throws IOException {
+        if (in.readNBytes(buf, 0, length) != length) {
+            throw new EOFException("Archive ends inside a block");
+        }
+    }
+
+    private static void skipFully(InputStream in, long length) throws IOException {
+        while (length > 0) {
+            long skipped = in.skip(length);
+            if (skipped <= 0) {
+                throw new EOFException("Archive ends inside a block");
+            }
+            length -= skipped;
+        }
+    }
+
+    public long getBlocksRead() {
+        return blocksRead;
+    }
+
+    public long getBlocksSkipped() {
+        return blocksSkipped;
+    }
+
+    public long getRowsDecoded() {
+        return rowsDecoded;
+    }
+}
@@ -0,0 +1,219 @@
+package com.banking.archive;
+
+import com.banking.db.TransactionRecord;
+import com.banking.exception.BankingException;
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Writes transactions to an archive file, one block at a time.
+ *
+ * Rows are buffered until a block is full and then written out with the
+ * block's summary, so memory use is bounded by the block size no matter
+ * how long the history is. Rows in roughly time order compress best,
+ * since timestamps are stored as deltas. See ArchiveFormat for the layout.
+ */
+public class ArchiveWriter implements AutoCloseable {
+    public static final int DEFAULT_BLOCK_ROWS = 4096;
+
+    private final OutputStream out;
+    private final int blockRows;
+
+    // The block being filled
+    private final long[] timestamps;
+    private final int[] keys;
+    private final long[] amounts;
+    private int rows;
+
+    // Keys for the whole file; IDs first seen in this block go out with its summary
+    private final Map<String, Integer> dictionary = new LinkedHashMap<>();
+    private final List<String> newEntries = new ArrayList<>();
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream presence = new ByteArrayOutputStream();
+    private long rowsWritten;
+    private long blocksWritten;
+    private long bytesWritten;
+
+    public ArchiveWriter(Path file) throws IOException {
+        this(Files.newOutputStream(file), DEFAULT_BLOCK_ROWS);
+    }
+
+    public ArchiveWriter(OutputStream out, int blockRows) throws IOException {
+        if (blockRows <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.out = new BufferedOutputStream(out, 64 * 1024);
+        this.blockRows = blockRows;
+        this.timestamps = new long[blockRows];
+        this.keys = new int[blockRows];
+        this.amounts = new long[blockRows];
+
+        this.out.write(ArchiveFormat.MAGIC);
+        this.out.write(ArchiveFormat.VERSION);
+        bytesWritten = ArchiveFormat.MAGIC.length + 1;
+    }
+
+    public void append(TransactionRecord record) throws IOException {
+        append(record.getAccountId(), record.getAmount(), record.getTransactionDate());
+    }
+
+    public void append(String accountId, BigDecimal amount, Timestamp transactionDate) throws IOException {
+        append(accountId, amount.setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValueExact(),
+                transactionDate.getTime());
+    }
+
+    public void append(String accountId, long amountCents, long timestampMillis) throws IOException {
+        Integer key = dictionary.get(accountId);
+        if (key == null) {
+            key = dictionary.size();
+            dictionary.put(accountId, key);
+            newEntries.add(accountId);
+        }
+        timestamps[rows] = timestampMillis;
+        keys[rows] = key;
+        amounts[rows] = amountCents;
+        if (++rows == blockRows) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * Copy the whole transactions table into the archive, streaming.
+     * Returns the number of rows copied.
+     */
+    public long appendTable(Connection conn) {
+        long copied = 0;
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT account_id, amount, transaction_date FROM transactions ORDER BY transaction_date")) {
+                while (rs.next()) {
+                    append(rs.getString(1), rs.getBigDecimal(2), rs.getTimestamp(3));
+                    copied++;
+                }
+            }
+        } catch (SQLException | IOException e) {
+            throw new BankingException("Failed to archive transactions: " + e.getMessage(), e);
+        }
+        return copied;
+    }
+
+    private void flushBlock() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        long minAmount = Long.MAX_VALUE;
+        long maxAmount = Long.MIN_VALUE;
+        for (int i = 0; i < rows; i++) {
+            minTimestamp = Math.min(minTimestamp, timestamps[i]);
+            maxTimestamp = Math.max(maxTimestamp, timestamps[i]);
+            minAmount = Math.min(minAmount, amounts[i]);
+            maxAmount = Math.max(maxAmount, amounts[i]);
+        }
+
+        body.reset();
+        long previous = minTimestamp;
+        for (int i = 0; i < rows; i++) {
+            ArchiveFormat.writeSignedVarLong(body, timestamps[i] - previous);
+            previous = timestamps[i];
+        }
+        for (int i = 0; i < rows; i++) {
+            ArchiveFormat.writeVarLong(body, keys[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            ArchiveFormat.writeVarLong(body, amounts[i] - minAmount);
+        }
+
+        // Which accounts the block has, as sorted key deltas
+        int[] present = Arrays.copyOf(keys, rows);
+        Arrays.sort(present);
+        presence.reset();
+        int distinct = 0;
+        for (int i = 0; i < rows; i++) {
+            if (i == 0 || present[i] != present[i - 1]) {
+                present[distinct++] = present[i];
+            }
+        }
+        ArchiveFormat.writeVarLong(presence, distinct);
+        int previousKey = 0;
+        for (int i = 0; i < distinct; i++) {
+            ArchiveFormat.writeVarLong(presence, present[i] - previousKey);
+            previousKey = present[i];
+        }
+
+        // Summary first, so readers can skip the body
+        CountingOutputStream block = new CountingOutputStream(out);
+        ArchiveFormat.writeVarLong(block, rows);
+        ArchiveFormat.writeSignedVarLong(block, minTimestamp);
+        ArchiveFormat.writeVarLong(block, maxTimestamp - minTimestamp);
+        ArchiveFormat.writeSignedVarLong(block, minAmount);
+        ArchiveFormat.writeVarLong(block, maxAmount - minAmount);
+        ArchiveFormat.writeVarLong(block, newEntries.size());
+        for (String accountId : newEntries) {
+            byte[] bytes = accountId.getBytes(StandardCharsets.UTF_8);
+            ArchiveFormat.writeVarLong(block, bytes.length);
+            block.write(bytes);
+        }
+        ArchiveFormat.writeVarLong(block, presence.size());
+        presence.writeTo(block);
+        ArchiveFormat.writeVarLong(block, body.size());
+        body.writeTo(block);
+
+        rowsWritten += rows;
+        blocksWritten++;
+        bytesWritten += block.count;
+        rows = 0;
+        newEntries.clear();
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten + rows;
+    }
+
+    public long getBlocksWritten() {
+        return blocksWritten;
+    }
+
+    // Bytes written so far, not counting the block still being filled
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBlock();
+        } finally {
+            out.close();
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.banking.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * What one run of a ChunkedBatchJob did, with per-chunk timings for
+ * tuning the chunk size.
+ */
+public class BatchJobReport {
+
+    /**
+     * One committed chunk: its key range, size and how long it took
+     * from the start of its transaction to the commit.
+     */
+    public static final class Chunk {
+        private final String firstKey;
+        private final String lastKey;
+        private final int items;
+        private final long nanos;
+
+        Chunk(String firstKey, String lastKey, int items, long nanos) {
+            this.firstKey = firstKey;
+            this.lastKey = lastKey;
+            this.items = items;
+            this.nanos = nanos;
+        }
+
+        public String getFirstKey() {
+            return firstKey;
+        }
+
+        public String getLastKey() {
+            return lastKey;
+        }
+
+        public int getItems() {
+            return items;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getItemsPerSecond() {
+            return items * 1e9 / Math.max(nanos, 1);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s..%s: %d items in %.1f ms (%.0f/s)",
+                    firstKey, lastKey, items, nanos / 1e6, getItemsPerSecond());
+        }
+    }
+
+    private final String jobName;
+    private final List<Chunk> chunks;
+    private final int chunksDoneBefore;
+    private final long accountsSkipped;
+    private final long elapsedNanos;
+
+    BatchJobReport(String jobName, List<Chunk> chunks, int chunksDoneBefore, long accountsSkipped, long elapsedNanos) {
+        List<Chunk> sorted = new ArrayList<>(chunks);
+        sorted.sort(Comparator.comparing(Chunk::getFirstKey));
+        this.jobName = jobName;
+        this.chunks = Collections.unmodifiableList(sorted);
+        this.chunksDoneBefore = chunksDoneBefore;
+        this.accountsSkipped = accountsSkipped;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    // Chunks committed by this run, in key order
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    // Chunks an earlier run had already committed
+    public int getChunksDoneBefore() {
+        return chunksDoneBefore;
+    }
+
+    // Accounts this run left alone because an earlier run covered them
+    public long getAccountsSkipped() {
+        return accountsSkipped;
+    }
+
+    public long getItems() {
+        return chunks.stream().mapToLong(Chunk::getItems).sum();
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getItemsPerSecond() {
+        return getItems() * 1e9 / Math.max(elapsedNanos, 1);
+    }
+
+    @Override
+    public String toString() {
+        if (chunks.isEmpty()) {
+            return String.format("%s: nothing to do, %d chunks done before", jobName, chunksDoneBefore);
+        }
+        Chunk slowest = Collections.max(chunks, Comparator.comparingLong(Chunk::getNanos));
+        double averageMillis = chunks.stream().mapToLong(Chunk::getNanos).average().orElse(0) / 1e6;
+        return String.format("%s: %d items in %d chunks, %.1f ms (%.0f/s); chunk avg %.1f ms, slowest %s; "
+                        + "%d chunks / %d accounts done before",
+                jobName, getItems(), chunks.size(), elapsedNanos / 1e6, getItemsPerSecond(),
+                averageMillis, slowest, chunksDoneBefore, accountsSkipped);
+    }
+}
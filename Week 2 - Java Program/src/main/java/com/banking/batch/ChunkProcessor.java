@@ -0,0 +1,30 @@
+package com.banking.batch;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * The work of a ChunkedBatchJob, one chunk of accounts at a time.
+ */
+public interface ChunkProcessor {
+
+    /**
+     * Process the accounts, in key order, through conn. The connection is
+     * already inside the chunk's transaction: nothing is committed until the
+     * job has written the chunk's checkpoint, and everything is rolled back
+     * if either fails. May be called from several threads at once, each with
+     * its own connection.
+     *
+     * Returns what to do once the chunk has committed (e.g. mirror the
+     * changes in memory), or null.
+     */
+    Runnable process(Connection conn, List<String> accountIds) throws SQLException;
+
+    /**
+     * Called on the same thread once a chunk passed to process is over:
+     * after its after-commit work has run, or after it was rolled back.
+     */
+    default void chunkEnded() {
+    }
+}
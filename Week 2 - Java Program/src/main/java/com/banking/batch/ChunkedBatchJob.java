@@ -0,0 +1,242 @@
+package com.banking.batch;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.exception.BankingException;
+import java.io.PrintStream;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs a ChunkProcessor over every account, in chunks of consecutive
+ * account IDs, and can be restarted after a crash without doing any
+ * account twice.
+ *
+ * Account IDs are streamed in key order and cut into chunks of chunkSize.
+ * Chunks go to a fixed pool of workers, each with its own connection. A
+ * chunk's work and its row in batch_checkpoints are one DB transaction, so
+ * a chunk is either done and checkpointed or not done at all. A rerun under
+ * the same job name reads the checkpoints first and skips every account
+ * inside a committed chunk's key range; only the rest is processed.
+ * Accounts created inside a committed range after that chunk ran are
+ * skipped as well.
+ *
+ * The checkpoint's primary key is (job, first key), so two runs racing on
+ * the same chunk can not both commit it. Still, run one job at a time.
+ */
+public class ChunkedBatchJob {
+    private static final int FETCH_SIZE = 1000;
+    private static final String DUPLICATE_KEY = "23505";
+
+    private final String jobName;
+    private final int chunkSize;
+    private final int threads;
+    private final PrintStream log;
+
+    /**
+     * @param log where to print a line per committed chunk, or null
+     */
+    public ChunkedBatchJob(String jobName, int chunkSize, int threads, PrintStream log) {
+        if (jobName == null || jobName.isEmpty() || jobName.length() > 64) {
+            throw new IllegalArgumentException("Job name must be 1 to 64 characters");
+        }
+        if (chunkSize <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("Chunk size and thread count must be positive");
+        }
+        this.jobName = jobName;
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+        this.log = log;
+    }
+
+    /**
+     * Process every account not covered by an earlier run's checkpoints.
+     * If a chunk fails, no new chunks are started, the ones already running
+     * finish, and a BankingException is thrown; run again to resume.
+     */
+    public BatchJobReport run(ChunkProcessor processor) {
+        List<BatchJobReport.Chunk> done = new CopyOnWriteArrayList<>();
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        List<Connection> connections = new CopyOnWriteArrayList<>();
+        ThreadLocal<Connection> workerConn = ThreadLocal.withInitial(() -> {
+            try {
+                Connection conn = DatabaseConnection.getConnection();
+                connections.add(conn);
+                return conn;
+            } catch (SQLException e) {
+                throw new BankingException("Could not open a batch connection: " + e.getMessage(), e);
+            }
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        // Enough queued chunks to keep every worker busy, no more
+        Semaphore inFlight = new Semaphore(threads * 2);
+        long startNanos = System.nanoTime();
+        int doneBefore;
+        long skipped = 0;
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            List<String[]> committed = loadCheckpoints(conn);
+            doneBefore = committed.size();
+            int range = 0;
+
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT account_id FROM accounts ORDER BY account_id")) {
+                stmt.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    List<String> chunk = new ArrayList<>(chunkSize);
+                    while (rs.next() && failures.isEmpty()) {
+                        String accountId = rs.getString(1);
+                        // Both lists are in key order, so one pass finds the covered IDs
+                        while (range < committed.size() && committed.get(range)[1].compareTo(accountId) < 0) {
+                            range++;
+                        }
+                        if (range < committed.size() && committed.get(range)[0].compareTo(accountId) <= 0) {
+                            skipped++;
+                            continue;
+                        }
+                        chunk.add(accountId);
+                        if (chunk.size() == chunkSize) {
+                            submit(pool, inFlight, chunk, processor, workerConn, done, failures);
+                            chunk = new ArrayList<>(chunkSize);
+                        }
+                    }
+                    if (!chunk.isEmpty() && failures.isEmpty()) {
+                        submit(pool, inFlight, chunk, processor, workerConn, done, failures);
+                    }
+                }
+            }
+
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (SQLException e) {
+            throw new BankingException("Batch job " + jobName + " failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BankingException("Batch job " + jobName + " was interrupted", e);
+        } finally {
+            pool.shutdownNow();
+            for (Connection conn : connections) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    System.err.println("Failed to close batch connection: " + e.getMessage());
+                }
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            Throwable first = failures.peek();
+            throw new BankingException(failures.size() + " chunks of " + jobName + " failed after "
+                    + done.size() + " committed, first: " + first.getMessage(), first);
+        }
+        return new BatchJobReport(jobName, done, doneBefore, skipped, System.nanoTime() - startNanos);
+    }
+
+    private void submit(ExecutorService pool, Semaphore inFlight, List<String> chunk, ChunkProcessor processor,
+                        ThreadLocal<Connection> workerConn, List<BatchJobReport.Chunk> done,
+                        ConcurrentLinkedQueue<Throwable> failures) throws InterruptedException {
+        inFlight.acquire();
+        pool.execute(() -> {
+            try {
+                if (!failures.isEmpty()) {
+                    // Queued behind a failure; leave it for the rerun
+                    return;
+                }
+                BatchJobReport.Chunk result = runChunk(workerConn.get(), chunk, processor);
+                if (result != null) {
+                    done.add(result);
+                    if (log != null) {
+                        log.println(jobName + " chunk " + result);
+                    }
+                }
+            } catch (Exception e) {
+                failures.add(e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    // One chunk in one transaction, checkpoint included; null if another run got there first
+    private BatchJobReport.Chunk runChunk(Connection conn, List<String> chunk, ChunkProcessor processor)
+            throws SQLException {
+        long start = System.nanoTime();
+        String firstKey = chunk.get(0);
+        String lastKey = chunk.get(chunk.size() - 1);
+        Runnable afterCommit;
+
+        conn.setAutoCommit(false);
+        try {
+            try {
+                afterCommit = processor.process(conn, chunk);
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO batch_checkpoints (job_name, first_key, last_key, items, completed_at) "
+                                + "VALUES (?, ?, ?, ?, ?)")) {
+                    stmt.setString(1, jobName);
+                    stmt.setString(2, firstKey);
+                    stmt.setString(3, lastKey);
+                    stmt.setInt(4, chunk.size());
+                    stmt.setTimestamp(5, new Timestamp(System.currentTimeMillis()));
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                rollbackQuietly(conn, e);
+                if (DUPLICATE_KEY.equals(e.getSQLState())) {
+                    return null;
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                rollbackQuietly(conn, e);
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+            if (afterCommit != null) {
+                afterCommit.run();
+            }
+        } finally {
+            processor.chunkEnded();
+        }
+        return new BatchJobReport.Chunk(firstKey, lastKey, chunk.size(), System.nanoTime() - start);
+    }
+
+    private static void rollbackQuietly(Connection conn, Exception cause) {
+        try {
+            conn.rollback();
+        } catch (SQLException rollbackEx) {
+            cause.addSuppressed(rollbackEx);
+        }
+    }
+
+    // Key ranges of the chunks committed so far, sorted by first key
+    private List<String[]> loadCheckpoints(Connection conn) throws SQLException {
+        List<String[]> ranges = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT first_key, last_key FROM batch_checkpoints WHERE job_name = ? ORDER BY first_key")) {
+            stmt.setString(1, jobName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ranges.add(new String[] {rs.getString(1), rs.getString(2)});
+                }
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Forget the checkpoints of a job, so its next run processes everything again.
+     * Returns the number of checkpoints removed.
+     */
+    public static int reset(Connection conn, String jobName) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM batch_checkpoints WHERE job_name = ?")) {
+            stmt.setString(1, jobName);
+            return stmt.executeUpdate();
+        }
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+}
@@ -1,20 +1,34 @@
 package com.banking.db;
 
+import com.banking.jfr.ConnectionAcquiredEvent;
 import org.h2.tools.Server;
 
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 
 public class DatabaseConnection {
-    private static Properties loadProperties() {
+    // The table a schema statement creates or indexes (group 2), and the index name (group 1)
+    private static final Pattern SCHEMA_TARGET = Pattern.compile(
+            "CREATE\\s+(?:TABLE\\s+|(?:UNIQUE\\s+)?INDEX\\s+(\\w+)\\s+ON\\s+)(\\w+)", Pattern.CASE_INSENSITIVE);
+    // Table elements that are constraints, not columns
+    private static final Pattern CONSTRAINT = Pattern.compile(
+            "(?:PRIMARY|FOREIGN|UNIQUE|CONSTRAINT|CHECK|KEY|INDEX)\\b.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    public static Properties loadProperties() {
         Properties props = new Properties();
         try (InputStream input =
                      DatabaseConnection.class.getClassLoader()
@@ -32,15 +46,44 @@ public class DatabaseConnection {
         }
     }
 
-    public static Connection getConnection() throws SQLException {
-        Properties props = loadProperties();
-        return DriverManager.getConnection(
-                props.getProperty("db.url"),
-                props.getProperty("db.username"),
-                props.getProperty("db.password")
-        );
+    // application.properties as read by the first connection, so later ones skip the file
+    private static volatile Properties connectionProperties;
 
+    private static Properties connectionProperties() {
+        Properties props = connectionProperties;
+        if (props == null) {
+            props = loadProperties();
+            connectionProperties = props;
+        }
+        return props;
+    }
 
+    // The database every service, job and worker connects to
+    public static String getUrl() {
+        return connectionProperties().getProperty("db.url");
+    }
+
+    /**
+     * The one place connections to the banking database come from: the
+     * services, their workers and every job use it, so db.url decides for
+     * all of them.
+     */
+    public static Connection getConnection() throws SQLException {
+        Properties props = connectionProperties();
+        ConnectionAcquiredEvent event = new ConnectionAcquiredEvent();
+        event.begin();
+        try {
+            Connection conn = DriverManager.getConnection(
+                    props.getProperty("db.url"),
+                    props.getProperty("db.username"),
+                    props.getProperty("db.password")
+            );
+            event.succeeded = true;
+            return JdbcMetrics.global().instrument(conn);
+        } finally {
+            event.url = props.getProperty("db.url");
+            event.commit();
+        }
     }
 
     // Method to start the H2 Web Server
@@ -53,23 +96,18 @@ public class DatabaseConnection {
         }
     }
 
-    public static void ExecuteSQL() {
-        String url = "jdbc:h2:mem:bankingdb;MODE=MySQL;DB_CLOSE_DELAY=-1";
-        String user = "sa";
-        String password = "";
-        String schemaFilePath = "src/main/resources/schema.sql";
+    // Start the web console on a daemon thread, so it does not hold up startup
+    public static void startH2ServerInBackground() {
+        Thread starter = new Thread(DatabaseConnection::startH2Server, "h2-console-starter");
+        starter.setDaemon(true);
+        starter.start();
+    }
 
-        try (Connection conn = DriverManager.getConnection(url, user, password);
+    public static void ExecuteSQL() {
+        try (Connection conn = getConnection();
              Statement stmt = conn.createStatement()) {
 
-            // Load schema.sql from the correct path
-            Path path = Paths.get(schemaFilePath);
-            if (!Files.exists(path)) {
-                throw new FileNotFoundException("Error: schema.sql file not found at " + path.toAbsolutePath());
-            }
-
-            String sql = new String(Files.readAllBytes(path));
-            stmt.execute(sql);
+            stmt.execute(readSchema());
             System.out.println("✅Schema executed successfully!");
 
         } catch (Exception e) {
@@ -78,6 +116,132 @@ public class DatabaseConnection {
 
     }
 
+    /**
+     * Bring the database up to schema.sql, e.g. a file database or an
+     * in-memory one kept open by another connection. Missing tables are
+     * created; a table that exists gets the columns it lacks added with
+     * ALTER TABLE, and an index is created if it is not there yet. So a
+     * database made from an older schema gets everything added since.
+     * Returns true if anything was executed.
+     */
+    public static boolean applySchemaIfMissing(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // Upper-case name to the name as stored
+            Map<String, String> existing = new HashMap<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES")) {
+                while (rs.next()) {
+                    existing.put(rs.getString(1).toUpperCase(Locale.ROOT), rs.getString(1));
+                }
+            }
+            boolean applied = false;
+            for (String sql : schemaStatements()) {
+                Matcher target = SCHEMA_TARGET.matcher(sql);
+                String table = target.lookingAt() ? existing.get(target.group(2).toUpperCase(Locale.ROOT)) : null;
+                if (table == null) {
+                    stmt.execute(sql);
+                    applied = true;
+                } else if (target.group(1) == null) {
+                    applied |= addMissingColumns(stmt, table, sql);
+                } else if (!hasIndex(conn, table, target.group(1))) {
+                    stmt.execute(sql);
+                    applied = true;
+                }
+            }
+            return applied;
+        }
+    }
+
+    // ALTER TABLE for each column of the CREATE TABLE statement the table does not have
+    private static boolean addMissingColumns(Statement stmt, String table, String createTable) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (ResultSet rs = stmt.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+            ResultSetMetaData meta = rs.getMetaData();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                columns.add(meta.getColumnName(i).toUpperCase(Locale.ROOT));
+            }
+        }
+        boolean added = false;
+        for (String element : tableElements(createTable)) {
+            if (CONSTRAINT.matcher(element).matches()) {
+                continue;
+            }
+            String column = element.split("\\s+", 2)[0];
+            if (!columns.contains(column.toUpperCase(Locale.ROOT))) {
+                stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + element);
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    // The comma-separated column and constraint definitions inside CREATE TABLE (...)
+    private static List<String> tableElements(String createTable) {
+        String body = createTable.substring(createTable.indexOf('(') + 1, createTable.lastIndexOf(')'));
+        List<String> elements = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                elements.add(body.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        elements.add(body.substring(start).trim());
+        return elements;
+    }
+
+    private static boolean hasIndex(Connection conn, String table, String index) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getIndexInfo(null, null, table, false, true)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // The statements of schema.sql, without comments
+    private static List<String> schemaStatements() {
+        StringBuilder sql = new StringBuilder();
+        for (String line : readSchema().split("\\R")) {
+            if (!line.trim().startsWith("--")) {
+                sql.append(line).append('\n');
+            }
+        }
+        List<String> statements = new ArrayList<>();
+        for (String statement : sql.toString().split(";")) {
+            if (!statement.trim().isEmpty()) {
+                statements.add(statement.trim());
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Read schema.sql from the classpath, so it works from any working directory and from a jar.
+     */
+    public static String readSchema() {
+        try (InputStream input =
+                     DatabaseConnection.class.getClassLoader()
+                             .getResourceAsStream("schema.sql")) {
+
+            if (input == null) {
+                throw new RuntimeException(
+                        "Cannot find schema.sql");
+            }
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException(
+                    "Error loading schema", e);
+        }
+    }
+
 }
 
 
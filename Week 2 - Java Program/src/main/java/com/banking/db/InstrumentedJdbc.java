@@ -0,0 +1,231 @@
+package com.banking.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Dynamic proxies around a Connection and the statements it creates, which
+ * report to a JdbcMetrics. Everything is passed through to the driver; the
+ * proxies only time execute*, commit and rollback and keep the last bind
+ * values of a PreparedStatement for the slow-statement log.
+ *
+ * Proxies instead of hand-written wrappers, since Connection and the
+ * statement interfaces have a couple of hundred methods between them.
+ */
+final class InstrumentedJdbc {
+    private static final int MAX_LOGGED_BINDS = 8;
+    private static final int MAX_BIND_TEXT = 24;
+
+    static Connection wrap(Connection conn, JdbcMetrics metrics) {
+        if (Proxy.isProxyClass(conn.getClass()) && Proxy.getInvocationHandler(conn) instanceof ConnectionHandler) {
+            return conn;
+        }
+        ConnectionHandler handler = new ConnectionHandler(conn, metrics);
+        Connection proxy = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, handler);
+        handler.proxy = proxy;
+        return proxy;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // equals, hashCode and toString of the proxy itself; null for anything else
+    private static Object objectMethod(Object proxy, Object target, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return args != null && args.length == 1 && proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "Instrumented " + target;
+            default:
+                return null;
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private final JdbcMetrics metrics;
+        private Connection proxy;
+
+        ConnectionHandler(Connection target, JdbcMetrics metrics) {
+            this.target = target;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return objectMethod(proxy, target, method, args);
+            }
+            switch (method.getName()) {
+                case "prepareStatement":
+                case "prepareCall":
+                    return statement(InstrumentedJdbc.invoke(target, method, args), (String) args[0]);
+                case "createStatement":
+                    return statement(InstrumentedJdbc.invoke(target, method, args), null);
+                case "commit": {
+                    long start = System.nanoTime();
+                    boolean failed = true;
+                    try {
+                        Object result = InstrumentedJdbc.invoke(target, method, args);
+                        failed = false;
+                        return result;
+                    } finally {
+                        metrics.recordCommit(System.nanoTime() - start, failed);
+                    }
+                }
+                case "rollback": {
+                    long start = System.nanoTime();
+                    boolean failed = true;
+                    try {
+                        Object result = InstrumentedJdbc.invoke(target, method, args);
+                        failed = false;
+                        return result;
+                    } finally {
+                        metrics.recordRollback(System.nanoTime() - start, failed);
+                    }
+                }
+                default:
+                    return InstrumentedJdbc.invoke(target, method, args);
+            }
+        }
+
+        private Statement statement(Object statement, String sql) {
+            Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                    : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            return (Statement) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {type},
+                    new StatementHandler((Statement) statement, sql, proxy, metrics));
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String sql;
+        private final Connection connection;
+        private final JdbcMetrics metrics;
+        // Last value set per parameter index, only read when a statement is slow
+        private Object[] binds;
+        private int batched;
+        private String batchSql;
+
+        StatementHandler(Statement target, String sql, Connection connection, JdbcMetrics metrics) {
+            this.target = target;
+            this.sql = sql;
+            this.connection = connection;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return objectMethod(proxy, target, method, args);
+            }
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                return InstrumentedJdbc.invoke(target, method, args);
+            }
+            switch (name) {
+                case "execute":
+                case "executeQuery":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                    return timed(method, args, args != null && args.length > 0 ? (String) args[0] : sql);
+                case "executeBatch":
+                case "executeLargeBatch":
+                    try {
+                        return timed(method, args, sql != null ? sql : batchSql);
+                    } finally {
+                        batched = 0;
+                        batchSql = null;
+                    }
+                case "addBatch":
+                    batched++;
+                    if (args != null && args.length == 1 && batchSql == null) {
+                        batchSql = (String) args[0];
+                    }
+                    return InstrumentedJdbc.invoke(target, method, args);
+                case "clearParameters":
+                    binds = null;
+                    return InstrumentedJdbc.invoke(target, method, args);
+                case "getConnection":
+                    return connection;
+                default:
+                    return InstrumentedJdbc.invoke(target, method, args);
+            }
+        }
+
+        private Object timed(Method method, Object[] args, String executed) throws Throwable {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = InstrumentedJdbc.invoke(target, method, args);
+                failed = false;
+                return result;
+            } finally {
+                metrics.record(executed, System.nanoTime() - start, failed, binds, batched);
+            }
+        }
+
+        private void bind(int index, Object value) {
+            if (index < 1 || index > 1000) {
+                return;
+            }
+            if (binds == null || binds.length < index) {
+                binds = Arrays.copyOf(binds == null ? new Object[0] : binds, Math.max(index, 8));
+            }
+            binds[index - 1] = value;
+        }
+    }
+
+    /**
+     * The bind values of a slow statement for the log; null parameters are
+     * left out. Long strings are cut short, so account data does not flood the log.
+     */
+    static String summarize(Object[] binds, int batched) {
+        StringBuilder sb = new StringBuilder();
+        if (binds != null) {
+            sb.append("binds [");
+            int shown = 0;
+            for (int i = 0; i < binds.length && shown < MAX_LOGGED_BINDS; i++) {
+                if (binds[i] == null) {
+                    continue;
+                }
+                if (shown++ > 0) {
+                    sb.append(", ");
+                }
+                sb.append(i + 1).append('=').append(describe(binds[i]));
+            }
+            sb.append(']');
+        }
+        if (batched > 0) {
+            sb.append(sb.length() > 0 ? " " : "").append("batch of ").append(batched);
+        }
+        return sb.toString();
+    }
+
+    private static String describe(Object value) {
+        if (value instanceof String) {
+            String text = (String) value;
+            return "'" + (text.length() > MAX_BIND_TEXT ? text.substring(0, MAX_BIND_TEXT) + "..." : text) + "'";
+        }
+        if (value instanceof byte[]) {
+            return "byte[" + ((byte[]) value).length + "]";
+        }
+        return String.valueOf(value);
+    }
+}
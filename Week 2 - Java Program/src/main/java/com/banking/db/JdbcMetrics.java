@@ -0,0 +1,290 @@
+package com.banking.db;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Latency per SQL shape, slow statements, rollbacks and swallowed errors
+ * for connections wrapped by instrument().
+ *
+ * A shape is the SQL text with literals replaced by ? and whitespace
+ * collapsed, so the same statement with different values or IN-list
+ * lengths adds up in one place. Executions, commits and rollbacks are
+ * timed with System.nanoTime and added to lock-free counters. A statement
+ * over the slow threshold is logged with its shape, time and a summary of
+ * its bind values; nothing is formatted for the fast ones. The wrapping
+ * itself is a reflective proxy call per JDBC method, around 0.5-1us on a
+ * point query, so it is off unless jdbc.instrument or --sql-stats asks.
+ *
+ * The global instance is used by DatabaseConnection and AccountService and
+ * reads jdbc.instrument and jdbc.slowStatementMs from application.properties.
+ */
+public class JdbcMetrics {
+    public static final String COMMIT = "COMMIT";
+    public static final String ROLLBACK = "ROLLBACK";
+
+    // Beyond this many shapes, the rest are counted as OTHER so the map stays small
+    static final int MAX_SHAPES = 1000;
+    static final String OTHER = "(other)";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static volatile JdbcMetrics global;
+
+    private volatile boolean enabled;
+    private volatile long slowNanos;
+    private volatile PrintStream log = System.err;
+    private final Map<String, Stats> shapes = new ConcurrentHashMap<>();
+    // Raw SQL to shape, so each distinct text is normalized once
+    private final Map<String, String> shapeCache = new ConcurrentHashMap<>();
+    private final LongAdder rollbacks = new LongAdder();
+    private final LongAdder slowStatements = new LongAdder();
+    private final Map<String, LongAdder> swallowed = new ConcurrentHashMap<>();
+
+    public JdbcMetrics(boolean enabled, long slowThreshold, TimeUnit unit) {
+        this.enabled = enabled;
+        this.slowNanos = unit.toNanos(slowThreshold);
+    }
+
+    /**
+     * The instance shared by the services, configured from application.properties.
+     */
+    public static JdbcMetrics global() {
+        JdbcMetrics metrics = global;
+        if (metrics == null) {
+            synchronized (JdbcMetrics.class) {
+                if (global == null) {
+                    Properties props = DatabaseConnection.loadProperties();
+                    global = new JdbcMetrics(
+                            Boolean.parseBoolean(props.getProperty("jdbc.instrument", "false")),
+                            Long.parseLong(props.getProperty("jdbc.slowStatementMs", "50")),
+                            TimeUnit.MILLISECONDS);
+                }
+                metrics = global;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * The connection wrapped so its statements report here, or the
+     * connection itself when instrumentation is off.
+     */
+    public Connection instrument(Connection conn) {
+        return enabled ? InstrumentedJdbc.wrap(conn, this) : conn;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Applies to connections opened from now on
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setSlowThreshold(long threshold, TimeUnit unit) {
+        this.slowNanos = unit.toNanos(threshold);
+    }
+
+    // Where slow statements and swallowed errors are logged
+    public void setLog(PrintStream log) {
+        this.log = log;
+    }
+
+    /**
+     * Count an SQL error that was caught and not passed on, e.g. a failed
+     * rollback in a cleanup path, and log it. where says which code path.
+     */
+    public void swallowed(String where, SQLException e) {
+        swallowed.computeIfAbsent(where, key -> new LongAdder()).increment();
+        log.println("Swallowed SQL error in " + where + ": " + e.getMessage() + " [" + e.getSQLState() + "]");
+    }
+
+    void record(String sql, long nanos, boolean failed, Object[] binds, int batched) {
+        Stats stats = statsFor(shapeOf(sql));
+        stats.add(nanos, failed);
+        if (nanos >= slowNanos) {
+            slowStatements.increment();
+            stats.slow.increment();
+            String summary = InstrumentedJdbc.summarize(binds, batched);
+            log.printf("Slow SQL (%.1f ms%s): %s%s%n", nanos / 1e6, failed ? ", failed" : "",
+                    stats.shape, summary.isEmpty() ? "" : " " + summary);
+        }
+    }
+
+    void recordRollback(long nanos, boolean failed) {
+        rollbacks.increment();
+        statsFor(ROLLBACK).add(nanos, failed);
+    }
+
+    void recordCommit(long nanos, boolean failed) {
+        statsFor(COMMIT).add(nanos, failed);
+    }
+
+    private Stats statsFor(String shape) {
+        Stats stats = shapes.get(shape);
+        if (stats == null) {
+            if (shapes.size() >= MAX_SHAPES) {
+                shape = OTHER;
+            }
+            stats = shapes.computeIfAbsent(shape, Stats::new);
+        }
+        return stats;
+    }
+
+    private String shapeOf(String sql) {
+        String shape = shapeCache.get(sql);
+        if (shape == null) {
+            shape = normalize(sql);
+            if (shapeCache.size() < MAX_SHAPES * 10) {
+                shapeCache.put(sql, shape);
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * The shape of an SQL text: literals as ?, IN lists as one ?, single spaces.
+     */
+    public static String normalize(String sql) {
+        if (sql == null) {
+            return "(unknown)";
+        }
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("IN (?)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+
+    /**
+     * Every shape seen so far, most total time first.
+     */
+    public List<Stats> snapshot() {
+        List<Stats> list = new ArrayList<>(shapes.values());
+        list.sort(Comparator.comparingLong(Stats::getTotalNanos).reversed());
+        return list;
+    }
+
+    public Stats get(String shape) {
+        return shapes.get(shape);
+    }
+
+    public long getRollbacks() {
+        return rollbacks.sum();
+    }
+
+    public long getSlowStatements() {
+        return slowStatements.sum();
+    }
+
+    public long getSwallowedErrors() {
+        return swallowed.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    // Swallowed errors per code path
+    public long getSwallowedErrors(String where) {
+        LongAdder count = swallowed.get(where);
+        return count == null ? 0 : count.sum();
+    }
+
+    public void reset() {
+        shapes.clear();
+        rollbacks.reset();
+        slowStatements.reset();
+        swallowed.clear();
+    }
+
+    /**
+     * A table of the top shapes by total time, with the counters underneath.
+     */
+    public String report(int top) {
+        StringBuilder sb = new StringBuilder(String.format("%10s %10s %10s %10s %6s %5s  %s%n",
+                "count", "total ms", "mean us", "max us", "errors", "slow", "sql"));
+        List<Stats> list = snapshot();
+        for (Stats stats : list.subList(0, Math.min(top, list.size()))) {
+            sb.append(String.format("%10d %10.1f %10.1f %10.1f %6d %5d  %s%n",
+                    stats.getCount(), stats.getTotalNanos() / 1e6, stats.getMeanNanos() / 1e3,
+                    stats.getMaxNanos() / 1e3, stats.getErrors(), stats.getSlow(), stats.shape));
+        }
+        sb.append(String.format("rollbacks %d, slow statements %d, swallowed errors %d%n",
+                getRollbacks(), getSlowStatements(), getSwallowedErrors()));
+        return sb.toString();
+    }
+
+    /**
+     * Counters for one SQL shape.
+     */
+    public static final class Stats {
+        private final String shape;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder slow = new LongAdder();
+
+        Stats(String shape) {
+            this.shape = shape;
+        }
+
+        void add(long nanos, boolean failed) {
+            count.increment();
+            totalNanos.add(nanos);
+            if (nanos > maxNanos.get()) {
+                maxNanos.accumulateAndGet(nanos, Math::max);
+            }
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMeanNanos() {
+            long n = getCount();
+            return n == 0 ? 0 : getTotalNanos() / n;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getSlow() {
+            return slow.sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d calls, mean %.1f us, max %.1f us, %d errors",
+                    shape, getCount(), getMeanNanos() / 1e3, getMaxNanos() / 1e3, getErrors());
+        }
+    }
+}
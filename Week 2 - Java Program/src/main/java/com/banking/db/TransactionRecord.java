@@ -0,0 +1,36 @@
+package com.banking.db;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * One row of an account's transaction history.
+ */
+public final class TransactionRecord {
+    private final String accountId;
+    private final BigDecimal amount;
+    private final Timestamp transactionDate;
+
+    public TransactionRecord(String accountId, BigDecimal amount, Timestamp transactionDate) {
+        this.accountId = accountId;
+        this.amount = amount;
+        this.transactionDate = transactionDate;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public Timestamp getTransactionDate() {
+        return transactionDate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s %s", transactionDate, accountId, amount);
+    }
+}
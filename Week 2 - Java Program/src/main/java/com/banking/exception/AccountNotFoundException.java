@@ -1,18 +1,27 @@
 package com.banking.exception;
 
+/**
+ * Thrown for unknown account IDs. Like InsufficientFundsException it has
+ * no stack trace and builds its message lazily.
+ */
 public class AccountNotFoundException extends BankingException {
     private final String accountNumber;
 
     public AccountNotFoundException(String accountNumber) {
-        super(String.format("Account not found: %s", accountNumber));
+        super(null, null, false);
         this.accountNumber = accountNumber;
     }
 
     public AccountNotFoundException(String accountNumber, Throwable cause) {
-        super(String.format("Account not found: %s", accountNumber), cause);
+        super(null, cause, false);
         this.accountNumber = accountNumber;
     }
 
+    @Override
+    public String getMessage() {
+        return String.format("Account not found: %s", accountNumber);
+    }
+
     public String getAccountNumber() {
         return accountNumber;
     }
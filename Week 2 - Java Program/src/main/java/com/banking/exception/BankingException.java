@@ -8,4 +8,12 @@ public class BankingException extends RuntimeException {
     public BankingException(String message, Throwable cause) {
         super(message, cause);
     }
+
+    /**
+     * For expected business rejections that are thrown often.
+     * Without a stack trace, constructing one is cheap.
+     */
+    protected BankingException(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, false, writableStackTrace);
+    }
 }
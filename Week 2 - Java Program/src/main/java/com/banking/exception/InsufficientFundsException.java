@@ -1,18 +1,40 @@
 package com.banking.exception;
 
 import java.math.BigDecimal;
+import java.util.Currency;
 
+/**
+ * A normal business outcome rather than a bug, so it carries no stack
+ * trace and the message is only formatted when someone asks for it.
+ */
 public class InsufficientFundsException extends BankingException {
     private final String accountNumber;
     private final BigDecimal requestedAmount;
     private final BigDecimal availableBalance;
+    private final Currency currency;
 
     public InsufficientFundsException(String accountNumber, BigDecimal requestedAmount, BigDecimal availableBalance) {
-        super(String.format("Insufficient funds in account %s: requested %.2f, available %.2f",
-                          accountNumber, requestedAmount, availableBalance));
+        this(accountNumber, requestedAmount, availableBalance, null);
+    }
+
+    // Both amounts are in the account's currency
+    public InsufficientFundsException(String accountNumber, BigDecimal requestedAmount, BigDecimal availableBalance,
+                                      Currency currency) {
+        super(null, null, false);
         this.accountNumber = accountNumber;
         this.requestedAmount = requestedAmount;
         this.availableBalance = availableBalance;
+        this.currency = currency;
+    }
+
+    @Override
+    public String getMessage() {
+        if (currency == null) {
+            return String.format("Insufficient funds in account %s: requested %.2f, available %.2f",
+                              accountNumber, requestedAmount, availableBalance);
+        }
+        return String.format("Insufficient funds in account %s: requested %.2f %s, available %.2f %s",
+                          accountNumber, requestedAmount, currency, availableBalance, currency);
     }
 
     public String getAccountNumber() {
@@ -26,4 +48,9 @@ public class InsufficientFundsException extends BankingException {
     public BigDecimal getAvailableBalance() {
         return availableBalance;
     }
+
+    // Null when the exception was raised without one
+    public Currency getCurrency() {
+        return currency;
+    }
 }
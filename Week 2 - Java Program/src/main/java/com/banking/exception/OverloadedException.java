@@ -0,0 +1,13 @@
+package com.banking.exception;
+
+/**
+ * The service is shedding load and did not run the request.
+ * Expected under overload, so it has no stack trace.
+ */
+public class OverloadedException extends BankingException {
+    private static final long serialVersionUID = 1L;
+
+    public OverloadedException(String message) {
+        super(message, null, false);
+    }
+}
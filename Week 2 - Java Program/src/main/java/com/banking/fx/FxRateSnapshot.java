@@ -0,0 +1,104 @@
+package com.banking.fx;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Exchange rates as of one moment. Immutable, so any number of threads can
+ * convert with it without locking while a newer snapshot is being loaded.
+ *
+ * Rates come in as the value of one unit of each currency in the base
+ * currency. Every cross rate is worked out once when the snapshot is built,
+ * so a conversion is two map lookups and one multiplication.
+ */
+public final class FxRateSnapshot {
+    // Cross rates keep this many decimal places before the result is rounded
+    private static final int RATE_SCALE = 10;
+    // The ledger stores amounts in cents
+    private static final int AMOUNT_SCALE = 2;
+
+    private final Currency base;
+    private final Instant asOf;
+    private final Map<Currency, Map<Currency, BigDecimal>> crossRates;
+
+    /**
+     * @param ratesToBase value of one unit of each currency in the base
+     *                    currency; the base itself may be left out
+     */
+    public FxRateSnapshot(Currency base, Instant asOf, Map<Currency, BigDecimal> ratesToBase) {
+        Map<Currency, BigDecimal> rates = new HashMap<>(ratesToBase);
+        for (Map.Entry<Currency, BigDecimal> rate : rates.entrySet()) {
+            if (rate.getValue().signum() <= 0) {
+                throw new IllegalArgumentException("Rate for " + rate.getKey() + " must be positive");
+            }
+        }
+        rates.put(base, BigDecimal.ONE);
+
+        Map<Currency, Map<Currency, BigDecimal>> cross = new HashMap<>();
+        for (Map.Entry<Currency, BigDecimal> from : rates.entrySet()) {
+            Map<Currency, BigDecimal> row = new HashMap<>();
+            for (Map.Entry<Currency, BigDecimal> to : rates.entrySet()) {
+                row.put(to.getKey(), from.getValue().divide(to.getValue(), RATE_SCALE, RoundingMode.HALF_EVEN));
+            }
+            cross.put(from.getKey(), Collections.unmodifiableMap(row));
+        }
+        this.base = base;
+        this.asOf = asOf;
+        this.crossRates = Collections.unmodifiableMap(cross);
+    }
+
+    // No rates at all; only same-currency conversions work
+    public static FxRateSnapshot empty(Currency base) {
+        return new FxRateSnapshot(base, Instant.EPOCH, Collections.emptyMap());
+    }
+
+    /**
+     * Units of to per unit of from, or null when either currency has no rate.
+     */
+    public BigDecimal rate(Currency from, Currency to) {
+        if (from.equals(to)) {
+            return BigDecimal.ONE;
+        }
+        Map<Currency, BigDecimal> row = crossRates.get(from);
+        return row == null ? null : row.get(to);
+    }
+
+    /**
+     * The amount in the other currency, rounded half-even to cents,
+     * or null when either currency has no rate.
+     */
+    public BigDecimal convert(BigDecimal amount, Currency from, Currency to) {
+        if (from.equals(to)) {
+            return amount;
+        }
+        BigDecimal rate = rate(from, to);
+        return rate == null ? null : amount.multiply(rate).setScale(AMOUNT_SCALE, RoundingMode.HALF_EVEN);
+    }
+
+    public boolean hasRate(Currency currency) {
+        return crossRates.containsKey(currency);
+    }
+
+    public Currency getBase() {
+        return base;
+    }
+
+    public Instant getAsOf() {
+        return asOf;
+    }
+
+    // Number of currencies with a rate, the base included
+    public int size() {
+        return crossRates.size();
+    }
+
+    @Override
+    public String toString() {
+        return "FxRateSnapshot[base=" + base + ", asOf=" + asOf + ", currencies=" + crossRates.keySet() + "]";
+    }
+}
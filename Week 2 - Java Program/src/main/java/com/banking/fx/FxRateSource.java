@@ -0,0 +1,67 @@
+package com.banking.fx;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Where FxRates gets a fresh snapshot from. Loading may be slow or fail;
+ * it only ever runs on the refreshing thread, never on a transfer.
+ */
+public interface FxRateSource {
+
+    FxRateSnapshot load() throws IOException;
+
+    /**
+     * Always hands out the same snapshot, e.g. for tests or a fixed rate table.
+     */
+    static FxRateSource fixed(FxRateSnapshot snapshot) {
+        return () -> snapshot;
+    }
+
+    /**
+     * Reads a properties file on every load:
+     * <pre>
+     * base=USD
+     * asOf=2024-01-02T00:00:00Z
+     * EUR=1.0850
+     * GBP=1.2700
+     * </pre>
+     * Each currency line is the value of one unit in the base currency.
+     * asOf is optional and defaults to the file's modification time.
+     */
+    static FxRateSource file(Path path) {
+        return () -> {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            try {
+                Currency base = Currency.getInstance(properties.getProperty("base", "USD").trim());
+                String asOfText = properties.getProperty("asOf");
+                Instant asOf = asOfText != null
+                        ? Instant.parse(asOfText.trim())
+                        : Files.getLastModifiedTime(path).toInstant();
+
+                Map<Currency, BigDecimal> rates = new HashMap<>();
+                for (String key : properties.stringPropertyNames()) {
+                    if (!key.equals("base") && !key.equals("asOf")) {
+                        rates.put(Currency.getInstance(key.trim()), new BigDecimal(properties.getProperty(key).trim()));
+                    }
+                }
+                return new FxRateSnapshot(base, asOf, rates);
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new IOException("Bad FX rate file " + path + ": " + e.getMessage(), e);
+            }
+        };
+    }
+}
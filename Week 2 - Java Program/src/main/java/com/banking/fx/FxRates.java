@@ -0,0 +1,96 @@
+package com.banking.fx;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The current exchange rates, for use on the transfer path.
+ *
+ * Readers get the latest snapshot with one volatile read and convert with
+ * it: no lock, no I/O. A refresh loads the next snapshot from the source on
+ * its own thread and swaps it in atomically, so transfers never wait for
+ * it and never see half an update. A refresh that fails, or that loaded
+ * rates older than the current ones, leaves the current snapshot in place.
+ */
+public class FxRates implements AutoCloseable {
+    private final FxRateSource source;
+    private final AtomicReference<FxRateSnapshot> current;
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong failedRefreshes = new AtomicLong();
+    private ScheduledExecutorService refresher;
+
+    // Starts with no rates; call refresh() or startRefreshing() to load some
+    public FxRates(FxRateSource source, Currency base) {
+        this.source = source;
+        this.current = new AtomicReference<>(FxRateSnapshot.empty(base));
+    }
+
+    public FxRateSnapshot current() {
+        return current.get();
+    }
+
+    /**
+     * The amount in the other currency at the current rates, or null when
+     * there is no rate for either currency.
+     */
+    public BigDecimal convert(BigDecimal amount, Currency from, Currency to) {
+        return current.get().convert(amount, from, to);
+    }
+
+    /**
+     * Load a snapshot from the source on the calling thread and publish it.
+     * Returns false when loading failed and the old rates stay in use.
+     */
+    public boolean refresh() {
+        FxRateSnapshot loaded;
+        try {
+            loaded = source.load();
+        } catch (Exception e) {
+            failedRefreshes.incrementAndGet();
+            System.err.println("FX rate refresh failed, keeping rates as of "
+                    + current.get().getAsOf() + ": " + e.getMessage());
+            return false;
+        }
+        // Two refreshes racing must not put older rates back
+        current.accumulateAndGet(loaded,
+                (previous, next) -> next.getAsOf().isBefore(previous.getAsOf()) ? previous : next);
+        refreshes.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Refresh now and then every period on a background daemon thread.
+     */
+    public synchronized void startRefreshing(long period, TimeUnit unit) {
+        if (refresher != null) {
+            throw new IllegalStateException("Already refreshing");
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fx-rate-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refresh, 0, period, unit);
+    }
+
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+
+    public long getFailedRefreshes() {
+        return failedRefreshes.get();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+}
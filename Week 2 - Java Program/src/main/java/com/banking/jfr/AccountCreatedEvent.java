@@ -0,0 +1,27 @@
+package com.banking.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("com.banking.AccountCreated")
+@Label("Account Created")
+@Description("A new account inserted in the database")
+@StackTrace(false)
+@Threshold("10 ms")
+public class AccountCreatedEvent extends BankingEvent {
+    @Label("Account Type")
+    String accountType;
+
+    public AccountCreatedEvent(String accountId, String accountType) {
+        super(accountId);
+        this.accountType = accountType;
+    }
+
+    @Override
+    protected String operationName() {
+        return "createAccount";
+    }
+}
@@ -0,0 +1,91 @@
+package com.banking.jfr;
+
+import com.banking.model.OperationResult;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import java.math.BigDecimal;
+
+/**
+ * Base of the JFR events for a banking operation on one account.
+ *
+ * Usage: create, begin(), do the work, then finish() or fail(). The event
+ * is written only if a recording has it enabled and it took longer than
+ * the threshold in the recording's settings (see banking.jfc). Whatever is
+ * costly to fill in, like the amount as text, is only done when the event
+ * is actually written, so the events can stay in the code paths for good.
+ *
+ * An operation that does not end OK is also written as an OperationFailed
+ * event, which has no threshold, so fast rejections show up as well.
+ */
+@Category({"Banking", "Operations"})
+public abstract class BankingEvent extends Event {
+    private static final String OK = OperationResult.OK.name();
+
+    @Label("Account")
+    protected String accountId;
+
+    @Label("Amount")
+    protected String amount;
+
+    @Label("Outcome")
+    protected String outcome;
+
+    // For the elapsed time of OperationFailed; not part of the event
+    private transient long startNanos;
+
+    protected BankingEvent(String accountId) {
+        this.accountId = accountId;
+    }
+
+    /**
+     * Start timing the operation.
+     */
+    public void start() {
+        begin();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * End the operation with a result and write the event if it is due.
+     * Returns the result, so a method can end with return event.finish(...).
+     */
+    public OperationResult finish(OperationResult result, BigDecimal amount) {
+        end(result.name(), amount, null);
+        return result;
+    }
+
+    // End an operation that succeeded
+    public void finish(BigDecimal amount) {
+        end(OK, amount, null);
+    }
+
+    // End an operation that threw
+    public void fail(Throwable error, BigDecimal amount) {
+        end(error.getClass().getSimpleName(), amount, error.getMessage());
+    }
+
+    private void end(String outcome, BigDecimal amount, String message) {
+        end();
+        if (!OK.equals(outcome)) {
+            OperationFailedEvent failed = new OperationFailedEvent();
+            if (failed.isEnabled()) {
+                failed.operation = operationName();
+                failed.accountId = accountId;
+                failed.amount = amount == null ? null : amount.toPlainString();
+                failed.outcome = outcome;
+                failed.message = message;
+                failed.elapsed = System.nanoTime() - startNanos;
+                failed.commit();
+            }
+        }
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            this.amount = amount == null ? null : amount.toPlainString();
+            commit();
+        }
+    }
+
+    // Name of the operation in OperationFailed events
+    protected abstract String operationName();
+}
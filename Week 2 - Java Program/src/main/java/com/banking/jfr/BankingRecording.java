@@ -0,0 +1,63 @@
+package com.banking.jfr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Starts JFR recordings with the banking events switched on, so they land
+ * in the same file as the JVM's GC, lock and I/O events.
+ *
+ * The settings are a JDK configuration ("default" or "profile") with
+ * banking.jfc from the classpath on top. From the command line the same
+ * can be had with
+ *   -XX:StartFlightRecording:settings=default,settings=path/to/banking.jfc
+ * on JDKs that take more than one settings file.
+ */
+public final class BankingRecording {
+    public static final String SETTINGS = "banking.jfc";
+
+    /**
+     * The named JDK configuration with the banking settings added.
+     */
+    public static Map<String, String> settings(String base) throws IOException, ParseException {
+        Map<String, String> settings = new HashMap<>(Configuration.getConfiguration(base).getSettings());
+        settings.putAll(bankingConfiguration().getSettings());
+        return settings;
+    }
+
+    public static Configuration bankingConfiguration() throws IOException, ParseException {
+        InputStream in = BankingRecording.class.getClassLoader().getResourceAsStream(SETTINGS);
+        if (in == null) {
+            throw new IOException(SETTINGS + " is not on the classpath");
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return Configuration.create(reader);
+        }
+    }
+
+    /**
+     * Start a recording with the default settings plus the banking ones,
+     * written to file when it stops or the JVM exits.
+     */
+    public static Recording start(Path file) throws IOException, ParseException {
+        Recording recording = new Recording(settings("default"));
+        recording.setName("banking");
+        recording.setToDisk(true);
+        recording.setDestination(file);
+        recording.setDumpOnExit(true);
+        recording.start();
+        return recording;
+    }
+
+    private BankingRecording() {
+    }
+}
@@ -0,0 +1,34 @@
+package com.banking.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A batch of transfer legs posted in one transaction, all or nothing by
+ * transferAll or leg by leg by TransferSettlementBatcher. The account is
+ * the source of the first leg and the amount is the total of all legs.
+ */
+@Name("com.banking.BatchTransfer")
+@Label("Batch Transfer")
+@Description("Many transfer legs posted in one transaction")
+@StackTrace(false)
+@Threshold("10 ms")
+public class BatchTransferEvent extends BankingEvent {
+    @Label("Legs")
+    public int legs;
+
+    @Label("Accounts")
+    public int accounts;
+
+    public BatchTransferEvent(String firstAccountId) {
+        super(firstAccountId);
+    }
+
+    @Override
+    protected String operationName() {
+        return "batchTransfer";
+    }
+}
@@ -0,0 +1,26 @@
+package com.banking.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Opening a JDBC connection. The stack trace shows who asked for it.
+ */
+@Name("com.banking.ConnectionAcquired")
+@Label("Connection Acquired")
+@Description("A JDBC connection opened by the banking services")
+@Category({"Banking", "Database"})
+@StackTrace(true)
+@Threshold("1 ms")
+public class ConnectionAcquiredEvent extends Event {
+    @Label("URL")
+    public String url;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,31 @@
+package com.banking.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One month-end run, in memory (BankingSystem.processMonthlyFees) or as a
+ * batch job (MonthlyFeeJob). Always written when enabled.
+ */
+@Name("com.banking.MonthEnd")
+@Label("Month-End Processing")
+@Description("Monthly fees and interest for all accounts")
+@Category({"Banking", "Batch"})
+@StackTrace(false)
+public class MonthEndEvent extends Event {
+    @Label("Job")
+    public String job;
+
+    @Label("Accounts")
+    public long accounts;
+
+    @Label("Waived")
+    public long waived;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,39 @@
+package com.banking.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A banking operation that was rejected or threw, whatever its duration.
+ * Written at the end of the operation, with its elapsed time as a field.
+ */
+@Name("com.banking.OperationFailed")
+@Label("Banking Operation Failed")
+@Description("A deposit, withdrawal, transfer or other banking operation that did not end OK")
+@Category({"Banking", "Operations"})
+@StackTrace(true)
+public class OperationFailedEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Account")
+    String accountId;
+
+    @Label("Amount")
+    String amount;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Message")
+    String message;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+}
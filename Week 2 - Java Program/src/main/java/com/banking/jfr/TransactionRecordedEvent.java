@@ -0,0 +1,23 @@
+package com.banking.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("com.banking.TransactionRecorded")
+@Label("Transaction Recorded")
+@Description("A row inserted in the transactions table")
+@StackTrace(false)
+@Threshold("10 ms")
+public class TransactionRecordedEvent extends BankingEvent {
+    public TransactionRecordedEvent(String accountId) {
+        super(accountId);
+    }
+
+    @Override
+    protected String operationName() {
+        return "recordTransaction";
+    }
+}
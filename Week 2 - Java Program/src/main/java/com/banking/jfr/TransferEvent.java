@@ -0,0 +1,30 @@
+package com.banking.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A transfer; the account is the source and the amount is in its currency.
+ */
+@Name("com.banking.Transfer")
+@Label("Transfer")
+@Description("A transfer between two accounts")
+@StackTrace(false)
+@Threshold("10 ms")
+public class TransferEvent extends BankingEvent {
+    @Label("To Account")
+    String toAccountId;
+
+    public TransferEvent(String fromAccountId, String toAccountId) {
+        super(fromAccountId);
+        this.toAccountId = toAccountId;
+    }
+
+    @Override
+    protected String operationName() {
+        return "transfer";
+    }
+}
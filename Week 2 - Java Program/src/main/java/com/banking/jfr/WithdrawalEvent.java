@@ -0,0 +1,23 @@
+package com.banking.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("com.banking.Withdrawal")
+@Label("Withdrawal")
+@Description("A withdrawal from an account")
+@StackTrace(false)
+@Threshold("10 ms")
+public class WithdrawalEvent extends BankingEvent {
+    public WithdrawalEvent(String accountId) {
+        super(accountId);
+    }
+
+    @Override
+    protected String operationName() {
+        return "withdrawal";
+    }
+}
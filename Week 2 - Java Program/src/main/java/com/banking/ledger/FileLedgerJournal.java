@@ -0,0 +1,67 @@
+package com.banking.ledger;
+
+import com.banking.exception.BankingException;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends one line per command to a text file:
+ * timestamp,sequence,type,account,counterparty,amount,result
+ */
+public class FileLedgerJournal implements LedgerJournal {
+    private final BufferedWriter writer;
+
+    public FileLedgerJournal(Path file) {
+        try {
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new BankingException("Could not open ledger journal " + file, e);
+        }
+    }
+
+    // Shared by all partitions, so writes are serialized
+    @Override
+    public synchronized void append(LedgerCommand command) {
+        try {
+            writer.write(Long.toString(command.getTimestampMillis()));
+            writer.write(',');
+            writer.write(Long.toString(command.getSequence()));
+            writer.write(',');
+            writer.write(command.getType().name());
+            writer.write(',');
+            writer.write(command.getAccountId());
+            writer.write(',');
+            writer.write(command.getCounterpartyId() == null ? "" : command.getCounterpartyId());
+            writer.write(',');
+            writer.write(command.getAmount().toPlainString());
+            writer.write(',');
+            writer.write(command.getResult().name());
+            writer.newLine();
+        } catch (IOException e) {
+            throw new BankingException("Could not write ledger journal", e);
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new BankingException("Could not flush ledger journal", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close ledger journal: " + e.getMessage());
+        }
+    }
+}
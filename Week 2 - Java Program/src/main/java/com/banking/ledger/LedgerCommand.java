@@ -0,0 +1,68 @@
+package com.banking.ledger;
+
+import com.banking.model.OperationResult;
+import java.math.BigDecimal;
+
+/**
+ * One pre-allocated slot in a ledger ring buffer.
+ * Slots are reused, so consumers must copy anything they want to keep.
+ */
+public final class LedgerCommand {
+    public enum Type {
+        DEPOSIT,
+        WITHDRAW,
+        TRANSFER
+    }
+
+    long sequence;
+    Type type;
+    String accountId;
+    String counterpartyId;
+    BigDecimal amount;
+    long timestampMillis;
+    OperationResult result;
+
+    void set(Type type, String accountId, String counterpartyId, BigDecimal amount) {
+        this.type = type;
+        this.accountId = accountId;
+        this.counterpartyId = counterpartyId;
+        this.amount = amount;
+        this.timestampMillis = System.currentTimeMillis();
+        this.result = null;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    // Destination of a transfer, null for deposits and withdrawals
+    public String getCounterpartyId() {
+        return counterpartyId;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public OperationResult getResult() {
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LedgerCommand[seq=%d, type=%s, account=%s, counterparty=%s, amount=%.2f, result=%s]",
+                sequence, type, accountId, counterpartyId, amount, result);
+    }
+}
@@ -0,0 +1,15 @@
+package com.banking.ledger;
+
+/**
+ * Durable log of every command a partition has processed, appended once
+ * its result is final, i.e. after its DB batch committed or failed for good.
+ */
+public interface LedgerJournal extends AutoCloseable {
+    void append(LedgerCommand command);
+
+    // Called once per drained batch
+    void flush();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,558 @@
+package com.banking.ledger;
+
+import com.banking.BankingSystem;
+import com.banking.db.DatabaseConnection;
+import com.banking.db.JdbcMetrics;
+import com.banking.model.Account;
+import com.banking.model.OperationResult;
+import com.banking.exception.*;
+import com.banking.service.AccountChangeListener;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Single-writer command processor for deposits, withdrawals and transfers.
+ *
+ * Accounts are split into partitions by account ID hash. Each partition
+ * has its own ring buffer and exactly one writer thread that applies the
+ * commands to the BankingSystem accounts in sequence order, so debits on
+ * an account never race. Behind the writer, on the same sequence, a
+ * persistence consumer writes the applied ones to the DB in JDBC batches,
+ * one commit per drained batch, and then reports each result; behind it
+ * a journal consumer appends every command, with its final result, to
+ * the LedgerJournal. A command is never reported OK before it is in the DB.
+ *
+ * A transfer is published to the source account's partition. Its writer
+ * checks the funds and applies both legs; credits commute, so adding to a
+ * destination owned by another partition cannot invalidate that
+ * partition's own checks.
+ *
+ * A DB batch that fails is rolled back and retried with backoff. If it
+ * still fails, the partition halts: nothing after it is persisted, and
+ * every command the writer applied from that batch on is undone in memory
+ * and reported FAILED, so the accounts again match the DB. New commands
+ * for the partition are refused, commands already queued end as FAILED
+ * without being applied, and awaitIdle and close throw the error.
+ *
+ * Change listeners hear about each DB batch after it commits, as one
+ * change set: the net balance change per account, then every leg.
+ */
+public class LedgerProcessor implements AutoCloseable {
+    // Attempts at one DB batch before the partition halts
+    private static final int MAX_PERSIST_ATTEMPTS = 5;
+    private static final long FIRST_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * Called on the persistence thread once a command's DB batch has
+     * committed, or right after it is applied when nothing is persisted.
+     * The command is a reused slot and must not be kept.
+     */
+    public interface ResultListener {
+        void onResult(LedgerCommand command);
+    }
+
+    private final BankingSystem bankingSystem;
+    private final Partition[] partitions;
+    private final LedgerJournal journal;
+    private final ResultListener listener;
+    // Told about every DB batch after it commits, e.g. to feed read replicas
+    private final List<AccountChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    private volatile boolean running = true;
+
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder persistedBatches = new LongAdder();
+
+    /**
+     * @param journal  where applied commands are logged, or null for no journal
+     * @param persist  whether applied commands are written to the DB
+     * @param listener called with every result, or null
+     */
+    public LedgerProcessor(BankingSystem bankingSystem, int partitionCount, int ringSize,
+                           LedgerJournal journal, boolean persist, ResultListener listener) {
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException("Partition count must be positive");
+        }
+        this.bankingSystem = bankingSystem;
+        this.journal = journal;
+        this.listener = listener;
+        this.partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(i, ringSize, persist);
+        }
+        for (Partition partition : partitions) {
+            partition.start();
+        }
+    }
+
+    public long deposit(String accountId, BigDecimal amount) {
+        return publish(LedgerCommand.Type.DEPOSIT, accountId, null, amount);
+    }
+
+    public long withdraw(String accountId, BigDecimal amount) {
+        return publish(LedgerCommand.Type.WITHDRAW, accountId, null, amount);
+    }
+
+    public long transfer(String fromAccountId, String toAccountId, BigDecimal amount) {
+        return publish(LedgerCommand.Type.TRANSFER, fromAccountId, toAccountId, amount);
+    }
+
+    // Claim a slot in the account's partition, fill it in place and publish it
+    private long publish(LedgerCommand.Type type, String accountId, String counterpartyId, BigDecimal amount) {
+        if (!running) {
+            throw new BankingException("Ledger processor is closed");
+        }
+        Partition partition = partitionFor(accountId);
+        partition.checkRunning();
+        LedgerRingBuffer ring = partition.ring;
+        long sequence = ring.claim();
+        ring.get(sequence).set(type, accountId, counterpartyId, amount);
+        ring.publish(sequence);
+        return sequence;
+    }
+
+    private Partition partitionFor(String accountId) {
+        return partitions[Math.floorMod(accountId.hashCode(), partitions.length)];
+    }
+
+    /**
+     * Wait until every published command has been applied, journaled and
+     * persisted. Throws if a partition halted because its DB writes failed.
+     */
+    public void awaitIdle() {
+        for (Partition partition : partitions) {
+            long target = partition.ring.getClaimed();
+            BooleanSupplier drained = () -> partition.slowestConsumer() >= target;
+            int idle = 0;
+            while (!drained.getAsBoolean()) {
+                idle = partition.ring.idle(idle, drained);
+            }
+            partition.checkRunning();
+        }
+    }
+
+    public void addChangeListener(AccountChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(AccountChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    public long getAppliedCount() {
+        return applied.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getPersistedBatches() {
+        return persistedBatches.sum();
+    }
+
+    /**
+     * Drain all partitions, then stop the consumer threads.
+     */
+    @Override
+    public void close() {
+        try {
+            awaitIdle();
+        } finally {
+            running = false;
+            for (Partition partition : partitions) {
+                partition.ring.signal();
+            }
+            for (Partition partition : partitions) {
+                partition.stop();
+            }
+            if (journal != null) {
+                journal.close();
+            }
+        }
+    }
+
+    // Apply one command to the in-memory accounts; runs only on the partition's writer thread
+    private OperationResult apply(LedgerCommand command) {
+        if (command.amount == null || command.amount.compareTo(BigDecimal.ZERO) <= 0) {
+            return OperationResult.INVALID_AMOUNT;
+        }
+        try {
+            Account account = bankingSystem.findAccount(command.accountId);
+            switch (command.type) {
+                case DEPOSIT:
+                    account.deposit(command.amount);
+                    return OperationResult.OK;
+                case WITHDRAW:
+                    // Checked and applied under the account's lock, since other paths may debit it too
+                    return account.tryWithdraw(command.amount);
+                case TRANSFER:
+                    if (command.accountId.equals(command.counterpartyId)) {
+                        return OperationResult.SAME_ACCOUNT;
+                    }
+                    Account destination = bankingSystem.findAccount(command.counterpartyId);
+                    if (!account.getCurrency().equals(destination.getCurrency())) {
+                        // The ledger moves amounts as they are; there is no FX here
+                        return OperationResult.CURRENCY_MISMATCH;
+                    }
+                    OperationResult result = account.tryWithdraw(command.amount);
+                    if (result.isSuccess()) {
+                        destination.deposit(command.amount);
+                    }
+                    return result;
+                default:
+                    return OperationResult.FAILED;
+            }
+        } catch (AccountNotFoundException e) {
+            return OperationResult.ACCOUNT_NOT_FOUND;
+        }
+    }
+
+    /**
+     * One ring buffer with its writer, journal and persistence threads.
+     */
+    private final class Partition {
+        private final LedgerRingBuffer ring;
+        private final AtomicLong writerSequence = new AtomicLong(-1);
+        private final AtomicLong journalSequence = new AtomicLong(-1);
+        private final AtomicLong persistSequence = new AtomicLong(-1);
+        private final List<Thread> threads = new ArrayList<>();
+        private final int index;
+        private final Connection conn;
+        // Set when a DB batch failed for good; nothing after it is persisted
+        private volatile BankingException failure;
+
+        // What each consumer waits for when idle; each runs until its stage is drained after close
+        private final BooleanSupplier writerReady;
+        private final BooleanSupplier persisterReady =
+                () -> !running || writerSequence.get() > persistSequence.get();
+        private final BooleanSupplier journalReady =
+                () -> !running || persistSequence.get() > journalSequence.get();
+
+        Partition(int index, int ringSize, boolean persist) {
+            this.index = index;
+            this.ring = new LedgerRingBuffer(ringSize);
+            this.writerReady = () -> !running || ring.highestPublished(writerSequence.get()) > writerSequence.get();
+            this.conn = persist ? openConnection() : null;
+
+            ring.setGatingSequences(journalSequence, persistSequence);
+            threads.add(new Thread(this::runWriter, "ledger-writer-" + index));
+            threads.add(new Thread(this::runJournal, "ledger-journal-" + index));
+            threads.add(new Thread(this::runPersister, "ledger-persist-" + index));
+            threads.forEach(thread -> thread.setDaemon(true));
+        }
+
+        void start() {
+            threads.forEach(Thread::start);
+        }
+
+        void stop() {
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    System.err.println("Failed to close ledger connection: " + e.getMessage());
+                }
+            }
+        }
+
+        long slowestConsumer() {
+            return Math.min(journalSequence.get(), persistSequence.get());
+        }
+
+        void checkRunning() {
+            BankingException halted = failure;
+            if (halted != null) {
+                throw new BankingException("Ledger partition " + index + " halted: " + halted.getMessage(), halted);
+            }
+        }
+
+        private void runWriter() {
+            long next = 0;
+            int idle = 0;
+            while (running || next <= ring.getClaimed()) {
+                long available = ring.highestPublished(next - 1);
+                if (available < next) {
+                    idle = ring.idle(idle, writerReady);
+                    continue;
+                }
+                idle = 0;
+                for (long sequence = next; sequence <= available; sequence++) {
+                    LedgerCommand command = ring.get(sequence);
+                    try {
+                        // A halted partition applies nothing more that could not be persisted
+                        command.result = failure == null ? apply(command) : OperationResult.FAILED;
+                    } catch (RuntimeException e) {
+                        System.err.println("Ledger command " + sequence + " failed: " + e);
+                        command.result = OperationResult.FAILED;
+                    }
+                    if (command.result.isSuccess()) {
+                        applied.increment();
+                    } else {
+                        rejected.increment();
+                    }
+                }
+                writerSequence.set(available);
+                ring.signal();
+                next = available + 1;
+            }
+        }
+
+        private void runJournal() {
+            long next = 0;
+            int idle = 0;
+            while (running || next <= ring.getClaimed()) {
+                long available = persistSequence.get();
+                if (available < next) {
+                    idle = ring.idle(idle, journalReady);
+                    continue;
+                }
+                idle = 0;
+                if (journal != null) {
+                    for (long sequence = next; sequence <= available; sequence++) {
+                        journal.append(ring.get(sequence));
+                    }
+                    journal.flush();
+                }
+                journalSequence.set(available);
+                ring.signal();
+                next = available + 1;
+            }
+        }
+
+        private void runPersister() {
+            long next = 0;
+            int idle = 0;
+            while (running || next <= ring.getClaimed()) {
+                long available = writerSequence.get();
+                if (available < next) {
+                    idle = ring.idle(idle, persisterReady);
+                    continue;
+                }
+                idle = 0;
+                if (conn != null && failure == null) {
+                    persistWithRetry(next, available);
+                }
+                if (failure != null) {
+                    undo(next, available);
+                }
+                report(next, available);
+                // Once halted the slots are still released, so producers and
+                // awaitIdle never wait on them, but nothing more is written
+                persistSequence.set(available);
+                ring.signal();
+                next = available + 1;
+            }
+        }
+
+        // Take back what the writer applied in [from, to] but the DB never got
+        private void undo(long from, long to) {
+            for (long sequence = from; sequence <= to; sequence++) {
+                LedgerCommand command = ring.get(sequence);
+                if (!command.result.isSuccess()) {
+                    continue;
+                }
+                try {
+                    switch (command.type) {
+                        case DEPOSIT:
+                            bankingSystem.findAccount(command.accountId).applyCommitted(command.amount.negate());
+                            break;
+                        case WITHDRAW:
+                            bankingSystem.findAccount(command.accountId).applyCommitted(command.amount);
+                            break;
+                        case TRANSFER:
+                            bankingSystem.findAccount(command.accountId).applyCommitted(command.amount);
+                            bankingSystem.findAccount(command.counterpartyId).applyCommitted(command.amount.negate());
+                            break;
+                        default:
+                            break;
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("Could not undo ledger command " + sequence + ": " + e);
+                }
+                command.result = OperationResult.FAILED;
+                applied.decrement();
+                rejected.increment();
+            }
+        }
+
+        private void report(long from, long to) {
+            if (listener == null) {
+                return;
+            }
+            for (long sequence = from; sequence <= to; sequence++) {
+                try {
+                    listener.onResult(ring.get(sequence));
+                } catch (RuntimeException e) {
+                    System.err.println("Ledger result listener failed: " + e);
+                }
+            }
+        }
+
+        // Persist [from, to], retrying with backoff; halts the partition if it keeps failing
+        private void persistWithRetry(long from, long to) {
+            long backoffNanos = FIRST_RETRY_NANOS;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    persist(from, to);
+                    persistedBatches.increment();
+                    return;
+                } catch (SQLException | BankingException e) {
+                    System.err.println("Failed to persist ledger batch " + from + "-" + to
+                            + " (attempt " + attempt + "): " + e.getMessage());
+                    if (attempt >= MAX_PERSIST_ATTEMPTS) {
+                        failure = new BankingException("Could not persist ledger commands " + from + "-" + to
+                                + "; persisted up to " + (from - 1) + ": " + e.getMessage(), e);
+                        return;
+                    }
+                }
+                LockSupport.parkNanos(backoffNanos);
+                backoffNanos *= 2;
+            }
+        }
+
+        // Write [from, to] and tell the change listeners, as one change set
+        private void persist(long from, long to) throws SQLException {
+            List<AccountChangeListener> started = new ArrayList<>(changeListeners);
+            started.forEach(AccountChangeListener::changeSetStarted);
+            try {
+                SortedMap<String, BigDecimal> deltas = write(from, to);
+                for (Map.Entry<String, BigDecimal> delta : deltas.entrySet()) {
+                    if (delta.getValue().signum() == 0) {
+                        continue;
+                    }
+                    for (AccountChangeListener changeListener : started) {
+                        changeListener.balanceChanged(delta.getKey(), delta.getValue());
+                    }
+                }
+                for (long sequence = from; sequence <= to; sequence++) {
+                    LedgerCommand command = ring.get(sequence);
+                    if (command.result.isSuccess()) {
+                        publishLegs(started, command);
+                    }
+                }
+            } finally {
+                started.forEach(AccountChangeListener::changeSetFinished);
+            }
+        }
+
+        private void publishLegs(List<AccountChangeListener> started, LedgerCommand command) {
+            Timestamp timestamp = new Timestamp(command.timestampMillis);
+            for (AccountChangeListener changeListener : started) {
+                switch (command.type) {
+                    case DEPOSIT:
+                        changeListener.transactionRecorded(command.accountId, command.amount, timestamp);
+                        break;
+                    case WITHDRAW:
+                        changeListener.transactionRecorded(command.accountId, command.amount.negate(), timestamp);
+                        break;
+                    case TRANSFER:
+                        changeListener.transactionRecorded(command.accountId, command.amount.negate(), timestamp);
+                        changeListener.transactionRecorded(command.counterpartyId, command.amount, timestamp);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        // Write the successful commands in [from, to] as one DB transaction.
+        // Balance changes are netted per account and applied in account ID order,
+        // so persisters of different partitions always lock rows in the same order.
+        // Returns the net change per account.
+        private SortedMap<String, BigDecimal> write(long from, long to) throws SQLException {
+            SortedMap<String, BigDecimal> deltas = new TreeMap<>();
+            try {
+                conn.setAutoCommit(false);
+                try (PreparedStatement insert = conn.prepareStatement(
+                        "INSERT INTO transactions (account_id, amount, transaction_date) VALUES (?, ?, ?)")) {
+                    for (long sequence = from; sequence <= to; sequence++) {
+                        LedgerCommand command = ring.get(sequence);
+                        if (!command.result.isSuccess()) {
+                            continue;
+                        }
+                        Timestamp timestamp = new Timestamp(command.timestampMillis);
+                        switch (command.type) {
+                            case DEPOSIT:
+                                addLeg(deltas, insert, command.accountId, command.amount, timestamp);
+                                break;
+                            case WITHDRAW:
+                                addLeg(deltas, insert, command.accountId, command.amount.negate(), timestamp);
+                                break;
+                            case TRANSFER:
+                                addLeg(deltas, insert, command.accountId, command.amount.negate(), timestamp);
+                                addLeg(deltas, insert, command.counterpartyId, command.amount, timestamp);
+                                break;
+                            default:
+                                break;
+                        }
+                    }
+
+                    List<String> updatedIds = new ArrayList<>(deltas.keySet());
+                    try (PreparedStatement update = conn.prepareStatement(
+                            "UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE account_id = ?")) {
+                        for (Map.Entry<String, BigDecimal> delta : deltas.entrySet()) {
+                            update.setBigDecimal(1, delta.getValue());
+                            update.setString(2, delta.getKey());
+                            update.addBatch();
+                        }
+                        int[] rows = update.executeBatch();
+                        for (int i = 0; i < rows.length; i++) {
+                            if (rows[i] == 0) {
+                                throw new AccountNotFoundException(updatedIds.get(i));
+                            }
+                        }
+                    }
+                    insert.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException | BankingException e) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackEx) {
+                    e.addSuppressed(rollbackEx);
+                }
+                throw e;
+            } finally {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException ex) {
+                    JdbcMetrics.global().swallowed("LedgerProcessor.resetAutoCommit", ex);
+                }
+            }
+            return deltas;
+        }
+
+        private void addLeg(Map<String, BigDecimal> deltas, PreparedStatement insert, String accountId,
+                            BigDecimal amount, Timestamp timestamp) throws SQLException {
+            deltas.merge(accountId, amount, BigDecimal::add);
+
+            insert.setString(1, accountId);
+            insert.setBigDecimal(2, amount);
+            insert.setTimestamp(3, timestamp);
+            insert.addBatch();
+        }
+    }
+
+    private static Connection openConnection() {
+        try {
+            return DatabaseConnection.getConnection();
+        } catch (SQLException e) {
+            throw new BankingException("Could not open ledger connection: " + e.getMessage(), e);
+        }
+    }
+}
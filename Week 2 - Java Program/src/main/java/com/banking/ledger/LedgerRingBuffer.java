@@ -0,0 +1,150 @@
+package com.banking.ledger;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Fixed-size ring of pre-allocated command slots.
+ *
+ * Producers claim a sequence number, fill the slot and publish it.
+ * Consumers each track their own sequence; a producer may only reuse a
+ * slot once every gating consumer has moved past it.
+ *
+ * A thread with nothing to do spins, then parks briefly, then blocks
+ * until another thread moves a sequence and calls signal().
+ */
+final class LedgerRingBuffer {
+    private static final int SPIN_TRIES = 100;
+    private static final int PARK_TRIES = 100;
+
+    private final LedgerCommand[] slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(-1);
+
+    // For every slot, the sequence most recently published into it
+    private final AtomicLongArray published;
+
+    private volatile AtomicLong[] gatingSequences = new AtomicLong[0];
+
+    // Threads blocked in idle() wait on this monitor
+    private final Object signal = new Object();
+    private final AtomicInteger sleepers = new AtomicInteger();
+
+    LedgerRingBuffer(int size) {
+        if (size <= 0 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Ring size must be a power of two");
+        }
+        this.slots = new LedgerCommand[size];
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new LedgerCommand();
+            published.set(i, -1);
+        }
+    }
+
+    // The slowest of these sequences decides when a slot can be reused
+    void setGatingSequences(AtomicLong... sequences) {
+        this.gatingSequences = sequences;
+    }
+
+    /**
+     * Claim the next sequence, waiting while the ring is full.
+     */
+    long claim() {
+        long sequence = claimed.incrementAndGet();
+        long wrapPoint = sequence - slots.length;
+        if (wrapPoint > minimumGatingSequence()) {
+            BooleanSupplier free = () -> wrapPoint <= minimumGatingSequence();
+            int idle = 0;
+            while (!free.getAsBoolean()) {
+                idle = idle(idle, free);
+            }
+        }
+        return sequence;
+    }
+
+    LedgerCommand get(long sequence) {
+        return slots[(int) sequence & mask];
+    }
+
+    void publish(long sequence) {
+        LedgerCommand command = get(sequence);
+        command.sequence = sequence;
+        published.lazySet((int) sequence & mask, sequence);
+        signal();
+    }
+
+    // Highest sequence after 'from' up to which every slot has been published
+    long highestPublished(long from) {
+        long limit = claimed.get();
+        long sequence = from + 1;
+        while (sequence <= limit && published.get((int) sequence & mask) == sequence) {
+            sequence++;
+        }
+        return sequence - 1;
+    }
+
+    long getClaimed() {
+        return claimed.get();
+    }
+
+    private long minimumGatingSequence() {
+        long minimum = Long.MAX_VALUE;
+        for (AtomicLong sequence : gatingSequences) {
+            minimum = Math.min(minimum, sequence.get());
+        }
+        return minimum == Long.MAX_VALUE ? claimed.get() : minimum;
+    }
+
+    /**
+     * Wait a little for 'ready' to hold: spin first, then park briefly, and
+     * once that has not helped, block until signal() finds it true.
+     * Returns the counter to pass on the next call.
+     */
+    int idle(int counter, BooleanSupplier ready) {
+        if (counter < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (counter < SPIN_TRIES + PARK_TRIES) {
+            LockSupport.parkNanos(1_000L);
+        } else {
+            block(ready);
+        }
+        return counter + 1;
+    }
+
+    private void block(BooleanSupplier ready) {
+        synchronized (signal) {
+            // Counted before 'ready' is checked, so a signal() after the
+            // check always sees this thread and wakes it
+            sleepers.incrementAndGet();
+            try {
+                while (!ready.getAsBoolean()) {
+                    signal.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                sleepers.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Wake blocked threads; call after moving any sequence they may wait on.
+     * Only a fence and a read while nobody is blocked.
+     */
+    void signal() {
+        // Orders the caller's sequence update before the read of sleepers
+        VarHandle.fullFence();
+        if (sleepers.get() > 0) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+    }
+}
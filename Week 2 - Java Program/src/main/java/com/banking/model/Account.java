@@ -2,11 +2,18 @@ package com.banking.model;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Currency;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
 import com.banking.exception.InsufficientFundsException;
 
 public abstract class Account {
+    // Accounts created without a currency hold dollars
+    public static final Currency DEFAULT_CURRENCY = Currency.getInstance("USD");
+
     // Private fields - data encapsulation
     private final String accountNumber;
+    private final Currency currency;
     private BigDecimal balance;
 
     // Protected field - accessible by subclasses
@@ -15,54 +22,272 @@ public abstract class Account {
     // Static field - shared across instances
     private static final BigDecimal MINIMUM_BALANCE = new BigDecimal("100.00");
 
+    // Credits of a hot account, in cents, kept apart from balance; null when not striped.
+    // Stripes are STRIPE_SPACING longs (64 bytes) apart so they never share a cache line.
+    private static final int STRIPE_SPACING = 8;
+    private volatile AtomicLongArray creditStripes;
+
     // Public constructor
     public Account(String accountNumber, BigDecimal balance) {
+        this(accountNumber, balance, DEFAULT_CURRENCY);
+    }
+
+    // The balance and every amount moved in or out are in this currency
+    public Account(String accountNumber, BigDecimal balance, Currency currency) {
+        if (currency == null) {
+            throw new IllegalArgumentException("Currency is required");
+        }
         this.accountNumber = accountNumber;
+        this.currency = currency;
         this.balance = balance;
         this.lastTransaction = LocalDateTime.now();
     }
 
+    // For views over state kept elsewhere (see the storage hooks): no balance
+    // or timestamp of their own, so making one only costs the object itself
+    protected Account(String accountNumber, Currency currency) {
+        if (currency == null) {
+            throw new IllegalArgumentException("Currency is required");
+        }
+        this.accountNumber = accountNumber;
+        this.currency = currency;
+    }
+
     // Abstract method
     public abstract void processMonthlyFees();
 
+    /**
+     * The balance change month-end processing would make to an account
+     * holding balance, without making it. Zero when there is nothing to do.
+     */
+    public abstract BigDecimal monthlyFeeDelta(BigDecimal balance);
+
+    /**
+     * Mirror month-end processing that was already posted to the DB, e.g. by
+     * MonthlyFeeJob: apply the delta as is and reset the monthly counters.
+     * No funds check, since the DB balance it was worked out from is the truth.
+     */
+    public void applyMonthlyFees(BigDecimal delta) {
+        synchronized (lock()) {
+            if (delta.signum() != 0) {
+                storeBalance(loadBalance().add(delta));
+                storeLastTransaction(LocalDateTime.now());
+            }
+            resetMonthlyCounters();
+        }
+    }
+
+    /**
+     * Mirror a balance change that is already committed to the DB, e.g. by a
+     * netted posting. Applied as is, with no funds check: the DB checked the
+     * funds under its row lock, and a mirror that refused would only leave
+     * the two further apart.
+     */
+    public void applyCommitted(BigDecimal delta) {
+        synchronized (lock()) {
+            if (delta.signum() != 0) {
+                storeBalance(loadBalance().add(delta));
+                storeLastTransaction(LocalDateTime.now());
+            }
+        }
+    }
+
+    // Called at month end; accounts with monthly counters clear them here
+    protected void resetMonthlyCounters() {
+    }
+
     // Concrete method with virtual invocation
+    // Locked so concurrent service calls cannot lose updates
     public void withdraw(BigDecimal amount) {
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+        OperationResult result = tryWithdraw(amount);
+        if (result == OperationResult.INVALID_AMOUNT) {
             throw new IllegalArgumentException("Withdrawal amount must be positive");
         }
+        if (result == OperationResult.INSUFFICIENT_FUNDS) {
+            throw new InsufficientFundsException(accountNumber, amount, getBalance(), currency);
+        }
+    }
 
-        if (!canWithdraw(amount)) {
-            throw new InsufficientFundsException(accountNumber, amount, balance);
+    /**
+     * Withdraw without throwing. A rejected withdrawal just returns its code,
+     * so callers that expect frequent rejections pay nothing for them.
+     */
+    public OperationResult tryWithdraw(BigDecimal amount) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            return OperationResult.INVALID_AMOUNT;
         }
 
-        balance = balance.subtract(amount);
-        lastTransaction = LocalDateTime.now();
+        synchronized (lock()) {
+            if (!canWithdraw(amount)) {
+                return OperationResult.INSUFFICIENT_FUNDS;
+            }
+
+            // Borrow whatever the credit stripes hold; canWithdraw already counted it
+            storeBalance(loadBalance().add(drainStripes()).subtract(amount));
+            storeLastTransaction(LocalDateTime.now());
+            return OperationResult.OK;
+        }
     }
 
     public void deposit(BigDecimal amount) {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Deposit amount must be positive");
         }
-        balance = balance.add(amount);
-        lastTransaction = LocalDateTime.now();
+        AtomicLongArray stripes = creditStripes;
+        if (stripes != null && amount.scale() <= 2) {
+            // No lock: add to a random stripe
+            int stripe = ThreadLocalRandom.current().nextInt(stripes.length() / STRIPE_SPACING);
+            stripes.getAndAdd(stripe * STRIPE_SPACING, amount.movePointRight(2).longValueExact());
+            return;
+        }
+        synchronized (lock()) {
+            storeBalance(loadBalance().add(amount));
+            storeLastTransaction(LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Overwrite the balance with the one from the DB, used when
+     * reconciliation finds the two have drifted apart.
+     */
+    public void resetBalance(BigDecimal balance) {
+        synchronized (lock()) {
+            drainStripes();
+            storeBalance(balance);
+        }
+    }
+
+    /**
+     * Hot-account mode: from now on deposits go to one of stripes counters
+     * without taking the account lock, so many threads can credit the
+     * account at once. Reads add the stripes to the balance; withdrawals
+     * and foldCreditStripes move them into it.
+     */
+    public void enableCreditStripes(int stripes) {
+        if (stripes < 2) {
+            throw new IllegalArgumentException("A striped account needs at least 2 stripes");
+        }
+        if (!supportsCreditStripes()) {
+            throw new IllegalStateException("Account " + accountNumber + " cannot keep credit stripes");
+        }
+        synchronized (lock()) {
+            storeBalance(loadBalance().add(drainStripes()));
+            creditStripes = new AtomicLongArray(stripes * STRIPE_SPACING);
+        }
+    }
+
+    // Fold the stripes into the balance and go back to plain deposits
+    public void disableCreditStripes() {
+        synchronized (lock()) {
+            storeBalance(loadBalance().add(drainStripes()));
+            creditStripes = null;
+        }
+    }
+
+    // False for accounts with nowhere to keep stripes, e.g. views that
+    // only live for one lookup; those cannot be made hot
+    public boolean supportsCreditStripes() {
+        return true;
+    }
+
+    // Number of credit stripes, 0 when the account is not striped
+    public int getCreditStripes() {
+        AtomicLongArray stripes = creditStripes;
+        return stripes == null ? 0 : stripes.length() / STRIPE_SPACING;
+    }
+
+    /**
+     * Move the credit stripes into the balance. The total does not change.
+     * Striped deposits skip the last transaction time; it catches up here.
+     * Returns the amount moved.
+     */
+    public BigDecimal foldCreditStripes() {
+        synchronized (lock()) {
+            BigDecimal folded = drainStripes();
+            if (folded.signum() != 0) {
+                storeBalance(loadBalance().add(folded));
+                storeLastTransaction(LocalDateTime.now());
+            }
+            return folded;
+        }
+    }
+
+    // Empty every stripe and return what they held. Deposits racing with
+    // this stay in their stripe for the next drain, so nothing is lost.
+    private BigDecimal drainStripes() {
+        AtomicLongArray stripes = creditStripes;
+        if (stripes == null) {
+            return BigDecimal.ZERO;
+        }
+        long cents = 0;
+        for (int i = 0; i < stripes.length(); i += STRIPE_SPACING) {
+            cents += stripes.getAndSet(i, 0);
+        }
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private BigDecimal stripedCredits() {
+        AtomicLongArray stripes = creditStripes;
+        if (stripes == null) {
+            return BigDecimal.ZERO;
+        }
+        long cents = 0;
+        for (int i = 0; i < stripes.length(); i += STRIPE_SPACING) {
+            cents += stripes.get(i);
+        }
+        return BigDecimal.valueOf(cents, 2);
     }
 
     // Protected method for subclasses
     protected abstract boolean canWithdraw(BigDecimal amount);
 
+    // Lowest balance the account may reach after a withdrawal
+    public abstract BigDecimal getWithdrawalFloor();
+
     // Getters
     public String getAccountNumber() {
         return accountNumber;
     }
 
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    // Exact total, striped credits included
     public BigDecimal getBalance() {
-        return balance;
+        synchronized (lock()) {
+            BigDecimal balance = loadBalance();
+            return creditStripes == null ? balance : balance.add(stripedCredits());
+        }
     }
 
     public LocalDateTime getLastTransaction() {
+        synchronized (lock()) {
+            return loadLastTransaction();
+        }
+    }
+
+    // Storage hooks - a store can keep the state somewhere other than these fields
+    protected Object lock() {
+        return this;
+    }
+
+    protected BigDecimal loadBalance() {
+        return balance;
+    }
+
+    protected void storeBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+
+    protected LocalDateTime loadLastTransaction() {
         return lastTransaction;
     }
 
+    protected void storeLastTransaction(LocalDateTime lastTransaction) {
+        this.lastTransaction = lastTransaction;
+    }
+
     protected BigDecimal getMinimumBalance() {
         return MINIMUM_BALANCE;
     }
@@ -83,7 +308,7 @@ public abstract class Account {
 
     @Override
     public String toString() {
-        return String.format("Account[number=%s, balance=%.2f]",
-                           accountNumber, balance);
+        return String.format("Account[number=%s, balance=%.2f %s]",
+                           accountNumber, getBalance(), currency);
     }
 }
@@ -1,14 +1,19 @@
 package com.banking.model;
 
 import java.math.BigDecimal;
+import java.util.Currency;
 
 public class AccountFactory {
     public static Account createAccount(AccountType type, String number, BigDecimal balance) {
+        return createAccount(type, number, balance, Account.DEFAULT_CURRENCY);
+    }
+
+    public static Account createAccount(AccountType type, String number, BigDecimal balance, Currency currency) {
         switch (type) {
             case SAVINGS:
-                return new SavingsAccount(number, balance);
+                return new SavingsAccount(number, balance, SavingsAccount.DEFAULT_INTEREST_RATE, currency);
             case CHECKING:
-                return new CheckingAccount(number, balance);
+                return new CheckingAccount(number, balance, currency);
             default:
                 throw new IllegalArgumentException("Unknown account type: " + type);
         }
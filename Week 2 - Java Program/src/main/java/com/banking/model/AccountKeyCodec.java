@@ -0,0 +1,109 @@
+package com.banking.model;
+
+/**
+ * Packs canonical account IDs such as "SAV001" or "CHK1234" into a long.
+ *
+ * Layout (high to low bits):
+ *   4 bits  account type (1 = SAV, 2 = CHK)
+ *   4 bits  number of digits, so leading zeros survive the round trip
+ *  56 bits  the numeric sequence
+ *
+ * Every encoded key is positive, so NO_KEY (-1) can never collide with one.
+ */
+public final class AccountKeyCodec {
+    public static final long NO_KEY = -1L;
+
+    private static final int TYPE_SHIFT = 60;
+    private static final int WIDTH_SHIFT = 56;
+    private static final long SEQUENCE_MASK = (1L << WIDTH_SHIFT) - 1;
+    private static final int PREFIX_LENGTH = 3;
+    private static final int MAX_DIGITS = 15;
+
+    // Key for a canonical ID, or NO_KEY if the ID does not follow the TYPE + digits pattern
+    public static long encode(String accountId) {
+        if (accountId == null || accountId.length() <= PREFIX_LENGTH
+                || accountId.length() > PREFIX_LENGTH + MAX_DIGITS) {
+            return NO_KEY;
+        }
+        AccountType type = typeForPrefix(accountId);
+        if (type == null) {
+            return NO_KEY;
+        }
+
+        long sequence = 0;
+        for (int i = PREFIX_LENGTH; i < accountId.length(); i++) {
+            char c = accountId.charAt(i);
+            if (c < '0' || c > '9') {
+                return NO_KEY;
+            }
+            sequence = sequence * 10 + (c - '0');
+        }
+        return encode(type, sequence, accountId.length() - PREFIX_LENGTH);
+    }
+
+    public static long encode(AccountType type, long sequence, int digits) {
+        if (digits < 1 || digits > MAX_DIGITS) {
+            throw new IllegalArgumentException("Digits must be between 1 and " + MAX_DIGITS);
+        }
+        if (sequence < 0 || sequence > SEQUENCE_MASK || Long.toString(sequence).length() > digits) {
+            throw new IllegalArgumentException("Sequence " + sequence + " does not fit in " + digits + " digits");
+        }
+        return ((long) (type.ordinal() + 1) << TYPE_SHIFT) | ((long) digits << WIDTH_SHIFT) | sequence;
+    }
+
+    // Back to the canonical string form, e.g. "SAV001"
+    public static String decode(long key) {
+        checkKey(key);
+        String digits = Long.toString(sequenceOf(key));
+        int width = (int) (key >>> WIDTH_SHIFT) & 0xF;
+
+        StringBuilder id = new StringBuilder(PREFIX_LENGTH + width).append(typeOf(key).getCode());
+        for (int i = digits.length(); i < width; i++) {
+            id.append('0');
+        }
+        return id.append(digits).toString();
+    }
+
+    public static AccountType typeOf(long key) {
+        checkKey(key);
+        return AccountType.values()[(int) (key >>> TYPE_SHIFT) - 1];
+    }
+
+    public static long sequenceOf(long key) {
+        return key & SEQUENCE_MASK;
+    }
+
+    public static boolean isCanonical(String accountId) {
+        return encode(accountId) != NO_KEY;
+    }
+
+    // Spread a key's bits for hash tables (murmur3 finalizer)
+    public static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static AccountType typeForPrefix(String accountId) {
+        for (AccountType type : AccountType.values()) {
+            if (accountId.startsWith(type.getCode())) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static void checkKey(long key) {
+        int type = (int) (key >>> TYPE_SHIFT);
+        if (key <= 0 || type < 1 || type > AccountType.values().length) {
+            throw new IllegalArgumentException("Not an account key: " + key);
+        }
+    }
+
+    private AccountKeyCodec() {
+        // Static helpers only
+    }
+}
@@ -1,53 +1,116 @@
 package com.banking.model;
 
 import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.atomic.LongAdder;
 
 public class CheckingAccount extends Account {
     private static final BigDecimal MONTHLY_FEE = new BigDecimal("12.00");
     private static final BigDecimal OVERDRAFT_LIMIT = new BigDecimal("-100.00");
     private int monthlyTransactions;
+    // Deposits to a striped account are counted here, without the lock;
+    // null for views, which cannot be striped
+    private final LongAdder stripedDeposits;
 
     public CheckingAccount(String accountNumber, BigDecimal balance) {
         super(accountNumber, balance);
         this.monthlyTransactions = 0;
+        this.stripedDeposits = new LongAdder();
+    }
+
+    public CheckingAccount(String accountNumber, BigDecimal balance, Currency currency) {
+        super(accountNumber, balance, currency);
+        this.monthlyTransactions = 0;
+        this.stripedDeposits = new LongAdder();
+    }
+
+    // For views, see Account; they must override supportsCreditStripes to return false
+    protected CheckingAccount(String accountNumber, Currency currency) {
+        super(accountNumber, currency);
+        this.stripedDeposits = null;
     }
 
     @Override
     public void processMonthlyFees() {
-        // Deduct monthly maintenance fee
-        withdraw(MONTHLY_FEE);
-        // Reset monthly transaction count
-        monthlyTransactions = 0;
+        synchronized (lock()) {
+            // Deduct monthly maintenance fee
+            withdraw(MONTHLY_FEE);
+            // Reset monthly transaction count
+            resetMonthlyCounters();
+        }
+    }
+
+    @Override
+    public BigDecimal monthlyFeeDelta(BigDecimal balance) {
+        return MONTHLY_FEE.negate();
+    }
+
+    @Override
+    protected void resetMonthlyCounters() {
+        storeMonthlyTransactions(0);
+        if (stripedDeposits != null) {
+            stripedDeposits.add(-stripedDeposits.sum());
+        }
     }
 
     @Override
     protected boolean canWithdraw(BigDecimal amount) {
         // Allow withdrawals up to overdraft limit
         return getBalance().subtract(amount)
-                         .compareTo(OVERDRAFT_LIMIT) >= 0;
+                         .compareTo(getWithdrawalFloor()) >= 0;
+    }
+
+    @Override
+    public BigDecimal getWithdrawalFloor() {
+        return OVERDRAFT_LIMIT;
     }
 
     @Override
-    public void withdraw(BigDecimal amount) {
-        super.withdraw(amount);
-        monthlyTransactions++;
+    public OperationResult tryWithdraw(BigDecimal amount) {
+        synchronized (lock()) {
+            OperationResult result = super.tryWithdraw(amount);
+            if (result.isSuccess()) {
+                storeMonthlyTransactions(loadMonthlyTransactions() + 1);
+            }
+            return result;
+        }
     }
 
     @Override
     public void deposit(BigDecimal amount) {
-        super.deposit(amount);
-        monthlyTransactions++;
+        if (getCreditStripes() > 0) {
+            super.deposit(amount);
+            stripedDeposits.increment();
+            return;
+        }
+        synchronized (lock()) {
+            super.deposit(amount);
+            storeMonthlyTransactions(loadMonthlyTransactions() + 1);
+        }
     }
 
     public int getMonthlyTransactions() {
+        synchronized (lock()) {
+            int striped = stripedDeposits == null ? 0 : stripedDeposits.intValue();
+            return loadMonthlyTransactions() + striped;
+        }
+    }
+
+    // Storage hooks, see Account
+    protected int loadMonthlyTransactions() {
         return monthlyTransactions;
     }
 
+    protected void storeMonthlyTransactions(int monthlyTransactions) {
+        this.monthlyTransactions = monthlyTransactions;
+    }
+
     @Override
     public String toString() {
-        return String.format("CheckingAccount[number=%s, balance=%.2f, transactions=%d]",
+        return String.format("CheckingAccount[number=%s, balance=%.2f %s, transactions=%d]",
                            getAccountNumber(),
                            getBalance(),
-                           monthlyTransactions);
+                           getCurrency(),
+                           getMonthlyTransactions());
     }
 }
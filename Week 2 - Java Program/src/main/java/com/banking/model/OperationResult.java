@@ -0,0 +1,26 @@
+package com.banking.model;
+
+/**
+ * Outcome of a banking operation that reports failures as a code
+ * instead of throwing an exception.
+ */
+public enum OperationResult {
+    OK,
+    INVALID_AMOUNT,
+    ACCOUNT_NOT_FOUND,
+    SAME_ACCOUNT,
+    INSUFFICIENT_FUNDS,
+    // The account kept changing underneath us; safe to retry later
+    CONTENDED,
+    // Turned away by admission control without touching the DB
+    OVERLOADED,
+    // Would go over a per-account velocity limit
+    LIMIT_EXCEEDED,
+    // The accounts hold different currencies and there is no rate between them
+    CURRENCY_MISMATCH,
+    FAILED;
+
+    public boolean isSuccess() {
+        return this == OK;
+    }
+}
@@ -1,13 +1,18 @@
 package com.banking.model;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
 
 public class SavingsAccount extends Account {
+    private static final BigDecimal MONTHS_PER_YEAR = BigDecimal.valueOf(12);
+    public static final BigDecimal DEFAULT_INTEREST_RATE = new BigDecimal("0.025"); // 2.5% interest rate
+
     private final BigDecimal interestRate;
 
     public SavingsAccount(String accountNumber, BigDecimal balance) {
         super(accountNumber, balance);
-        this.interestRate = new BigDecimal("0.025"); // 2.5% interest rate
+        this.interestRate = DEFAULT_INTEREST_RATE;
     }
 
     public SavingsAccount(String accountNumber, BigDecimal balance, BigDecimal interestRate) {
@@ -15,18 +20,45 @@ public class SavingsAccount extends Account {
         this.interestRate = interestRate;
     }
 
+    public SavingsAccount(String accountNumber, BigDecimal balance, BigDecimal interestRate, Currency currency) {
+        super(accountNumber, balance, currency);
+        this.interestRate = interestRate;
+    }
+
+    // For views, see Account; they must override getInterestRate
+    protected SavingsAccount(String accountNumber, Currency currency) {
+        super(accountNumber, currency);
+        this.interestRate = null;
+    }
+
     @Override
     public void processMonthlyFees() {
-        // Calculate and add interest
-        BigDecimal interest = getBalance().multiply(interestRate);
-        deposit(interest);
+        synchronized (lock()) {
+            BigDecimal interest = monthlyFeeDelta(getBalance());
+            if (interest.signum() > 0) {
+                deposit(interest);
+            }
+        }
+    }
+
+    @Override
+    public BigDecimal monthlyFeeDelta(BigDecimal balance) {
+        // One month of interest at the annual rate, rounded to cents
+        BigDecimal interest = balance.multiply(getInterestRate())
+                .divide(MONTHS_PER_YEAR, 2, RoundingMode.HALF_EVEN);
+        return interest.signum() > 0 ? interest : BigDecimal.ZERO;
     }
 
     @Override
     protected boolean canWithdraw(BigDecimal amount) {
         // Ensure minimum balance is maintained
         return getBalance().subtract(amount)
-                         .compareTo(getMinimumBalance()) >= 0;
+                         .compareTo(getWithdrawalFloor()) >= 0;
+    }
+
+    @Override
+    public BigDecimal getWithdrawalFloor() {
+        return getMinimumBalance();
     }
 
     public BigDecimal getInterestRate() {
@@ -35,9 +67,10 @@ public class SavingsAccount extends Account {
 
     @Override
     public String toString() {
-        return String.format("SavingsAccount[number=%s, balance=%.2f, interestRate=%.2f%%]",
+        return String.format("SavingsAccount[number=%s, balance=%.2f %s, interestRate=%.2f%%]",
                            getAccountNumber(),
                            getBalance(),
-                           interestRate.multiply(new BigDecimal("100")));
+                           getCurrency(),
+                           getInterestRate().multiply(new BigDecimal("100")));
     }
 }
@@ -0,0 +1,263 @@
+package com.banking.replica;
+
+import com.banking.model.Account;
+import com.banking.model.AccountType;
+import com.banking.service.AccountChangeListener;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ordered log of the changes the primary has committed.
+ *
+ * Register it with AccountService.addChangeListener and every committed
+ * change gets the next sequence number. Followers read the log from
+ * their own position; records every follower has applied are dropped,
+ * so the log only holds the backlog of the slowest follower.
+ *
+ * Balance changes are logged as deltas. Concurrent deltas on the same
+ * account commute, so followers end up with the primary's balances even
+ * if two writers commit in one order and log in the other.
+ *
+ * The changes of one DB transaction (a change set, see
+ * AccountChangeListener.changeSetStarted) are logged next to each other
+ * and read out whole, so a follower never applies half a transfer. Writers
+ * hold a shared fence from before their commit until their set is logged;
+ * subscribe(Snapshot) takes it exclusively, which lets a new follower copy
+ * the primary and start from exactly the position its copy reflects.
+ */
+public class ChangeLog implements AccountChangeListener {
+
+    /**
+     * A follower's position in the log.
+     */
+    public static final class Subscription {
+        private volatile long position;
+
+        private Subscription(long position) {
+            this.position = position;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+    }
+
+    /**
+     * Opens a consistent read of the primary, e.g. a DB snapshot, for
+     * subscribe(Snapshot).
+     */
+    public interface Snapshot {
+        void open() throws SQLException;
+    }
+
+    // A change not logged yet, waiting for the end of its change set
+    private static final class Change {
+        final ChangeRecord.Type type;
+        final String accountId;
+        final AccountType accountType;
+        final Currency currency;
+        final BigDecimal amount;
+        final Timestamp transactionDate;
+
+        Change(ChangeRecord.Type type, String accountId, AccountType accountType, Currency currency,
+               BigDecimal amount, Timestamp transactionDate) {
+            this.type = type;
+            this.accountId = accountId;
+            this.accountType = accountType;
+            this.currency = currency;
+            this.amount = amount;
+            this.transactionDate = transactionDate;
+        }
+    }
+
+    // The change set open on one thread
+    private static final class ChangeSet {
+        int depth;
+        final List<Change> changes = new ArrayList<>();
+    }
+
+    private final ArrayDeque<ChangeRecord> records = new ArrayDeque<>();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private long lastSequence;
+
+    private final ReentrantReadWriteLock fence = new ReentrantReadWriteLock();
+    private final ThreadLocal<ChangeSet> changeSets = ThreadLocal.withInitial(ChangeSet::new);
+
+    @Override
+    public void accountCreated(String accountId, AccountType type, BigDecimal initialBalance) {
+        accountCreated(accountId, type, initialBalance, Account.DEFAULT_CURRENCY);
+    }
+
+    @Override
+    public void accountCreated(String accountId, AccountType type, BigDecimal initialBalance, Currency currency) {
+        log(new Change(ChangeRecord.Type.ACCOUNT_CREATED, accountId, type, currency, initialBalance, null));
+    }
+
+    @Override
+    public void balanceChanged(String accountId, BigDecimal delta) {
+        log(new Change(ChangeRecord.Type.BALANCE_CHANGED, accountId, null, null, delta, null));
+    }
+
+    @Override
+    public void transactionRecorded(String accountId, BigDecimal amount, Timestamp transactionDate) {
+        log(new Change(ChangeRecord.Type.TRANSACTION_RECORDED, accountId, null, null, amount, transactionDate));
+    }
+
+    @Override
+    public void changeSetStarted() {
+        ChangeSet set = changeSets.get();
+        if (set.depth++ == 0) {
+            fence.readLock().lock();
+        }
+    }
+
+    @Override
+    public void changeSetFinished() {
+        ChangeSet set = changeSets.get();
+        if (set.depth == 0) {
+            return;
+        }
+        if (--set.depth == 0) {
+            try {
+                if (!set.changes.isEmpty()) {
+                    append(set.changes);
+                }
+            } finally {
+                set.changes.clear();
+                fence.readLock().unlock();
+            }
+        }
+    }
+
+    // Hold the change back until its set is finished; on its own it is a set of one
+    private void log(Change change) {
+        ChangeSet set = changeSets.get();
+        if (set.depth > 0) {
+            set.changes.add(change);
+        } else {
+            append(Collections.singletonList(change));
+        }
+    }
+
+    private synchronized void append(List<Change> changes) {
+        if (subscriptions.isEmpty()) {
+            // Nobody to ship to; only the sequence moves on
+            lastSequence += changes.size();
+            return;
+        }
+        for (int i = 0; i < changes.size(); i++) {
+            Change change = changes.get(i);
+            records.addLast(new ChangeRecord(++lastSequence, change.type, change.accountId, change.accountType,
+                    change.currency, change.amount, change.transactionDate, i == changes.size() - 1));
+        }
+        notifyAll();
+    }
+
+    /**
+     * Start following the log from the next change on.
+     */
+    public synchronized Subscription subscribe() {
+        Subscription subscription = new Subscription(lastSequence);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Start following the log from the state snapshot.open() sees. It runs
+     * while no writer is between its commit and logging its changes, so
+     * every committed change is either visible to the snapshot or logged
+     * after the position. Must not be called from inside a change set.
+     */
+    public Subscription subscribe(Snapshot snapshot) throws SQLException {
+        fence.writeLock().lock();
+        try {
+            snapshot.open();
+            return subscribe();
+        } finally {
+            fence.writeLock().unlock();
+        }
+    }
+
+    public synchronized void unsubscribe(Subscription subscription) {
+        subscriptions.remove(subscription);
+        trim();
+    }
+
+    /**
+     * Records after the subscription's position, at most max of them
+     * unless that would split a change set. Waits up to waitMillis when
+     * there are none yet.
+     */
+    public synchronized List<ChangeRecord> read(Subscription subscription, int max, long waitMillis)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        while (lastSequence <= subscription.position) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return new ArrayList<>();
+            }
+            wait(remaining);
+        }
+
+        List<ChangeRecord> batch = new ArrayList<>(Math.min(max, records.size()));
+        for (ChangeRecord record : records) {
+            if (record.getSequence() > subscription.position) {
+                batch.add(record);
+                if (batch.size() >= max && record.isEndOfChangeSet()) {
+                    break;
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Mark everything up to sequence as applied by this follower.
+     */
+    public synchronized void acknowledge(Subscription subscription, long sequence) {
+        subscription.position = sequence;
+        trim();
+    }
+
+    // Drop what every follower has already applied
+    private void trim() {
+        long applied = lastSequence;
+        for (Subscription subscription : subscriptions) {
+            applied = Math.min(applied, subscription.position);
+        }
+        while (!records.isEmpty() && records.peekFirst().getSequence() <= applied) {
+            records.pollFirst();
+        }
+    }
+
+    /**
+     * Sequence of the latest committed change, usable as a read-your-writes token.
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * How long ago the oldest change after position was logged, or 0 if there is none.
+     */
+    public synchronized long getLagMillis(long position) {
+        for (ChangeRecord record : records) {
+            if (record.getSequence() > position) {
+                return Math.max(0, System.currentTimeMillis() - record.getLoggedAtMillis());
+            }
+        }
+        return 0;
+    }
+
+    public synchronized int getBacklog() {
+        return records.size();
+    }
+}
@@ -0,0 +1,78 @@
+package com.banking.replica;
+
+import com.banking.model.AccountType;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Currency;
+
+/**
+ * One committed change on the primary, numbered in change log order.
+ */
+public final class ChangeRecord {
+
+    public enum Type { ACCOUNT_CREATED, BALANCE_CHANGED, TRANSACTION_RECORDED }
+
+    private final long sequence;
+    private final Type type;
+    private final String accountId;
+    private final AccountType accountType;
+    private final Currency currency;
+    private final BigDecimal amount;
+    private final Timestamp transactionDate;
+    private final long loggedAtMillis;
+    // Last record of its DB transaction; followers apply up to one of these at a time
+    private final boolean endOfChangeSet;
+
+    ChangeRecord(long sequence, Type type, String accountId, AccountType accountType, Currency currency,
+                 BigDecimal amount, Timestamp transactionDate, boolean endOfChangeSet) {
+        this.sequence = sequence;
+        this.type = type;
+        this.accountId = accountId;
+        this.accountType = accountType;
+        this.currency = currency;
+        this.amount = amount;
+        this.transactionDate = transactionDate;
+        this.loggedAtMillis = System.currentTimeMillis();
+        this.endOfChangeSet = endOfChangeSet;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    // Only set for ACCOUNT_CREATED
+    public AccountType getAccountType() {
+        return accountType;
+    }
+
+    // Only set for ACCOUNT_CREATED
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    // Initial balance, balance delta or transaction amount, depending on the type
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    // Only set for TRANSACTION_RECORDED
+    public Timestamp getTransactionDate() {
+        return transactionDate;
+    }
+
+    public long getLoggedAtMillis() {
+        return loggedAtMillis;
+    }
+
+    public boolean isEndOfChangeSet() {
+        return endOfChangeSet;
+    }
+}
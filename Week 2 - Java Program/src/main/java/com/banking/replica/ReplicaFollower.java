@@ -0,0 +1,283 @@
+package com.banking.replica;
+
+import com.banking.BankingSystem;
+import com.banking.db.DatabaseConnection;
+import com.banking.exception.BankingException;
+import com.banking.service.AccountService;
+import java.sql.*;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A read-only copy of the primary in its own in-memory H2 database.
+ *
+ * A new follower first copies the primary's tables from one DB snapshot,
+ * taken while no writer is between its commit and the log (see
+ * ChangeLog.subscribe(Snapshot)), and follows the log from there. So it
+ * can join at any time, and nothing is copied and logged twice.
+ *
+ * A background thread pulls records from the ChangeLog and applies each
+ * batch in one local transaction. Batches end on a change set boundary,
+ * so readers never see half a primary transaction, e.g. one leg of a
+ * transfer. A batch that still fails after MAX_APPLY_ATTEMPTS means the
+ * copy can no longer match the primary: the follower stops, drops out of
+ * the log and reports isFailed(), and ReplicatedReads stops using it.
+ */
+public class ReplicaFollower implements AutoCloseable {
+    // Records per apply batch, rounded up to the end of a change set; also rows per copy batch
+    private static final int BATCH_SIZE = 500;
+    private static final long POLL_MILLIS = 100;
+    private static final int MAX_APPLY_ATTEMPTS = 5;
+
+    private final String name;
+    private final ChangeLog log;
+    private final ChangeLog.Subscription subscription;
+    private final Connection applyConn;
+    private final Connection readConn;
+    private final AccountService reader;
+    private final Thread applier;
+    private volatile boolean running = true;
+    private volatile boolean failed;
+    private volatile long appliedSequence;
+
+    public ReplicaFollower(String name, ChangeLog log) {
+        this.name = name;
+        this.log = log;
+        String url = "jdbc:h2:mem:replica_" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        try {
+            this.applyConn = DriverManager.getConnection(url, "sa", "");
+            try (Statement stmt = applyConn.createStatement()) {
+                stmt.execute("DROP ALL OBJECTS");
+                stmt.execute(DatabaseConnection.readSchema());
+            }
+            this.readConn = DriverManager.getConnection(url, "sa", "");
+            this.subscription = bootstrap();
+        } catch (SQLException e) {
+            throw new BankingException("Could not open replica " + name + ": " + e.getMessage(), e);
+        }
+        this.reader = new AccountService(new BankingSystem(), readConn);
+        this.appliedSequence = subscription.getPosition();
+
+        this.applier = new Thread(this::applyLoop, "replica-" + name);
+        this.applier.setDaemon(true);
+        this.applier.start();
+    }
+
+    // Copy the primary as of the position the subscription starts at
+    private ChangeLog.Subscription bootstrap() throws SQLException {
+        try (Connection primary = DatabaseConnection.getConnection()) {
+            primary.setAutoCommit(false);
+            try (Statement stmt = primary.createStatement()) {
+                stmt.execute("SET SESSION CHARACTERISTICS AS TRANSACTION ISOLATION LEVEL SNAPSHOT");
+            }
+            ChangeLog.Subscription started = log.subscribe(() -> {
+                // The first read of a table fixes the snapshot for every table
+                try (Statement stmt = primary.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM accounts")) {
+                    rs.next();
+                }
+            });
+            try {
+                copy(primary);
+                primary.rollback();
+                return started;
+            } catch (SQLException e) {
+                log.unsubscribe(started);
+                throw e;
+            }
+        }
+    }
+
+    private void copy(Connection primary) throws SQLException {
+        applyConn.setAutoCommit(false);
+        try {
+            copyTable(primary, "accounts", "account_id, account_type, balance, currency, version");
+            copyTable(primary, "account_stripes", "account_id, stripe, balance");
+            copyTable(primary, "transactions", "account_id, amount, transaction_date");
+            applyConn.commit();
+        } catch (SQLException e) {
+            applyConn.rollback();
+            throw e;
+        } finally {
+            applyConn.setAutoCommit(true);
+        }
+    }
+
+    private void copyTable(Connection primary, String table, String columns) throws SQLException {
+        int count = columns.split(",").length;
+        String values = String.join(", ", Collections.nCopies(count, "?"));
+        try (Statement select = primary.createStatement();
+             ResultSet rs = select.executeQuery("SELECT " + columns + " FROM " + table);
+             PreparedStatement insert = applyConn.prepareStatement(
+                     "INSERT INTO " + table + " (" + columns + ") VALUES (" + values + ")")) {
+            int batched = 0;
+            while (rs.next()) {
+                for (int i = 1; i <= count; i++) {
+                    insert.setObject(i, rs.getObject(i));
+                }
+                insert.addBatch();
+                if (++batched == BATCH_SIZE) {
+                    insert.executeBatch();
+                    batched = 0;
+                }
+            }
+            insert.executeBatch();
+        }
+    }
+
+    private void applyLoop() {
+        int attempts = 0;
+        while (running) {
+            try {
+                List<ChangeRecord> batch = log.read(subscription, BATCH_SIZE, POLL_MILLIS);
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                attempts++;
+                apply(batch);
+                attempts = 0;
+                long last = batch.get(batch.size() - 1).getSequence();
+                log.acknowledge(subscription, last);
+                synchronized (this) {
+                    appliedSequence = last;
+                    notifyAll();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (SQLException e) {
+                System.err.println("Replica " + name + " failed to apply changes: " + e.getMessage());
+                if (attempts >= MAX_APPLY_ATTEMPTS) {
+                    fail();
+                    return;
+                }
+                // Leave the position alone and try the same batch again
+                sleepQuietly();
+            }
+        }
+    }
+
+    private void apply(List<ChangeRecord> batch) throws SQLException {
+        applyConn.setAutoCommit(false);
+        try (PreparedStatement create = applyConn.prepareStatement(
+                     "INSERT INTO accounts (account_id, account_type, balance, currency) VALUES (?, ?, ?, ?)");
+             PreparedStatement update = applyConn.prepareStatement(
+                     "UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE account_id = ?");
+             PreparedStatement insert = applyConn.prepareStatement(
+                     "INSERT INTO transactions (account_id, amount, transaction_date) VALUES (?, ?, ?)")) {
+            for (ChangeRecord record : batch) {
+                switch (record.getType()) {
+                    case ACCOUNT_CREATED:
+                        create.setString(1, record.getAccountId());
+                        create.setString(2, record.getAccountType().name());
+                        create.setBigDecimal(3, record.getAmount());
+                        create.setString(4, record.getCurrency().getCurrencyCode());
+                        create.executeUpdate();
+                        break;
+                    case BALANCE_CHANGED:
+                        update.setBigDecimal(1, record.getAmount());
+                        update.setString(2, record.getAccountId());
+                        update.executeUpdate();
+                        break;
+                    case TRANSACTION_RECORDED:
+                        insert.setString(1, record.getAccountId());
+                        insert.setBigDecimal(2, record.getAmount());
+                        insert.setTimestamp(3, record.getTransactionDate());
+                        insert.executeUpdate();
+                        break;
+                    default:
+                        break;
+                }
+            }
+            applyConn.commit();
+        } catch (SQLException e) {
+            applyConn.rollback();
+            throw e;
+        } finally {
+            applyConn.setAutoCommit(true);
+        }
+    }
+
+    // Give up on the log for good, so it is no longer kept for this follower
+    private void fail() {
+        System.err.println("Replica " + name + " stopped at sequence " + appliedSequence);
+        log.unsubscribe(subscription);
+        synchronized (this) {
+            failed = true;
+            running = false;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Wait until the follower has applied sequence, at most timeoutMillis.
+     * False at once if the follower has failed.
+     */
+    public synchronized boolean awaitSequence(long sequence, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (appliedSequence < sequence) {
+            if (failed) {
+                return false;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    // Read-only service on the follower's data
+    AccountService getReader() {
+        return reader;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    // Stopped for good after a batch it could not apply; its data is stale
+    public boolean isFailed() {
+        return failed;
+    }
+
+    // Changes logged on the primary that this follower has not applied yet
+    public long getLagRecords() {
+        return Math.max(0, log.getLastSequence() - appliedSequence);
+    }
+
+    // How old the oldest change not applied yet is; 0 when caught up
+    public long getLagMillis() {
+        return log.getLagMillis(appliedSequence);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            applier.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.unsubscribe(subscription);
+        try {
+            readConn.close();
+            applyConn.close();
+        } catch (SQLException e) {
+            System.err.println("Failed to close replica " + name + ": " + e.getMessage());
+        }
+    }
+
+    private void sleepQuietly() {
+        try {
+            Thread.sleep(POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.banking.replica;
+
+import com.banking.exception.AccountNotFoundException;
+import com.banking.exception.BankingException;
+import com.banking.service.AccountService;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the read-only AccountService calls to replica followers.
+ *
+ * Plain reads go to any follower that is no more than maxStalenessMillis
+ * behind. Reads that pass a sequence (from ChangeLog.getLastSequence()
+ * right after a write) only go to a follower that has applied it, which
+ * gives read-your-writes. If no follower qualifies within the wait
+ * budget, the read falls back to the primary. A failed follower never
+ * qualifies.
+ */
+public class ReplicatedReads {
+    private final AccountService primary;
+    private final ChangeLog log;
+    private final List<ReplicaFollower> followers;
+    private final long maxStalenessMillis;
+    private final long maxWaitMillis;
+
+    private final AtomicInteger nextFollower = new AtomicInteger();
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong primaryReads = new AtomicLong();
+
+    /**
+     * @param maxStalenessMillis how far behind a follower may be for plain reads
+     * @param maxWaitMillis      how long a read-your-writes read waits for a follower to catch up
+     */
+    public ReplicatedReads(AccountService primary, ChangeLog log, List<ReplicaFollower> followers,
+                           long maxStalenessMillis, long maxWaitMillis) {
+        this.primary = primary;
+        this.log = log;
+        this.followers = List.copyOf(followers);
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public BigDecimal getBalance(String accountId) throws AccountNotFoundException {
+        return route(0).getBalance(accountId);
+    }
+
+    // Read-your-writes: sees at least everything up to sequence
+    public BigDecimal getBalance(String accountId, long sequence) throws AccountNotFoundException {
+        return route(sequence).getBalance(accountId);
+    }
+
+    public String viewAccount(String accountId) throws BankingException {
+        return route(0).viewAccount(accountId);
+    }
+
+    public String viewAccount(String accountId, long sequence) throws BankingException {
+        return route(sequence).viewAccount(accountId);
+    }
+
+    public List<String> getAllTransactions() {
+        return route(0).getAllTransactions();
+    }
+
+    public List<String> getAllTransactions(long sequence) {
+        return route(sequence).getAllTransactions();
+    }
+
+    /**
+     * Latest change sequence on the primary, to pass to a later read.
+     */
+    public long currentSequence() {
+        return log.getLastSequence();
+    }
+
+    // Pick a follower, round robin, that satisfies the read; otherwise the primary
+    private AccountService route(long sequence) {
+        int size = followers.size();
+        int start = Math.floorMod(nextFollower.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            ReplicaFollower follower = followers.get((start + i) % size);
+            if (qualifies(follower, sequence)) {
+                replicaReads.incrementAndGet();
+                return follower.getReader();
+            }
+        }
+
+        // A read-your-writes read can wait a little for the freshest follower
+        if (sequence > 0 && size > 0 && maxWaitMillis > 0) {
+            ReplicaFollower freshest = null;
+            for (ReplicaFollower follower : followers) {
+                if (!follower.isFailed()
+                        && (freshest == null || follower.getAppliedSequence() > freshest.getAppliedSequence())) {
+                    freshest = follower;
+                }
+            }
+            try {
+                if (freshest != null && freshest.awaitSequence(sequence, maxWaitMillis)) {
+                    replicaReads.incrementAndGet();
+                    return freshest.getReader();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        primaryReads.incrementAndGet();
+        return primary;
+    }
+
+    private boolean qualifies(ReplicaFollower follower, long sequence) {
+        if (follower.isFailed()) {
+            return false;
+        }
+        if (sequence > 0) {
+            return follower.getAppliedSequence() >= sequence;
+        }
+        return follower.getLagMillis() <= maxStalenessMillis;
+    }
+
+    // Largest lag of any follower in milliseconds
+    public long getMaxLagMillis() {
+        long max = 0;
+        for (ReplicaFollower follower : followers) {
+            max = Math.max(max, follower.getLagMillis());
+        }
+        return max;
+    }
+
+    public long getReplicaReads() {
+        return replicaReads.get();
+    }
+
+    public long getPrimaryReads() {
+        return primaryReads.get();
+    }
+}
@@ -0,0 +1,41 @@
+package com.banking.service;
+
+import com.banking.model.AccountType;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Currency;
+
+/**
+ * Told about every change AccountService, or another writer such as
+ * LedgerProcessor or MonthlyFeeJob, has committed to the DB.
+ * Called on the thread that made the change, right after the commit,
+ * so implementations must be thread-safe and quick.
+ */
+public interface AccountChangeListener {
+
+    void accountCreated(String accountId, AccountType type, BigDecimal initialBalance);
+
+    // Listeners that care about the account's currency override this one
+    default void accountCreated(String accountId, AccountType type, BigDecimal initialBalance, Currency currency) {
+        accountCreated(accountId, type, initialBalance);
+    }
+
+    // The balance moved by delta (negative for debits)
+    void balanceChanged(String accountId, BigDecimal delta);
+
+    void transactionRecorded(String accountId, BigDecimal amount, Timestamp transactionDate);
+
+    /**
+     * The calls up to the matching changeSetFinished, on this thread, all
+     * come from one DB transaction, e.g. both legs of a transfer. Called
+     * before that transaction commits, so a listener can hold off anything
+     * that must not fall between the commit and the calls. Sets may nest;
+     * only the outermost one counts.
+     */
+    default void changeSetStarted() {
+    }
+
+    // Called after the set's last change, or after a rollback with no changes at all
+    default void changeSetFinished() {
+    }
+}
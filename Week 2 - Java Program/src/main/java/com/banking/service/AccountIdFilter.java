@@ -0,0 +1,134 @@
+package com.banking.service;
+
+import com.banking.exception.BankingException;
+import com.banking.util.BloomFilter;
+import java.sql.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bloom filter of every account ID in the accounts table.
+ *
+ * Built from the table when AccountService starts and kept up to date as
+ * accounts are created. A "no" answer is definite, so lookups of unknown
+ * IDs can be rejected without a query; a "maybe" still goes to the DB.
+ * When the table outgrows the filter, it is rebuilt at twice the size so
+ * the false-positive rate stays near the target.
+ *
+ * There is one filter per database (see forDatabase), shared by every
+ * service in this JVM that writes it, so an account one of them creates is
+ * never a definite miss for another. Rows inserted some other way are only
+ * seen after the next rebuild.
+ *
+ * Keeps counts of the answers, so the false-positive rate seen in
+ * practice can be compared with the expected one.
+ */
+public class AccountIdFilter {
+    private static final double TARGET_FALSE_POSITIVE_RATE = 0.01;
+    private static final long MIN_CAPACITY = 1024;
+
+    // Shared filters by JDBC URL
+    private static final Map<String, AccountIdFilter> SHARED = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter filter = new BloomFilter(MIN_CAPACITY, TARGET_FALSE_POSITIVE_RATE);
+    private volatile long capacity = MIN_CAPACITY;
+
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong definiteMisses = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    /**
+     * The filter shared by everything that writes the database at url.
+     * Starts empty; the first user rebuilds it.
+     */
+    public static AccountIdFilter forDatabase(String url) {
+        return SHARED.computeIfAbsent(url, key -> new AccountIdFilter());
+    }
+
+    /**
+     * Replace the filter with one built from every ID in the accounts table.
+     */
+    public synchronized void rebuild(Connection conn) {
+        try (Statement stmt = conn.createStatement()) {
+            long count;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM accounts")) {
+                rs.next();
+                count = rs.getLong(1);
+            }
+            // Room to grow before the next rebuild
+            long newCapacity = Math.max(MIN_CAPACITY, count * 2);
+            BloomFilter rebuilt = new BloomFilter(newCapacity, TARGET_FALSE_POSITIVE_RATE);
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery("SELECT account_id FROM accounts")) {
+                while (rs.next()) {
+                    rebuilt.add(rs.getString(1));
+                }
+            }
+            filter = rebuilt;
+            capacity = newCapacity;
+        } catch (SQLException e) {
+            throw new BankingException("Failed to build the account ID filter: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Record a newly created account, rebuilding at twice the size if the
+     * filter is full. conn must see the new row.
+     */
+    public synchronized void add(String accountId, Connection conn) {
+        filter.add(accountId);
+        if (filter.getInsertions() > capacity) {
+            rebuild(conn);
+        }
+    }
+
+    // False means the account does not exist
+    public boolean mightExist(String accountId) {
+        checks.incrementAndGet();
+        if (filter.mightContain(accountId)) {
+            return true;
+        }
+        definiteMisses.incrementAndGet();
+        return false;
+    }
+
+    // A "maybe" that the DB then answered with "no"
+    void recordFalsePositive() {
+        falsePositives.incrementAndGet();
+    }
+
+    public long getChecks() {
+        return checks.get();
+    }
+
+    public long getDefiniteMisses() {
+        return definiteMisses.get();
+    }
+
+    public long getFalsePositives() {
+        return falsePositives.get();
+    }
+
+    /**
+     * Share of IDs that were not in the table but got a "maybe".
+     * Only counts lookups of IDs that turned out to be missing.
+     */
+    public double getObservedFalsePositiveRate() {
+        long negatives = definiteMisses.get() + falsePositives.get();
+        return negatives == 0 ? 0.0 : (double) falsePositives.get() / negatives;
+    }
+
+    // What the filter's size and fill predict
+    public double getExpectedFalsePositiveRate() {
+        return filter.expectedFalsePositiveRate();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AccountIdFilter[checks=%d, definiteMisses=%d, falsePositives=%d, "
+                        + "observedFpr=%.4f, expectedFpr=%.4f]",
+                getChecks(), getDefiniteMisses(), getFalsePositives(),
+                getObservedFalsePositiveRate(), getExpectedFalsePositiveRate());
+    }
+}
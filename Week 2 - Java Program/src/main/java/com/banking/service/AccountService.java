@@ -1,15 +1,29 @@
 package com.banking.service;
 
 import com.banking.BankingSystem;
-import com.banking.Main;
 import com.banking.model.Account;
 import com.banking.model.AccountFactory;
+import com.banking.model.AccountKeyCodec;
 import com.banking.model.AccountType;
+import com.banking.model.OperationResult;
+import com.banking.db.DatabaseConnection;
+import com.banking.db.JdbcMetrics;
 import com.banking.exception.*;
+import com.banking.fx.FxRates;
+import com.banking.jfr.*;
+import com.banking.util.LongLongHashMap;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
 
 
 /**
@@ -23,25 +37,98 @@ public class AccountService {
     // We need these to work with accounts and save transactions
     private final BankingSystem bankingSystem;
 
-    // Make sure these are set (e.g., from application.properties) BEFORE this class is instantiated
-    private static final String URL     = "jdbc:h2:mem:bankingdb;MODE=MySQL;DB_CLOSE_DELAY=-1";
-    private static final String USER    = "sa";
-    private static final String PASSWORD= "";
+    // Where the accounts live: db.url in application.properties
+    static final String URL = DatabaseConnection.getUrl();
 
-    Connection conn;
+    // SQLState of a primary key violation
+    private static final String DUPLICATE_KEY = "23505";
 
-    {
+    // Guarded debits give up after this many version conflicts
+    private static final int MAX_DEBIT_ATTEMPTS = 8;
+    private static final long BASE_BACKOFF_NANOS = 50_000L;
+    private static final long MAX_BACKOFF_NANOS = 5_000_000L;
+
+    final Connection conn;
+
+    // Last row version we saw per account key, so most debits skip the read
+    private static final long UNKNOWN_VERSION = -1L;
+    private final LongLongHashMap knownVersions = new LongLongHashMap(UNKNOWN_VERSION);
+    private final DebitStats debitStats;
+
+    // Optional per-account velocity limits, checked inline on every money movement
+    private volatile VelocityTracker velocityTracker;
+
+    // Exchange rates for transfers between accounts in different currencies; null allows none
+    private volatile FxRates fxRates;
+
+    // Told about every committed change, e.g. to feed read replicas
+    private final List<AccountChangeListener> listeners;
+
+    // Account IDs in the DB, shared with every service on it, so lookups of
+    // unknown IDs skip the query; null when not used
+    private final AccountIdFilter idFilter;
+
+    // Accounts whose credits go to striped rows
+    private final HotAccounts hotAccounts;
+
+    // A balance is the accounts row (as a) plus the stripes of a hot account
+    static final String TOTAL_BALANCE = "a.balance + COALESCE("
+            + "(SELECT SUM(s.balance) FROM account_stripes s WHERE s.account_id = a.account_id), 0)";
+
+    // When we create AccountService, we need a BankingSystem
+    public AccountService(BankingSystem bankingSystem) {
+        this(bankingSystem, openConnection(), new DebitStats(), AccountIdFilter.forDatabase(URL), new HotAccounts());
+        idFilter.rebuild(conn);
+        hotAccounts.load(conn);
+    }
+
+    // Use an already opened connection (e.g. one per worker thread).
+    // No ID filter and no hot accounts, since the DB may be written by someone else (e.g. a replica).
+    public AccountService(BankingSystem bankingSystem, Connection conn) {
+        this(bankingSystem, conn, new DebitStats(), null, new HotAccounts());
+    }
+
+    // Several services can share one set of debit counters, one ID filter and one set of hot accounts
+    AccountService(BankingSystem bankingSystem, Connection conn, DebitStats debitStats, AccountIdFilter idFilter,
+                   HotAccounts hotAccounts) {
+        this(bankingSystem, conn, debitStats, idFilter, hotAccounts, new CopyOnWriteArrayList<>());
+    }
+
+    private AccountService(BankingSystem bankingSystem, Connection conn, DebitStats debitStats,
+                           AccountIdFilter idFilter, HotAccounts hotAccounts, List<AccountChangeListener> listeners) {
+        this.bankingSystem = bankingSystem;
+        this.conn = conn;
+        this.debitStats = debitStats;
+        this.idFilter = idFilter;
+        this.hotAccounts = hotAccounts;
+        this.listeners = listeners;
+    }
+
+    /**
+     * A service over another connection that shares this one's debit
+     * counters, ID filter, hot accounts and listeners, and starts with its
+     * velocity limits and exchange rates. For work that needs a connection
+     * of its own, e.g. a background settlement thread.
+     */
+    AccountService onConnection(Connection other) {
+        AccountService service = new AccountService(
+                bankingSystem, other, debitStats, idFilter, hotAccounts, listeners);
+        service.velocityTracker = velocityTracker;
+        service.fxRates = fxRates;
+        return service;
+    }
+
+    // Through DatabaseConnection, like every other connection to the banking database
+    static Connection openConnection() {
         try {
-            conn = DriverManager.getConnection(URL,USER,PASSWORD);
+            return DatabaseConnection.getConnection();
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
-    // When we create AccountService, we need a BankingSystem
-    public AccountService(BankingSystem bankingSystem) {
-        this.bankingSystem = bankingSystem;
-
+    BankingSystem getBankingSystem() {
+        return bankingSystem;
     }
 
     /**
@@ -49,197 +136,1003 @@ public class AccountService {
      */
     public Account createAccount(AccountType type, String accountId, BigDecimal initialBalance)
             throws BankingException {
+        return createAccount(type, accountId, initialBalance, Account.DEFAULT_CURRENCY);
+    }
 
+    /**
+     * Create a new bank account holding the given currency
+     */
+    public Account createAccount(AccountType type, String accountId, BigDecimal initialBalance, Currency currency)
+            throws BankingException {
+        AccountCreatedEvent event = new AccountCreatedEvent(accountId, String.valueOf(type));
+        event.start();
+        try {
+            Account account = insertAccount(type, accountId, initialBalance, currency);
+            event.finish(initialBalance);
+            return account;
+        } catch (RuntimeException e) {
+            event.fail(e, initialBalance);
+            throw e;
+        }
+    }
+
+    private Account insertAccount(AccountType type, String accountId, BigDecimal initialBalance, Currency currency) {
         // Validate
         if (initialBalance.compareTo(BigDecimal.ZERO) < 0) {
             throw new BankingException("Initial balance cannot be negative");
         }
+        if (!isWholeCents(initialBalance)) {
+            throw new BankingException("Initial balance must be whole cents");
+        }
         if (accountId == null || accountId.isEmpty()) {
             throw new BankingException("Account ID cannot be empty");
         }
+        // Only a "maybe" from the filter needs a look at the table
+        if (idFilter != null && idFilter.mightExist(accountId)) {
+            if (existsInDb(accountId)) {
+                throw new BankingException("Account " + accountId + " already exists");
+            }
+            idFilter.recordFalsePositive();
+        }
 
         // Create the account
-        Account account = AccountFactory.createAccount(type, accountId, initialBalance);
+        Account account = AccountFactory.createAccount(type, accountId, initialBalance, currency);
 
-        try (PreparedStatement stmt = conn.prepareStatement(
-                "INSERT INTO accounts (account_id, account_type, balance) VALUES (?, ?, ?)")) {
+        List<AccountChangeListener> changeSet = startChangeSet();
+        try {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO accounts (account_id, account_type, balance, currency) VALUES (?, ?, ?, ?)")) {
 
-            stmt.setString(1, accountId);
-            stmt.setString(2, type.name());  // or use type.toString(), etc.
-            stmt.setBigDecimal(3, initialBalance);
-            stmt.executeUpdate();
+                stmt.setString(1, accountId);
+                stmt.setString(2, type.name());  // or use type.toString(), etc.
+                stmt.setBigDecimal(3, initialBalance);
+                stmt.setString(4, currency.getCurrencyCode());
+                stmt.executeUpdate();
 
-        } catch (SQLException e) {
-            throw new BankingException("Failed to create account in DB" );
-        }
+            } catch (SQLException e) {
+                // Created by someone else since the check above
+                if (DUPLICATE_KEY.equals(e.getSQLState())) {
+                    throw new BankingException("Account " + accountId + " already exists", e);
+                }
+                throw new BankingException("Failed to create account " + accountId + " in DB: " + e.getMessage(), e);
+            }
+            if (idFilter != null) {
+                idFilter.add(accountId, conn);
+            }
 
-        // Save it in the banking system
-        bankingSystem.addAccount(account);
+            // Save it in the banking system
+            bankingSystem.addAccount(account);
+            rememberVersion(accountId, 0L);
+            for (AccountChangeListener listener : listeners) {
+                listener.accountCreated(accountId, type, initialBalance, currency);
+            }
+        } finally {
+            finishChangeSet(changeSet);
+        }
 
-        return account;
+        // The store may hand out its own view of the account
+        return bankingSystem.findAccount(accountId);
     }
 
     /**
      * Deposit money into an account
      */
     public void deposit(String accountId, BigDecimal amount) throws BankingException {
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new BankingException("Deposit amount must be positive");
+        DepositEvent event = new DepositEvent(accountId);
+        event.start();
+        try {
+            if (!isValidAmount(amount)) {
+                throw new BankingException("Deposit amount must be positive whole cents");
+            }
+
+            // The transaction row is saved with the balance, in one DB transaction
+            applyDeposit(accountId, amount, new Timestamp(System.currentTimeMillis()));
+        } catch (RuntimeException e) {
+            event.fail(e, amount);
+            throw e;
         }
+        event.finish(amount);
+    }
 
-        try (PreparedStatement stmt = conn.prepareStatement(
-                "UPDATE accounts SET balance = balance + ? WHERE account_id = ?")) {
-            stmt.setBigDecimal(1, amount);
-            stmt.setString(2, accountId);
+    /**
+     * Deposit without exceptions: failures come back as a result code.
+     */
+    public OperationResult tryDeposit(String accountId, BigDecimal amount) {
+        DepositEvent event = new DepositEvent(accountId);
+        event.start();
+        if (!isValidAmount(amount)) {
+            return event.finish(OperationResult.INVALID_AMOUNT, amount);
+        }
+        try {
+            OperationResult result = tryApplyDeposit(accountId, amount, new Timestamp(System.currentTimeMillis()));
+            return event.finish(result, amount);
+        } catch (SQLException | BankingException e) {
+            System.err.println("Deposit into " + accountId + " failed: " + e.getMessage());
+            return event.finish(OperationResult.FAILED, amount);
+        }
+    }
 
-            int rows = stmt.executeUpdate();
-            if (rows == 0) {
-                throw new AccountNotFoundException("No account found with ID " + accountId);
-            }
+    /**
+     * Update the DB row, record the transaction and update the in-memory
+     * account for a deposit. The row and the balance commit together.
+     */
+    void applyDeposit(String accountId, BigDecimal amount, Timestamp timestamp) throws BankingException {
+        try {
+            raiseIfRejected(tryApplyDeposit(accountId, amount, timestamp), accountId, amount);
         } catch (SQLException e) {
             throw new BankingException("Failed to deposit into DB: " + e.getMessage(), e);
         }
+    }
 
-        Account account = findAccount(accountId);
-        account.deposit(amount);
+    private OperationResult tryApplyDeposit(String accountId, BigDecimal amount, Timestamp timestamp)
+            throws SQLException {
+        if (!isValidAmount(amount)) {
+            return OperationResult.INVALID_AMOUNT;
+        }
+        Account account = lookupAccount(accountId);
+        if (account == null) {
+            return OperationResult.ACCOUNT_NOT_FOUND;
+        }
+        long reserved = reserveVelocity(accountId, amount);
+        if (reserved == VelocityTracker.REFUSED) {
+            return OperationResult.LIMIT_EXCEEDED;
+        }
 
-        // Save the transaction with the current timestamp
-        recordTransaction(accountId, amount, new Timestamp(System.currentTimeMillis()));
+        boolean posted = false;
+        List<AccountChangeListener> changeSet = startChangeSet();
+        try {
+            try {
+                conn.setAutoCommit(false);
+                if (!credit(accountId, amount)) {
+                    return OperationResult.ACCOUNT_NOT_FOUND;
+                }
+                insertTransaction(accountId, amount, timestamp);
+                conn.commit();
+                posted = true;
+            } catch (SQLException e) {
+                rollbackQuietly();
+                forgetVersion(accountId);
+                throw e;
+            } finally {
+                resetAutoCommit();
+            }
+
+            account.deposit(amount);
+            fireBalanceChanged(accountId, amount);
+            fireTransactionRecorded(accountId, amount, timestamp);
+            return OperationResult.OK;
+        } finally {
+            if (!posted) {
+                cancelVelocity(accountId, amount, reserved);
+            }
+            finishChangeSet(changeSet);
+        }
     }
 
     /**
      * Withdraw money from an account
      */
     public void withdraw(String accountId, BigDecimal amount) throws BankingException {
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new BankingException("Withdrawal amount must be positive");
+        WithdrawalEvent event = new WithdrawalEvent(accountId);
+        event.start();
+        try {
+            if (!isValidAmount(amount)) {
+                throw new BankingException("Withdrawal amount must be positive whole cents");
+            }
+
+            // The transaction row is saved with the balance, in one DB transaction
+            applyWithdrawal(accountId, amount, new Timestamp(System.currentTimeMillis()));
+        } catch (RuntimeException e) {
+            event.fail(e, amount);
+            throw e;
         }
+        event.finish(amount);
+    }
 
+    /**
+     * Withdraw without exceptions. A rejected withdrawal costs about as much
+     * as a successful one: no stack trace and no message formatting.
+     */
+    public OperationResult tryWithdraw(String accountId, BigDecimal amount) {
+        WithdrawalEvent event = new WithdrawalEvent(accountId);
+        event.start();
+        if (!isValidAmount(amount)) {
+            return event.finish(OperationResult.INVALID_AMOUNT, amount);
+        }
+        try {
+            OperationResult result = tryApplyWithdrawal(accountId, amount, new Timestamp(System.currentTimeMillis()));
+            return event.finish(result, amount);
+        } catch (SQLException | BankingException e) {
+            System.err.println("Withdrawal from " + accountId + " failed: " + e.getMessage());
+            return event.finish(OperationResult.FAILED, amount);
+        }
+    }
+
+    /**
+     * Debit the DB row with a guarded update, record the transaction in the
+     * same DB transaction and mirror it on the in-memory account.
+     */
+    void applyWithdrawal(String accountId, BigDecimal amount, Timestamp timestamp) throws BankingException {
         try {
-            BigDecimal currentBalance = getBalance(accountId);
-            if (currentBalance.compareTo(amount) < 0) {
-                throw new BankingException("Insufficient balance in account " + accountId);
+            raiseIfRejected(tryApplyWithdrawal(accountId, amount, timestamp), accountId, amount);
+        } catch (SQLException e) {
+            throw new BankingException("Failed to withdraw from DB: " + e.getMessage(), e);
+        }
+    }
+
+    private OperationResult tryApplyWithdrawal(String accountId, BigDecimal amount, Timestamp timestamp)
+            throws SQLException {
+        if (!isValidAmount(amount)) {
+            return OperationResult.INVALID_AMOUNT;
+        }
+        Account account = lookupAccount(accountId);
+        if (account == null) {
+            return OperationResult.ACCOUNT_NOT_FOUND;
+        }
+        long reserved = reserveVelocity(accountId, amount);
+        if (reserved == VelocityTracker.REFUSED) {
+            return OperationResult.LIMIT_EXCEEDED;
+        }
+
+        boolean posted = false;
+        List<AccountChangeListener> changeSet = startChangeSet();
+        try {
+            try {
+                conn.setAutoCommit(false);
+                // A rejected debit wrote nothing, so there is nothing to roll back
+                OperationResult result = debit(accountId, amount, account.getWithdrawalFloor());
+                if (!result.isSuccess()) {
+                    return result;
+                }
+                insertTransaction(accountId, amount.negate(), timestamp);
+                conn.commit();
+                posted = true;
+            } catch (SQLException e) {
+                rollbackQuietly();
+                // The cached version may now be ahead of the rolled back row
+                forgetVersion(accountId);
+                throw e;
+            } finally {
+                resetAutoCommit();
             }
 
-            try (PreparedStatement stmt = conn.prepareStatement(
-                    "UPDATE accounts SET balance = balance - ? WHERE account_id = ?")) {
-                stmt.setBigDecimal(1, amount);
-                stmt.setString(2, accountId);
+            mirrorDebit(account, amount);
+            fireBalanceChanged(accountId, amount.negate());
+            fireTransactionRecorded(accountId, amount.negate(), timestamp);
+            return OperationResult.OK;
+        } finally {
+            if (!posted) {
+                cancelVelocity(accountId, amount, reserved);
+            }
+            finishChangeSet(changeSet);
+        }
+    }
+
+    /**
+     * Transfer money between accounts. The amount is in the source account's
+     * currency; an account in another currency is credited the amount
+     * converted at the current exchange rate.
+     */
+    public void transfer(String fromAccountId, String toAccountId, BigDecimal amount) throws BankingException {
+        TransferEvent event = new TransferEvent(fromAccountId, toAccountId);
+        event.start();
+        try {
+            if (!isValidAmount(amount)) {
+                throw new BankingException("Transfer amount must be positive whole cents");
+            }
+            if (fromAccountId.equals(toAccountId)) {
+                throw new BankingException("Cannot transfer to the same account");
+            }
+
+            // Both legs are saved with the same timestamp, in the transfer's own DB transaction
+            applyTransfer(fromAccountId, toAccountId, amount, new Timestamp(System.currentTimeMillis()));
+        } catch (RuntimeException e) {
+            event.fail(e, amount);
+            throw e;
+        }
+        event.finish(amount);
+    }
 
-                int rows = stmt.executeUpdate();
-                if (rows == 0) {
-                    throw new AccountNotFoundException("No account found with ID " + accountId);
+    /**
+     * Transfer without exceptions: failures come back as a result code.
+     */
+    public OperationResult tryTransfer(String fromAccountId, String toAccountId, BigDecimal amount) {
+        TransferEvent event = new TransferEvent(fromAccountId, toAccountId);
+        event.start();
+        if (!isValidAmount(amount)) {
+            return event.finish(OperationResult.INVALID_AMOUNT, amount);
+        }
+        if (fromAccountId.equals(toAccountId)) {
+            return event.finish(OperationResult.SAME_ACCOUNT, amount);
+        }
+        try {
+            Timestamp transactionTimestamp = new Timestamp(System.currentTimeMillis());
+            BigDecimal credited = quoteCredit(fromAccountId, toAccountId, amount);
+            OperationResult result = tryApplyTransfer(fromAccountId, toAccountId, amount, credited,
+                    transactionTimestamp);
+            return event.finish(result, amount);
+        } catch (SQLException | BankingException e) {
+            System.err.println("Transfer from " + fromAccountId + " failed: " + e.getMessage());
+            return event.finish(OperationResult.FAILED, amount);
+        }
+    }
+
+    /**
+     * Move money along every leg in one DB transaction, or not at all, e.g. a
+     * payroll run from one account to thousands or a sweep between many
+     * pairs. Legs are netted into one balance update per account; every leg
+     * still gets its two rows in the transactions table, with one timestamp.
+     *
+     * The accounts are locked in account ID order before anything is
+     * checked against the DB, so two batches over the same accounts queue
+     * instead of deadlocking, and every debited account's projected balance
+     * (its locked balance plus the net of all its legs) must stay at or above
+     * its floor. Legs must be in the same currency on both sides. The first
+     * rejection is thrown the way transfer() would throw it, and nothing is posted.
+     */
+    public void transferAll(List<TransferLeg> legs) throws BankingException {
+        BatchTransferEvent event = new BatchTransferEvent(legs.isEmpty() ? null : legs.get(0).getFromAccountId());
+        event.start();
+        event.legs = legs.size();
+        BigDecimal total = totalAmount(legs);
+        try {
+            BatchRejection rejection = applyBatch(legs, event);
+            if (rejection != null) {
+                raiseIfRejected(rejection.result, rejection.accountId, rejection.amount);
+            }
+        } catch (SQLException e) {
+            BankingException failure = new BankingException("Failed to post batch transfer: " + e.getMessage(), e);
+            event.fail(failure, total);
+            throw failure;
+        } catch (RuntimeException e) {
+            event.fail(e, total);
+            throw e;
+        }
+        event.finish(total);
+    }
+
+    /**
+     * transferAll without exceptions: the batch's result comes back as a code.
+     */
+    public OperationResult tryTransferAll(List<TransferLeg> legs) {
+        BatchTransferEvent event = new BatchTransferEvent(legs.isEmpty() ? null : legs.get(0).getFromAccountId());
+        event.start();
+        event.legs = legs.size();
+        BigDecimal total = totalAmount(legs);
+        try {
+            BatchRejection rejection = applyBatch(legs, event);
+            return event.finish(rejection == null ? OperationResult.OK : rejection.result, total);
+        } catch (SQLException | BankingException e) {
+            System.err.println("Batch transfer of " + legs.size() + " legs failed: " + e.getMessage());
+            return event.finish(OperationResult.FAILED, total);
+        }
+    }
+
+    // Why a batch was not posted, and on which account
+    private static final class BatchRejection {
+        final OperationResult result;
+        final String accountId;
+        final BigDecimal amount;
+
+        BatchRejection(OperationResult result, String accountId, BigDecimal amount) {
+            this.result = result;
+            this.accountId = accountId;
+            this.amount = amount;
+        }
+    }
+
+    private static BigDecimal totalAmount(List<TransferLeg> legs) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (TransferLeg leg : legs) {
+            total = total.add(leg.getAmount());
+        }
+        return total;
+    }
+
+    // Post the whole batch; null when it committed, otherwise the first rejection
+    private BatchRejection applyBatch(List<TransferLeg> legs, BatchTransferEvent event) throws SQLException {
+        if (legs.isEmpty()) {
+            return null;
+        }
+
+        // Checks that need no DB, in leg order
+        Map<String, BigDecimal> gross = new HashMap<>();
+        for (TransferLeg leg : legs) {
+            String fromId = leg.getFromAccountId();
+            String toId = leg.getToAccountId();
+            if (!isValidAmount(leg.getAmount())) {
+                return new BatchRejection(OperationResult.INVALID_AMOUNT, fromId, leg.getAmount());
+            }
+            if (fromId.equals(toId)) {
+                return new BatchRejection(OperationResult.SAME_ACCOUNT, fromId, leg.getAmount());
+            }
+            Account from = lookupAccount(fromId);
+            if (from == null) {
+                return new BatchRejection(OperationResult.ACCOUNT_NOT_FOUND, fromId, leg.getAmount());
+            }
+            Account to = lookupAccount(toId);
+            if (to == null) {
+                return new BatchRejection(OperationResult.ACCOUNT_NOT_FOUND, toId, leg.getAmount());
+            }
+            if (!from.getCurrency().equals(to.getCurrency())) {
+                // Netting adds legs up as they are, so they must share a currency
+                return new BatchRejection(OperationResult.CURRENCY_MISMATCH, fromId, leg.getAmount());
+            }
+            gross.merge(fromId, leg.getAmount(), BigDecimal::add);
+            gross.merge(toId, leg.getAmount(), BigDecimal::add);
+        }
+        long[] reserved = new long[2 * legs.size()];
+        for (int i = 0; i < legs.size(); i++) {
+            String refusedId = reserveLeg(legs.get(i), reserved, i);
+            if (refusedId != null) {
+                cancelLegs(legs, reserved, i);
+                return new BatchRejection(OperationResult.LIMIT_EXCEEDED, refusedId, gross.get(refusedId));
+            }
+        }
+
+        SortedMap<String, BigDecimal> deltas = NettedPosting.netDeltas(legs);
+        event.accounts = deltas.size();
+        boolean posted = false;
+        List<AccountChangeListener> changeSet = startChangeSet();
+        try {
+            Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+            try {
+                conn.setAutoCommit(false);
+                Map<String, BigDecimal> balances = NettedPosting.lockBalances(conn, deltas, hotAccounts);
+                for (Map.Entry<String, BigDecimal> delta : deltas.entrySet()) {
+                    String accountId = delta.getKey();
+                    BigDecimal balance = balances.get(accountId);
+                    if (balance == null) {
+                        rollbackQuietly();
+                        return new BatchRejection(OperationResult.ACCOUNT_NOT_FOUND, accountId, delta.getValue().abs());
+                    }
+                    if (delta.getValue().signum() < 0
+                            && balance.add(delta.getValue()).compareTo(lookupAccount(accountId).getWithdrawalFloor()) < 0) {
+                        rollbackQuietly();
+                        return new BatchRejection(OperationResult.INSUFFICIENT_FUNDS, accountId, delta.getValue().negate());
+                    }
                 }
+                NettedPosting.write(conn, deltas, legs, timestamp);
+                conn.commit();
+                posted = true;
+            } catch (SQLException | RuntimeException e) {
+                rollbackQuietly();
+                deltas.keySet().forEach(this::forgetVersion);
+                throw e;
+            } finally {
+                resetAutoCommit();
+            }
+
+            afterPosting(deltas, legs, timestamp);
+            return null;
+        } finally {
+            if (!posted) {
+                cancelLegs(legs, reserved, legs.size());
             }
+            finishChangeSet(changeSet);
+        }
+    }
 
-            Account account = findAccount(accountId);
-            account.withdraw(amount);
+    /**
+     * Post legs that arrived one by one, e.g. through TransferSettlementBatcher,
+     * as one netted posting. Unlike transferAll every leg stands on its own:
+     * the accounts are locked in ID order, the legs are checked in order
+     * against the locked DB balances plus the legs accepted before them, and
+     * only the accepted ones are written, in one DB transaction.
+     * Returns the result of every leg, in leg order.
+     */
+    OperationResult[] settleLegs(List<TransferLeg> legs) throws SQLException {
+        OperationResult[] results = new OperationResult[legs.size()];
+        // Velocity reserved by each leg that passed checkLeg, given back unless it is posted
+        long[] reserved = new long[2 * legs.size()];
+        List<TransferLeg> candidates = new ArrayList<>();
+        for (int i = 0; i < legs.size(); i++) {
+            results[i] = checkLeg(legs.get(i));
+            if (results[i].isSuccess() && reserveLeg(legs.get(i), reserved, i) != null) {
+                results[i] = OperationResult.LIMIT_EXCEEDED;
+            }
+            if (results[i].isSuccess()) {
+                candidates.add(legs.get(i));
+            }
+        }
+        if (candidates.isEmpty()) {
+            return results;
+        }
+
+        boolean posted = false;
+        List<AccountChangeListener> changeSet = startChangeSet();
+        try {
+            List<TransferLeg> accepted = new ArrayList<>();
+            SortedMap<String, BigDecimal> deltas;
+            Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+            try {
+                conn.setAutoCommit(false);
+                Map<String, BigDecimal> projected =
+                        NettedPosting.lockBalances(conn, NettedPosting.netDeltas(candidates), hotAccounts);
+                for (int i = 0; i < legs.size(); i++) {
+                    if (results[i].isSuccess()) {
+                        results[i] = project(legs.get(i), projected);
+                        if (results[i].isSuccess()) {
+                            accepted.add(legs.get(i));
+                        } else {
+                            cancelLeg(legs.get(i), reserved, i);
+                        }
+                    }
+                }
+                deltas = NettedPosting.netDeltas(accepted);
+                if (!accepted.isEmpty()) {
+                    NettedPosting.write(conn, deltas, accepted, timestamp);
+                }
+                conn.commit();
+                posted = true;
+            } catch (SQLException | RuntimeException e) {
+                rollbackQuietly();
+                candidates.forEach(leg -> {
+                    forgetVersion(leg.getFromAccountId());
+                    forgetVersion(leg.getToAccountId());
+                });
+                throw e;
+            } finally {
+                resetAutoCommit();
+            }
+
+            afterPosting(deltas, accepted, timestamp);
+            return results;
+        } finally {
+            if (!posted) {
+                for (int i = 0; i < legs.size(); i++) {
+                    if (results[i].isSuccess()) {
+                        cancelLeg(legs.get(i), reserved, i);
+                    }
+                }
+            }
+            finishChangeSet(changeSet);
+        }
+    }
+
+    // The checks of one settlement leg that need no DB
+    private OperationResult checkLeg(TransferLeg leg) {
+        if (!isValidAmount(leg.getAmount())) {
+            return OperationResult.INVALID_AMOUNT;
+        }
+        if (leg.getFromAccountId().equals(leg.getToAccountId())) {
+            return OperationResult.SAME_ACCOUNT;
+        }
+        Account from = lookupAccount(leg.getFromAccountId());
+        Account to = lookupAccount(leg.getToAccountId());
+        if (from == null || to == null) {
+            return OperationResult.ACCOUNT_NOT_FOUND;
+        }
+        if (!from.getCurrency().equals(to.getCurrency())) {
+            // Netting adds legs up as they are, so they must share a currency
+            return OperationResult.CURRENCY_MISMATCH;
+        }
+        return OperationResult.OK;
+    }
+
+    // Check a leg against the projected (locked) balances and move them on if it fits
+    private OperationResult project(TransferLeg leg, Map<String, BigDecimal> projected) {
+        String fromId = leg.getFromAccountId();
+        String toId = leg.getToAccountId();
+        BigDecimal fromBalance = projected.get(fromId);
+        BigDecimal toBalance = projected.get(toId);
+        if (fromBalance == null || toBalance == null) {
+            return OperationResult.ACCOUNT_NOT_FOUND;
+        }
+        BigDecimal remaining = fromBalance.subtract(leg.getAmount());
+        if (remaining.compareTo(lookupAccount(fromId).getWithdrawalFloor()) < 0) {
+            return OperationResult.INSUFFICIENT_FUNDS;
+        }
+        projected.put(fromId, remaining);
+        projected.put(toId, toBalance.add(leg.getAmount()));
+        return OperationResult.OK;
+    }
 
-            // Save the transaction with the current timestamp
-            recordTransaction(accountId, amount.negate(), new Timestamp(System.currentTimeMillis()));
+    // After a netted posting commits: memory, versions and listeners
+    private void afterPosting(Map<String, BigDecimal> deltas, List<TransferLeg> legs, Timestamp timestamp) {
+        NettedPosting.applyInMemory(bankingSystem, deltas);
+        for (Map.Entry<String, BigDecimal> delta : deltas.entrySet()) {
+            if (delta.getValue().signum() != 0) {
+                bumpVersion(delta.getKey());
+                fireBalanceChanged(delta.getKey(), delta.getValue());
+            }
+        }
+        for (TransferLeg leg : legs) {
+            fireTransactionRecorded(leg.getFromAccountId(), leg.getAmount().negate(), timestamp);
+            fireTransactionRecorded(leg.getToAccountId(), leg.getAmount(), timestamp);
+        }
+    }
 
+    /**
+     * Move the money and record both legs in one DB transaction, then update
+     * both in-memory accounts. The source is debited with a guarded update,
+     * so the funds check is part of the same transaction.
+     * Returns the amount credited, in the destination account's currency.
+     */
+    BigDecimal applyTransfer(String fromAccountId, String toAccountId, BigDecimal amount, Timestamp timestamp)
+            throws BankingException {
+        BigDecimal credited = quoteCredit(fromAccountId, toAccountId, amount);
+        OperationResult result;
+        try {
+            result = tryApplyTransfer(fromAccountId, toAccountId, amount, credited, timestamp);
         } catch (SQLException e) {
-            throw new BankingException("Failed to withdraw from DB: " + e.getMessage(), e);
+            throw new BankingException("Failed to transfer in DB: " + e.getMessage(), e);
+        }
+        if (result == OperationResult.ACCOUNT_NOT_FOUND && lookupAccount(fromAccountId) != null) {
+            raiseIfRejected(result, toAccountId, amount);
         }
+        raiseIfRejected(result, fromAccountId, amount);
+        return credited;
     }
 
     /**
-     * Transfer money between accounts
+     * What the destination gets for amount: the same amount when both accounts
+     * hold the same currency (or one of them is missing), otherwise the amount
+     * converted at the current rates. Null when there is no rate between them.
+     * Reads the immutable rate snapshot, so it never blocks on a refresh.
      */
-    public void transfer(String fromAccountId, String toAccountId, BigDecimal amount) throws BankingException {
+    private BigDecimal quoteCredit(String fromAccountId, String toAccountId, BigDecimal amount) {
+        Account fromAccount = lookupAccount(fromAccountId);
+        Account toAccount = lookupAccount(toAccountId);
+        if (fromAccount == null || toAccount == null || fromAccount.getCurrency().equals(toAccount.getCurrency())) {
+            return amount;
+        }
+        FxRates rates = fxRates;
+        return rates == null ? null : rates.convert(amount, fromAccount.getCurrency(), toAccount.getCurrency());
+    }
+
+    private OperationResult tryApplyTransfer(String fromAccountId, String toAccountId, BigDecimal amount,
+                                             BigDecimal credited, Timestamp timestamp) throws SQLException {
+        if (!isValidAmount(amount)) {
+            return OperationResult.INVALID_AMOUNT;
+        }
+        // Find both accounts first so a bad ID never touches the DB
+        Account fromAccount = lookupAccount(fromAccountId);
+        Account toAccount = lookupAccount(toAccountId);
+        if (fromAccount == null || toAccount == null) {
+            return OperationResult.ACCOUNT_NOT_FOUND;
+        }
+        if (credited == null) {
+            return OperationResult.CURRENCY_MISMATCH;
+        }
+        if (credited.signum() <= 0) {
+            // Too small to be worth a cent in the destination currency
+            return OperationResult.INVALID_AMOUNT;
+        }
+        // Each side counts against its own limits, in its own currency
+        long fromReserved = reserveVelocity(fromAccountId, amount);
+        if (fromReserved == VelocityTracker.REFUSED) {
+            return OperationResult.LIMIT_EXCEEDED;
+        }
+        long toReserved = reserveVelocity(toAccountId, credited);
+        if (toReserved == VelocityTracker.REFUSED) {
+            cancelVelocity(fromAccountId, amount, fromReserved);
+            return OperationResult.LIMIT_EXCEEDED;
+        }
+
+        boolean posted = false;
+        List<AccountChangeListener> changeSet = startChangeSet();
+        try {
+            OperationResult result;
+            try {
+                conn.setAutoCommit(false);
 
-        double doubleAmount = amount.doubleValue();
+                result = debit(fromAccountId, amount, fromAccount.getWithdrawalFloor());
+                if (result.isSuccess() && !credit(toAccountId, credited)) {
+                    result = OperationResult.ACCOUNT_NOT_FOUND;
+                }
 
-        if ((getBalance(toAccountId).doubleValue())-doubleAmount<0) {
-            System.out.println("\nFailed to transfer with invalid amount.");
-            Main.mainMenu();
+                if (result.isSuccess()) {
+                    insertTransaction(fromAccountId, amount.negate(), timestamp);
+                    insertTransaction(toAccountId, credited, timestamp);
+                    conn.commit();
+                    posted = true;
+                } else {
+                    rollbackQuietly();
+                    // The cached versions may now be ahead of the rolled back rows
+                    forgetVersion(fromAccountId);
+                    forgetVersion(toAccountId);
+                    return result;
+                }
+            } catch (SQLException e) {
+                rollbackQuietly();
+                forgetVersion(fromAccountId);
+                forgetVersion(toAccountId);
+                throw e;
+            } finally {
+                resetAutoCommit();
+            }
+
+            mirrorDebit(fromAccount, amount);
+            toAccount.deposit(credited);
+            fireBalanceChanged(fromAccountId, amount.negate());
+            fireBalanceChanged(toAccountId, credited);
+            fireTransactionRecorded(fromAccountId, amount.negate(), timestamp);
+            fireTransactionRecorded(toAccountId, credited, timestamp);
+            return OperationResult.OK;
+        } finally {
+            if (!posted) {
+                cancelVelocity(fromAccountId, amount, fromReserved);
+                cancelVelocity(toAccountId, credited, toReserved);
+            }
+            finishChangeSet(changeSet);
         }
+    }
+
+    /**
+     * Amounts move in whole cents. The DB keeps two decimals and would round
+     * anything finer, and the in-memory stores refuse it, so a finer amount
+     * is turned away before it reaches either.
+     */
+    static boolean isValidAmount(BigDecimal amount) {
+        return amount != null && amount.signum() > 0 && isWholeCents(amount);
+    }
 
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new BankingException("Transfer amount must be positive");
+    private static boolean isWholeCents(BigDecimal amount) {
+        return amount.scale() <= 2 || amount.stripTrailingZeros().scale() <= 2;
+    }
+
+    /**
+     * Mirror a debit the DB has already committed. The DB checked the funds,
+     * so a mirror that lags behind it must not refuse (and turn a posted
+     * debit into a failure): it takes the amount as is, the way
+     * NettedPosting.applyInMemory does.
+     */
+    static void mirrorDebit(Account account, BigDecimal amount) {
+        if (!account.tryWithdraw(amount).isSuccess()) {
+            account.applyCommitted(amount.negate());
         }
+    }
 
-        Timestamp transactionTimestamp = new Timestamp(System.currentTimeMillis());
+    private void resetAutoCommit() {
+        try {
+            conn.setAutoCommit(true);
+        } catch (SQLException ex) {
+            JdbcMetrics.global().swallowed("AccountService.resetAutoCommit", ex);
+        }
+    }
 
+    private void rollbackQuietly() {
         try {
-            conn.setAutoCommit(false);
+            conn.rollback();
+        } catch (SQLException rollbackEx) {
+            JdbcMetrics.global().swallowed("AccountService.rollback", rollbackEx);
+        }
+    }
 
-            try (PreparedStatement stmt = conn.prepareStatement(
-                    "UPDATE accounts SET balance = balance - ? WHERE account_id = ?")) {
-                stmt.setBigDecimal(1, amount);
-                stmt.setString(2, fromAccountId);
-                int rows = stmt.executeUpdate();
-                if (rows == 0) {
-                    throw new AccountNotFoundException("No account found with ID " + fromAccountId);
+    // Turn a rejection code into the exception the throwing API has always used
+    private void raiseIfRejected(OperationResult result, String accountId, BigDecimal amount) {
+        switch (result) {
+            case OK:
+                return;
+            case ACCOUNT_NOT_FOUND:
+                throw new AccountNotFoundException(accountId);
+            case INSUFFICIENT_FUNDS:
+                Account account = lookupAccount(accountId);
+                throw new InsufficientFundsException(accountId, amount, getBalance(accountId),
+                        account != null ? account.getCurrency() : null);
+            case LIMIT_EXCEEDED:
+                throw new BankingException("Velocity limit exceeded for account " + accountId);
+            case CONTENDED:
+                throw new BankingException("Too much contention on account " + accountId + ", please retry");
+            case INVALID_AMOUNT:
+                throw new BankingException("Amount must be positive whole cents");
+            case SAME_ACCOUNT:
+                throw new BankingException("Cannot transfer to the same account");
+            case CURRENCY_MISMATCH:
+                throw new BankingException("No exchange rate for a transfer from account " + accountId);
+            default:
+                throw new BankingException("Operation on account " + accountId + " failed");
+        }
+    }
+
+    /**
+     * Add to an account's DB balance: one of its stripes for a hot account,
+     * otherwise its row. Returns false if the account has no row.
+     */
+    private boolean credit(String accountId, BigDecimal amount) throws SQLException {
+        if (hotAccounts.credit(conn, accountId, amount)) {
+            return true;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE account_id = ?")) {
+            stmt.setBigDecimal(1, amount);
+            stmt.setString(2, accountId);
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        bumpVersion(accountId);
+        return true;
+    }
+
+    // Guarded debit of the row; a hot account whose row is short borrows from its stripes
+    private OperationResult debit(String accountId, BigDecimal amount, BigDecimal floor) throws SQLException {
+        OperationResult result = guardedDebit(accountId, amount, floor);
+        if (result == OperationResult.INSUFFICIENT_FUNDS && hotAccounts.isHot(accountId)) {
+            boolean borrowed = hotAccounts.borrowingDebit(conn, accountId, amount, floor);
+            forgetVersion(accountId);
+            return borrowed ? OperationResult.OK : OperationResult.INSUFFICIENT_FUNDS;
+        }
+        return result;
+    }
+
+    /**
+     * Debit an account in a single conditional UPDATE that checks both the
+     * expected row version and the remaining funds.
+     *
+     * In the common case this is one round-trip. When the update matches no
+     * row we read the row once to learn why: a missing account or a lack of
+     * funds is returned right away. A cached version that was stale (the row
+     * was written through another connection since) is retried at once and
+     * is not contention; only a version read in this call that another
+     * writer beat us to counts as a conflict, and is retried with bounded,
+     * jittered backoff.
+     */
+    OperationResult guardedDebit(String accountId, BigDecimal amount, BigDecimal floor) throws SQLException {
+        long expectedVersion = cachedVersion(accountId);
+        boolean fromCache = expectedVersion != UNKNOWN_VERSION;
+
+        for (int attempt = 1; ; ) {
+            if (expectedVersion == UNKNOWN_VERSION) {
+                expectedVersion = readVersionChecked(accountId, amount, floor);
+                if (expectedVersion < 0) {
+                    return rejection(expectedVersion);
                 }
             }
 
+            debitStats.recordAttempt();
             try (PreparedStatement stmt = conn.prepareStatement(
-                    "UPDATE accounts SET balance = balance + ? WHERE account_id = ?")) {
+                    "UPDATE accounts SET balance = balance - ?, version = version + 1 "
+                            + "WHERE account_id = ? AND version = ? AND balance - ? >= ?")) {
                 stmt.setBigDecimal(1, amount);
-                stmt.setString(2, toAccountId);
-                int rows = stmt.executeUpdate();
-                if (rows == 0) {
-                    throw new AccountNotFoundException("No account found with ID " + toAccountId);
+                stmt.setString(2, accountId);
+                stmt.setLong(3, expectedVersion);
+                stmt.setBigDecimal(4, amount);
+                stmt.setBigDecimal(5, floor);
+
+                if (stmt.executeUpdate() == 1) {
+                    rememberVersion(accountId, expectedVersion + 1);
+                    debitStats.recordSuccess();
+                    return OperationResult.OK;
                 }
             }
 
-            conn.commit();
+            // Either the funds or the version check failed
+            long currentVersion = readVersionChecked(accountId, amount, floor);
+            if (currentVersion < 0) {
+                return rejection(currentVersion);
+            }
+            if (fromCache) {
+                // Our cache was behind, nobody raced us: try again with the version just read
+                debitStats.recordStaleVersion();
+                fromCache = false;
+                expectedVersion = currentVersion;
+                continue;
+            }
+            debitStats.recordConflict();
+            if (attempt >= MAX_DEBIT_ATTEMPTS) {
+                debitStats.recordExhausted();
+                forgetVersion(accountId);
+                return OperationResult.CONTENDED;
+            }
+            debitStats.recordRetry();
+            backoff(attempt++);
+            expectedVersion = currentVersion;
+        }
+    }
 
+    // Markers returned by readVersionChecked instead of a version
+    private static final long ROW_MISSING = -2L;
+    private static final long ROW_SHORT_OF_FUNDS = -3L;
 
-            // Find both accounts and update them
-            Account fromAccount = findAccount(fromAccountId);
-            Account toAccount = findAccount(toAccountId);
+    private static OperationResult rejection(long marker) {
+        return marker == ROW_MISSING ? OperationResult.ACCOUNT_NOT_FOUND : OperationResult.INSUFFICIENT_FUNDS;
+    }
 
-            fromAccount.withdraw(amount);
-            toAccount.deposit(amount);
+    // Read the current row version, or a negative marker if the account is missing or short of funds
+    private long readVersionChecked(String accountId, BigDecimal amount, BigDecimal floor) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT balance, version FROM accounts WHERE account_id = ?")) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    forgetVersion(accountId);
+                    return ROW_MISSING;
+                }
+                BigDecimal balance = rs.getBigDecimal("balance");
+                long version = rs.getLong("version");
+                rememberVersion(accountId, version);
+                if (balance.subtract(amount).compareTo(floor) < 0) {
+                    debitStats.recordInsufficientFunds();
+                    return ROW_SHORT_OF_FUNDS;
+                }
+                return version;
+            }
+        }
+    }
 
-            // Save both transactions with the same timestamp
-            recordTransaction(fromAccountId, amount.negate(), transactionTimestamp);
-            recordTransaction(toAccountId, amount, transactionTimestamp);
+    // Version cache helpers. Only canonical IDs are cached, keyed by their packed long.
+    private long cachedVersion(String accountId) {
+        long key = AccountKeyCodec.encode(accountId);
+        if (key == AccountKeyCodec.NO_KEY) {
+            return UNKNOWN_VERSION;
+        }
+        synchronized (knownVersions) {
+            return knownVersions.get(key);
+        }
+    }
 
-        } catch (SQLException e) {
+    private void rememberVersion(String accountId, long version) {
+        long key = AccountKeyCodec.encode(accountId);
+        if (key != AccountKeyCodec.NO_KEY) {
+            synchronized (knownVersions) {
+                knownVersions.put(key, version);
+            }
+        }
+    }
 
-            try {
-                conn.rollback();
-            } catch (SQLException rollbackEx) {
-                // Log rollback failure
+    private void bumpVersion(String accountId) {
+        long key = AccountKeyCodec.encode(accountId);
+        if (key != AccountKeyCodec.NO_KEY) {
+            synchronized (knownVersions) {
+                knownVersions.addIfPresent(key, 1);
             }
-            throw new BankingException("Failed to transfer in DB: " + e.getMessage(), e);
+        }
+    }
 
-        } finally {
-            try {
-                conn.setAutoCommit(true);
-            } catch (SQLException ex) {
-                // Log auto-commit reset failure
+    private void forgetVersion(String accountId) {
+        long key = AccountKeyCodec.encode(accountId);
+        if (key != AccountKeyCodec.NO_KEY) {
+            synchronized (knownVersions) {
+                knownVersions.remove(key);
             }
         }
     }
 
+    // Exponential backoff with full jitter, capped at MAX_BACKOFF_NANOS
+    private static void backoff(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_NANOS, BASE_BACKOFF_NANOS << Math.min(attempt, 20));
+        LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(ceiling) + 1);
+    }
+
+    // Counters for the guarded debit path
+    public DebitStats getDebitStats() {
+        return debitStats;
+    }
+
     /**
      * Get the balance of an account
      */
     public BigDecimal getBalance(String accountId) throws AccountNotFoundException {
         BigDecimal balance = BigDecimal.ZERO;
+        if (definitelyMissing(accountId)) {
+            throw new AccountNotFoundException(accountId);
+        }
 
         try (PreparedStatement stmt = conn.prepareStatement(
-                "SELECT balance FROM accounts WHERE account_id = ?")) {
+                "SELECT " + TOTAL_BALANCE + " AS balance FROM accounts a WHERE a.account_id = ?")) {
             stmt.setString(1, accountId);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
                     balance = rs.getBigDecimal("balance");
                 } else {
-                    throw new AccountNotFoundException("No account found with ID " + accountId);
+                    recordFalsePositive();
+                    throw new AccountNotFoundException(accountId);
                 }
             }
         } catch (SQLException e) {
-            throw new AccountNotFoundException("Error retrieving balance: " + e.getMessage(), e);
+            throw new AccountNotFoundException(accountId, e);
         }
 
         return balance;
     }
     public String viewAccount (String accountId) throws BankingException {
-        String query = "SELECT account_id, account_type, balance FROM accounts WHERE account_id = ?";
+        String query = "SELECT a.account_id, a.account_type, " + TOTAL_BALANCE + " AS balance, a.currency "
+                + "FROM accounts a WHERE a.account_id = ?";
+        if (definitelyMissing(accountId)) {
+            throw new AccountNotFoundException(accountId);
+        }
 
         try (PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setString(1, accountId);
@@ -248,9 +1141,10 @@ public class AccountService {
             if (rs.next()) {
                 return  "Account ID: " + rs.getString("account_id") + "\n" +
                         "Account Type: " + rs.getString("account_type") + "\n" +
-                        "Balance: $" + rs.getBigDecimal("balance");
+                        "Balance: " + rs.getBigDecimal("balance") + " " + rs.getString("currency");
             } else {
-                throw new AccountNotFoundException("No account found with ID: " + accountId);
+                recordFalsePositive();
+                throw new AccountNotFoundException(accountId);
             }
         } catch (SQLException e) {
             throw new BankingException("Failed to retrieve account details: " + e.getMessage(), e);
@@ -281,9 +1175,53 @@ public class AccountService {
         return transactions;
     }
 
+    // True when the ID filter rules the account out, so the DB need not be asked
+    private boolean definitelyMissing(String accountId) {
+        if (accountId == null || accountId.isEmpty()) {
+            return true;
+        }
+        if (idFilter == null || idFilter.mightExist(accountId)) {
+            return false;
+        }
+        // Loaded into memory some other way (e.g. by reconciliation): not safe to skip
+        return bankingSystem.lookupAccount(accountId) == null;
+    }
+
+    private void recordFalsePositive() {
+        if (idFilter != null) {
+            idFilter.recordFalsePositive();
+        }
+    }
+
+    private boolean existsInDb(String accountId) throws BankingException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM accounts WHERE account_id = ?")) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            throw new BankingException("Failed to check account " + accountId + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The account ID filter and its hit counts, or null if this service has none.
+     */
+    public AccountIdFilter getAccountIdFilter() {
+        return idFilter;
+    }
+
+    // Like findAccount, but returns null instead of throwing
+    private Account lookupAccount(String accountId) {
+        if (accountId == null || accountId.isEmpty()) {
+            return null;
+        }
+        return bankingSystem.lookupAccount(accountId);
+    }
+
     private Account findAccount(String accountId) throws AccountNotFoundException {
         if (accountId == null || accountId.isEmpty()) {
-            throw new AccountNotFoundException("Account ID cannot be empty");
+            throw new AccountNotFoundException(accountId);
         }
         return bankingSystem.findAccount(accountId);
     }
@@ -291,6 +1229,23 @@ public class AccountService {
      * Helper method to insert a transaction row in the DB.
      */
     public void recordTransaction(String accountId, BigDecimal amount, Timestamp transactionDate) throws BankingException {
+        List<AccountChangeListener> changeSet = startChangeSet();
+        try {
+            try {
+                insertTransaction(accountId, amount, transactionDate);
+            } catch (SQLException e) {
+                throw new BankingException("Failed to record transaction: " + e.getMessage(), e);
+            }
+            fireTransactionRecorded(accountId, amount, transactionDate);
+        } finally {
+            finishChangeSet(changeSet);
+        }
+    }
+
+    // Insert a transaction row, inside the caller's DB transaction if one is open
+    private void insertTransaction(String accountId, BigDecimal amount, Timestamp transactionDate) throws SQLException {
+        TransactionRecordedEvent event = new TransactionRecordedEvent(accountId);
+        event.start();
         try (PreparedStatement stmt = conn.prepareStatement(
                 "INSERT INTO transactions (account_id, amount, transaction_date) VALUES (?, ?, ?)")) {
             stmt.setString(1, accountId);
@@ -298,7 +1253,163 @@ public class AccountService {
             stmt.setTimestamp(3, transactionDate);
             stmt.executeUpdate();
         } catch (SQLException e) {
-            throw new BankingException("Failed to record transaction: " + e.getMessage(), e);
+            event.fail(e, amount);
+            throw e;
+        }
+        event.finish(amount);
+    }
+
+    /**
+     * Hot-account mode for an account that takes many concurrent credits,
+     * e.g. merchant settlement or payroll: its balance is split over stripes,
+     * in the DB and in memory, so credits no longer queue on one row and one
+     * lock. Debits borrow from the stripes when the main balance is short, and
+     * every balance read still returns the total.
+     */
+    public void enableHotAccount(String accountId, int stripes) throws BankingException {
+        Account account = findAccount(accountId);
+        if (!account.supportsCreditStripes()) {
+            throw new BankingException("Account " + accountId + " cannot be made hot: its store has nowhere to keep credit stripes");
+        }
+        account.enableCreditStripes(stripes);
+        boolean enabled = false;
+        try {
+            hotAccounts.enable(conn, accountId, stripes);
+            enabled = true;
+        } catch (SQLException e) {
+            throw new BankingException("Failed to make account " + accountId + " hot: " + e.getMessage(), e);
+        } finally {
+            if (!enabled) {
+                account.disableCreditStripes();
+            }
+        }
+    }
+
+    // Fold the stripes back into the account and drop them
+    public void disableHotAccount(String accountId) throws BankingException {
+        Account account = findAccount(accountId);
+        try {
+            hotAccounts.disable(conn, accountId);
+        } catch (SQLException e) {
+            throw new BankingException("Failed to turn off hot account " + accountId + ": " + e.getMessage(), e);
+        }
+        forgetVersion(accountId);
+        account.disableCreditStripes();
+    }
+
+    /**
+     * Move a hot account's stripes into its main balance, in the DB and in
+     * memory. The total does not change. Returns the amount folded in the DB.
+     */
+    public BigDecimal foldHotAccount(String accountId) throws BankingException {
+        Account account = findAccount(accountId);
+        BigDecimal folded;
+        try {
+            folded = hotAccounts.fold(conn, accountId);
+        } catch (SQLException e) {
+            throw new BankingException("Failed to fold hot account " + accountId + ": " + e.getMessage(), e);
+        }
+        forgetVersion(accountId);
+        account.foldCreditStripes();
+        return folded;
+    }
+
+    public HotAccounts getHotAccounts() {
+        return hotAccounts;
+    }
+
+    /**
+     * Check and count every deposit, withdrawal and transfer against these limits.
+     */
+    public void setVelocityTracker(VelocityTracker velocityTracker) {
+        this.velocityTracker = velocityTracker;
+    }
+
+    /**
+     * Allow transfers between accounts in different currencies at these
+     * rates. Without them such transfers fail with CURRENCY_MISMATCH.
+     */
+    public void setFxRates(FxRates fxRates) {
+        this.fxRates = fxRates;
+    }
+
+    // Count the operation against the account's velocity limits before it
+    // runs; the time to cancel it with, or VelocityTracker.REFUSED
+    private long reserveVelocity(String accountId, BigDecimal amount) {
+        VelocityTracker tracker = velocityTracker;
+        return tracker == null ? 0L : tracker.reserve(accountId, amount);
+    }
+
+    // Give the room back for an operation that did not commit
+    private void cancelVelocity(String accountId, BigDecimal amount, long reservedAt) {
+        VelocityTracker tracker = velocityTracker;
+        if (tracker != null) {
+            tracker.cancel(accountId, amount, reservedAt);
+        }
+    }
+
+    // Reserve both sides of leg i into reserved[2i] and [2i + 1]; the refused account, or null
+    private String reserveLeg(TransferLeg leg, long[] reserved, int i) {
+        reserved[2 * i] = reserveVelocity(leg.getFromAccountId(), leg.getAmount());
+        if (reserved[2 * i] == VelocityTracker.REFUSED) {
+            return leg.getFromAccountId();
+        }
+        reserved[2 * i + 1] = reserveVelocity(leg.getToAccountId(), leg.getAmount());
+        if (reserved[2 * i + 1] == VelocityTracker.REFUSED) {
+            cancelVelocity(leg.getFromAccountId(), leg.getAmount(), reserved[2 * i]);
+            return leg.getToAccountId();
+        }
+        return null;
+    }
+
+    private void cancelLeg(TransferLeg leg, long[] reserved, int i) {
+        cancelVelocity(leg.getFromAccountId(), leg.getAmount(), reserved[2 * i]);
+        cancelVelocity(leg.getToAccountId(), leg.getAmount(), reserved[2 * i + 1]);
+    }
+
+    // Cancel the reservations of the first count legs
+    private void cancelLegs(List<TransferLeg> legs, long[] reserved, int count) {
+        for (int i = 0; i < count; i++) {
+            cancelLeg(legs.get(i), reserved, i);
+        }
+    }
+
+    public void addChangeListener(AccountChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(AccountChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Open a change set on the listeners before a DB transaction commits (see
+    // AccountChangeListener.changeSetStarted); returns the ones to finish it on
+    private List<AccountChangeListener> startChangeSet() {
+        if (listeners.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<AccountChangeListener> started = new ArrayList<>(listeners);
+        for (AccountChangeListener listener : started) {
+            listener.changeSetStarted();
+        }
+        return started;
+    }
+
+    private static void finishChangeSet(List<AccountChangeListener> started) {
+        for (AccountChangeListener listener : started) {
+            listener.changeSetFinished();
+        }
+    }
+
+    private void fireBalanceChanged(String accountId, BigDecimal delta) {
+        for (AccountChangeListener listener : listeners) {
+            listener.balanceChanged(accountId, delta);
+        }
+    }
+
+    private void fireTransactionRecorded(String accountId, BigDecimal amount, Timestamp transactionDate) {
+        for (AccountChangeListener listener : listeners) {
+            listener.transactionRecorded(accountId, amount, transactionDate);
         }
     }
 
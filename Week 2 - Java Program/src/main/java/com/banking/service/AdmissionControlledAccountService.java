@@ -0,0 +1,149 @@
+package com.banking.service;
+
+import com.banking.exception.*;
+import com.banking.model.OperationResult;
+import com.banking.util.AdaptiveConcurrencyLimiter;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * Admission control in front of an AccountService.
+ *
+ * Each kind of operation has its own adaptive concurrency limit and a
+ * short bounded wait queue. When the DB slows down the limits shrink, so
+ * requests are turned away with OVERLOADED (or an OverloadedException
+ * for reads) instead of piling up on the DB.
+ *
+ * A JDBC connection runs one transaction at a time, so every admitted
+ * call runs on a worker service of its own, taken from a pool that grows
+ * to the peak number of calls in flight. Workers share the delegate's
+ * caches, listeners and limits (see AccountService.onConnection); the
+ * delegate's own connection is not used.
+ */
+public class AdmissionControlledAccountService implements AutoCloseable {
+
+    public enum Operation { READ, DEPOSIT, WITHDRAW, TRANSFER }
+
+    private static final int INITIAL_LIMIT = 8;
+    private static final int MIN_LIMIT = 1;
+    private static final int MAX_LIMIT = 64;
+    private static final int MAX_QUEUE = 16;
+    private static final long MAX_WAIT_MILLIS = 20;
+    private static final double TOLERANCE = 2.0;
+
+    private final AccountService delegate;
+    private final Map<Operation, AdaptiveConcurrencyLimiter> limiters = new EnumMap<>(Operation.class);
+
+    // Workers not running a call right now, and every worker ever opened
+    private final Queue<AccountService> idleWorkers = new ConcurrentLinkedQueue<>();
+    private final List<AccountService> workers = new CopyOnWriteArrayList<>();
+
+    public AdmissionControlledAccountService(AccountService delegate) {
+        this.delegate = delegate;
+        for (Operation operation : Operation.values()) {
+            limiters.put(operation, new AdaptiveConcurrencyLimiter(
+                    INITIAL_LIMIT, MIN_LIMIT, MAX_LIMIT, MAX_QUEUE, MAX_WAIT_MILLIS, TOLERANCE));
+        }
+    }
+
+    // Use custom limiters, e.g. tighter ones in tests
+    public AdmissionControlledAccountService(AccountService delegate,
+                                             Map<Operation, AdaptiveConcurrencyLimiter> limiters) {
+        this.delegate = delegate;
+        for (Operation operation : Operation.values()) {
+            if (!limiters.containsKey(operation)) {
+                throw new IllegalArgumentException("No limiter for " + operation);
+            }
+        }
+        this.limiters.putAll(limiters);
+    }
+
+    public OperationResult tryDeposit(String accountId, BigDecimal amount) {
+        return admitResult(Operation.DEPOSIT, worker -> worker.tryDeposit(accountId, amount));
+    }
+
+    public OperationResult tryWithdraw(String accountId, BigDecimal amount) {
+        return admitResult(Operation.WITHDRAW, worker -> worker.tryWithdraw(accountId, amount));
+    }
+
+    public OperationResult tryTransfer(String fromAccountId, String toAccountId, BigDecimal amount) {
+        return admitResult(Operation.TRANSFER,
+                worker -> worker.tryTransfer(fromAccountId, toAccountId, amount));
+    }
+
+    public BigDecimal getBalance(String accountId) throws BankingException {
+        return admit(Operation.READ, worker -> worker.getBalance(accountId));
+    }
+
+    public String viewAccount(String accountId) throws BankingException {
+        return admit(Operation.READ, worker -> worker.viewAccount(accountId));
+    }
+
+    public AdaptiveConcurrencyLimiter getLimiter(Operation operation) {
+        return limiters.get(operation);
+    }
+
+    /**
+     * Close the workers' connections.
+     */
+    @Override
+    public void close() {
+        for (AccountService worker : workers) {
+            try {
+                worker.conn.close();
+            } catch (SQLException e) {
+                System.err.println("Failed to close worker connection: " + e.getMessage());
+            }
+        }
+        workers.clear();
+        idleWorkers.clear();
+    }
+
+    private OperationResult admitResult(Operation operation, Function<AccountService, OperationResult> call) {
+        try {
+            return admit(operation, call);
+        } catch (OverloadedException e) {
+            return OperationResult.OVERLOADED;
+        }
+    }
+
+    private <T> T admit(Operation operation, Function<AccountService, T> call) {
+        AdaptiveConcurrencyLimiter limiter = limiters.get(operation);
+        try {
+            if (!limiter.acquire()) {
+                throw new OverloadedException("Too many concurrent " + operation + " requests");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OverloadedException("Interrupted while waiting to " + operation);
+        }
+
+        long start = System.nanoTime();
+        AccountService worker = null;
+        try {
+            worker = takeWorker();
+            return call.apply(worker);
+        } finally {
+            if (worker != null) {
+                idleWorkers.offer(worker);
+            }
+            limiter.release(System.nanoTime() - start);
+        }
+    }
+
+    private AccountService takeWorker() {
+        AccountService worker = idleWorkers.poll();
+        if (worker == null) {
+            worker = delegate.onConnection(AccountService.openConnection());
+            workers.add(worker);
+        }
+        return worker;
+    }
+}
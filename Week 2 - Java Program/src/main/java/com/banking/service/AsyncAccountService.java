@@ -0,0 +1,242 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.model.Account;
+import com.banking.model.AccountType;
+import com.banking.exception.*;
+import com.banking.fx.FxRates;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking version of AccountService.
+ * Every call returns a CompletableFuture and the DB work runs on a
+ * small, bounded pool of worker threads. Each worker has its own
+ * connection, so independent calls really run at the same time.
+ *
+ * The overlap is between calls: each call is one task running the
+ * blocking AccountService operation, in that operation's one DB
+ * transaction. The steps inside a call (the two legs of a transfer, the
+ * funds check and the update) are not pipelined, since they share the
+ * transaction and the guarded update already checks funds in the same
+ * statement.
+ */
+public class AsyncAccountService implements AutoCloseable {
+    private static final int DEFAULT_THREADS = 4;
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private final BankingSystem bankingSystem;
+    private final ThreadPoolExecutor executor;
+    private final DebitStats debitStats = new DebitStats();
+    private final AccountIdFilter idFilter = AccountIdFilter.forDatabase(AccountService.URL);
+    private final HotAccounts hotAccounts = new HotAccounts();
+
+    // One AccountService (and connection) per worker thread. Registering a
+    // worker and changing listeners or rates hold its lock, so every worker
+    // gets each listener exactly once.
+    private final List<AccountService> workerServices = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<AccountService> workerService = ThreadLocal.withInitial(this::newWorkerService);
+    private final List<AccountChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile FxRates fxRates;
+
+    public AsyncAccountService(BankingSystem bankingSystem) {
+        this(bankingSystem, DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public AsyncAccountService(BankingSystem bankingSystem, int threads, int queueCapacity) {
+        if (threads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Threads and queue capacity must be positive");
+        }
+        this.bankingSystem = bankingSystem;
+        try (Connection conn = AccountService.openConnection()) {
+            idFilter.rebuild(conn);
+            hotAccounts.load(conn);
+        } catch (SQLException e) {
+            throw new BankingException("Failed to prepare the async account service: " + e.getMessage(), e);
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "banking-async-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Create a new bank account
+     */
+    public CompletableFuture<Account> createAccount(AccountType type, String accountId, BigDecimal initialBalance) {
+        return submit(() -> workerService.get().createAccount(type, accountId, initialBalance));
+    }
+
+    /**
+     * Get the balance of an account
+     */
+    public CompletableFuture<BigDecimal> getBalance(String accountId) {
+        return submit(() -> workerService.get().getBalance(accountId));
+    }
+
+    /**
+     * Deposit money into an account
+     */
+    public CompletableFuture<Void> deposit(String accountId, BigDecimal amount) {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            return CompletableFuture.failedFuture(new BankingException("Deposit amount must be positive"));
+        }
+        Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+
+        return run(() -> workerService.get().applyDeposit(accountId, amount, timestamp));
+    }
+
+    /**
+     * Withdraw money from an account.
+     * The funds check is part of the guarded update, so it costs no extra round-trip.
+     */
+    public CompletableFuture<Void> withdraw(String accountId, BigDecimal amount) {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            return CompletableFuture.failedFuture(new BankingException("Withdrawal amount must be positive"));
+        }
+        Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+
+        return run(() -> workerService.get().applyWithdrawal(accountId, amount, timestamp));
+    }
+
+    /**
+     * Transfer money between accounts.
+     * The two transaction legs are written in the transfer's own DB transaction,
+     * so the future only completes exceptionally when no money moved.
+     */
+    public CompletableFuture<Void> transfer(String fromAccountId, String toAccountId, BigDecimal amount) {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            return CompletableFuture.failedFuture(new BankingException("Transfer amount must be positive"));
+        }
+        if (fromAccountId.equals(toAccountId)) {
+            return CompletableFuture.failedFuture(new BankingException("Cannot transfer to the same account"));
+        }
+        Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+
+        return run(() -> workerService.get().applyTransfer(fromAccountId, toAccountId, amount, timestamp));
+    }
+
+    /**
+     * Post every leg in one transaction on a worker thread, see AccountService.transferAll.
+     */
+    public CompletableFuture<Void> transferAll(List<TransferLeg> legs) {
+        return run(() -> workerService.get().transferAll(legs));
+    }
+
+    /**
+     * Insert a transaction row on a worker thread.
+     */
+    public CompletableFuture<Void> recordTransaction(String accountId, BigDecimal amount, Timestamp transactionDate) {
+        return run(() -> workerService.get().recordTransaction(accountId, amount, transactionDate));
+    }
+
+    // Guarded debit counters shared by all workers
+    public DebitStats getDebitStats() {
+        return debitStats;
+    }
+
+    // Shared by all workers
+    public AccountIdFilter getAccountIdFilter() {
+        return idFilter;
+    }
+
+    // Shared by all workers
+    public HotAccounts getHotAccounts() {
+        return hotAccounts;
+    }
+
+    /**
+     * Register a listener with every worker, including ones started later.
+     */
+    public void addChangeListener(AccountChangeListener listener) {
+        synchronized (workerServices) {
+            listeners.add(listener);
+            for (AccountService service : workerServices) {
+                service.addChangeListener(listener);
+            }
+        }
+    }
+
+    /**
+     * Exchange rates for cross-currency transfers, on every worker.
+     */
+    public void setFxRates(FxRates fxRates) {
+        synchronized (workerServices) {
+            this.fxRates = fxRates;
+            for (AccountService service : workerServices) {
+                service.setFxRates(fxRates);
+            }
+        }
+    }
+
+    // Number of tasks waiting for a free worker
+    public int getQueuedTasks() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stop the workers and close their connections.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (AccountService service : workerServices) {
+            try {
+                service.conn.close();
+            } catch (SQLException e) {
+                System.err.println("Failed to close worker connection: " + e.getMessage());
+            }
+        }
+        workerServices.clear();
+        hotAccounts.close();
+    }
+
+    private AccountService newWorkerService() {
+        AccountService service = new AccountService(
+                bankingSystem, AccountService.openConnection(), debitStats, idFilter, hotAccounts);
+        synchronized (workerServices) {
+            listeners.forEach(service::addChangeListener);
+            service.setFxRates(fxRates);
+            workerServices.add(service);
+        }
+        return service;
+    }
+
+    private interface BankingTask {
+        void run() throws BankingException;
+    }
+
+    private CompletableFuture<Void> run(BankingTask task) {
+        return submit(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    // Hand the work to the pool; a full queue fails fast instead of blocking the caller
+    private <T> CompletableFuture<T> submit(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new BankingException("Async executor is saturated", e));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.exception.BankingException;
+import com.banking.model.Account;
+import com.banking.model.AccountFactory;
+import com.banking.model.AccountType;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Checks that the in-memory balances match the accounts table.
+ *
+ * Accounts are split into shards by a hash of their ID. For every shard
+ * both sides compute a digest: the XOR of a SHA-256 based hash of each
+ * (account_id, balance) pair, plus a row count. The DB side is a single
+ * GROUP BY query, so only one small row per shard leaves the DB. Only the
+ * shards whose digests differ are compared account by account.
+ *
+ * The DB is the system of record. With repair on, drifted in-memory
+ * balances are overwritten and accounts missing from memory are loaded;
+ * accounts that exist only in memory are reported but left alone.
+ * Run it while the system is quiet, or re-run to confirm, since updates
+ * in flight show up as transient mismatches.
+ */
+public class BalanceReconciler {
+    private static final int DEFAULT_SHARDS = 256;
+
+    // First 8 bytes of SHA-256 as a signed BIGINT, the same value rowHash computes in Java
+    private static final String ID_HASH =
+            "CAST(SUBSTRING(HASH('SHA-256', account_id), 1, 8) AS BIGINT)";
+    private static final String ROW_HASH =
+            "CAST(SUBSTRING(HASH('SHA-256', account_id || '|' || CAST(balance AS VARCHAR)), 1, 8) AS BIGINT)";
+    private static final String SHARD = "MOD(BITAND(" + ID_HASH + ", 9223372036854775807), ?)";
+    // The accounts table with every balance including its hot-account stripes
+    private static final String TOTALS = "(SELECT a.account_id, a.account_type, a.currency, "
+            + AccountService.TOTAL_BALANCE + " AS balance FROM accounts a) t";
+
+    private final BankingSystem bankingSystem;
+    private final int shards;
+
+    public BalanceReconciler(BankingSystem bankingSystem) {
+        this(bankingSystem, DEFAULT_SHARDS);
+    }
+
+    public BalanceReconciler(BankingSystem bankingSystem, int shards) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        this.bankingSystem = bankingSystem;
+        this.shards = shards;
+    }
+
+    /**
+     * Compare both sides and, if repair is set, fix the in-memory side.
+     */
+    public ReconciliationReport reconcile(boolean repair) {
+        ReconciliationReport report = new ReconciliationReport(shards);
+        MessageDigest sha256 = newDigest();
+
+        try (Connection conn = AccountService.openConnection()) {
+            long[] dbDigests = new long[shards];
+            long[] dbCounts = new long[shards];
+            loadDbDigests(conn, dbDigests, dbCounts);
+
+            long[] memoryDigests = new long[shards];
+            long[] memoryCounts = new long[shards];
+            bankingSystem.streamAccounts().forEach(account -> {
+                String id = account.getAccountNumber();
+                int shard = shardOf(sha256, id);
+                memoryDigests[shard] ^= rowHash(sha256, id, account.getBalance());
+                memoryCounts[shard]++;
+            });
+
+            Set<Integer> differing = new TreeSet<>();
+            for (int shard = 0; shard < shards; shard++) {
+                if (dbDigests[shard] != memoryDigests[shard] || dbCounts[shard] != memoryCounts[shard]) {
+                    differing.add(shard);
+                }
+            }
+            if (differing.isEmpty()) {
+                return report;
+            }
+
+            // One more pass over memory to pick out the accounts of the differing shards
+            Map<Integer, Map<String, Account>> memoryRows = new HashMap<>();
+            bankingSystem.streamAccounts().forEach(account -> {
+                int shard = shardOf(sha256, account.getAccountNumber());
+                if (differing.contains(shard)) {
+                    memoryRows.computeIfAbsent(shard, s -> new HashMap<>())
+                            .put(account.getAccountNumber(), account);
+                }
+            });
+
+            for (int shard : differing) {
+                compareShard(conn, shard, memoryRows.getOrDefault(shard, Collections.emptyMap()), repair, report);
+            }
+        } catch (SQLException e) {
+            throw new BankingException("Reconciliation failed: " + e.getMessage(), e);
+        }
+        return report;
+    }
+
+    private void loadDbDigests(Connection conn, long[] digests, long[] counts) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT " + SHARD + " AS shard, BIT_XOR_AGG(" + ROW_HASH + "), COUNT(*) "
+                        + "FROM " + TOTALS + " GROUP BY shard")) {
+            stmt.setInt(1, shards);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int shard = rs.getInt(1);
+                    digests[shard] = rs.getLong(2);
+                    counts[shard] = rs.getLong(3);
+                }
+            }
+        }
+    }
+
+    private void compareShard(Connection conn, int shard, Map<String, Account> memory, boolean repair,
+                              ReconciliationReport report) throws SQLException {
+        Map<String, Account> unmatched = new HashMap<>(memory);
+        long rows = 0;
+
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT account_id, account_type, balance, currency FROM " + TOTALS + " WHERE " + SHARD + " = ?")) {
+            stmt.setInt(1, shards);
+            stmt.setInt(2, shard);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                    String id = rs.getString("account_id");
+                    BigDecimal dbBalance = rs.getBigDecimal("balance");
+                    Account account = unmatched.remove(id);
+
+                    if (account == null) {
+                        if (repair) {
+                            AccountType type = AccountType.valueOf(rs.getString("account_type"));
+                            Currency currency = Currency.getInstance(rs.getString("currency"));
+                            bankingSystem.addAccount(AccountFactory.createAccount(type, id, dbBalance, currency));
+                        }
+                        report.add(new ReconciliationReport.Mismatch(id, dbBalance, null, repair));
+                    } else {
+                        BigDecimal memoryBalance = account.getBalance();
+                        if (memoryBalance.compareTo(dbBalance) != 0) {
+                            if (repair) {
+                                account.resetBalance(dbBalance);
+                            }
+                            report.add(new ReconciliationReport.Mismatch(id, dbBalance, memoryBalance, repair));
+                        }
+                    }
+                }
+            }
+        }
+
+        for (Account account : unmatched.values()) {
+            rows++;
+            report.add(new ReconciliationReport.Mismatch(account.getAccountNumber(), null, account.getBalance(), false));
+        }
+        report.shardDiffers(rows);
+    }
+
+    private int shardOf(MessageDigest sha256, String accountId) {
+        long hash = hashPrefix(sha256, accountId);
+        return (int) ((hash & Long.MAX_VALUE) % shards);
+    }
+
+    // Must produce the same text as CAST(balance AS VARCHAR) on a DECIMAL(10,2) column
+    private static long rowHash(MessageDigest sha256, String accountId, BigDecimal balance) {
+        String amount = balance.scale() <= 2 ? balance.setScale(2).toPlainString() : balance.toPlainString();
+        return hashPrefix(sha256, accountId + "|" + amount);
+    }
+
+    private static long hashPrefix(MessageDigest sha256, String text) {
+        byte[] hash = sha256.digest(text.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(hash).getLong();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.banking.service;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the guarded debit path.
+ * A conflict means another writer changed the row between our read
+ * of its version and our conditional update, while the funds would have
+ * covered the debit. A stale version means the version cached by this
+ * service was behind the row, e.g. after a write through another
+ * connection; that costs a read but is not contention.
+ */
+public class DebitStats {
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder insufficientFunds = new LongAdder();
+    private final LongAdder staleVersions = new LongAdder();
+
+    void recordAttempt() {
+        attempts.increment();
+    }
+
+    void recordSuccess() {
+        successes.increment();
+    }
+
+    void recordConflict() {
+        conflicts.increment();
+    }
+
+    void recordRetry() {
+        retries.increment();
+    }
+
+    void recordExhausted() {
+        exhausted.increment();
+    }
+
+    void recordInsufficientFunds() {
+        insufficientFunds.increment();
+    }
+
+    void recordStaleVersion() {
+        staleVersions.increment();
+    }
+
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    public long getSuccesses() {
+        return successes.sum();
+    }
+
+    public long getConflicts() {
+        return conflicts.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    // Debits that gave up after the maximum number of attempts
+    public long getExhausted() {
+        return exhausted.sum();
+    }
+
+    public long getInsufficientFunds() {
+        return insufficientFunds.sum();
+    }
+
+    // Updates that missed because the cached row version was out of date
+    public long getStaleVersions() {
+        return staleVersions.sum();
+    }
+
+    // Share of conditional updates that lost a version race
+    public double getConflictRate() {
+        long total = getAttempts();
+        return total == 0 ? 0.0 : (double) getConflicts() / total;
+    }
+
+    // Average number of retries per successful debit
+    public double getRetryRate() {
+        long done = getSuccesses();
+        return done == 0 ? 0.0 : (double) getRetries() / done;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DebitStats[attempts=%d, successes=%d, conflicts=%d, retries=%d, exhausted=%d, "
+                        + "insufficientFunds=%d, staleVersions=%d, conflictRate=%.4f]",
+                getAttempts(), getSuccesses(), getConflicts(), getRetries(), getExhausted(),
+                getInsufficientFunds(), getStaleVersions(), getConflictRate());
+    }
+}
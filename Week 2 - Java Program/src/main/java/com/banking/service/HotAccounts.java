@@ -0,0 +1,276 @@
+package com.banking.service;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.exception.BankingException;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accounts whose balance is split over stripes in account_stripes, and the
+ * SQL that moves money in and out of them.
+ *
+ * A credit to a hot account updates one stripe row picked at random, so
+ * concurrent credits rarely wait for each other's row lock, and the
+ * accounts row (with its version) is not touched at all. Debits still go to
+ * the accounts row; when it is short, the debit borrows from the stripes by
+ * folding them into the row in the same transaction. fold() does the same
+ * without a debit and can run periodically, see startFolding.
+ *
+ * Anything that takes the accounts row and the stripes locks the row
+ * first, then the stripes.
+ */
+public class HotAccounts implements AutoCloseable {
+    public static final int MAX_STRIPES = 64;
+
+    // Stripe count per hot account
+    private final Map<String, Integer> stripes = new ConcurrentHashMap<>();
+    private ScheduledExecutorService folder;
+    private Connection folderConn;
+
+    /**
+     * Read which accounts are hot from account_stripes.
+     */
+    public void load(Connection conn) {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT account_id, COUNT(*) FROM account_stripes GROUP BY account_id")) {
+            stripes.clear();
+            while (rs.next()) {
+                stripes.put(rs.getString(1), rs.getInt(2));
+            }
+        } catch (SQLException e) {
+            throw new BankingException("Failed to load hot accounts: " + e.getMessage(), e);
+        }
+    }
+
+    public boolean isHot(String accountId) {
+        return stripes.containsKey(accountId);
+    }
+
+    // Stripe count of the account, 0 when it is not hot
+    public int stripesOf(String accountId) {
+        return stripes.getOrDefault(accountId, 0);
+    }
+
+    public int size() {
+        return stripes.size();
+    }
+
+    /**
+     * Add the stripe rows of an account, all empty. The caller checks the account exists.
+     */
+    void enable(Connection conn, String accountId, int count) throws SQLException {
+        if (count < 2 || count > MAX_STRIPES) {
+            throw new IllegalArgumentException("Stripe count must be 2 to " + MAX_STRIPES);
+        }
+        if (isHot(accountId)) {
+            throw new BankingException("Account " + accountId + " is already hot");
+        }
+        inTransaction(conn, () -> {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO account_stripes (account_id, stripe, balance) VALUES (?, ?, 0)")) {
+                for (int i = 0; i < count; i++) {
+                    stmt.setString(1, accountId);
+                    stmt.setInt(2, i);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            return null;
+        });
+        stripes.put(accountId, count);
+    }
+
+    /**
+     * Fold the stripes into the accounts row and drop them.
+     * Returns the amount folded.
+     */
+    BigDecimal disable(Connection conn, String accountId) throws SQLException {
+        BigDecimal folded = inTransaction(conn, () -> {
+            BigDecimal sum = foldLocked(conn, accountId);
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM account_stripes WHERE account_id = ?")) {
+                stmt.setString(1, accountId);
+                stmt.executeUpdate();
+            }
+            return sum;
+        });
+        stripes.remove(accountId);
+        return folded;
+    }
+
+    /**
+     * Credit one stripe picked at random. Joins the caller's transaction if
+     * there is one. Returns false if the account has no stripes.
+     */
+    boolean credit(Connection conn, String accountId, BigDecimal amount) throws SQLException {
+        int count = stripesOf(accountId);
+        if (count == 0) {
+            return false;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE account_stripes SET balance = balance + ? WHERE account_id = ? AND stripe = ?")) {
+            stmt.setBigDecimal(1, amount);
+            stmt.setString(2, accountId);
+            stmt.setInt(3, ThreadLocalRandom.current().nextInt(count));
+            return stmt.executeUpdate() == 1;
+        }
+    }
+
+    /**
+     * Debit the accounts row after folding every stripe into it, if the
+     * total stays at or above floor. Joins the caller's transaction if there
+     * is one. Bumps the row version. Returns false when the funds are short.
+     */
+    boolean borrowingDebit(Connection conn, String accountId, BigDecimal amount, BigDecimal floor)
+            throws SQLException {
+        return inTransaction(conn, () -> {
+            BigDecimal balance = lockRow(conn, accountId);
+            if (balance == null) {
+                return false;
+            }
+            BigDecimal striped = lockStripes(conn, accountId);
+            if (balance.add(striped).subtract(amount).compareTo(floor) < 0) {
+                return false;
+            }
+            moveIntoRow(conn, accountId, striped.subtract(amount));
+            return true;
+        });
+    }
+
+    /**
+     * Move every stripe of the account into its accounts row, in one
+     * transaction of its own. The total does not change. Returns the amount moved.
+     */
+    public BigDecimal fold(Connection conn, String accountId) throws SQLException {
+        return inTransaction(conn, () -> foldLocked(conn, accountId));
+    }
+
+    /**
+     * Fold every hot account now and then, on a background daemon thread
+     * with its own connection.
+     */
+    public synchronized void startFolding(long period, TimeUnit unit) {
+        if (folder != null) {
+            throw new IllegalStateException("Already folding");
+        }
+        try {
+            folderConn = DatabaseConnection.getConnection();
+        } catch (SQLException e) {
+            throw new BankingException("Could not open a connection for folding: " + e.getMessage(), e);
+        }
+        folder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hot-account-folder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        folder.scheduleWithFixedDelay(() -> {
+            for (String accountId : stripes.keySet()) {
+                try {
+                    fold(folderConn, accountId);
+                } catch (SQLException e) {
+                    System.err.println("Failed to fold hot account " + accountId + ": " + e.getMessage());
+                }
+            }
+        }, period, period, unit);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (folder != null) {
+            folder.shutdownNow();
+            try {
+                folder.awaitTermination(5, TimeUnit.SECONDS);
+                folderConn.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (SQLException e) {
+                System.err.println("Failed to close folding connection: " + e.getMessage());
+            }
+            folder = null;
+        }
+    }
+
+    private static BigDecimal foldLocked(Connection conn, String accountId) throws SQLException {
+        if (lockRow(conn, accountId) == null) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal striped = lockStripes(conn, accountId);
+        if (striped.signum() != 0) {
+            moveIntoRow(conn, accountId, striped);
+        }
+        return striped;
+    }
+
+    // Current balance of the accounts row, locked; null if there is none
+    private static BigDecimal lockRow(Connection conn, String accountId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT balance FROM accounts WHERE account_id = ? FOR UPDATE")) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getBigDecimal(1) : null;
+            }
+        }
+    }
+
+    // Sum of the stripes, all locked
+    static BigDecimal lockStripes(Connection conn, String accountId) throws SQLException {
+        BigDecimal sum = BigDecimal.ZERO;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT balance FROM account_stripes WHERE account_id = ? FOR UPDATE")) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    sum = sum.add(rs.getBigDecimal(1));
+                }
+            }
+        }
+        return sum;
+    }
+
+    // Empty the stripes and add delta to the row
+    private static void moveIntoRow(Connection conn, String accountId, BigDecimal delta) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE account_stripes SET balance = 0 WHERE account_id = ?")) {
+            stmt.setString(1, accountId);
+            stmt.executeUpdate();
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE account_id = ?")) {
+            stmt.setBigDecimal(1, delta);
+            stmt.setString(2, accountId);
+            stmt.executeUpdate();
+        }
+    }
+
+    private interface SqlWork<T> {
+        T run() throws SQLException;
+    }
+
+    // Run work in its own transaction, unless the caller already has one open
+    private static <T> T inTransaction(Connection conn, SqlWork<T> work) throws SQLException {
+        if (!conn.getAutoCommit()) {
+            return work.run();
+        }
+        conn.setAutoCommit(false);
+        try {
+            T result = work.run();
+            conn.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            try {
+                conn.rollback();
+            } catch (SQLException rollbackEx) {
+                e.addSuppressed(rollbackEx);
+            }
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.db.JdbcMetrics;
+import com.banking.exception.AccountNotFoundException;
+import com.banking.exception.BankingException;
+import com.banking.model.Account;
+import com.banking.model.AccountType;
+import com.banking.model.SavingsAccount;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Daily interest accrual for savings accounts.
+ *
+ * load() copies every savings balance from the DB, stripes included, and
+ * its rate into primitive arrays: balances in cents and rates in
+ * millionths, the same fixed-point units
+ * the off-heap store uses. accrue() then adds a day's interest per account
+ * in plain loops over those arrays, split into ranges across a thread
+ * pool. The loops only do long multiplies and adds, so the JIT can
+ * unroll and vectorize them.
+ *
+ * Accrued interest is kept exactly, in cent-millionths per day (ACT/365),
+ * and is only rounded when it is posted: to whole cents, half-even, per
+ * account. The result does not depend on the thread count or the order
+ * of the days. post() credits the accounts in DB transactions of
+ * POST_BATCH_SIZE accounts, mirrors each committed batch in memory and
+ * tells the change listeners about it as one change set.
+ *
+ * The DB does not keep rates: an account loaded in memory accrues at its
+ * own rate, any other savings account at the default one.
+ */
+public class InterestAccrualEngine implements AutoCloseable {
+    private static final int DAYS_IN_YEAR = 365;
+    private static final long RATE_SCALE = 1_000_000L;
+    // Accrued units per cent
+    private static final long DENOMINATOR = DAYS_IN_YEAR * RATE_SCALE;
+    // Accrual must be posted within this many days, which keeps it inside a long
+    private static final int MAX_PENDING_DAYS = 366;
+    private static final int POST_BATCH_SIZE = 1000;
+    // Below this many accounts per thread the loop runs on the calling thread
+    private static final int MIN_RANGE_SIZE = 4096;
+
+    private final BankingSystem bankingSystem;
+    private final int threads;
+    private final ExecutorService pool;
+    private final Connection conn;
+    // Told about every posted batch, e.g. to feed read replicas
+    private final List<AccountChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
+    // Columns, one entry per savings account
+    private String[] ids = new String[0];
+    private long[] balanceCents = new long[0];
+    private long[] rateMillionths = new long[0];
+    private long[] accrued = new long[0];
+    private final Map<String, Integer> indexById = new HashMap<>();
+    private int pendingDays;
+
+    public InterestAccrualEngine(BankingSystem bankingSystem, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.bankingSystem = bankingSystem;
+        this.threads = threads;
+        this.pool = Executors.newFixedThreadPool(threads);
+        this.conn = AccountService.openConnection();
+    }
+
+    /**
+     * Take a fresh snapshot of the savings balances and rates.
+     * Interest already accrued but not posted is kept.
+     * Returns the number of savings accounts.
+     */
+    public synchronized int load() throws BankingException {
+        List<String> accountIds = new ArrayList<>();
+        List<BigDecimal> balances = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT a.account_id, " + AccountService.TOTAL_BALANCE + " FROM accounts a"
+                        + " WHERE a.account_type = ? ORDER BY a.account_id")) {
+            stmt.setString(1, AccountType.SAVINGS.name());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    accountIds.add(rs.getString(1));
+                    balances.add(rs.getBigDecimal(2));
+                }
+            }
+        } catch (SQLException e) {
+            throw new BankingException("Failed to load savings balances: " + e.getMessage(), e);
+        }
+
+        int n = accountIds.size();
+        String[] newIds = new String[n];
+        long[] newBalances = new long[n];
+        long[] newRates = new long[n];
+        long[] newAccrued = new long[n];
+        for (int i = 0; i < n; i++) {
+            newIds[i] = accountIds.get(i);
+            // Negative balances earn nothing
+            newBalances[i] = Math.max(0, toCents(balances.get(i)));
+            newRates[i] = Math.max(0, rateOf(newIds[i]).multiply(BigDecimal.valueOf(RATE_SCALE))
+                    .setScale(0, RoundingMode.HALF_EVEN).longValueExact());
+            // A year of accrual has to fit in a long
+            try {
+                Math.multiplyExact(Math.multiplyExact(newBalances[i], newRates[i]), (long) MAX_PENDING_DAYS);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Balance and rate of " + newIds[i] + " are too large to accrue");
+            }
+            Integer old = indexById.get(newIds[i]);
+            if (old != null) {
+                newAccrued[i] = accrued[old];
+            }
+        }
+
+        ids = newIds;
+        balanceCents = newBalances;
+        rateMillionths = newRates;
+        accrued = newAccrued;
+        indexById.clear();
+        for (int i = 0; i < n; i++) {
+            indexById.put(ids[i], i);
+        }
+        return n;
+    }
+
+    private BigDecimal rateOf(String accountId) {
+        Account account = bankingSystem.lookupAccount(accountId);
+        return account instanceof SavingsAccount
+                ? ((SavingsAccount) account).getInterestRate()
+                : SavingsAccount.DEFAULT_INTEREST_RATE;
+    }
+
+    public void addChangeListener(AccountChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(AccountChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Accrue the given number of days of interest on the loaded balances.
+     */
+    public synchronized void accrue(int days) {
+        if (days <= 0) {
+            throw new IllegalArgumentException("Days must be positive");
+        }
+        if (pendingDays + days > MAX_PENDING_DAYS) {
+            throw new IllegalStateException("Post the accrued interest before accruing more than a year");
+        }
+        long[] balances = balanceCents;
+        long[] rates = rateMillionths;
+        long[] acc = accrued;
+        long d = days;
+        forEachRange(acc.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                acc[i] += balances[i] * rates[i] * d;
+            }
+        });
+        pendingDays += days;
+    }
+
+    /**
+     * Credit the accrued interest, rounded half-even to cents, to every
+     * account that earned at least one cent, and start accruing from zero.
+     * Returns the total interest posted.
+     *
+     * Each batch is its own DB transaction. If one fails, the batches
+     * before it stay posted and the rest keep their accrual, so calling
+     * post() again finishes the job.
+     */
+    public synchronized BigDecimal post() throws BankingException {
+        long[] acc = accrued;
+        long[] interest = new long[acc.length];
+        forEachRange(acc.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                interest[i] = roundHalfEven(acc[i]);
+            }
+        });
+
+        long totalCents = 0;
+        List<Integer> batch = new ArrayList<>(POST_BATCH_SIZE);
+        for (int i = 0; i < acc.length; i++) {
+            if (interest[i] > 0) {
+                batch.add(i);
+            } else {
+                // Less than half a cent: nothing to post, and it does not carry over
+                acc[i] = 0;
+            }
+            if (batch.size() == POST_BATCH_SIZE || (i == acc.length - 1 && !batch.isEmpty())) {
+                totalCents += postBatch(batch, interest);
+                batch.clear();
+            }
+        }
+        pendingDays = 0;
+        return BigDecimal.valueOf(totalCents, 2);
+    }
+
+    // Write one batch in a single transaction, then apply it in memory and tell the listeners
+    private long postBatch(List<Integer> batch, long[] interest) throws BankingException {
+        List<AccountChangeListener> started = new ArrayList<>(changeListeners);
+        started.forEach(AccountChangeListener::changeSetStarted);
+        try {
+            return writeBatch(batch, interest, started);
+        } finally {
+            started.forEach(AccountChangeListener::changeSetFinished);
+        }
+    }
+
+    private long writeBatch(List<Integer> batch, long[] interest, List<AccountChangeListener> started)
+            throws BankingException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        try {
+            conn.setAutoCommit(false);
+            try (PreparedStatement update = conn.prepareStatement(
+                         "UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE account_id = ?");
+                 PreparedStatement insert = conn.prepareStatement(
+                         "INSERT INTO transactions (account_id, amount, transaction_date) VALUES (?, ?, ?)")) {
+                for (int i : batch) {
+                    BigDecimal amount = BigDecimal.valueOf(interest[i], 2);
+                    update.setBigDecimal(1, amount);
+                    update.setString(2, ids[i]);
+                    update.addBatch();
+                    insert.setString(1, ids[i]);
+                    insert.setBigDecimal(2, amount);
+                    insert.setTimestamp(3, now);
+                    insert.addBatch();
+                }
+                int[] rows = update.executeBatch();
+                for (int r = 0; r < rows.length; r++) {
+                    if (rows[r] == 0) {
+                        throw new AccountNotFoundException(ids[batch.get(r)]);
+                    }
+                }
+                insert.executeBatch();
+            }
+            conn.commit();
+        } catch (SQLException | BankingException e) {
+            try {
+                conn.rollback();
+            } catch (SQLException rollbackEx) {
+                e.addSuppressed(rollbackEx);
+            }
+            if (e instanceof BankingException) {
+                throw (BankingException) e;
+            }
+            throw new BankingException("Failed to post interest: " + e.getMessage(), e);
+        } finally {
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException e) {
+                JdbcMetrics.global().swallowed("InterestAccrualEngine.resetAutoCommit", e);
+            }
+        }
+
+        long total = 0;
+        for (int i : batch) {
+            BigDecimal amount = BigDecimal.valueOf(interest[i], 2);
+            Account account = bankingSystem.lookupAccount(ids[i]);
+            if (account != null) {
+                account.deposit(amount);
+            }
+            for (AccountChangeListener listener : started) {
+                listener.balanceChanged(ids[i], amount);
+                listener.transactionRecorded(ids[i], amount, now);
+            }
+            balanceCents[i] += interest[i];
+            accrued[i] = 0;
+            total += interest[i];
+        }
+        return total;
+    }
+
+    // Whole cents from accrued units, ties to the even cent
+    private static long roundHalfEven(long units) {
+        long cents = units / DENOMINATOR;
+        long twiceRemainder = 2 * (units - cents * DENOMINATOR);
+        if (twiceRemainder > DENOMINATOR || (twiceRemainder == DENOMINATOR && (cents & 1) != 0)) {
+            cents++;
+        }
+        return cents;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    private interface RangeTask {
+        void run(int from, int to);
+    }
+
+    // Split [0, size) into one range per thread and wait for all of them
+    private void forEachRange(int size, RangeTask task) {
+        int ranges = Math.min(threads, Math.max(1, size / MIN_RANGE_SIZE));
+        if (ranges == 1) {
+            task.run(0, size);
+            return;
+        }
+        int step = (size + ranges - 1) / ranges;
+        List<Future<?>> futures = new ArrayList<>(ranges);
+        for (int from = 0; from < size; from += step) {
+            int start = from;
+            int end = Math.min(size, from + step);
+            futures.add(pool.submit(() -> task.run(start, end)));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BankingException("Interrupted while accruing interest", e);
+        } catch (ExecutionException e) {
+            throw new BankingException("Interest accrual failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Interest the account would get if posted now, or null if it is not loaded.
+     */
+    public synchronized BigDecimal getPendingInterest(String accountId) {
+        Integer index = indexById.get(accountId);
+        return index == null ? null : BigDecimal.valueOf(roundHalfEven(accrued[index]), 2);
+    }
+
+    public synchronized int getPendingDays() {
+        return pendingDays;
+    }
+
+    public synchronized int getAccountCount() {
+        return ids.length;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            System.err.println("Failed to close interest connection: " + e.getMessage());
+        }
+    }
+}
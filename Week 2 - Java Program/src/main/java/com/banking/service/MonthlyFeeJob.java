@@ -0,0 +1,209 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.batch.BatchJobReport;
+import com.banking.batch.ChunkProcessor;
+import com.banking.batch.ChunkedBatchJob;
+import com.banking.exception.BankingException;
+import com.banking.jfr.MonthEndEvent;
+import com.banking.model.Account;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Month-end fees and interest as a restartable batch job, instead of
+ * BankingSystem.processMonthlyFees, which only changes the in-memory
+ * accounts and can not tell which ones it already did if it stops halfway.
+ *
+ * Each chunk locks its accounts' rows, works out every account's monthly
+ * delta from the DB balance with the account's own rules, and posts the
+ * deltas and their transaction rows in the chunk's transaction, together
+ * with the checkpoint. The in-memory accounts are updated and the change
+ * listeners told once it commits, each chunk as one change set. The job is
+ * named after the month, so running it again for the same month only does
+ * the accounts that were not done yet.
+ *
+ * The rules need each account's in-memory state (rates, monthly counters),
+ * so a chunk holding an account that is in the DB but not loaded here
+ * fails, and is left for a rerun once it is loaded.
+ *
+ * A checking fee that would take the balance below the overdraft limit is
+ * not charged, the same rule processMonthlyFees enforces, and is counted
+ * as waived.
+ */
+public class MonthlyFeeJob implements ChunkProcessor {
+    private final BankingSystem bankingSystem;
+    private final ChunkedBatchJob job;
+    private final AtomicLong posted = new AtomicLong();
+    private final AtomicLong waived = new AtomicLong();
+    // Told about every committed chunk, e.g. to feed read replicas
+    private final List<AccountChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    // The listeners told that the current thread's chunk started, until it ends
+    private final ThreadLocal<List<AccountChangeListener>> changeSet = new ThreadLocal<>();
+
+    public MonthlyFeeJob(BankingSystem bankingSystem, YearMonth month, int chunkSize, int threads) {
+        this(bankingSystem, month, chunkSize, threads, null);
+    }
+
+    /**
+     * @param log where to print a line per committed chunk, or null
+     */
+    public MonthlyFeeJob(BankingSystem bankingSystem, YearMonth month, int chunkSize, int threads, PrintStream log) {
+        this.bankingSystem = bankingSystem;
+        this.job = new ChunkedBatchJob(jobName(month), chunkSize, threads, log);
+    }
+
+    public void addChangeListener(AccountChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(AccountChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    public static String jobName(YearMonth month) {
+        return "monthly-fees-" + month;
+    }
+
+    /**
+     * Process every account the month's earlier runs have not done.
+     */
+    public BatchJobReport run() {
+        MonthEndEvent event = new MonthEndEvent();
+        event.begin();
+        long postedBefore = posted.get();
+        long waivedBefore = waived.get();
+        try {
+            BatchJobReport report = job.run(this);
+            event.succeeded = true;
+            return report;
+        } finally {
+            event.job = job.getJobName();
+            event.accounts = posted.get() - postedBefore;
+            event.waived = waived.get() - waivedBefore;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Runnable process(Connection conn, List<String> accountIds) throws SQLException {
+        List<AccountChangeListener> started = new ArrayList<>(changeListeners);
+        changeSet.set(started);
+        started.forEach(AccountChangeListener::changeSetStarted);
+
+        Map<String, BigDecimal> balances = lockBalances(conn, accountIds);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Map<Account, BigDecimal> deltas = new LinkedHashMap<>();
+        long chunkWaived = 0;
+
+        try (PreparedStatement update = conn.prepareStatement(
+                     "UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE account_id = ?");
+             PreparedStatement insert = conn.prepareStatement(
+                     "INSERT INTO transactions (account_id, amount, transaction_date) VALUES (?, ?, ?)")) {
+            for (String accountId : accountIds) {
+                Account account = bankingSystem.lookupAccount(accountId);
+                BigDecimal balance = balances.get(accountId);
+                if (balance == null) {
+                    // Deleted since the scan
+                    continue;
+                }
+                if (account == null) {
+                    throw new BankingException("Account " + accountId
+                            + " is not loaded, so its month-end cannot be worked out");
+                }
+                BigDecimal delta = account.monthlyFeeDelta(balance);
+                if (delta.signum() < 0 && balance.add(delta).compareTo(account.getWithdrawalFloor()) < 0) {
+                    chunkWaived++;
+                    continue;
+                }
+                deltas.put(account, delta);
+                if (delta.signum() == 0) {
+                    continue;
+                }
+                update.setBigDecimal(1, delta);
+                update.setString(2, accountId);
+                update.addBatch();
+                insert.setString(1, accountId);
+                insert.setBigDecimal(2, delta);
+                insert.setTimestamp(3, now);
+                insert.addBatch();
+            }
+            update.executeBatch();
+            insert.executeBatch();
+        }
+
+        long chunkWaivedTotal = chunkWaived;
+        return () -> {
+            deltas.forEach(Account::applyMonthlyFees);
+            for (Map.Entry<Account, BigDecimal> entry : deltas.entrySet()) {
+                if (entry.getValue().signum() == 0) {
+                    continue;
+                }
+                String accountId = entry.getKey().getAccountNumber();
+                for (AccountChangeListener listener : started) {
+                    listener.balanceChanged(accountId, entry.getValue());
+                    listener.transactionRecorded(accountId, entry.getValue(), now);
+                }
+            }
+            posted.addAndGet(deltas.size());
+            waived.addAndGet(chunkWaivedTotal);
+        };
+    }
+
+    @Override
+    public void chunkEnded() {
+        List<AccountChangeListener> started = changeSet.get();
+        if (started != null) {
+            changeSet.remove();
+            started.forEach(AccountChangeListener::changeSetFinished);
+        }
+    }
+
+    // Current DB balances of the chunk, hot-account stripes included, locked until the chunk commits
+    private static Map<String, BigDecimal> lockBalances(Connection conn, List<String> accountIds) throws SQLException {
+        Set<String> wanted = new HashSet<>(accountIds);
+        Map<String, BigDecimal> balances = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT account_id, balance FROM accounts WHERE account_id BETWEEN ? AND ? FOR UPDATE")) {
+            stmt.setString(1, accountIds.get(0));
+            stmt.setString(2, accountIds.get(accountIds.size() - 1));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String accountId = rs.getString(1);
+                    if (wanted.contains(accountId)) {
+                        balances.put(accountId, rs.getBigDecimal(2));
+                    }
+                }
+            }
+        }
+        // Rows before stripes, the same lock order as HotAccounts
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT account_id, balance FROM account_stripes WHERE account_id BETWEEN ? AND ? FOR UPDATE")) {
+            stmt.setString(1, accountIds.get(0));
+            stmt.setString(2, accountIds.get(accountIds.size() - 1));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String accountId = rs.getString(1);
+                    BigDecimal striped = rs.getBigDecimal(2);
+                    balances.computeIfPresent(accountId, (id, balance) -> balance.add(striped));
+                }
+            }
+        }
+        return balances;
+    }
+
+    // Accounts processed by this instance's runs, fee or interest posted or nothing due
+    public long getPosted() {
+        return posted.get();
+    }
+
+    // Checking fees not charged because of the overdraft limit
+    public long getWaived() {
+        return waived.get();
+    }
+}
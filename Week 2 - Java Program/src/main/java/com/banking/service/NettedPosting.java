@@ -0,0 +1,129 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.model.Account;
+import com.banking.exception.*;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Writes a group of transfer legs as one DB transaction:
+ * one balance UPDATE per account (the net of all its legs) and
+ * one transactions row per leg.
+ */
+final class NettedPosting {
+    // Accounts locked per SELECT ... FOR UPDATE
+    private static final int LOCK_CHUNK = 500;
+
+    // Sum every leg into one signed delta per account, sorted by account ID
+    static SortedMap<String, BigDecimal> netDeltas(List<TransferLeg> legs) {
+        SortedMap<String, BigDecimal> deltas = new TreeMap<>();
+        for (TransferLeg leg : legs) {
+            deltas.merge(leg.getFromAccountId(), leg.getAmount().negate(), BigDecimal::add);
+            deltas.merge(leg.getToAccountId(), leg.getAmount(), BigDecimal::add);
+        }
+        return deltas;
+    }
+
+    /**
+     * Apply the net deltas and insert both rows of every leg, in the caller's
+     * transaction: batched balance UPDATEs in account ID order, skipping zero
+     * deltas, then batched transaction INSERTs. The caller locks the rows and
+     * checks the funds first, see lockBalances.
+     */
+    static void write(Connection conn, SortedMap<String, BigDecimal> deltas, List<TransferLeg> legs,
+                      Timestamp timestamp) throws SQLException {
+        List<String> updatedIds = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE account_id = ?")) {
+            for (Map.Entry<String, BigDecimal> delta : deltas.entrySet()) {
+                if (delta.getValue().signum() == 0) {
+                    continue;
+                }
+                stmt.setBigDecimal(1, delta.getValue());
+                stmt.setString(2, delta.getKey());
+                stmt.addBatch();
+                updatedIds.add(delta.getKey());
+            }
+            int[] rows = stmt.executeBatch();
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] == 0) {
+                    throw new AccountNotFoundException(updatedIds.get(i));
+                }
+            }
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO transactions (account_id, amount, transaction_date) VALUES (?, ?, ?)")) {
+            for (TransferLeg leg : legs) {
+                stmt.setString(1, leg.getFromAccountId());
+                stmt.setBigDecimal(2, leg.getAmount().negate());
+                stmt.setTimestamp(3, timestamp);
+                stmt.addBatch();
+
+                stmt.setString(1, leg.getToAccountId());
+                stmt.setBigDecimal(2, leg.getAmount());
+                stmt.setTimestamp(3, timestamp);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Lock the accounts rows of every account in deltas, in account ID order,
+     * then the stripes of the hot ones, until the caller's transaction ends.
+     * Returns each account's total balance; accounts without a row are left out.
+     */
+    static Map<String, BigDecimal> lockBalances(Connection conn, SortedMap<String, BigDecimal> deltas,
+                                                HotAccounts hotAccounts) throws SQLException {
+        Map<String, BigDecimal> balances = new HashMap<>();
+        List<String> ids = new ArrayList<>(deltas.keySet());
+        for (int from = 0; from < ids.size(); from += LOCK_CHUNK) {
+            List<String> chunk = ids.subList(from, Math.min(from + LOCK_CHUNK, ids.size()));
+            String marks = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT account_id, balance FROM accounts "
+                    + "WHERE account_id IN (" + marks + ") ORDER BY account_id FOR UPDATE")) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setString(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        balances.put(rs.getString(1), rs.getBigDecimal(2));
+                    }
+                }
+            }
+        }
+        for (String accountId : ids) {
+            if (hotAccounts.isHot(accountId) && balances.containsKey(accountId)) {
+                balances.put(accountId, balances.get(accountId).add(HotAccounts.lockStripes(conn, accountId)));
+            }
+        }
+        return balances;
+    }
+
+    /**
+     * Mirror the committed deltas on the in-memory accounts. Never fails: a
+     * debit the in-memory balance cannot cover (it lags the DB, e.g. after a
+     * write from another process) is applied as is, since the DB already
+     * checked it, and an account not loaded here is left for reconciliation.
+     */
+    static void applyInMemory(BankingSystem bankingSystem, Map<String, BigDecimal> deltas) {
+        for (Map.Entry<String, BigDecimal> delta : deltas.entrySet()) {
+            Account account = bankingSystem.lookupAccount(delta.getKey());
+            if (account == null) {
+                continue;
+            }
+            int sign = delta.getValue().signum();
+            if (sign > 0) {
+                account.deposit(delta.getValue());
+            } else if (sign < 0 && !account.tryWithdraw(delta.getValue().negate()).isSuccess()) {
+                account.applyCommitted(delta.getValue());
+            }
+        }
+    }
+
+    private NettedPosting() {
+    }
+}
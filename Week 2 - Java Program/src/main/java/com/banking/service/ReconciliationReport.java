@@ -0,0 +1,97 @@
+package com.banking.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What one reconciliation run found.
+ */
+public class ReconciliationReport {
+
+    /**
+     * One account whose balance differs between memory and the DB.
+     * A null balance means the account is missing on that side.
+     */
+    public static final class Mismatch {
+        private final String accountId;
+        private final BigDecimal dbBalance;
+        private final BigDecimal memoryBalance;
+        private final boolean repaired;
+
+        Mismatch(String accountId, BigDecimal dbBalance, BigDecimal memoryBalance, boolean repaired) {
+            this.accountId = accountId;
+            this.dbBalance = dbBalance;
+            this.memoryBalance = memoryBalance;
+            this.repaired = repaired;
+        }
+
+        public String getAccountId() {
+            return accountId;
+        }
+
+        public BigDecimal getDbBalance() {
+            return dbBalance;
+        }
+
+        public BigDecimal getMemoryBalance() {
+            return memoryBalance;
+        }
+
+        public boolean isRepaired() {
+            return repaired;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: db=%s, memory=%s%s",
+                    accountId, dbBalance, memoryBalance, repaired ? " (repaired)" : "");
+        }
+    }
+
+    private final int shards;
+    private int differingShards;
+    private long rowsCompared;
+    private final List<Mismatch> mismatches = new ArrayList<>();
+
+    ReconciliationReport(int shards) {
+        this.shards = shards;
+    }
+
+    void shardDiffers(long rows) {
+        differingShards++;
+        rowsCompared += rows;
+    }
+
+    void add(Mismatch mismatch) {
+        mismatches.add(mismatch);
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    // Shards whose digests did not match and were compared row by row
+    public int getDifferingShards() {
+        return differingShards;
+    }
+
+    public long getRowsCompared() {
+        return rowsCompared;
+    }
+
+    public List<Mismatch> getMismatches() {
+        return Collections.unmodifiableList(mismatches);
+    }
+
+    public boolean isConsistent() {
+        return mismatches.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Reconciliation: %d/%d shards differed, %d rows compared, %d mismatches",
+                differingShards, shards, rowsCompared, mismatches.size());
+    }
+}
@@ -0,0 +1,297 @@
+package com.banking.service;
+
+import com.banking.exception.BankingException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Month-end statement job: writes one statement file per account.
+ *
+ * Accounts are streamed from the DB and handed to a fixed pool of workers.
+ * A semaphore caps how many accounts are in flight, so memory stays
+ * bounded no matter how many accounts exist. Each worker has its own
+ * connection and output buffer, reads an account's history for the month
+ * through the (account_id, transaction_date) index and writes it out
+ * through a FileChannel. Progress and throughput are printed while it runs.
+ *
+ * Opening and closing balances are worked back from the current balance
+ * and the rows after them, so each account's balance, sums and history are
+ * read in one snapshot transaction: a write committed while the job runs
+ * is either in all of them or in none.
+ */
+public class StatementJob {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FETCH_SIZE = 500;
+
+    private final Path outputDir;
+    private final int threads;
+    private final long reportIntervalMillis;
+
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicLong transactions = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    public StatementJob(Path outputDir, int threads, long reportIntervalMillis) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.outputDir = outputDir;
+        this.threads = threads;
+        this.reportIntervalMillis = reportIntervalMillis;
+    }
+
+    /**
+     * Generate the statements of every account for the given month.
+     * Returns the number of statements written.
+     */
+    public long run(YearMonth month) {
+        ZoneId zone = ZoneId.systemDefault();
+        Timestamp start = Timestamp.from(month.atDay(1).atStartOfDay(zone).toInstant());
+        Timestamp end = Timestamp.from(month.plusMonths(1).atDay(1).atStartOfDay(zone).toInstant());
+
+        statements.set(0);
+        transactions.set(0);
+        bytesWritten.set(0);
+
+        List<Worker> workers = new CopyOnWriteArrayList<>();
+        ThreadLocal<Worker> worker = ThreadLocal.withInitial(() -> {
+            Worker w = new Worker(start, end, month);
+            workers.add(w);
+            return w;
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        Semaphore inFlight = new Semaphore(threads * 4);
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        long startNanos = System.nanoTime();
+
+        try (Connection conn = AccountService.openConnection()) {
+            Files.createDirectories(outputDir);
+            long total = countAccounts(conn);
+            if (reportIntervalMillis > 0) {
+                reporter.scheduleAtFixedRate(() -> report(total, startNanos),
+                        reportIntervalMillis, reportIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT account_id FROM accounts ORDER BY account_id")) {
+                stmt.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        String accountId = rs.getString("account_id");
+                        inFlight.acquire();
+                        pool.execute(() -> {
+                            try {
+                                worker.get().write(accountId);
+                            } catch (Exception e) {
+                                failures.add(e);
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    }
+                }
+            }
+
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (SQLException | IOException e) {
+            throw new BankingException("Statement job failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BankingException("Statement job was interrupted", e);
+        } finally {
+            pool.shutdownNow();
+            reporter.shutdownNow();
+            workers.forEach(Worker::close);
+        }
+
+        if (!failures.isEmpty()) {
+            Throwable first = failures.peek();
+            throw new BankingException(failures.size() + " statements failed, first: " + first.getMessage(), first);
+        }
+        report(statements.get(), startNanos);
+        return statements.get();
+    }
+
+    public long getStatements() {
+        return statements.get();
+    }
+
+    public long getTransactions() {
+        return transactions.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    // Statement file of one account
+    public Path statementFile(String accountId, YearMonth month) {
+        return outputDir.resolve("statement-" + accountId + "-" + month + ".txt");
+    }
+
+    private void report(long total, long startNanos) {
+        double seconds = Math.max(System.nanoTime() - startNanos, 1) / 1e9;
+        long done = statements.get();
+        System.out.printf("Statements: %d/%d (%.0f/s), %d transactions, %d KB written%n",
+                done, total, done / seconds, transactions.get(), bytesWritten.get() / 1024);
+    }
+
+    private static long countAccounts(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM accounts")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Per-thread state: a connection with prepared queries and one reused output buffer.
+     */
+    private final class Worker {
+        private final Timestamp start;
+        private final Timestamp end;
+        private final YearMonth month;
+        private final Connection conn = AccountService.openConnection();
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final PreparedStatement balance;
+        private final PreparedStatement totals;
+        private final PreparedStatement history;
+
+        Worker(Timestamp start, Timestamp end, YearMonth month) {
+            this.start = start;
+            this.end = end;
+            this.month = month;
+            try {
+                // One snapshot per account, see write
+                conn.setAutoCommit(false);
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("SET SESSION CHARACTERISTICS AS TRANSACTION ISOLATION LEVEL SNAPSHOT");
+                }
+                this.balance = conn.prepareStatement(
+                        "SELECT " + AccountService.TOTAL_BALANCE + " FROM accounts a WHERE a.account_id = ?");
+                // Both queries only touch the index range of one account
+                this.totals = conn.prepareStatement(
+                        "SELECT COALESCE(SUM(CASE WHEN transaction_date < ? THEN amount END), 0), "
+                                + "COALESCE(SUM(CASE WHEN transaction_date >= ? THEN amount END), 0) "
+                                + "FROM transactions WHERE account_id = ? AND transaction_date >= ?");
+                this.history = conn.prepareStatement(
+                        "SELECT amount, transaction_date FROM transactions "
+                                + "WHERE account_id = ? AND transaction_date >= ? AND transaction_date < ? "
+                                + "ORDER BY transaction_date");
+                this.history.setFetchSize(FETCH_SIZE);
+            } catch (SQLException e) {
+                throw new BankingException("Could not prepare statement queries: " + e.getMessage(), e);
+            }
+        }
+
+        void write(String accountId) throws SQLException, IOException {
+            // The balance, the sums and the history all come from one snapshot
+            try {
+                write(accountId, currentBalance(accountId));
+            } finally {
+                conn.rollback();
+            }
+        }
+
+        private BigDecimal currentBalance(String accountId) throws SQLException {
+            balance.setString(1, accountId);
+            try (ResultSet rs = balance.executeQuery()) {
+                if (!rs.next()) {
+                    throw new BankingException("Account " + accountId + " disappeared during the statement run");
+                }
+                return rs.getBigDecimal(1);
+            }
+        }
+
+        private void write(String accountId, BigDecimal currentBalance) throws SQLException, IOException {
+            // Work back from today's balance to the month's closing and opening balances
+            BigDecimal inMonth;
+            BigDecimal afterMonth;
+            totals.setTimestamp(1, end);
+            totals.setTimestamp(2, end);
+            totals.setString(3, accountId);
+            totals.setTimestamp(4, start);
+            try (ResultSet rs = totals.executeQuery()) {
+                rs.next();
+                inMonth = rs.getBigDecimal(1);
+                afterMonth = rs.getBigDecimal(2);
+            }
+            BigDecimal closing = currentBalance.subtract(afterMonth);
+            BigDecimal opening = closing.subtract(inMonth);
+
+            long count = 0;
+            long bytes = 0;
+            try (FileChannel channel = FileChannel.open(statementFile(accountId, month),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                buffer.clear();
+                bytes += put(channel, "Statement for account " + accountId + ", " + month + "\n");
+                bytes += put(channel, "Opening balance: " + opening + "\n");
+
+                history.setString(1, accountId);
+                history.setTimestamp(2, start);
+                history.setTimestamp(3, end);
+                try (ResultSet rs = history.executeQuery()) {
+                    while (rs.next()) {
+                        bytes += put(channel, rs.getTimestamp("transaction_date") + "  "
+                                + rs.getBigDecimal("amount") + "\n");
+                        count++;
+                    }
+                }
+
+                bytes += put(channel, "Closing balance: " + closing + "\n");
+                flush(channel);
+            }
+
+            transactions.addAndGet(count);
+            bytesWritten.addAndGet(bytes);
+            statements.incrementAndGet();
+        }
+
+        // Append a line to the buffer, flushing to the channel when it is full
+        private int put(FileChannel channel, String line) throws IOException {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > buffer.remaining()) {
+                flush(channel);
+            }
+            if (bytes.length > buffer.capacity()) {
+                ByteBuffer large = ByteBuffer.wrap(bytes);
+                while (large.hasRemaining()) {
+                    channel.write(large);
+                }
+            } else {
+                buffer.put(bytes);
+            }
+            return bytes.length;
+        }
+
+        private void flush(FileChannel channel) throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void close() {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                System.err.println("Failed to close statement connection: " + e.getMessage());
+            }
+        }
+    }
+}
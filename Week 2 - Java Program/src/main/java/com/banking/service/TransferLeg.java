@@ -0,0 +1,36 @@
+package com.banking.service;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * One requested movement of money from one account to another.
+ */
+public final class TransferLeg {
+    private final String fromAccountId;
+    private final String toAccountId;
+    private final BigDecimal amount;
+
+    public TransferLeg(String fromAccountId, String toAccountId, BigDecimal amount) {
+        this.fromAccountId = Objects.requireNonNull(fromAccountId, "Source account cannot be null");
+        this.toAccountId = Objects.requireNonNull(toAccountId, "Destination account cannot be null");
+        this.amount = Objects.requireNonNull(amount, "Amount cannot be null");
+    }
+
+    public String getFromAccountId() {
+        return fromAccountId;
+    }
+
+    public String getToAccountId() {
+        return toAccountId;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TransferLeg[%s -> %s, amount=%.2f]", fromAccountId, toAccountId, amount);
+    }
+}
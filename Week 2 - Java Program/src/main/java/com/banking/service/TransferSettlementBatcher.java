@@ -0,0 +1,222 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.model.OperationResult;
+import com.banking.exception.*;
+import com.banking.jfr.BatchTransferEvent;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Settles transfers in small batches instead of one DB transaction each.
+ *
+ * Transfers submitted within a short window are posted together through
+ * AccountService.settleLegs: the accounts are locked, each transfer is
+ * checked in arrival order against the locked DB balances plus the
+ * transfers accepted before it, and the accepted ones are netted into a
+ * single balance update per account and written in one DB transaction,
+ * while every leg still gets its own row in the transactions table.
+ * Each caller gets the result of its own transfer. Listeners, velocity
+ * limits and hot accounts are those of the AccountService it was built on.
+ */
+public class TransferSettlementBatcher implements AutoCloseable {
+    private static final long DEFAULT_WINDOW_MILLIS = 5;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 500;
+
+    // Settles on a connection of its own, used only by the settlement thread
+    private final AccountService service;
+    private final long windowMillis;
+    private final int maxBatchSize;
+
+    private final BlockingQueue<PendingTransfer> pending = new LinkedBlockingQueue<>();
+    private final Thread settlementThread;
+    // Held while checking running and queueing, and while close() clears it,
+    // so no transfer is queued after the settlement loop may have seen the end
+    private final Object submitLock = new Object();
+    private volatile boolean running = true;
+
+    // Statistics
+    private final AtomicLong settledBatches = new AtomicLong();
+    private final AtomicLong settledTransfers = new AtomicLong();
+    private final AtomicLong balanceUpdates = new AtomicLong();
+
+    public TransferSettlementBatcher(BankingSystem bankingSystem) {
+        this(bankingSystem, DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    public TransferSettlementBatcher(BankingSystem bankingSystem, long windowMillis, int maxBatchSize) {
+        this(windowMillis, maxBatchSize, new AccountService(bankingSystem));
+    }
+
+    /**
+     * Settle with the listeners, velocity limits and hot accounts of accountService.
+     */
+    public TransferSettlementBatcher(AccountService accountService, long windowMillis, int maxBatchSize) {
+        this(windowMillis, maxBatchSize, accountService.onConnection(AccountService.openConnection()));
+    }
+
+    private TransferSettlementBatcher(long windowMillis, int maxBatchSize, AccountService service) {
+        if (windowMillis < 0 || maxBatchSize <= 0) {
+            closeQuietly(service);
+            throw new IllegalArgumentException("Window must not be negative and batch size must be positive");
+        }
+        this.service = service;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+
+        this.settlementThread = new Thread(this::settlementLoop, "transfer-settlement");
+        this.settlementThread.setDaemon(true);
+        this.settlementThread.start();
+    }
+
+    /**
+     * Queue a transfer for the next settlement batch.
+     */
+    public CompletableFuture<OperationResult> submit(String fromAccountId, String toAccountId, BigDecimal amount) {
+        PendingTransfer transfer = new PendingTransfer(new TransferLeg(fromAccountId, toAccountId, amount));
+        synchronized (submitLock) {
+            if (running) {
+                pending.add(transfer);
+                return transfer.result;
+            }
+        }
+        transfer.result.completeExceptionally(new BankingException("Settlement batcher is closed"));
+        return transfer.result;
+    }
+
+    private void settlementLoop() {
+        List<PendingTransfer> batch = new ArrayList<>();
+        while (running || !pending.isEmpty()) {
+            try {
+                PendingTransfer first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Keep collecting until the window closes or the batch is full
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingTransfer next = remaining > 0
+                            ? pending.poll(remaining, TimeUnit.NANOSECONDS)
+                            : pending.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                settle(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                for (PendingTransfer transfer : batch) {
+                    transfer.result.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Check, net and post one batch.
+     */
+    void settle(List<PendingTransfer> batch) {
+        List<TransferLeg> legs = new ArrayList<>(batch.size());
+        BigDecimal total = BigDecimal.ZERO;
+        for (PendingTransfer transfer : batch) {
+            legs.add(transfer.leg);
+            total = total.add(transfer.leg.getAmount());
+        }
+        BatchTransferEvent event = new BatchTransferEvent(legs.get(0).getFromAccountId());
+        event.start();
+        event.legs = legs.size();
+
+        OperationResult[] results;
+        try {
+            results = service.settleLegs(legs);
+        } catch (SQLException | BankingException e) {
+            // Nothing was committed, so every transfer in the batch failed
+            System.err.println("Failed to settle transfer batch: " + e.getMessage());
+            event.finish(OperationResult.FAILED, total);
+            for (PendingTransfer transfer : batch) {
+                transfer.result.complete(OperationResult.FAILED);
+            }
+            return;
+        }
+
+        List<TransferLeg> accepted = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i].isSuccess()) {
+                accepted.add(legs.get(i));
+            }
+        }
+        if (!accepted.isEmpty()) {
+            Map<String, BigDecimal> deltas = NettedPosting.netDeltas(accepted);
+            settledBatches.incrementAndGet();
+            settledTransfers.addAndGet(accepted.size());
+            balanceUpdates.addAndGet(deltas.values().stream().filter(d -> d.signum() != 0).count());
+            event.accounts = deltas.size();
+        }
+        event.finish(accepted.isEmpty() ? results[0] : OperationResult.OK, total);
+        for (int i = 0; i < results.length; i++) {
+            batch.get(i).result.complete(results[i]);
+        }
+    }
+
+    public long getSettledBatches() {
+        return settledBatches.get();
+    }
+
+    public long getSettledTransfers() {
+        return settledTransfers.get();
+    }
+
+    // Number of balance UPDATE statements actually issued after netting
+    public long getBalanceUpdates() {
+        return balanceUpdates.get();
+    }
+
+    /**
+     * Settle whatever is still queued, then stop.
+     */
+    @Override
+    public void close() {
+        synchronized (submitLock) {
+            running = false;
+        }
+        try {
+            settlementThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Left behind only if the loop stopped early, e.g. when interrupted; never leave a caller waiting
+        for (PendingTransfer transfer; (transfer = pending.poll()) != null; ) {
+            transfer.result.completeExceptionally(new BankingException("Settlement batcher is closed"));
+        }
+        closeQuietly(service);
+    }
+
+    private static void closeQuietly(AccountService service) {
+        try {
+            service.conn.close();
+        } catch (SQLException e) {
+            System.err.println("Failed to close settlement connection: " + e.getMessage());
+        }
+    }
+
+    static final class PendingTransfer {
+        final TransferLeg leg;
+        final CompletableFuture<OperationResult> result = new CompletableFuture<>();
+
+        PendingTransfer(TransferLeg leg) {
+            this.leg = leg;
+        }
+    }
+}
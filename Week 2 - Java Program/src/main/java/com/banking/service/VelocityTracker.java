@@ -0,0 +1,167 @@
+package com.banking.service;
+
+import com.banking.util.SlidingWindowCounter;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-account operation counts and amounts over the last second, minute
+ * and day, kept in lock-free sliding-window counters.
+ *
+ * Checking and recording cost a few atomic operations and never query the
+ * transactions table, so they can run inline on every operation. Amounts
+ * count by size, deposits and debits alike, in the account's own currency:
+ * a limit of 1000 is 1000 dollars for a USD account and 1000 yen for a JPY
+ * one, and a cross-currency transfer counts the converted amount against
+ * the destination.
+ *
+ * reserve checks and counts an operation in one step under the account's
+ * lock, so racing operations cannot overshoot a limit together; an
+ * operation that is then rejected for another reason gives its room back
+ * with cancel.
+ */
+public class VelocityTracker {
+
+    public enum Window {
+        SECOND(1_000L, 10),
+        MINUTE(60_000L, 60),
+        DAY(86_400_000L, 96);
+
+        private final long millis;
+        private final int buckets;
+
+        Window(long millis, int buckets) {
+            this.millis = millis;
+            this.buckets = buckets;
+        }
+    }
+
+    // What reserve returns when the operation would break a limit
+    public static final long REFUSED = Long.MIN_VALUE;
+
+    private static final Window[] WINDOWS = Window.values();
+
+    private final ConcurrentMap<String, SlidingWindowCounter[]> counters = new ConcurrentHashMap<>();
+    private final long[] maxCount = new long[WINDOWS.length];
+    private final long[] maxCents = new long[WINDOWS.length];
+    private final LongSupplier clock;
+
+    public VelocityTracker() {
+        this(System::currentTimeMillis);
+    }
+
+    // A custom clock, e.g. a fixed one in tests
+    public VelocityTracker(LongSupplier clock) {
+        this.clock = clock;
+        Arrays.fill(maxCount, Long.MAX_VALUE);
+        Arrays.fill(maxCents, Long.MAX_VALUE);
+    }
+
+    /**
+     * Limit every account to maxOperations and maxAmount, in the account's
+     * currency, within the window.
+     */
+    public void setLimit(Window window, long maxOperations, BigDecimal maxAmount) {
+        maxCount[window.ordinal()] = maxOperations;
+        maxCents[window.ordinal()] = toCents(maxAmount);
+    }
+
+    /**
+     * Whether one more operation of this amount stays within every limit.
+     */
+    public boolean allows(String accountId, BigDecimal amount) {
+        SlidingWindowCounter[] windows = counters.get(accountId);
+        if (windows == null) {
+            return amountFitsEmptyWindows(toCents(amount));
+        }
+        long now = clock.getAsLong();
+        long cents = toCents(amount);
+        for (int i = 0; i < WINDOWS.length; i++) {
+            if (windows[i].count(now) + 1 > maxCount[i] || windows[i].sum(now) + cents > maxCents[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void record(String accountId, BigDecimal amount) {
+        SlidingWindowCounter[] windows = counters.computeIfAbsent(accountId, id -> newWindows());
+        long now = clock.getAsLong();
+        long cents = toCents(amount);
+        for (SlidingWindowCounter window : windows) {
+            window.record(cents, now);
+        }
+    }
+
+    /**
+     * Count one more operation of this amount if it stays within every
+     * limit. Returns the time it was counted at, to pass to cancel, or
+     * REFUSED with nothing counted.
+     */
+    public long reserve(String accountId, BigDecimal amount) {
+        long cents = toCents(amount);
+        SlidingWindowCounter[] windows = counters.computeIfAbsent(accountId, id -> newWindows());
+        synchronized (windows) {
+            long now = clock.getAsLong();
+            for (int i = 0; i < WINDOWS.length; i++) {
+                if (windows[i].count(now) + 1 > maxCount[i] || windows[i].sum(now) + cents > maxCents[i]) {
+                    return REFUSED;
+                }
+            }
+            for (SlidingWindowCounter window : windows) {
+                window.record(cents, now);
+            }
+            return now;
+        }
+    }
+
+    /**
+     * Give back what reserve counted for an operation that did not happen.
+     */
+    public void cancel(String accountId, BigDecimal amount, long reservedAt) {
+        SlidingWindowCounter[] windows = counters.get(accountId);
+        if (windows == null || reservedAt == REFUSED) {
+            return;
+        }
+        long cents = toCents(amount);
+        for (SlidingWindowCounter window : windows) {
+            window.remove(cents, reservedAt);
+        }
+    }
+
+    public long getCount(String accountId, Window window) {
+        SlidingWindowCounter[] windows = counters.get(accountId);
+        return windows == null ? 0 : windows[window.ordinal()].count(clock.getAsLong());
+    }
+
+    public BigDecimal getAmount(String accountId, Window window) {
+        SlidingWindowCounter[] windows = counters.get(accountId);
+        long cents = windows == null ? 0 : windows[window.ordinal()].sum(clock.getAsLong());
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private boolean amountFitsEmptyWindows(long cents) {
+        for (int i = 0; i < WINDOWS.length; i++) {
+            if (maxCount[i] < 1 || cents > maxCents[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static SlidingWindowCounter[] newWindows() {
+        SlidingWindowCounter[] windows = new SlidingWindowCounter[WINDOWS.length];
+        for (Window window : WINDOWS) {
+            windows[window.ordinal()] = new SlidingWindowCounter(window.millis, window.buckets);
+        }
+        return windows;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.abs().setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+}
@@ -0,0 +1,122 @@
+package com.banking.shard;
+
+import com.banking.exception.BankingException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only log of the coordinator's two-phase commit decisions.
+ *
+ * One line per record: "BEGIN <txId> <from> <to> <amount>", "COMMIT <txId>",
+ * "ABORT <txId>" or "DONE <txId>". Every record is forced to disk before
+ * append returns, so once COMMIT is logged the transfer will be committed
+ * on every shard, if need be by recovery after a restart.
+ */
+class CoordinatorLog implements AutoCloseable {
+
+    enum State { BEGUN, COMMITTING, ABORTED, DONE }
+
+    private final Path path;
+    private FileChannel channel;
+
+    CoordinatorLog(Path path) {
+        this.path = path;
+        open(StandardOpenOption.APPEND);
+    }
+
+    synchronized void begin(String txId, String fromAccountId, String toAccountId, String amount) {
+        append("BEGIN " + txId + " " + fromAccountId + " " + toAccountId + " " + amount);
+    }
+
+    synchronized void commit(String txId) {
+        append("COMMIT " + txId);
+    }
+
+    synchronized void abort(String txId) {
+        append("ABORT " + txId);
+    }
+
+    synchronized void done(String txId) {
+        append("DONE " + txId);
+    }
+
+    /**
+     * Latest state of every transaction in the log.
+     */
+    synchronized Map<String, State> readStates() {
+        Map<String, State> states = new HashMap<>();
+        try {
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                String[] parts = line.split(" ");
+                if (parts.length < 2) {
+                    continue; // torn last line from a crash
+                }
+                switch (parts[0]) {
+                    case "BEGIN":
+                        states.putIfAbsent(parts[1], State.BEGUN);
+                        break;
+                    case "COMMIT":
+                        states.put(parts[1], State.COMMITTING);
+                        break;
+                    case "ABORT":
+                        states.put(parts[1], State.ABORTED);
+                        break;
+                    case "DONE":
+                        states.put(parts[1], State.DONE);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            throw new BankingException("Could not read coordinator log " + path + ": " + e.getMessage(), e);
+        }
+        return states;
+    }
+
+    /**
+     * Start a new, empty log. Only safe when no shard has in-doubt transactions left.
+     */
+    synchronized void truncate() {
+        close();
+        open(StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close coordinator log: " + e.getMessage());
+        }
+    }
+
+    private void open(StandardOpenOption mode) {
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+        } catch (IOException e) {
+            throw new BankingException("Could not open coordinator log " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void append(String record) {
+        ByteBuffer buffer = ByteBuffer.wrap((record + "\n").getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new BankingException("Could not write coordinator log: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.banking.shard;
+
+import com.banking.model.AccountKeyCodec;
+
+/**
+ * Maps an account ID to one of N shards by hashing its account key.
+ * The mapping only depends on the ID and the shard count, so it must
+ * stay the same for the lifetime of the data.
+ */
+public final class ShardRouter {
+    private final int shards;
+
+    public ShardRouter(int shards) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        this.shards = shards;
+    }
+
+    public int shardOf(String accountId) {
+        long key = AccountKeyCodec.encode(accountId);
+        // Canonical IDs hash their packed key; anything else falls back to the string hash
+        int hash = key != AccountKeyCodec.NO_KEY
+                ? AccountKeyCodec.hash(key)
+                : AccountKeyCodec.hash(accountId.hashCode());
+        return Math.floorMod(hash, shards);
+    }
+
+    public int getShards() {
+        return shards;
+    }
+}
@@ -0,0 +1,651 @@
+package com.banking.shard;
+
+import com.banking.BankingSystem;
+import com.banking.db.DatabaseConnection;
+import com.banking.db.JdbcMetrics;
+import com.banking.exception.*;
+import com.banking.model.Account;
+import com.banking.model.AccountFactory;
+import com.banking.model.AccountType;
+import com.banking.model.OperationResult;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Account operations spread over several independent H2 databases.
+ *
+ * Every account lives on the shard its ID hashes to (see ShardRouter).
+ * Deposits, withdrawals and same-shard transfers are ordinary
+ * single-database transactions. A transfer between two shards uses
+ * two-phase commit: both legs are prepared with H2's PREPARE COMMIT, the
+ * decision is forced to the coordinator log, then both shards commit.
+ *
+ * On startup, transactions left in doubt by a crash are resolved from
+ * the log: those with a logged COMMIT are committed, everything else is
+ * rolled back. The shards must be file databases for this to work, since
+ * an in-memory database forgets its prepared transactions.
+ *
+ * Each shard has one connection guarded by the shard's monitor; a cross-shard
+ * transfer takes both monitors in shard order so two transfers cannot deadlock.
+ * If phase two fails on a shard, its connection is replaced and the prepared
+ * transaction, now in doubt, is committed from the new one. A shard where
+ * even that fails refuses work until a restart recovers it from the log.
+ */
+public class ShardedAccountService implements AutoCloseable {
+
+    // Test hook: where a simulated crash stops a cross-shard transfer, or
+    // where the destination shard's connection is lost in phase two
+    enum CrashPoint { NONE, AFTER_PREPARE, AFTER_DECISION, CONNECTION_LOST_IN_PHASE_TWO }
+
+    static final class SimulatedCrash extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        SimulatedCrash() {
+            super("Simulated crash", null, false, false);
+        }
+    }
+
+    private final BankingSystem bankingSystem;
+    private final ShardRouter router;
+    private final Shard[] shards;
+    private final CoordinatorLog log;
+    private volatile CrashPoint crashPoint = CrashPoint.NONE;
+
+    private final AtomicLong crossShardTransfers = new AtomicLong();
+    private final long recoveredTransactions;
+
+    public ShardedAccountService(BankingSystem bankingSystem, List<String> shardUrls, Path coordinatorLog) {
+        if (shardUrls.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is needed");
+        }
+        this.bankingSystem = bankingSystem;
+        this.router = new ShardRouter(shardUrls.size());
+        this.log = new CoordinatorLog(coordinatorLog);
+
+        // Settle anything a crash left behind before taking new work
+        this.recoveredTransactions = recover(shardUrls);
+
+        this.shards = new Shard[shardUrls.size()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i, shardUrls.get(i));
+            loadAccounts(shards[i]);
+        }
+    }
+
+    /**
+     * Create a new bank account on its shard
+     */
+    public Account createAccount(AccountType type, String accountId, BigDecimal initialBalance)
+            throws BankingException {
+        return createAccount(type, accountId, initialBalance, Account.DEFAULT_CURRENCY);
+    }
+
+    // Same, for an account that holds the given currency
+    public Account createAccount(AccountType type, String accountId, BigDecimal initialBalance, Currency currency)
+            throws BankingException {
+        if (initialBalance.compareTo(BigDecimal.ZERO) < 0) {
+            throw new BankingException("Initial balance cannot be negative");
+        }
+        if (accountId == null || accountId.isEmpty()) {
+            throw new BankingException("Account ID cannot be empty");
+        }
+
+        Shard shard = shardFor(accountId);
+        synchronized (shard) {
+            try (PreparedStatement stmt = shard.conn.prepareStatement(
+                    "INSERT INTO accounts (account_id, account_type, balance, currency) VALUES (?, ?, ?, ?)")) {
+                stmt.setString(1, accountId);
+                stmt.setString(2, type.name());
+                stmt.setBigDecimal(3, initialBalance);
+                stmt.setString(4, currency.getCurrencyCode());
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                throw new BankingException("Failed to create account in shard " + shard.index + ": " + e.getMessage(), e);
+            }
+        }
+
+        bankingSystem.addAccount(AccountFactory.createAccount(type, accountId, initialBalance, currency));
+        return bankingSystem.findAccount(accountId);
+    }
+
+    /**
+     * Get the balance of an account from its shard
+     */
+    public BigDecimal getBalance(String accountId) throws AccountNotFoundException {
+        Shard shard = shardFor(accountId);
+        synchronized (shard) {
+            try (PreparedStatement stmt = shard.conn.prepareStatement(
+                    "SELECT balance FROM accounts WHERE account_id = ?")) {
+                stmt.setString(1, accountId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new AccountNotFoundException(accountId);
+                    }
+                    return rs.getBigDecimal("balance");
+                }
+            } catch (SQLException e) {
+                throw new AccountNotFoundException(accountId, e);
+            }
+        }
+    }
+
+    public void deposit(String accountId, BigDecimal amount) throws BankingException {
+        raiseIfRejected(tryDeposit(accountId, amount), accountId, amount);
+    }
+
+    public void withdraw(String accountId, BigDecimal amount) throws BankingException {
+        raiseIfRejected(tryWithdraw(accountId, amount), accountId, amount);
+    }
+
+    public void transfer(String fromAccountId, String toAccountId, BigDecimal amount) throws BankingException {
+        OperationResult result = tryTransfer(fromAccountId, toAccountId, amount);
+        if (result == OperationResult.ACCOUNT_NOT_FOUND && bankingSystem.lookupAccount(fromAccountId) != null) {
+            raiseIfRejected(result, toAccountId, amount);
+        }
+        raiseIfRejected(result, fromAccountId, amount);
+    }
+
+    public OperationResult tryDeposit(String accountId, BigDecimal amount) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            return OperationResult.INVALID_AMOUNT;
+        }
+        Account account = bankingSystem.lookupAccount(accountId);
+        if (account == null) {
+            return OperationResult.ACCOUNT_NOT_FOUND;
+        }
+        Shard shard = shardFor(accountId);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        OperationResult result;
+        synchronized (shard) {
+            result = shard.inTransaction(conn -> {
+                if (!credit(conn, accountId, amount)) {
+                    return OperationResult.ACCOUNT_NOT_FOUND;
+                }
+                insertTransaction(conn, accountId, amount, now);
+                return OperationResult.OK;
+            });
+        }
+        if (result.isSuccess()) {
+            account.deposit(amount);
+        }
+        return result;
+    }
+
+    public OperationResult tryWithdraw(String accountId, BigDecimal amount) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            return OperationResult.INVALID_AMOUNT;
+        }
+        Account account = bankingSystem.lookupAccount(accountId);
+        if (account == null) {
+            return OperationResult.ACCOUNT_NOT_FOUND;
+        }
+        Shard shard = shardFor(accountId);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        OperationResult result;
+        synchronized (shard) {
+            result = shard.inTransaction(conn -> {
+                OperationResult debited = debit(conn, accountId, amount, account.getWithdrawalFloor());
+                if (debited.isSuccess()) {
+                    insertTransaction(conn, accountId, amount.negate(), now);
+                }
+                return debited;
+            });
+        }
+        if (result.isSuccess()) {
+            // Committed: mirror it as is, even if memory lags the shard
+            account.applyCommitted(amount.negate());
+        }
+        return result;
+    }
+
+    /**
+     * Transfer money, in one database when both accounts share a shard,
+     * otherwise with two-phase commit across the two shards.
+     */
+    public OperationResult tryTransfer(String fromAccountId, String toAccountId, BigDecimal amount) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            return OperationResult.INVALID_AMOUNT;
+        }
+        if (fromAccountId.equals(toAccountId)) {
+            return OperationResult.SAME_ACCOUNT;
+        }
+        Account fromAccount = bankingSystem.lookupAccount(fromAccountId);
+        Account toAccount = bankingSystem.lookupAccount(toAccountId);
+        if (fromAccount == null || toAccount == null) {
+            return OperationResult.ACCOUNT_NOT_FOUND;
+        }
+        if (!fromAccount.getCurrency().equals(toAccount.getCurrency())) {
+            // Shards move amounts as they are; there is no FX here
+            return OperationResult.CURRENCY_MISMATCH;
+        }
+
+        Shard source = shardFor(fromAccountId);
+        Shard destination = shardFor(toAccountId);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        BigDecimal floor = fromAccount.getWithdrawalFloor();
+        OperationResult result;
+
+        if (source == destination) {
+            synchronized (source) {
+                result = source.inTransaction(conn -> {
+                    OperationResult debited = debit(conn, fromAccountId, amount, floor);
+                    if (!debited.isSuccess()) {
+                        return debited;
+                    }
+                    if (!credit(conn, toAccountId, amount)) {
+                        return OperationResult.ACCOUNT_NOT_FOUND;
+                    }
+                    insertTransaction(conn, fromAccountId, amount.negate(), now);
+                    insertTransaction(conn, toAccountId, amount, now);
+                    return OperationResult.OK;
+                });
+            }
+        } else {
+            Shard first = source.index < destination.index ? source : destination;
+            Shard second = first == source ? destination : source;
+            synchronized (first) {
+                synchronized (second) {
+                    result = crossShardTransfer(source, destination, fromAccountId, toAccountId, amount, floor, now);
+                }
+            }
+        }
+
+        if (result.isSuccess()) {
+            fromAccount.applyCommitted(amount.negate());
+            toAccount.deposit(amount);
+        }
+        return result;
+    }
+
+    // Two-phase commit of one transfer; the caller holds both shard monitors
+    private OperationResult crossShardTransfer(Shard source, Shard destination, String fromAccountId,
+                                               String toAccountId, BigDecimal amount, BigDecimal floor,
+                                               Timestamp now) {
+        String txId = "XT" + UUID.randomUUID().toString().replace("-", "").toUpperCase();
+        log.begin(txId, fromAccountId, toAccountId, amount.toPlainString());
+        boolean decided = false;
+
+        try {
+            if (source.failure != null || destination.failure != null) {
+                log.abort(txId);
+                return OperationResult.FAILED;
+            }
+            source.conn.setAutoCommit(false);
+            destination.conn.setAutoCommit(false);
+
+            // Phase one: do the work on both shards and prepare it
+            OperationResult result = debit(source.conn, fromAccountId, amount, floor);
+            if (result.isSuccess()) {
+                insertTransaction(source.conn, fromAccountId, amount.negate(), now);
+                prepare(source.conn, txId);
+
+                if (credit(destination.conn, toAccountId, amount)) {
+                    insertTransaction(destination.conn, toAccountId, amount, now);
+                    prepare(destination.conn, txId);
+                } else {
+                    result = OperationResult.ACCOUNT_NOT_FOUND;
+                }
+            }
+            if (!result.isSuccess()) {
+                log.abort(txId);
+                source.rollbackQuietly();
+                destination.rollbackQuietly();
+                return result;
+            }
+            crashIf(CrashPoint.AFTER_PREPARE);
+
+            // The decision is durable from here on
+            log.commit(txId);
+            decided = true;
+            crashIf(CrashPoint.AFTER_DECISION);
+
+            // Phase two; a shard that cannot finish it now is left to recovery
+            if (crashPoint == CrashPoint.CONNECTION_LOST_IN_PHASE_TWO) {
+                destination.conn.close();
+            }
+            boolean finished = source.commitDecided(txId);
+            finished &= destination.commitDecided(txId);
+            if (finished) {
+                log.done(txId);
+            }
+            crossShardTransfers.incrementAndGet();
+            return OperationResult.OK;
+        } catch (SimulatedCrash e) {
+            crash();
+            throw e;
+        } catch (SQLException | BankingException e) {
+            if (decided) {
+                // Committed by decision; a shard that missed phase two finishes it on recovery
+                System.err.println("Transfer " + txId + " will be completed by recovery: " + e.getMessage());
+                crossShardTransfers.incrementAndGet();
+                return OperationResult.OK;
+            }
+            try {
+                log.abort(txId);
+            } catch (BankingException logEx) {
+                // Without ABORT in the log, recovery presumes abort anyway
+            }
+            source.rollbackQuietly();
+            destination.rollbackQuietly();
+            System.err.println("Transfer " + txId + " failed: " + e.getMessage());
+            return OperationResult.FAILED;
+        } finally {
+            source.resetAutoCommit();
+            destination.resetAutoCommit();
+        }
+    }
+
+    /**
+     * Resolve in-doubt transactions on every shard from the coordinator log.
+     * Returns how many were resolved.
+     */
+    private long recover(List<String> shardUrls) {
+        Map<String, CoordinatorLog.State> states = log.readStates();
+        long resolved = 0;
+
+        for (String url : shardUrls) {
+            // A separate connection: sessions opened before the resolution keep a stale view
+            try (Connection conn = open(url);
+                 Statement stmt = conn.createStatement()) {
+                createSchemaIfMissing(conn);
+
+                List<String> inDoubt = new ArrayList<>();
+                try (ResultSet rs = stmt.executeQuery("SELECT TRANSACTION_NAME FROM INFORMATION_SCHEMA.IN_DOUBT")) {
+                    while (rs.next()) {
+                        inDoubt.add(rs.getString(1));
+                    }
+                }
+                for (String txId : inDoubt) {
+                    CoordinatorLog.State state = states.get(txId);
+                    boolean commit = state == CoordinatorLog.State.COMMITTING || state == CoordinatorLog.State.DONE;
+                    stmt.execute((commit ? "COMMIT TRANSACTION " : "ROLLBACK TRANSACTION ") + txId);
+                    System.out.println("Recovered transfer " + txId + ": " + (commit ? "committed" : "rolled back"));
+                    resolved++;
+                }
+            } catch (SQLException e) {
+                throw new BankingException("Could not recover shard " + url + ": " + e.getMessage(), e);
+            }
+        }
+
+        // Nothing is in doubt anywhere now, so the old decisions are no longer needed
+        log.truncate();
+        return resolved;
+    }
+
+    // Mirror a shard's accounts in the BankingSystem
+    private void loadAccounts(Shard shard) {
+        try (Statement stmt = shard.conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT account_id, account_type, balance, currency FROM accounts")) {
+            while (rs.next()) {
+                String accountId = rs.getString("account_id");
+                if (bankingSystem.lookupAccount(accountId) == null) {
+                    bankingSystem.addAccount(AccountFactory.createAccount(
+                            AccountType.valueOf(rs.getString("account_type")), accountId, rs.getBigDecimal("balance"),
+                            Currency.getInstance(rs.getString("currency"))));
+                }
+            }
+        } catch (SQLException e) {
+            throw new BankingException("Could not load accounts of shard " + shard.index + ": " + e.getMessage(), e);
+        }
+    }
+
+    public int shardOf(String accountId) {
+        return router.shardOf(accountId);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public long getCrossShardTransfers() {
+        return crossShardTransfers.get();
+    }
+
+    // In-doubt transactions resolved when this service started
+    public long getRecoveredTransactions() {
+        return recoveredTransactions;
+    }
+
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                try {
+                    shard.conn.close();
+                } catch (SQLException e) {
+                    System.err.println("Failed to close shard " + shard.index + ": " + e.getMessage());
+                }
+            }
+        }
+        log.close();
+    }
+
+    void setCrashPoint(CrashPoint crashPoint) {
+        this.crashPoint = crashPoint;
+    }
+
+    private void crashIf(CrashPoint point) {
+        if (crashPoint == point) {
+            throw new SimulatedCrash();
+        }
+    }
+
+    // Stop every shard database without committing anything, like a power cut
+    private void crash() {
+        for (Shard shard : shards) {
+            try (Connection conn = open(shard.url);
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("SHUTDOWN IMMEDIATELY");
+            } catch (SQLException e) {
+                // The database is going away either way
+            }
+        }
+        log.close();
+    }
+
+    private Shard shardFor(String accountId) {
+        return shards[router.shardOf(accountId)];
+    }
+
+    private void raiseIfRejected(OperationResult result, String accountId, BigDecimal amount) {
+        switch (result) {
+            case OK:
+                return;
+            case ACCOUNT_NOT_FOUND:
+                throw new AccountNotFoundException(accountId);
+            case INSUFFICIENT_FUNDS:
+                throw new InsufficientFundsException(accountId, amount, getBalance(accountId));
+            case INVALID_AMOUNT:
+                throw new BankingException("Amount must be positive");
+            case SAME_ACCOUNT:
+                throw new BankingException("Cannot transfer to the same account");
+            case CURRENCY_MISMATCH:
+                throw new BankingException("Sharded transfers need both accounts in the same currency");
+            default:
+                throw new BankingException("Operation on account " + accountId + " failed");
+        }
+    }
+
+    private static void prepare(Connection conn, String txId) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PREPARE COMMIT " + txId);
+        }
+    }
+
+    private static boolean credit(Connection conn, String accountId, BigDecimal amount) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE account_id = ?")) {
+            stmt.setBigDecimal(1, amount);
+            stmt.setString(2, accountId);
+            return stmt.executeUpdate() == 1;
+        }
+    }
+
+    // Funds check and debit in one statement, like AccountService's guarded debit
+    private static OperationResult debit(Connection conn, String accountId, BigDecimal amount, BigDecimal floor)
+            throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE accounts SET balance = balance - ?, version = version + 1 "
+                        + "WHERE account_id = ? AND balance - ? >= ?")) {
+            stmt.setBigDecimal(1, amount);
+            stmt.setString(2, accountId);
+            stmt.setBigDecimal(3, amount);
+            stmt.setBigDecimal(4, floor);
+            if (stmt.executeUpdate() == 1) {
+                return OperationResult.OK;
+            }
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM accounts WHERE account_id = ?")) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? OperationResult.INSUFFICIENT_FUNDS : OperationResult.ACCOUNT_NOT_FOUND;
+            }
+        }
+    }
+
+    private static void insertTransaction(Connection conn, String accountId, BigDecimal amount, Timestamp timestamp)
+            throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO transactions (account_id, amount, transaction_date) VALUES (?, ?, ?)")) {
+            stmt.setString(1, accountId);
+            stmt.setBigDecimal(2, amount);
+            stmt.setTimestamp(3, timestamp);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static void createSchemaIfMissing(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'ACCOUNTS'")) {
+                rs.next();
+                if (rs.getInt(1) > 0) {
+                    return;
+                }
+            }
+            stmt.execute(DatabaseConnection.readSchema());
+        }
+    }
+
+    private static Connection open(String url) throws SQLException {
+        return DriverManager.getConnection(url, "sa", "");
+    }
+
+    private interface ShardWork {
+        OperationResult run(Connection conn) throws SQLException;
+    }
+
+    /**
+     * One shard database and its connection.
+     */
+    private static final class Shard {
+        private final int index;
+        private final String url;
+        // Replaced when phase two fails on it; guarded by the shard's monitor
+        private Connection conn;
+        // Why the shard refuses work, or null while it is usable
+        private volatile String failure;
+
+        Shard(int index, String url) {
+            this.index = index;
+            this.url = url;
+            try {
+                this.conn = open(url);
+            } catch (SQLException e) {
+                throw new BankingException("Could not open shard " + url + ": " + e.getMessage(), e);
+            }
+        }
+
+        // One local transaction; anything but OK is rolled back. Caller holds the monitor.
+        OperationResult inTransaction(ShardWork work) {
+            if (failure != null) {
+                return OperationResult.FAILED;
+            }
+            try {
+                conn.setAutoCommit(false);
+                OperationResult result = work.run(conn);
+                if (result.isSuccess()) {
+                    conn.commit();
+                } else {
+                    conn.rollback();
+                }
+                return result;
+            } catch (SQLException e) {
+                rollbackQuietly();
+                System.err.println("Shard " + index + " operation failed: " + e.getMessage());
+                return OperationResult.FAILED;
+            } finally {
+                resetAutoCommit();
+            }
+        }
+
+        /**
+         * Phase two of a decided transfer on this shard. If the commit fails,
+         * the connection is closed, which leaves the prepared transaction in
+         * doubt, and a new connection commits it. Returns false, and marks
+         * the shard failed, if that does not work either; the logged decision
+         * then has recovery commit it on the next start. Caller holds the monitor.
+         */
+        boolean commitDecided(String txId) {
+            try {
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                System.err.println("Shard " + index + " missed phase two of " + txId + ": " + e.getMessage());
+            }
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                JdbcMetrics.global().swallowed("ShardedAccountService.close", e);
+            }
+            try {
+                conn = open(url);
+                try (Statement stmt = conn.createStatement()) {
+                    if (isInDoubt(stmt, txId)) {
+                        stmt.execute("COMMIT TRANSACTION " + txId);
+                    }
+                }
+                return true;
+            } catch (SQLException e) {
+                failure = "transfer " + txId + " is waiting for recovery: " + e.getMessage();
+                System.err.println("Shard " + index + " is out of service, " + failure);
+                return false;
+            }
+        }
+
+        private static boolean isInDoubt(Statement stmt, String txId) throws SQLException {
+            try (ResultSet rs = stmt.executeQuery("SELECT TRANSACTION_NAME FROM INFORMATION_SCHEMA.IN_DOUBT")) {
+                while (rs.next()) {
+                    if (txId.equals(rs.getString(1))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        void rollbackQuietly() {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                JdbcMetrics.global().swallowed("ShardedAccountService.rollback", e);
+            }
+        }
+
+        void resetAutoCommit() {
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException e) {
+                // Connection is gone, e.g. after a crash
+                JdbcMetrics.global().swallowed("ShardedAccountService.resetAutoCommit", e);
+            }
+        }
+    }
+}
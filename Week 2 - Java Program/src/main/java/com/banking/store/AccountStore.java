@@ -0,0 +1,22 @@
+package com.banking.store;
+
+import com.banking.model.Account;
+import java.util.stream.Stream;
+
+/**
+ * Where BankingSystem keeps its accounts.
+ */
+public interface AccountStore {
+    // Add an account, replacing any account with the same number
+    void add(Account account);
+
+    // The account with this number, or null if there is none
+    Account find(String accountNumber);
+
+    // All accounts in insertion order
+    Stream<Account> stream();
+
+    int size();
+
+    void clear();
+}
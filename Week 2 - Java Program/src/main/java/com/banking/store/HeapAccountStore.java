@@ -0,0 +1,85 @@
+package com.banking.store;
+
+import com.banking.model.Account;
+import com.banking.model.AccountKeyCodec;
+import com.banking.util.LongObjectHashMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Default store: ordinary Account objects in a list plus an index for O(1) lookup.
+ * Canonical IDs (see AccountKeyCodec) are indexed by their packed long key,
+ * so lookups skip string hashing; any other ID falls back to a HashMap.
+ */
+public class HeapAccountStore implements AccountStore {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Account> accounts = new ArrayList<>();
+    private final LongObjectHashMap<Account> keyedAccounts = new LongObjectHashMap<>();
+    private final Map<String, Account> otherAccounts = new HashMap<>();
+
+    @Override
+    public void add(Account account) {
+        long key = AccountKeyCodec.encode(account.getAccountNumber());
+        lock.writeLock().lock();
+        try {
+            accounts.add(account);
+            if (key != AccountKeyCodec.NO_KEY) {
+                keyedAccounts.put(key, account);
+            } else {
+                otherAccounts.put(account.getAccountNumber(), account);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Account find(String accountNumber) {
+        long key = AccountKeyCodec.encode(accountNumber);
+        lock.readLock().lock();
+        try {
+            return key != AccountKeyCodec.NO_KEY
+                    ? keyedAccounts.get(key)
+                    : otherAccounts.get(accountNumber);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Copy of the account list so streams never see a concurrent add
+    @Override
+    public Stream<Account> stream() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(accounts).stream();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return accounts.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            accounts.clear();
+            keyedAccounts.clear();
+            otherAccounts.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
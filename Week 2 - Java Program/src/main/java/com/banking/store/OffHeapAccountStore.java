@@ -0,0 +1,454 @@
+package com.banking.store;
+
+import com.banking.model.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Account store for very large account counts.
+ *
+ * Every account is a fixed-width record in direct (off-heap) memory, so
+ * the heap only holds the chunk and index buffers. Lookups go through an
+ * open-addressing hash index, also off-heap, that maps an account number
+ * to its record. Callers get lightweight Account views that read and
+ * write the record directly, so existing code keeps working. A view holds
+ * only the record number and what the lookup already had, so making one
+ * per lookup costs one small object.
+ *
+ * Balances are stored in cents. Amounts with more than 2 decimal places
+ * are rejected rather than rounded, so the record never differs from what
+ * the account was asked to hold. Views have nowhere to keep credit
+ * stripes, so accounts in this store cannot be made hot.
+ */
+public class OffHeapAccountStore implements AccountStore {
+    // Record layout
+    private static final int RECORD_SIZE = 48;
+    private static final int TYPE = 0;                  // byte: 1 savings, 2 checking
+    private static final int ID_LENGTH = 1;             // byte
+    private static final int ID = 2;                    // up to MAX_ID_LENGTH ASCII bytes
+    private static final int BALANCE = 16;              // long: cents
+    private static final int LAST_TRANSACTION = 24;     // long: microseconds since epoch (UTC)
+    private static final int INTEREST_RATE = 32;        // long: millionths, savings only
+    private static final int MONTHLY_TRANSACTIONS = 40; // int: checking only
+    private static final int CURRENCY = 44;             // 3 ASCII bytes: ISO 4217 code
+
+    private static final int MAX_ID_LENGTH = 14;
+    private static final byte SAVINGS = 1;
+    private static final byte CHECKING = 2;
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int RECORDS_PER_CHUNK = 1 << CHUNK_SHIFT;
+    private static final int MAX_INDEX_CAPACITY = 1 << 29;
+    private static final int LOCK_STRIPES = 1024;
+    private static final BigDecimal RATE_SCALE = BigDecimal.valueOf(1_000_000);
+    private static final long DEFAULT_RATE = SavingsAccount.DEFAULT_INTEREST_RATE.multiply(RATE_SCALE).longValueExact();
+
+    // Guards the index and the record count; records themselves are guarded by the stripe locks
+    private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+    private final Object[] recordLocks = new Object[LOCK_STRIPES];
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private IntBuffer index;    // slot -> record number + 1, 0 means empty
+    private int indexMask;
+    private volatile int size;
+
+    public OffHeapAccountStore() {
+        this(1024);
+    }
+
+    public OffHeapAccountStore(int expectedAccounts) {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            recordLocks[i] = new Object();
+        }
+        allocateIndex(indexCapacityFor(expectedAccounts));
+    }
+
+    @Override
+    public void add(Account account) {
+        byte[] id = encodeId(account.getAccountNumber());
+        indexLock.writeLock().lock();
+        try {
+            int record = lookup(id);
+            if (record < 0) {
+                if ((size + 1) * 2L > index.capacity()) {
+                    resizeIndex(index.capacity() * 2);
+                }
+                record = size;
+                ensureChunk(record);
+                insertIntoIndex(id, record);
+                size = record + 1;
+            }
+            synchronized (lockFor(record)) {
+                writeRecord(record, id, account);
+            }
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Account find(String accountNumber) {
+        byte[] id = encodeId(accountNumber);
+        int record;
+        indexLock.readLock().lock();
+        try {
+            record = lookup(id);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+        return record < 0 ? null : view(record, accountNumber);
+    }
+
+    @Override
+    public Stream<Account> stream() {
+        int count = size;
+        return IntStream.range(0, count).mapToObj(record -> view(record, readId(record)));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        indexLock.writeLock().lock();
+        try {
+            chunks = new ByteBuffer[0];
+            allocateIndex(indexCapacityFor(1024));
+            size = 0;
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    // Off-heap bytes currently reserved for records and index
+    public long getOffHeapBytes() {
+        return (long) chunks.length * RECORDS_PER_CHUNK * RECORD_SIZE + (long) index.capacity() * Integer.BYTES;
+    }
+
+    // ---- index ----
+
+    private static int indexCapacityFor(int expectedAccounts) {
+        long wanted = Math.max(16L, expectedAccounts * 2L);
+        long capacity = Long.highestOneBit(wanted - 1) << 1;
+        if (capacity > MAX_INDEX_CAPACITY) {
+            throw new IllegalArgumentException("Too many accounts for one store: " + expectedAccounts);
+        }
+        return (int) capacity;
+    }
+
+    private void allocateIndex(int capacity) {
+        index = ByteBuffer.allocateDirect(capacity * Integer.BYTES).asIntBuffer();
+        indexMask = capacity - 1;
+    }
+
+    private void resizeIndex(int capacity) {
+        if (capacity > MAX_INDEX_CAPACITY) {
+            throw new IllegalStateException("Off-heap account index is full");
+        }
+        allocateIndex(capacity);
+        for (int record = 0; record < size; record++) {
+            insertIntoIndex(readIdBytes(record), record);
+        }
+    }
+
+    // Linear probing from the key's hash until a free slot
+    private void insertIntoIndex(byte[] id, int record) {
+        int slot = hash(id) & indexMask;
+        while (index.get(slot) != 0) {
+            slot = (slot + 1) & indexMask;
+        }
+        index.put(slot, record + 1);
+    }
+
+    // Record number for this ID, or -1
+    private int lookup(byte[] id) {
+        int slot = hash(id) & indexMask;
+        while (true) {
+            int entry = index.get(slot);
+            if (entry == 0) {
+                return -1;
+            }
+            if (idEquals(entry - 1, id)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & indexMask;
+        }
+    }
+
+    // FNV-1a over the ID bytes, with a final mix so nearby IDs spread out
+    private static int hash(byte[] id) {
+        int hash = 0x811C9DC5;
+        for (byte b : id) {
+            hash = (hash ^ b) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    // ---- records ----
+
+    private void ensureChunk(int record) {
+        int chunk = record >>> CHUNK_SHIFT;
+        if (chunk >= chunks.length) {
+            ByteBuffer[] grown = Arrays.copyOf(chunks, chunk + 1);
+            grown[chunk] = ByteBuffer.allocateDirect(RECORDS_PER_CHUNK * RECORD_SIZE);
+            chunks = grown;
+        }
+    }
+
+    private ByteBuffer chunkOf(int record) {
+        return chunks[record >>> CHUNK_SHIFT];
+    }
+
+    private static int offsetOf(int record) {
+        return (record & (RECORDS_PER_CHUNK - 1)) * RECORD_SIZE;
+    }
+
+    private Object lockFor(int record) {
+        return recordLocks[record & (LOCK_STRIPES - 1)];
+    }
+
+    private void writeRecord(int record, byte[] id, Account account) {
+        ByteBuffer chunk = chunkOf(record);
+        int offset = offsetOf(record);
+
+        chunk.put(offset + ID_LENGTH, (byte) id.length);
+        for (int i = 0; i < id.length; i++) {
+            chunk.put(offset + ID + i, id[i]);
+        }
+        chunk.putLong(offset + BALANCE, toCents(account.getBalance()));
+        chunk.putLong(offset + LAST_TRANSACTION, toMicros(account.getLastTransaction()));
+        String currency = account.getCurrency().getCurrencyCode();
+        for (int i = 0; i < 3; i++) {
+            chunk.put(offset + CURRENCY + i, (byte) currency.charAt(i));
+        }
+
+        if (account instanceof SavingsAccount) {
+            chunk.put(offset + TYPE, SAVINGS);
+            BigDecimal rate = ((SavingsAccount) account).getInterestRate();
+            chunk.putLong(offset + INTEREST_RATE, rate.multiply(RATE_SCALE).setScale(0, RoundingMode.HALF_EVEN).longValueExact());
+            chunk.putInt(offset + MONTHLY_TRANSACTIONS, 0);
+        } else if (account instanceof CheckingAccount) {
+            chunk.put(offset + TYPE, CHECKING);
+            chunk.putLong(offset + INTEREST_RATE, 0);
+            chunk.putInt(offset + MONTHLY_TRANSACTIONS, ((CheckingAccount) account).getMonthlyTransactions());
+        } else {
+            throw new IllegalArgumentException("Unsupported account class: " + account.getClass().getName());
+        }
+    }
+
+    private Account view(int record, String accountNumber) {
+        ByteBuffer chunk = chunkOf(record);
+        int offset = offsetOf(record);
+        Currency currency = readCurrency(chunk, offset);
+        if (chunk.get(offset + TYPE) == SAVINGS) {
+            return new SavingsView(accountNumber, currency, record);
+        }
+        return new CheckingView(accountNumber, currency, record);
+    }
+
+    // Skips building the code string for the usual currency
+    private static Currency readCurrency(ByteBuffer chunk, int offset) {
+        char[] code = {(char) chunk.get(offset + CURRENCY), (char) chunk.get(offset + CURRENCY + 1),
+                (char) chunk.get(offset + CURRENCY + 2)};
+        String usual = Account.DEFAULT_CURRENCY.getCurrencyCode();
+        if (code[0] == usual.charAt(0) && code[1] == usual.charAt(1) && code[2] == usual.charAt(2)) {
+            return Account.DEFAULT_CURRENCY;
+        }
+        return Currency.getInstance(new String(code));
+    }
+
+    private byte[] readIdBytes(int record) {
+        ByteBuffer chunk = chunkOf(record);
+        int offset = offsetOf(record);
+        byte[] id = new byte[chunk.get(offset + ID_LENGTH)];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = chunk.get(offset + ID + i);
+        }
+        return id;
+    }
+
+    private String readId(int record) {
+        byte[] id = readIdBytes(record);
+        char[] chars = new char[id.length];
+        for (int i = 0; i < id.length; i++) {
+            chars[i] = (char) id[i];
+        }
+        return new String(chars);
+    }
+
+    private boolean idEquals(int record, byte[] id) {
+        ByteBuffer chunk = chunkOf(record);
+        int offset = offsetOf(record);
+        if (chunk.get(offset + ID_LENGTH) != id.length) {
+            return false;
+        }
+        for (int i = 0; i < id.length; i++) {
+            if (chunk.get(offset + ID + i) != id[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] encodeId(String accountNumber) {
+        if (accountNumber == null || accountNumber.isEmpty() || accountNumber.length() > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException("Account number must be 1 to " + MAX_ID_LENGTH + " characters");
+        }
+        byte[] id = new byte[accountNumber.length()];
+        for (int i = 0; i < id.length; i++) {
+            char c = accountNumber.charAt(i);
+            if (c > 0x7F) {
+                throw new IllegalArgumentException("Account number must be ASCII: " + accountNumber);
+            }
+            id[i] = (byte) c;
+        }
+        return id;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        try {
+            return amount.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount must be whole cents: " + amount.toPlainString());
+        }
+    }
+
+    private static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+
+    // ---- flyweight views ----
+
+    private BigDecimal readBalance(int record) {
+        return BigDecimal.valueOf(chunkOf(record).getLong(offsetOf(record) + BALANCE), 2);
+    }
+
+    private void writeBalance(int record, BigDecimal balance) {
+        chunkOf(record).putLong(offsetOf(record) + BALANCE, toCents(balance));
+    }
+
+    private LocalDateTime readLastTransaction(int record) {
+        return fromMicros(chunkOf(record).getLong(offsetOf(record) + LAST_TRANSACTION));
+    }
+
+    private void writeLastTransaction(int record, LocalDateTime time) {
+        chunkOf(record).putLong(offsetOf(record) + LAST_TRANSACTION, toMicros(time));
+    }
+
+    private BigDecimal readInterestRate(int record) {
+        long millionths = chunkOf(record).getLong(offsetOf(record) + INTEREST_RATE);
+        if (millionths == DEFAULT_RATE) {
+            return SavingsAccount.DEFAULT_INTEREST_RATE;
+        }
+        return BigDecimal.valueOf(millionths, 6).stripTrailingZeros();
+    }
+
+    private final class SavingsView extends SavingsAccount {
+        private final int record;
+
+        SavingsView(String accountNumber, Currency currency, int record) {
+            super(accountNumber, currency);
+            this.record = record;
+        }
+
+        @Override
+        public BigDecimal getInterestRate() {
+            return readInterestRate(record);
+        }
+
+        @Override
+        protected Object lock() {
+            return lockFor(record);
+        }
+
+        @Override
+        protected BigDecimal loadBalance() {
+            return readBalance(record);
+        }
+
+        @Override
+        protected void storeBalance(BigDecimal balance) {
+            writeBalance(record, balance);
+        }
+
+        @Override
+        protected LocalDateTime loadLastTransaction() {
+            return readLastTransaction(record);
+        }
+
+        @Override
+        protected void storeLastTransaction(LocalDateTime lastTransaction) {
+            writeLastTransaction(record, lastTransaction);
+        }
+
+        @Override
+        public boolean supportsCreditStripes() {
+            return false;
+        }
+    }
+
+    private final class CheckingView extends CheckingAccount {
+        private final int record;
+
+        CheckingView(String accountNumber, Currency currency, int record) {
+            super(accountNumber, currency);
+            this.record = record;
+        }
+
+        @Override
+        protected Object lock() {
+            return lockFor(record);
+        }
+
+        @Override
+        protected BigDecimal loadBalance() {
+            return readBalance(record);
+        }
+
+        @Override
+        protected void storeBalance(BigDecimal balance) {
+            writeBalance(record, balance);
+        }
+
+        @Override
+        protected LocalDateTime loadLastTransaction() {
+            return readLastTransaction(record);
+        }
+
+        @Override
+        protected void storeLastTransaction(LocalDateTime lastTransaction) {
+            writeLastTransaction(record, lastTransaction);
+        }
+
+        @Override
+        public boolean supportsCreditStripes() {
+            return false;
+        }
+
+        @Override
+        protected int loadMonthlyTransactions() {
+            return chunkOf(record).getInt(offsetOf(record) + MONTHLY_TRANSACTIONS);
+        }
+
+        @Override
+        protected void storeMonthlyTransactions(int monthlyTransactions) {
+            chunkOf(record).putInt(offsetOf(record) + MONTHLY_TRANSACTIONS, monthlyTransactions);
+        }
+    }
+}
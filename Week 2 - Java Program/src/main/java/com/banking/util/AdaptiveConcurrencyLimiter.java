@@ -0,0 +1,144 @@
+package com.banking.util;
+
+/**
+ * Concurrency limit that adapts to observed latency, with a bounded wait queue.
+ *
+ * The limit grows by about one per limit's worth of fast calls while it is
+ * being used, and shrinks by 10% when a call takes longer than tolerance
+ * times the best recent latency. The calls in flight when the backend
+ * slowed down all finish slow, and that is one signal, not one per call:
+ * after shrinking, the next as many completions as there were calls in
+ * flight cannot shrink it again. The best latency
+ * is re-measured every RESET_SAMPLES calls, so a permanently slower backend
+ * becomes the new normal instead of keeping the limit at its minimum forever.
+ *
+ * Callers over the limit wait in a queue of at most maxQueue entries and
+ * for at most maxWaitMillis; everyone else is rejected at once. Keeping the
+ * queue short keeps the latency of admitted calls flat under overload.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final int RESET_SAMPLES = 1000;
+    private static final double DECREASE_FACTOR = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+    private final double tolerance;
+
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private long minLatencyNanos = Long.MAX_VALUE;
+    private int samples;
+    // Completions still to come before the limit may shrink again
+    private int inFlightAtDecrease;
+
+    // Statistics
+    private long admitted;
+    private long rejected;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+                                      int maxQueue, long maxWaitMillis, double tolerance) {
+        if (minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 0 < min <= initial <= max");
+        }
+        if (maxQueue < 0 || maxWaitMillis < 0 || tolerance < 1.0) {
+            throw new IllegalArgumentException("Queue and wait must not be negative, tolerance must be at least 1");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = maxWaitMillis * 1_000_000L;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Try to get a slot. Returns false right away when the queue is full,
+     * or after maxWaitMillis when no slot came free. Every true must be
+     * followed by exactly one release.
+     */
+    public synchronized boolean acquire() throws InterruptedException {
+        if (inFlight < currentLimit()) {
+            inFlight++;
+            admitted++;
+            return true;
+        }
+        if (waiting >= maxQueue || maxWaitNanos == 0) {
+            rejected++;
+            return false;
+        }
+
+        waiting++;
+        try {
+            long deadline = System.nanoTime() + maxWaitNanos;
+            while (inFlight >= currentLimit()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    rejected++;
+                    return false;
+                }
+                wait(remaining / 1_000_000L, (int) (remaining % 1_000_000L));
+            }
+            inFlight++;
+            admitted++;
+            return true;
+        } finally {
+            waiting--;
+        }
+    }
+
+    /**
+     * Give the slot back and feed the call's latency into the limit.
+     */
+    public synchronized void release(long latencyNanos) {
+        inFlight--;
+
+        if (++samples >= RESET_SAMPLES) {
+            samples = 0;
+            minLatencyNanos = latencyNanos;
+        } else {
+            minLatencyNanos = Math.min(minLatencyNanos, latencyNanos);
+        }
+
+        boolean sameRound = inFlightAtDecrease > 0;
+        if (sameRound) {
+            inFlightAtDecrease--;
+        }
+        if (latencyNanos > minLatencyNanos * tolerance) {
+            if (!sameRound) {
+                limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+                inFlightAtDecrease = inFlight;
+            }
+        } else if (inFlight + 1 >= currentLimit() / 2) {
+            // Only grow while the limit is actually being used
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        notifyAll();
+    }
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getLimit() {
+        return currentLimit();
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getWaiting() {
+        return waiting;
+    }
+
+    public synchronized long getAdmitted() {
+        return admitted;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+}
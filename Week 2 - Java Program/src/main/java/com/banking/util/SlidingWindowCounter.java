@@ -0,0 +1,121 @@
+package com.banking.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free count and sum over a sliding time window.
+ *
+ * The window is a ring of buckets, each covering bucketMillis. A bucket
+ * has two words, one for the count and one for the sum, and each word
+ * carries the low bits of its time slot as a tag in its top bits. An
+ * update CASes the word: if the tag is from an older slot the bucket is
+ * restarted, otherwise the value is added. Readers add up the buckets
+ * whose tags belong to the current window. No locks, no allocation.
+ *
+ * Values are whole units (e.g. cents) and must not be negative; the sum
+ * of one bucket must stay below 2^40. Tags repeat every 2^23 slots, so a
+ * bucket left untouched for exactly that long could be counted again.
+ */
+public class SlidingWindowCounter {
+    private static final int VALUE_BITS = 40;
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+    private static final long TAG_MASK = (1L << (63 - VALUE_BITS)) - 1;
+
+    private final long bucketMillis;
+    private final int buckets;
+    // [2 * i] = tagged count of bucket i, [2 * i + 1] = tagged sum of bucket i
+    private final AtomicLongArray words;
+
+    public SlidingWindowCounter(long windowMillis, int buckets) {
+        if (buckets <= 0 || windowMillis < buckets) {
+            throw new IllegalArgumentException("Need at least one bucket and one millisecond per bucket");
+        }
+        this.bucketMillis = windowMillis / buckets;
+        this.buckets = buckets;
+        this.words = new AtomicLongArray(2 * buckets);
+    }
+
+    /**
+     * Count one event with the given value at time nowMillis.
+     */
+    public void record(long value, long nowMillis) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative");
+        }
+        long slot = nowMillis / bucketMillis;
+        int index = (int) (slot % buckets);
+        long tag = slot & TAG_MASK;
+        add(2 * index, tag, 1);
+        add(2 * index + 1, tag, value);
+    }
+
+    private void add(int word, long tag, long delta) {
+        while (true) {
+            long current = words.get(word);
+            long currentTag = current >>> VALUE_BITS;
+            long next;
+            if (currentTag == tag) {
+                next = current + delta;
+            } else if (current != 0 && ((currentTag - tag) & TAG_MASK) < TAG_MASK / 2) {
+                // The bucket already moved on to a later slot: this event is
+                // from a thread that stalled for a whole window, drop it
+                return;
+            } else {
+                next = (tag << VALUE_BITS) | delta;
+            }
+            if (words.compareAndSet(word, current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Take back an event recorded with this value at atMillis, e.g. one for
+     * an operation that did not go through. Nothing happens once its bucket
+     * has moved on to a later slot, since the event has left the window.
+     */
+    public void remove(long value, long atMillis) {
+        long slot = atMillis / bucketMillis;
+        int index = (int) (slot % buckets);
+        long tag = slot & TAG_MASK;
+        subtract(2 * index, tag, 1);
+        subtract(2 * index + 1, tag, value);
+    }
+
+    private void subtract(int word, long tag, long delta) {
+        while (true) {
+            long current = words.get(word);
+            if (current >>> VALUE_BITS != tag || (current & VALUE_MASK) < delta) {
+                return;
+            }
+            if (words.compareAndSet(word, current, current - delta)) {
+                return;
+            }
+        }
+    }
+
+    // Number of events in the window ending at nowMillis
+    public long count(long nowMillis) {
+        return total(0, nowMillis);
+    }
+
+    // Sum of the values in the window ending at nowMillis
+    public long sum(long nowMillis) {
+        return total(1, nowMillis);
+    }
+
+    private long total(int offset, long nowMillis) {
+        long currentSlot = nowMillis / bucketMillis;
+        long total = 0;
+        for (long slot = currentSlot - buckets + 1; slot <= currentSlot; slot++) {
+            if (slot < 0) {
+                continue;
+            }
+            long word = words.get(2 * (int) (slot % buckets) + offset);
+            if (word >>> VALUE_BITS == (slot & TAG_MASK)) {
+                total += word & VALUE_MASK;
+            }
+        }
+        return total;
+    }
+}
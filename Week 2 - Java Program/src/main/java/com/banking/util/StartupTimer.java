@@ -0,0 +1,43 @@
+package com.banking.util;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times the phases of application startup.
+ *
+ * Create it first thing in main. Call phase() at the end of each phase and
+ * print() once startup is done. The time the JVM needed to get to main is
+ * worked out from the JVM's uptime in print(), so the management classes
+ * are only loaded after startup and not counted in it.
+ */
+public class StartupTimer {
+    private final long startNanos = System.nanoTime();
+    private long lastNanos = startNanos;
+
+    private final List<String> phases = new ArrayList<>();
+    private final List<Long> phaseNanos = new ArrayList<>();
+
+    // End the current phase and give it a name
+    public void phase(String name) {
+        long now = System.nanoTime();
+        phases.add(name);
+        phaseNanos.add(now - lastNanos);
+        lastNanos = now;
+    }
+
+    public void print(PrintStream out) {
+        // Uptime now, less the time since we were created
+        long jvmMillis = ManagementFactory.getRuntimeMXBean().getUptime()
+                - (System.nanoTime() - startNanos) / 1_000_000;
+        out.println("=== Startup Timing ===");
+        out.printf("  %-20s %8d ms%n", "jvm to main", jvmMillis);
+        for (int i = 0; i < phases.size(); i++) {
+            out.printf("  %-20s %8.1f ms%n", phases.get(i), phaseNanos.get(i) / 1_000_000.0);
+        }
+        out.printf("  %-20s %8.1f ms%n", "total",
+                jvmMillis + (lastNanos - startNanos) / 1_000_000.0);
+    }
+}
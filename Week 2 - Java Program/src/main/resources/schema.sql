@@ -2,7 +2,11 @@
 CREATE TABLE accounts (
     account_id VARCHAR(10) PRIMARY KEY,
     account_type VARCHAR(20) NOT NULL,
-    balance DECIMAL(10,2) NOT NULL
+    balance DECIMAL(10,2) NOT NULL,
+    -- ISO 4217 code; the balance and all of the account's transactions are in it
+    currency CHAR(3) DEFAULT 'USD' NOT NULL,
+    -- Bumped on every balance change, used for optimistic concurrency
+    version BIGINT DEFAULT 0 NOT NULL
 );
 
 -- Store all transactions
@@ -13,3 +17,28 @@ CREATE TABLE transactions (
     FOREIGN KEY (account_id)
         REFERENCES accounts(account_id)
 );
+
+-- Extra balance rows of hot accounts. Credits go to any stripe, so they do not all
+-- queue for the one accounts row; an account's balance is its row plus its stripes.
+CREATE TABLE account_stripes (
+    account_id VARCHAR(10) NOT NULL,
+    stripe INT NOT NULL,
+    balance DECIMAL(10,2) DEFAULT 0 NOT NULL,
+    PRIMARY KEY (account_id, stripe),
+    FOREIGN KEY (account_id)
+        REFERENCES accounts(account_id)
+);
+
+-- Statements and history read one account's transactions by date
+CREATE INDEX idx_transactions_account_date ON transactions(account_id, transaction_date);
+
+-- One row per committed chunk of a batch job, written in the chunk's own transaction.
+-- A rerun of the job skips every account inside a committed chunk's key range.
+CREATE TABLE batch_checkpoints (
+    job_name VARCHAR(64) NOT NULL,
+    first_key VARCHAR(10) NOT NULL,
+    last_key VARCHAR(10) NOT NULL,
+    items INT NOT NULL,
+    completed_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (job_name, first_key)
+);
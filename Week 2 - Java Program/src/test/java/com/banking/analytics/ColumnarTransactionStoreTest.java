@@ -0,0 +1,107 @@
+package com.banking.analytics;
+
+import com.banking.BankingSystem;
+import com.banking.db.DatabaseConnection;
+import com.banking.db.TestDatabase;
+import com.banking.db.TransactionRecord;
+import com.banking.model.AccountType;
+import com.banking.service.AccountService;
+import org.junit.Before;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.*;
+
+public class ColumnarTransactionStoreTest {
+    private static final long DAY = 86_400_000L;
+    // 2024-01-01T00:00Z
+    private static final long START = 1_704_067_200_000L;
+
+    private ColumnarTransactionStore store;
+
+    @Before
+    public void setUp() {
+        store = new ColumnarTransactionStore();
+    }
+
+    @Test
+    public void testFedByAccountService() throws SQLException {
+        TestDatabase.reset();
+        AccountService accountService = new AccountService(new BankingSystem());
+        accountService.createAccount(AccountType.CHECKING, "CHK001", new BigDecimal("500.00"));
+        accountService.createAccount(AccountType.CHECKING, "CHK002", new BigDecimal("500.00"));
+        accountService.deposit("CHK001", new BigDecimal("100.00"));
+
+        // History from before the store was attached comes from load()
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            assertEquals(1, store.load(conn));
+        }
+        accountService.addChangeListener(store);
+        accountService.withdraw("CHK001", new BigDecimal("30.00"));
+        accountService.transfer("CHK001", "CHK002", new BigDecimal("20.00"));
+
+        assertEquals(accountService.getAllTransactions().size(), store.size());
+        Map<String, BigDecimal> net = store.query().sumByAccount();
+        assertEquals(new BigDecimal("50.00"), net.get("CHK001"));
+        assertEquals(new BigDecimal("20.00"), net.get("CHK002"));
+        assertEquals(2, store.query().account("CHK001").debits().count());
+    }
+
+    @Test
+    public void testFiltersAndGroups() {
+        store.append("A", new BigDecimal("100.00"), new Timestamp(START));
+        store.append("B", new BigDecimal("-40.00"), new Timestamp(START + 1000));
+        store.append("A", new BigDecimal("-250.50"), new Timestamp(START + DAY));
+        store.append("C", new BigDecimal("5.00"), new Timestamp(START + 2 * DAY));
+
+        assertEquals(new BigDecimal("-185.50"), store.query().sum());
+        assertEquals(new BigDecimal("105.00"), store.query().credits().sum());
+        assertEquals(2, store.query().atLeast(new BigDecimal("100.00")).count());
+        assertEquals(0, store.query().account("Z").count());
+        assertEquals(new BigDecimal("60.00"),
+                store.query().between(new Timestamp(START), new Timestamp(START + DAY)).sum());
+
+        Map<LocalDate, BigDecimal> volume = store.query().volumeByDay(ZoneOffset.UTC);
+        assertEquals(new BigDecimal("140.00"), volume.get(LocalDate.of(2024, 1, 1)));
+        assertEquals(new BigDecimal("250.50"), volume.get(LocalDate.of(2024, 1, 2)));
+        assertEquals(3, volume.size());
+
+        List<TransactionRecord> largest = store.query().largest(2);
+        assertEquals(new BigDecimal("-250.50"), largest.get(0).getAmount());
+        assertEquals("A", largest.get(1).getAccountId());
+        assertEquals(new BigDecimal("100.00"), largest.get(1).getAmount());
+    }
+
+    @Test
+    public void testParallelScanMatchesSimpleLoop() {
+        int rows = 300_000;
+        long expectedNet = 0;
+        long expectedLargest = 0;
+        long expectedCredits = 0;
+        for (int i = 0; i < rows; i++) {
+            long cents = (i * 7919L) % 200_001 - 100_000;
+            store.append("ACC" + (i % 1000), BigDecimal.valueOf(cents, 2), new Timestamp(START + i * 1000L));
+            if (i % 1000 == 7) {
+                expectedNet += cents;
+            }
+            expectedLargest = Math.max(expectedLargest, Math.abs(cents));
+            if (cents > 0) {
+                expectedCredits++;
+            }
+        }
+
+        assertEquals(rows, store.size());
+        assertEquals(1000, store.getAccountCount());
+        Map<String, BigDecimal> net = store.query().sumByAccount();
+        assertEquals(BigDecimal.valueOf(expectedNet, 2), net.get("ACC7"));
+        assertEquals(BigDecimal.valueOf(expectedNet, 2), store.query().account("ACC7").sum());
+        assertEquals(expectedCredits, store.query().credits().count());
+        assertEquals(BigDecimal.valueOf(expectedLargest, 2), store.query().largest(5).get(0).getAmount().abs());
+    }
+}
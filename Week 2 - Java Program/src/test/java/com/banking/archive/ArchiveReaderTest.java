@@ -0,0 +1,110 @@
+package com.banking.archive;
+
+import com.banking.db.TransactionRecord;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.List;
+import static org.junit.Assert.*;
+
+public class ArchiveReaderTest {
+    private static final long START = 1_704_067_200_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // 10 rows per block; account i % 5, hour i, amounts alternating in sign
+    private Path writeArchive(int rows) throws IOException {
+        Path file = folder.newFile("history.bkar").toPath();
+        try (ArchiveWriter writer = new ArchiveWriter(Files.newOutputStream(file), 10)) {
+            for (int i = 0; i < rows; i++) {
+                long cents = (i % 2 == 0 ? 1 : -1) * (100L + i);
+                writer.append("ACC" + (i % 5), cents, START + i * 3_600_000L);
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path file = folder.newFile("roundtrip.bkar").toPath();
+        try (ArchiveWriter writer = new ArchiveWriter(file)) {
+            writer.append("CHK001", new BigDecimal("12.34"), new Timestamp(START));
+            // Out of order and negative
+            writer.append("SAV\u20ac01", new BigDecimal("-99999999.99"), new Timestamp(START - 5_000));
+            writer.append(new TransactionRecord("CHK001", new BigDecimal("0.00"), new Timestamp(START + 1)));
+            assertEquals(3, writer.getRowsWritten());
+        }
+
+        List<TransactionRecord> records = new ArchiveReader(file).read(ArchiveFilter.all());
+        assertEquals(3, records.size());
+        assertEquals("CHK001", records.get(0).getAccountId());
+        assertEquals(new BigDecimal("12.34"), records.get(0).getAmount());
+        assertEquals(new Timestamp(START), records.get(0).getTransactionDate());
+        assertEquals("SAV\u20ac01", records.get(1).getAccountId());
+        assertEquals(new BigDecimal("-99999999.99"), records.get(1).getAmount());
+        assertEquals(START - 5_000, records.get(1).getTransactionDate().getTime());
+        assertEquals(new BigDecimal("0.00"), records.get(2).getAmount());
+    }
+
+    @Test
+    public void testTimeFilterSkipsBlocks() throws IOException {
+        ArchiveReader reader = new ArchiveReader(writeArchive(100));
+        // Hours 25 to 34: blocks 2 and 3
+        List<TransactionRecord> records = reader.read(ArchiveFilter.all().between(
+                new Timestamp(START + 25 * 3_600_000L), new Timestamp(START + 35 * 3_600_000L)));
+        assertEquals(10, records.size());
+        assertEquals(2, reader.getBlocksRead());
+        assertEquals(8, reader.getBlocksSkipped());
+    }
+
+    @Test
+    public void testAccountAndAmountFilters() throws IOException {
+        Path file = folder.newFile("accounts.bkar").toPath();
+        try (ArchiveWriter writer = new ArchiveWriter(Files.newOutputStream(file), 10)) {
+            for (int i = 0; i < 100; i++) {
+                // RARE only shows up in the last block
+                writer.append(i == 95 ? "RARE" : "ACC" + (i % 5), 100L + i, START + i);
+            }
+        }
+        ArchiveReader reader = new ArchiveReader(file);
+        List<TransactionRecord> records = reader.read(ArchiveFilter.all().account("RARE"));
+        assertEquals(1, records.size());
+        assertEquals(new BigDecimal("1.95"), records.get(0).getAmount());
+        assertEquals(1, reader.getBlocksRead());
+
+        assertEquals(20, reader.read(ArchiveFilter.all().account("ACC3")).size());
+        assertEquals(0, reader.read(ArchiveFilter.all().account("NONE")).size());
+        assertEquals(0, reader.getBlocksRead());
+
+        // 1.50 to 1.59 sits in one block
+        records = reader.read(ArchiveFilter.all().amountBetween(new BigDecimal("1.50"), new BigDecimal("1.59")));
+        assertEquals(10, records.size());
+        assertEquals(1, reader.getBlocksRead());
+    }
+
+    @Test
+    public void testScanStreamsEveryRow() throws IOException {
+        ArchiveReader reader = new ArchiveReader(writeArchive(1001));
+        long[] sum = {0};
+        assertEquals(1001, reader.scan(ArchiveFilter.all(), (accountId, amount, timestamp) -> sum[0] += amount));
+        long expected = 0;
+        for (int i = 0; i < 1001; i++) {
+            expected += (i % 2 == 0 ? 1 : -1) * (100L + i);
+        }
+        assertEquals(expected, sum[0]);
+        assertEquals(1001, reader.getRowsDecoded());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        Path file = folder.newFile("not-an-archive.txt").toPath();
+        Files.write(file, "2024-01-01T00:00,CHK001,12.34\n".getBytes());
+        new ArchiveReader(file).scan(ArchiveFilter.all(), (accountId, amount, timestamp) -> { });
+    }
+}
@@ -0,0 +1,115 @@
+package com.banking.batch;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.db.TestDatabase;
+import com.banking.exception.BankingException;
+import org.junit.Before;
+import org.junit.Test;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+
+public class ChunkedBatchJobTest {
+
+    @Before
+    public void setUp() throws SQLException {
+        TestDatabase.reset();
+        for (int i = 0; i < 50; i++) {
+            insertAccount(String.format("A%03d", i));
+        }
+    }
+
+    private static void insertAccount(String accountId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "INSERT INTO accounts (account_id, account_type, balance) VALUES (?, 'CHECKING', 0)")) {
+            stmt.setString(1, accountId);
+            stmt.executeUpdate();
+        }
+    }
+
+    // Records which accounts it saw; fails on the chunk holding failOn, if set
+    private static final class Recorder implements ChunkProcessor {
+        final Set<String> seen = Collections.synchronizedSet(new TreeSet<>());
+        final AtomicInteger afterCommit = new AtomicInteger();
+        volatile String failOn;
+
+        @Override
+        public Runnable process(Connection conn, List<String> accountIds) {
+            if (accountIds.contains(failOn)) {
+                throw new IllegalStateException("Simulated crash at " + failOn);
+            }
+            List<String> sorted = new ArrayList<>(accountIds);
+            Collections.sort(sorted);
+            assertEquals("chunks are in key order", sorted, accountIds);
+            return () -> {
+                seen.addAll(accountIds);
+                afterCommit.incrementAndGet();
+            };
+        }
+    }
+
+    @Test
+    public void testEveryAccountOnceInChunks() {
+        Recorder recorder = new Recorder();
+        BatchJobReport report = new ChunkedBatchJob("test-job", 8, 3, null).run(recorder);
+
+        assertEquals(50, recorder.seen.size());
+        assertEquals(7, report.getChunks().size());
+        assertEquals(7, recorder.afterCommit.get());
+        assertEquals(50, report.getItems());
+        assertEquals("A000", report.getChunks().get(0).getFirstKey());
+        assertEquals("A007", report.getChunks().get(0).getLastKey());
+        assertTrue(report.getChunks().get(0).getItemsPerSecond() > 0);
+
+        // Nothing left for a second run
+        BatchJobReport again = new ChunkedBatchJob("test-job", 8, 3, null).run(new Recorder());
+        assertEquals(0, again.getItems());
+        assertEquals(7, again.getChunksDoneBefore());
+        assertEquals(50, again.getAccountsSkipped());
+    }
+
+    @Test
+    public void testResumeSkipsCommittedChunks() throws SQLException {
+        Recorder first = new Recorder();
+        first.failOn = "A020";
+        try {
+            new ChunkedBatchJob("test-job", 5, 1, null).run(first);
+            fail("Expected the simulated crash");
+        } catch (BankingException e) {
+            assertTrue(e.getMessage().contains("Simulated crash"));
+        }
+        // One thread, so exactly the four chunks before the failing one committed
+        assertEquals(20, first.seen.size());
+
+        // An account created inside a committed range is left alone, one after it is not
+        insertAccount("A003X");
+        insertAccount("A049X");
+
+        Recorder second = new Recorder();
+        BatchJobReport report = new ChunkedBatchJob("test-job", 5, 2, null).run(second);
+        assertEquals(4, report.getChunksDoneBefore());
+        assertEquals(21, report.getAccountsSkipped());
+        assertEquals(31, second.seen.size());
+        assertTrue(Collections.disjoint(first.seen, second.seen));
+        assertTrue(second.seen.contains("A049X"));
+        assertFalse(second.seen.contains("A003X"));
+    }
+
+    @Test
+    public void testJobsHaveTheirOwnCheckpoints() throws SQLException {
+        new ChunkedBatchJob("job-a", 10, 2, null).run(new Recorder());
+
+        Recorder other = new Recorder();
+        new ChunkedBatchJob("job-b", 10, 2, null).run(other);
+        assertEquals(50, other.seen.size());
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            assertEquals(5, ChunkedBatchJob.reset(conn, "job-a"));
+        }
+        Recorder rerun = new Recorder();
+        new ChunkedBatchJob("job-a", 10, 2, null).run(rerun);
+        assertEquals(50, rerun.seen.size());
+    }
+}
@@ -0,0 +1,58 @@
+package com.banking.db;
+
+import org.junit.Test;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import static org.junit.Assert.*;
+
+public class DatabaseConnectionTest {
+
+    @Test
+    public void testSchemaIsOnlyAppliedOnce() throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:schema_once;MODE=MySQL", "sa", "")) {
+            assertTrue(DatabaseConnection.applySchemaIfMissing(conn));
+            assertFalse(DatabaseConnection.applySchemaIfMissing(conn));
+        }
+    }
+
+    @Test
+    public void testDatabaseFromTheFirstSchemaIsBroughtUpToDate() throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:schema_upgrade;MODE=MySQL", "sa", "");
+             Statement stmt = conn.createStatement()) {
+            // The schema the project started with
+            stmt.execute("CREATE TABLE accounts (account_id VARCHAR(10) PRIMARY KEY, account_type VARCHAR(20) NOT NULL, "
+                    + "balance DECIMAL(10,2) NOT NULL)");
+            stmt.execute("CREATE TABLE transactions (account_id VARCHAR(10), amount DECIMAL(10,2), "
+                    + "transaction_date TIMESTAMP, FOREIGN KEY (account_id) REFERENCES accounts(account_id))");
+            stmt.execute("INSERT INTO accounts VALUES ('CHK001', 'CHECKING', 100.00)");
+
+            assertTrue(DatabaseConnection.applySchemaIfMissing(conn));
+            assertFalse(DatabaseConnection.applySchemaIfMissing(conn));
+
+            for (String table : new String[] {"account_stripes", "batch_checkpoints"}) {
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                    assertTrue(rs.next());
+                    assertEquals(0, rs.getInt(1));
+                }
+            }
+            // New columns arrive with their defaults, so a guarded debit works on the old row
+            assertEquals(1, stmt.executeUpdate(
+                    "UPDATE accounts SET balance = balance - 10, version = version + 1 WHERE account_id = 'CHK001' AND version = 0"));
+            try (ResultSet rs = stmt.executeQuery("SELECT currency, version FROM accounts WHERE account_id = 'CHK001'")) {
+                assertTrue(rs.next());
+                assertEquals("USD", rs.getString(1));
+                assertEquals(1, rs.getLong(2));
+            }
+            boolean indexed = false;
+            try (ResultSet rs = conn.getMetaData().getIndexInfo(null, null, "TRANSACTIONS", false, true)) {
+                while (rs.next()) {
+                    indexed |= "IDX_TRANSACTIONS_ACCOUNT_DATE".equalsIgnoreCase(rs.getString("INDEX_NAME"));
+                }
+            }
+            assertTrue(indexed);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.banking.db;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+
+public class JdbcMetricsTest {
+    private final ByteArrayOutputStream logged = new ByteArrayOutputStream();
+    private JdbcMetrics metrics;
+    private Connection conn;
+
+    @Before
+    public void setUp() throws SQLException {
+        metrics = new JdbcMetrics(true, 1, TimeUnit.HOURS);
+        metrics.setLog(new PrintStream(logged, true));
+        conn = metrics.instrument(DriverManager.getConnection("jdbc:h2:mem:jdbc_metrics;MODE=MySQL", "sa", ""));
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (id VARCHAR(10) PRIMARY KEY, amount DECIMAL(10,2))");
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        conn.close();
+    }
+
+    private String log() {
+        return new String(logged.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testStatementsAddUpPerShape() throws SQLException {
+        for (int i = 0; i < 3; i++) {
+            try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO t (id, amount) VALUES (?, ?)")) {
+                stmt.setString(1, "ID" + i);
+                stmt.setBigDecimal(2, new BigDecimal("1.00"));
+                stmt.executeUpdate();
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeQuery("SELECT amount FROM t WHERE id = 'ID1'").close();
+            stmt.executeQuery("SELECT  amount FROM t\n WHERE id = 'ID2'").close();
+        }
+
+        assertEquals(3, metrics.get("INSERT INTO t (id, amount) VALUES (?, ?)").getCount());
+        JdbcMetrics.Stats select = metrics.get("SELECT amount FROM t WHERE id = ?");
+        assertEquals(2, select.getCount());
+        assertTrue(select.getMaxNanos() > 0);
+        assertEquals(0, metrics.getSlowStatements());
+        assertTrue(metrics.report(5).contains("SELECT amount FROM t WHERE id = ?"));
+        assertEquals("", log());
+    }
+
+    @Test
+    public void testNormalize() {
+        assertEquals("SELECT * FROM accounts WHERE id IN (?) AND balance > ?",
+                JdbcMetrics.normalize("SELECT * FROM accounts\n  WHERE id IN ('A', 'B''s', 'C') AND balance > -10.50"));
+        // Digits inside names stay
+        assertEquals("SELECT col1 FROM t2 LIMIT ?", JdbcMetrics.normalize("SELECT col1 FROM t2 LIMIT 5"));
+    }
+
+    @Test
+    public void testSlowStatementsAreLoggedWithBinds() throws SQLException {
+        metrics.setSlowThreshold(0, TimeUnit.NANOSECONDS);
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO t (id, amount) VALUES (?, ?)")) {
+            stmt.setString(1, "ACC1");
+            stmt.setBigDecimal(2, new BigDecimal("12.34"));
+            stmt.addBatch();
+            stmt.setString(1, "ACC2");
+            stmt.setBigDecimal(2, new BigDecimal("56.78"));
+            stmt.addBatch();
+            stmt.executeBatch();
+        }
+
+        assertEquals(1, metrics.getSlowStatements());
+        String line = log();
+        assertTrue(line, line.contains("Slow SQL"));
+        assertTrue(line, line.contains("INSERT INTO t (id, amount) VALUES (?, ?)"));
+        assertTrue(line, line.contains("binds [1='ACC2', 2=56.78] batch of 2"));
+    }
+
+    @Test
+    public void testFailuresRollbacksAndCommitsAreCounted() throws SQLException {
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO t (id, amount) VALUES (?, ?)")) {
+            stmt.setString(1, "DUP");
+            stmt.setBigDecimal(2, BigDecimal.ONE);
+            stmt.executeUpdate();
+            try {
+                stmt.executeUpdate();
+                fail("Expected a duplicate key");
+            } catch (SQLException expected) {
+            }
+        }
+        conn.rollback();
+        conn.commit();
+        conn.setAutoCommit(true);
+
+        assertEquals(1, metrics.get("INSERT INTO t (id, amount) VALUES (?, ?)").getErrors());
+        assertEquals(1, metrics.getRollbacks());
+        assertEquals(1, metrics.get(JdbcMetrics.ROLLBACK).getCount());
+        assertEquals(1, metrics.get(JdbcMetrics.COMMIT).getCount());
+    }
+
+    @Test
+    public void testSwallowedErrorsAreCountedAndLogged() {
+        metrics.swallowed("Test.rollback", new SQLException("connection is broken", "08003"));
+        metrics.swallowed("Test.rollback", new SQLException("connection is broken", "08003"));
+
+        assertEquals(2, metrics.getSwallowedErrors());
+        assertEquals(2, metrics.getSwallowedErrors("Test.rollback"));
+        assertTrue(log().contains("Swallowed SQL error in Test.rollback: connection is broken [08003]"));
+    }
+
+    @Test
+    public void testWrappedConnectionBehavesLikeTheDriver() throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM t");
+        assertSame(conn, stmt.getConnection());
+        assertEquals(conn, conn);
+        assertNotEquals(conn, metrics.instrument(DriverManager.getConnection("jdbc:h2:mem:jdbc_metrics;MODE=MySQL", "sa", "")));
+        assertSame(conn, metrics.instrument(conn));
+        try (ResultSet rs = stmt.executeQuery()) {
+            assertTrue(rs.next());
+            assertEquals(0, rs.getInt(1));
+        }
+        stmt.close();
+
+        JdbcMetrics off = new JdbcMetrics(false, 1, TimeUnit.SECONDS);
+        Connection raw = DriverManager.getConnection("jdbc:h2:mem:jdbc_metrics;MODE=MySQL", "sa", "");
+        assertSame(raw, off.instrument(raw));
+        raw.close();
+    }
+
+    @Test
+    public void testEnablingAppliesToConnectionsOpenedAfterwards() throws SQLException {
+        JdbcMetrics later = new JdbcMetrics(false, 1, TimeUnit.HOURS);
+        try (Connection before = later.instrument(DriverManager.getConnection("jdbc:h2:mem:jdbc_metrics;MODE=MySQL", "sa", ""))) {
+            later.setEnabled(true);
+            try (Connection after = later.instrument(DriverManager.getConnection("jdbc:h2:mem:jdbc_metrics;MODE=MySQL", "sa", ""))) {
+                before.prepareStatement("SELECT COUNT(*) FROM t").executeQuery().close();
+                assertNull(later.get("SELECT COUNT(*) FROM t"));
+                after.prepareStatement("SELECT COUNT(*) FROM t").executeQuery().close();
+                assertEquals(1, later.get("SELECT COUNT(*) FROM t").getCount());
+            }
+        }
+    }
+}
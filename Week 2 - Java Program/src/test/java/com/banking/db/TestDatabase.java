@@ -0,0 +1,29 @@
+package com.banking.db;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Rebuilds the shared in-memory database from schema.sql so every
+ * test starts with empty tables.
+ */
+public final class TestDatabase {
+    private static final String URL = "jdbc:h2:mem:bankingdb;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    public static void reset() {
+        try (Connection conn = DriverManager.getConnection(URL, "sa", "");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+            stmt.execute(new String(Files.readAllBytes(Paths.get("src/main/resources/schema.sql"))));
+        } catch (SQLException | java.io.IOException e) {
+            throw new IllegalStateException("Could not reset test database", e);
+        }
+    }
+
+    private TestDatabase() {
+    }
+}
@@ -0,0 +1,123 @@
+package com.banking.fx;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.Assert.*;
+
+public class FxRatesTest {
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final Currency GBP = Currency.getInstance("GBP");
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static FxRateSnapshot snapshot(long asOfSeconds, String eurRate) {
+        Map<Currency, BigDecimal> rates = new HashMap<>();
+        rates.put(EUR, new BigDecimal(eurRate));
+        rates.put(GBP, new BigDecimal("1.25"));
+        return new FxRateSnapshot(USD, Instant.ofEpochSecond(asOfSeconds), rates);
+    }
+
+    @Test
+    public void testSnapshotConvertsBothWaysAndAcross() {
+        FxRateSnapshot rates = snapshot(0, "1.10");
+
+        assertEquals(new BigDecimal("110.00"), rates.convert(new BigDecimal("100.00"), EUR, USD));
+        assertEquals(new BigDecimal("90.91"), rates.convert(new BigDecimal("100.00"), USD, EUR));
+        assertEquals(new BigDecimal("88.00"), rates.convert(new BigDecimal("100.00"), EUR, GBP));
+        assertEquals(new BigDecimal("100.00"), rates.convert(new BigDecimal("100.00"), GBP, GBP));
+        assertNull(rates.convert(new BigDecimal("100.00"), USD, JPY));
+        assertEquals(3, rates.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRatesMustBePositive() {
+        snapshot(0, "0");
+    }
+
+    @Test
+    public void testFileSource() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("rates.properties");
+        Files.write(file, ("base=USD\nasOf=2024-01-02T00:00:00Z\nEUR=1.10\nJPY=0.0067\n").getBytes(StandardCharsets.UTF_8));
+
+        FxRates fxRates = new FxRates(FxRateSource.file(file), USD);
+        assertNull(fxRates.convert(BigDecimal.TEN, USD, EUR));
+        assertTrue(fxRates.refresh());
+
+        assertEquals(Instant.parse("2024-01-02T00:00:00Z"), fxRates.current().getAsOf());
+        assertEquals(new BigDecimal("67.00"), fxRates.convert(new BigDecimal("10000"), JPY, USD));
+        assertEquals(new BigDecimal("11.00"), fxRates.convert(BigDecimal.TEN, EUR, USD));
+    }
+
+    @Test
+    public void testFailedRefreshKeepsTheOldRates() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("rates.properties");
+        Files.write(file, "EUR=1.10\n".getBytes(StandardCharsets.UTF_8));
+        FxRates fxRates = new FxRates(FxRateSource.file(file), USD);
+        assertTrue(fxRates.refresh());
+        FxRateSnapshot before = fxRates.current();
+
+        Files.write(file, "EUR=not-a-rate\n".getBytes(StandardCharsets.UTF_8));
+        assertFalse(fxRates.refresh());
+        Files.delete(file);
+        assertFalse(fxRates.refresh());
+
+        assertSame(before, fxRates.current());
+        assertEquals(1, fxRates.getRefreshes());
+        assertEquals(2, fxRates.getFailedRefreshes());
+    }
+
+    @Test
+    public void testOlderRatesAreNotSwappedIn() {
+        AtomicReference<FxRateSnapshot> next = new AtomicReference<>(snapshot(100, "1.10"));
+        FxRates fxRates = new FxRates(next::get, USD);
+        fxRates.refresh();
+
+        next.set(snapshot(50, "2.00"));
+        fxRates.refresh();
+
+        assertEquals(new BigDecimal("11.00"), fxRates.convert(BigDecimal.TEN, EUR, USD));
+    }
+
+    @Test
+    public void testConversionsDuringRefreshesUseOneSnapshotOrTheOther() throws InterruptedException {
+        AtomicReference<FxRateSnapshot> next = new AtomicReference<>(snapshot(0, "1.00"));
+        FxRates fxRates = new FxRates(next::get, USD);
+        fxRates.refresh();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread refresher = new Thread(() -> {
+            for (int i = 1; running.get(); i++) {
+                next.set(snapshot(i, i % 2 == 0 ? "1.00" : "1.50"));
+                fxRates.refresh();
+            }
+        });
+        refresher.start();
+
+        try {
+            for (int i = 0; i < 200_000; i++) {
+                BigDecimal converted = fxRates.convert(new BigDecimal("100.00"), EUR, USD);
+                assertTrue(converted.toString(), converted.equals(new BigDecimal("100.00"))
+                        || converted.equals(new BigDecimal("150.00")));
+            }
+        } finally {
+            running.set(false);
+            refresher.join();
+        }
+        assertTrue(fxRates.getRefreshes() > 1);
+    }
+}
@@ -0,0 +1,145 @@
+package com.banking.jfr;
+
+import com.banking.BankingSystem;
+import com.banking.db.TestDatabase;
+import com.banking.exception.BankingException;
+import com.banking.model.AccountType;
+import com.banking.model.OperationResult;
+import com.banking.service.AccountService;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import static org.junit.Assert.*;
+
+public class BankingEventsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BankingSystem bankingSystem;
+    private AccountService accountService;
+
+    @Before
+    public void setUp() {
+        TestDatabase.reset();
+        bankingSystem = new BankingSystem();
+        accountService = new AccountService(bankingSystem);
+    }
+
+    // Record everything the work does, with every threshold at zero
+    private List<RecordedEvent> record(Runnable work) throws Exception {
+        Path file = folder.newFile("banking.jfr").toPath();
+        try (Recording recording = new Recording()) {
+            for (Class<? extends jdk.jfr.Event> type : List.of(DepositEvent.class, WithdrawalEvent.class,
+                    TransferEvent.class, AccountCreatedEvent.class, TransactionRecordedEvent.class,
+                    ConnectionAcquiredEvent.class, OperationFailedEvent.class, MonthEndEvent.class)) {
+                recording.enable(type).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            work.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().startsWith("com.banking."))
+                .collect(Collectors.toList());
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testOperationsAreRecorded() throws Exception {
+        List<RecordedEvent> events = record(() -> {
+            accountService.createAccount(AccountType.CHECKING, "JFR001", new BigDecimal("100.00"));
+            accountService.createAccount(AccountType.SAVINGS, "JFR002", new BigDecimal("50.00"));
+            accountService.deposit("JFR001", new BigDecimal("25.50"));
+            accountService.withdraw("JFR001", new BigDecimal("10.00"));
+            accountService.transfer("JFR001", "JFR002", new BigDecimal("5.00"));
+            bankingSystem.processMonthlyFees();
+        });
+
+        RecordedEvent deposit = named(events, "com.banking.Deposit").get(0);
+        assertEquals("JFR001", deposit.getString("accountId"));
+        assertEquals("25.50", deposit.getString("amount"));
+        assertEquals("OK", deposit.getString("outcome"));
+        assertFalse(deposit.getDuration().isNegative());
+
+        RecordedEvent transfer = named(events, "com.banking.Transfer").get(0);
+        assertEquals("JFR002", transfer.getString("toAccountId"));
+        assertEquals("5.00", transfer.getString("amount"));
+
+        assertEquals(2, named(events, "com.banking.AccountCreated").size());
+        assertEquals("SAVINGS", named(events, "com.banking.AccountCreated").get(1).getString("accountType"));
+        assertEquals(1, named(events, "com.banking.Withdrawal").size());
+        // Deposit, withdrawal and both transfer legs
+        assertEquals(4, named(events, "com.banking.TransactionRecorded").size());
+        assertTrue(named(events, "com.banking.OperationFailed").isEmpty());
+
+        RecordedEvent monthEnd = named(events, "com.banking.MonthEnd").get(0);
+        assertEquals("in-memory", monthEnd.getString("job"));
+        assertEquals(2, monthEnd.getLong("accounts"));
+        assertTrue(monthEnd.getBoolean("succeeded"));
+    }
+
+    @Test
+    public void testFailuresAreRecorded() throws Exception {
+        accountService.createAccount(AccountType.SAVINGS, "JFR003", new BigDecimal("20.00"));
+
+        List<RecordedEvent> events = record(() -> {
+            assertEquals(OperationResult.INSUFFICIENT_FUNDS,
+                    accountService.tryWithdraw("JFR003", new BigDecimal("500.00")));
+            try {
+                accountService.deposit("NOSUCH", new BigDecimal("1.00"));
+                fail("Expected an unknown account");
+            } catch (BankingException expected) {
+            }
+        });
+
+        RecordedEvent withdrawal = named(events, "com.banking.Withdrawal").get(0);
+        assertEquals("INSUFFICIENT_FUNDS", withdrawal.getString("outcome"));
+
+        Map<String, RecordedEvent> failed = named(events, "com.banking.OperationFailed").stream()
+                .collect(Collectors.toMap(e -> e.getString("operation"), e -> e));
+        assertEquals("INSUFFICIENT_FUNDS", failed.get("withdrawal").getString("outcome"));
+        assertEquals("500.00", failed.get("withdrawal").getString("amount"));
+        assertEquals("AccountNotFoundException", failed.get("deposit").getString("outcome"));
+        assertTrue(failed.get("deposit").getString("message").contains("NOSUCH"));
+        assertTrue(failed.get("deposit").getLong("elapsed") > 0);
+        assertFalse(failed.get("deposit").getFields().stream().anyMatch(f -> f.getName().equals("startNanos")));
+    }
+
+    @Test
+    public void testConnectionsAreRecorded() throws Exception {
+        List<RecordedEvent> events = record(() -> new AccountService(new BankingSystem()));
+
+        RecordedEvent connection = named(events, "com.banking.ConnectionAcquired").get(0);
+        assertTrue(connection.getBoolean("succeeded"));
+        assertTrue(connection.getString("url").startsWith("jdbc:h2:"));
+    }
+
+    @Test
+    public void testSettingsFileCoversEveryEvent() throws Exception {
+        Map<String, String> settings = BankingRecording.bankingConfiguration().getSettings();
+        for (String name : List.of("Deposit", "Withdrawal", "Transfer", "AccountCreated", "TransactionRecorded",
+                "OperationFailed", "ConnectionAcquired", "MonthEnd")) {
+            assertEquals("true", settings.get("com.banking." + name + "#enabled"));
+        }
+        assertEquals("10 ms", settings.get("com.banking.Deposit#threshold"));
+
+        // Merged over a JDK configuration
+        Map<String, String> merged = BankingRecording.settings("default");
+        assertEquals("true", merged.get("com.banking.Transfer#enabled"));
+        assertEquals("true", merged.get("jdk.GarbageCollection#enabled"));
+    }
+}
@@ -0,0 +1,190 @@
+package com.banking.ledger;
+
+import com.banking.BankingSystem;
+import com.banking.db.TestDatabase;
+import com.banking.model.*;
+import com.banking.service.AccountService;
+import com.banking.exception.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+
+public class LedgerProcessorTest {
+    private BankingSystem bankingSystem;
+    private AccountService accountService;
+    private Path journalFile;
+
+    @Before
+    public void setUp() throws Exception {
+        TestDatabase.reset();
+        bankingSystem = new BankingSystem();
+        accountService = new AccountService(bankingSystem);
+        journalFile = Files.createTempFile("ledger", ".log");
+
+        accountService.createAccount(AccountType.SAVINGS, "SAV001", new BigDecimal("1000.00"));
+        accountService.createAccount(AccountType.CHECKING, "CHK001", new BigDecimal("500.00"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(journalFile);
+    }
+
+    @Test
+    public void testCommandsAreAppliedJournaledAndPersisted() throws Exception {
+        AtomicInteger insufficient = new AtomicInteger();
+        try (LedgerProcessor processor = new LedgerProcessor(bankingSystem, 2, 64,
+                new FileLedgerJournal(journalFile), true, command -> {
+                    if (command.getResult() == OperationResult.INSUFFICIENT_FUNDS) {
+                        insufficient.incrementAndGet();
+                    }
+                })) {
+            // More commands than slots, so the ring has to wrap
+            for (int i = 0; i < 100; i++) {
+                processor.deposit("CHK001", new BigDecimal("1.00"));
+                processor.transfer("SAV001", "CHK001", new BigDecimal("5.00"));
+            }
+            processor.withdraw("CHK001", new BigDecimal("5000.00"));
+            processor.awaitIdle();
+
+            assertEquals(200, processor.getAppliedCount());
+            assertEquals(1, processor.getRejectedCount());
+        }
+
+        assertEquals(1, insufficient.get());
+        assertEquals(new BigDecimal("500.00"), bankingSystem.findAccount("SAV001").getBalance());
+        assertEquals(new BigDecimal("1100.00"), bankingSystem.findAccount("CHK001").getBalance());
+        assertEquals(new BigDecimal("500.00"), accountService.getBalance("SAV001"));
+        assertEquals(new BigDecimal("1100.00"), accountService.getBalance("CHK001"));
+        assertEquals(300, accountService.getAllTransactions().size());
+
+        List<String> journal = Files.readAllLines(journalFile);
+        assertEquals(201, journal.size());
+    }
+
+    @Test
+    public void testTransferAcrossCurrenciesIsRejected() {
+        accountService.createAccount(AccountType.CHECKING, "EUR001", new BigDecimal("100.00"), Currency.getInstance("EUR"));
+        AtomicInteger mismatches = new AtomicInteger();
+        try (LedgerProcessor processor = new LedgerProcessor(bankingSystem, 2, 64, null, true, command -> {
+            if (command.getResult() == OperationResult.CURRENCY_MISMATCH) {
+                mismatches.incrementAndGet();
+            }
+        })) {
+            processor.transfer("CHK001", "EUR001", new BigDecimal("50.00"));
+            processor.transfer("EUR001", "CHK001", new BigDecimal("50.00"));
+            processor.awaitIdle();
+            assertEquals(2, processor.getRejectedCount());
+        }
+
+        assertEquals(2, mismatches.get());
+        assertEquals(new BigDecimal("500.00"), bankingSystem.findAccount("CHK001").getBalance());
+        assertEquals(new BigDecimal("100.00"), bankingSystem.findAccount("EUR001").getBalance());
+        assertEquals(new BigDecimal("500.00"), accountService.getBalance("CHK001"));
+        assertEquals(new BigDecimal("100.00"), accountService.getBalance("EUR001"));
+    }
+
+    @Test
+    public void testFailedDbBatchHaltsThePartition() {
+        // Known in memory but not in the DB, so its balance update finds no row
+        bankingSystem.addAccount(new CheckingAccount("MEMONLY", new BigDecimal("10.00")));
+        List<OperationResult> results = new CopyOnWriteArrayList<>();
+        LedgerProcessor processor = new LedgerProcessor(bankingSystem, 1, 64, null, true,
+                command -> results.add(command.getResult()));
+        processor.deposit("MEMONLY", new BigDecimal("1.00"));
+        try {
+            processor.awaitIdle();
+            fail("Expected the partition to halt");
+        } catch (BankingException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("halted"));
+        }
+        try {
+            processor.deposit("CHK001", new BigDecimal("1.00"));
+            fail("Expected a halted partition to refuse commands");
+        } catch (BankingException expected) {
+        }
+        try {
+            processor.close();
+            fail("Expected close to report the failure");
+        } catch (BankingException expected) {
+        }
+
+        assertEquals(0, processor.getPersistedBatches());
+        assertEquals(0, accountService.getAllTransactions().size());
+        // The deposit never reached the DB, so it is undone and never reported OK
+        assertEquals(Collections.singletonList(OperationResult.FAILED), results);
+        assertEquals(new BigDecimal("10.00"), bankingSystem.findAccount("MEMONLY").getBalance());
+        assertEquals(0, processor.getAppliedCount());
+    }
+
+    @Test
+    public void testResultsAreReportedOnlyOnceInTheDb() {
+        List<BigDecimal> balancesSeen = new CopyOnWriteArrayList<>();
+        try (LedgerProcessor processor = new LedgerProcessor(bankingSystem, 1, 64, null, true, command -> {
+            if (command.getResult().isSuccess()) {
+                balancesSeen.add(accountService.getBalance("CHK001"));
+            }
+        })) {
+            processor.deposit("CHK001", new BigDecimal("1.00"));
+            processor.awaitIdle();
+            processor.deposit("CHK001", new BigDecimal("1.00"));
+            processor.awaitIdle();
+        }
+
+        assertEquals(Arrays.asList(new BigDecimal("501.00"), new BigDecimal("502.00")), balancesSeen);
+    }
+
+    @Test
+    public void testIdleThreadsBlock() throws Exception {
+        try (LedgerProcessor processor = new LedgerProcessor(bankingSystem, 2, 64, null, true, null)) {
+            processor.deposit("CHK001", new BigDecimal("1.00"));
+            processor.awaitIdle();
+            Thread.sleep(200);
+
+            int ledgerThreads = 0;
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().startsWith("ledger-")) {
+                    ledgerThreads++;
+                    assertEquals(thread.getName(), Thread.State.WAITING, thread.getState());
+                }
+            }
+            assertEquals(6, ledgerThreads);
+
+            // A blocked writer still wakes up for the next command
+            processor.deposit("CHK001", new BigDecimal("1.00"));
+            processor.awaitIdle();
+        }
+        assertEquals(new BigDecimal("502.00"), accountService.getBalance("CHK001"));
+    }
+
+    @Test
+    public void testWriterSurvivesAFailingCommand() {
+        bankingSystem.addAccount(new CheckingAccount("BROKEN", BigDecimal.ZERO) {
+            @Override
+            public OperationResult tryWithdraw(BigDecimal amount) {
+                throw new IllegalStateException("broken account");
+            }
+        });
+        try (LedgerProcessor processor = new LedgerProcessor(bankingSystem, 1, 64, null, false, command -> {
+            throw new IllegalStateException("listener failed");
+        })) {
+            processor.withdraw("BROKEN", new BigDecimal("1.00"));
+            processor.deposit("CHK001", new BigDecimal("1.00"));
+            processor.awaitIdle();
+
+            assertEquals(1, processor.getAppliedCount());
+            assertEquals(1, processor.getRejectedCount());
+        }
+        assertEquals(new BigDecimal("501.00"), bankingSystem.findAccount("CHK001").getBalance());
+    }
+}
@@ -0,0 +1,33 @@
+package com.banking.model;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AccountKeyCodecTest {
+
+    @Test
+    public void testRoundTripKeepsLeadingZeros() {
+        long key = AccountKeyCodec.encode("SAV001");
+
+        assertNotEquals(AccountKeyCodec.NO_KEY, key);
+        assertEquals(AccountType.SAVINGS, AccountKeyCodec.typeOf(key));
+        assertEquals(1, AccountKeyCodec.sequenceOf(key));
+        assertEquals("SAV001", AccountKeyCodec.decode(key));
+        assertNotEquals(key, AccountKeyCodec.encode("SAV01"));
+    }
+
+    @Test
+    public void testTypesGetDistinctKeys() {
+        assertNotEquals(AccountKeyCodec.encode("SAV123"), AccountKeyCodec.encode("CHK123"));
+        assertEquals("CHK0000123", AccountKeyCodec.decode(AccountKeyCodec.encode("CHK0000123")));
+    }
+
+    @Test
+    public void testFreeFormIdsAreNotEncodable() {
+        assertEquals(AccountKeyCodec.NO_KEY, AccountKeyCodec.encode("ACC001"));
+        assertEquals(AccountKeyCodec.NO_KEY, AccountKeyCodec.encode("SAV"));
+        assertEquals(AccountKeyCodec.NO_KEY, AccountKeyCodec.encode("SAV12A"));
+        assertEquals(AccountKeyCodec.NO_KEY, AccountKeyCodec.encode(null));
+        assertFalse(AccountKeyCodec.isCanonical("INVALID"));
+    }
+}
@@ -52,6 +52,8 @@ public class AccountOperationsTest {
         BigDecimal initialBalance = savingsAccount.getBalance();
         savingsAccount.processMonthlyFees();
         assertTrue(savingsAccount.getBalance().compareTo(initialBalance) > 0);
+        // 1000.00 * 2.5% / 12 = 2.0833...
+        assertEquals(new BigDecimal("1002.08"), savingsAccount.getBalance());
 
         // Test checking account fees
         BigDecimal checkingInitialBalance = checkingAccount.getBalance();
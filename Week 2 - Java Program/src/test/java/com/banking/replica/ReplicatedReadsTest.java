@@ -0,0 +1,134 @@
+package com.banking.replica;
+
+import com.banking.BankingSystem;
+import com.banking.db.TestDatabase;
+import com.banking.ledger.LedgerProcessor;
+import com.banking.model.AccountType;
+import com.banking.service.AccountService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.*;
+
+public class ReplicatedReadsTest {
+    private BankingSystem bankingSystem;
+    private AccountService primary;
+    private ChangeLog log;
+    private ReplicaFollower first;
+    private ReplicaFollower second;
+
+    @Before
+    public void setUp() {
+        TestDatabase.reset();
+        bankingSystem = new BankingSystem();
+        primary = new AccountService(bankingSystem);
+        log = new ChangeLog();
+        primary.addChangeListener(log);
+        first = new ReplicaFollower("first", log);
+        second = new ReplicaFollower("second", log);
+
+        primary.createAccount(AccountType.CHECKING, "CHK001", new BigDecimal("500.00"));
+        primary.createAccount(AccountType.SAVINGS, "SAV001", new BigDecimal("1000.00"));
+    }
+
+    @After
+    public void tearDown() {
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void testReadYourWritesSeesTheWrite() {
+        ReplicatedReads reads = new ReplicatedReads(primary, log, Arrays.asList(first, second), 1000, 5000);
+
+        primary.deposit("CHK001", new BigDecimal("25.00"));
+        primary.transfer("SAV001", "CHK001", new BigDecimal("100.00"));
+        long token = reads.currentSequence();
+
+        assertEquals(new BigDecimal("625.00"), reads.getBalance("CHK001", token));
+        assertEquals(new BigDecimal("900.00"), reads.getBalance("SAV001", token));
+        assertEquals(3, reads.getAllTransactions(token).size());
+        assertTrue(reads.viewAccount("CHK001", token).contains("625.00"));
+        assertEquals(0, reads.getPrimaryReads());
+        assertEquals(4, reads.getReplicaReads());
+    }
+
+    @Test
+    public void testFollowersCatchUpAndLogIsTrimmed() throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            primary.deposit("CHK001", new BigDecimal("1.00"));
+        }
+        long token = log.getLastSequence();
+        assertTrue(first.awaitSequence(token, 5000));
+        assertTrue(second.awaitSequence(token, 5000));
+
+        assertEquals(0, first.getLagRecords());
+        assertEquals(0, second.getLagMillis());
+        assertEquals(0, log.getBacklog());
+        assertEquals(new BigDecimal("550.00"), first.getReader().getBalance("CHK001"));
+    }
+
+    @Test
+    public void testFallsBackToPrimaryWhenNoFollowerHasTheWrite() {
+        second.close();
+        ReplicatedReads reads = new ReplicatedReads(primary, log, Collections.singletonList(second), 1000, 0);
+
+        primary.deposit("CHK001", new BigDecimal("10.00"));
+        assertEquals(new BigDecimal("510.00"), reads.getBalance("CHK001", reads.currentSequence()));
+        assertEquals(1, reads.getPrimaryReads());
+    }
+
+    @Test
+    public void testLateFollowerStartsFromACopyOfThePrimary() throws InterruptedException {
+        primary.deposit("CHK001", new BigDecimal("25.00"));
+        primary.transfer("SAV001", "CHK001", new BigDecimal("100.00"));
+
+        try (ReplicaFollower late = new ReplicaFollower("late", log)) {
+            assertEquals(new BigDecimal("625.00"), late.getReader().getBalance("CHK001"));
+            assertEquals(new BigDecimal("900.00"), late.getReader().getBalance("SAV001"));
+            assertEquals(3, late.getReader().getAllTransactions().size());
+
+            // Changes after the copy follow on, each applied exactly once
+            primary.withdraw("CHK001", new BigDecimal("5.00"));
+            assertTrue(late.awaitSequence(log.getLastSequence(), 5000));
+            assertEquals(new BigDecimal("620.00"), late.getReader().getBalance("CHK001"));
+            assertEquals(4, late.getReader().getAllTransactions().size());
+            assertFalse(late.isFailed());
+        }
+    }
+
+    @Test
+    public void testReadsNeverSplitAChangeSet() throws InterruptedException {
+        ChangeLog.Subscription subscription = log.subscribe();
+        primary.transfer("SAV001", "CHK001", new BigDecimal("100.00"));
+
+        // Two balance changes and two transaction rows, all from one DB transaction
+        List<ChangeRecord> batch = log.read(subscription, 1, 0);
+        assertEquals(4, batch.size());
+        assertFalse(batch.get(0).isEndOfChangeSet());
+        assertTrue(batch.get(3).isEndOfChangeSet());
+        log.unsubscribe(subscription);
+    }
+
+    @Test
+    public void testLedgerProcessorWritesReachFollowers() throws InterruptedException {
+        LedgerProcessor ledger = new LedgerProcessor(bankingSystem, 2, 64, null, true, null);
+        ledger.addChangeListener(log);
+        try {
+            ledger.deposit("CHK001", new BigDecimal("40.00"));
+            ledger.transfer("SAV001", "CHK001", new BigDecimal("60.00"));
+            ledger.awaitIdle();
+        } finally {
+            ledger.close();
+        }
+
+        assertTrue(first.awaitSequence(log.getLastSequence(), 5000));
+        assertEquals(new BigDecimal("600.00"), first.getReader().getBalance("CHK001"));
+        assertEquals(new BigDecimal("940.00"), first.getReader().getBalance("SAV001"));
+        assertEquals(3, first.getReader().getAllTransactions().size());
+    }
+}
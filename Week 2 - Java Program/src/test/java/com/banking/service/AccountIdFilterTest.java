@@ -0,0 +1,105 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.db.TestDatabase;
+import com.banking.exception.AccountNotFoundException;
+import com.banking.exception.BankingException;
+import com.banking.model.AccountType;
+import org.junit.Before;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import static org.junit.Assert.*;
+
+public class AccountIdFilterTest {
+    private AccountService accountService;
+
+    @Before
+    public void setUp() {
+        TestDatabase.reset();
+        AccountService seed = new AccountService(new BankingSystem());
+        for (int i = 0; i < 50; i++) {
+            seed.createAccount(AccountType.CHECKING, String.format("CHK%03d", i), new BigDecimal("100.00"));
+        }
+        // A fresh service, like after a restart
+        accountService = new AccountService(new BankingSystem());
+    }
+
+    @Test
+    public void testFilterIsBuiltFromTheTable() {
+        AccountIdFilter filter = accountService.getAccountIdFilter();
+        for (int i = 0; i < 50; i++) {
+            assertTrue(filter.mightExist(String.format("CHK%03d", i)));
+        }
+        assertEquals(new BigDecimal("100.00"), accountService.getBalance("CHK007"));
+    }
+
+    @Test
+    public void testDuplicateIdIsReportedClearly() {
+        try {
+            accountService.createAccount(AccountType.SAVINGS, "CHK001", new BigDecimal("100.00"));
+            fail("Expected a duplicate ID error");
+        } catch (BankingException e) {
+            assertEquals("Account CHK001 already exists", e.getMessage());
+        }
+        accountService.createAccount(AccountType.SAVINGS, "SAV001", new BigDecimal("100.00"));
+        assertTrue(accountService.getAccountIdFilter().mightExist("SAV001"));
+    }
+
+    @Test
+    public void testDefiniteMissSkipsTheDb() throws SQLException {
+        // Inserted behind the service's back: the filter does not know it
+        try (Connection conn = AccountService.openConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO accounts (account_id, account_type, balance) VALUES ('ZZZ999', 'CHECKING', 1.00)");
+        }
+        AccountIdFilter filter = accountService.getAccountIdFilter();
+        long misses = filter.getDefiniteMisses();
+        try {
+            accountService.getBalance("ZZZ999");
+            fail("Expected the filter to rule the account out");
+        } catch (AccountNotFoundException expected) {
+        }
+        assertEquals(misses + 1, filter.getDefiniteMisses());
+
+        try (Connection conn = AccountService.openConnection()) {
+            filter.rebuild(conn);
+        }
+        assertEquals(new BigDecimal("1.00"), accountService.getBalance("ZZZ999"));
+    }
+
+    @Test
+    public void testServicesOnOneDatabaseShareTheFilter() throws Exception {
+        BankingSystem bankingSystem = new BankingSystem();
+        AccountService other = new AccountService(bankingSystem);
+        assertSame(accountService.getAccountIdFilter(), other.getAccountIdFilter());
+
+        try (AsyncAccountService async = new AsyncAccountService(bankingSystem)) {
+            assertSame(accountService.getAccountIdFilter(), async.getAccountIdFilter());
+            async.createAccount(AccountType.CHECKING, "NEW001", new BigDecimal("5.00")).get();
+        }
+        // Created through another service: not a definite miss here
+        assertEquals(new BigDecimal("5.00"), accountService.getBalance("NEW001"));
+        other.createAccount(AccountType.CHECKING, "NEW002", new BigDecimal("7.00"));
+        assertEquals(new BigDecimal("7.00"), accountService.getBalance("NEW002"));
+    }
+
+    @Test
+    public void testFalsePositiveRateIsReported() {
+        AccountIdFilter filter = accountService.getAccountIdFilter();
+        // The filter is shared, so count from here
+        long before = filter.getDefiniteMisses() + filter.getFalsePositives();
+        for (int i = 0; i < 1000; i++) {
+            try {
+                accountService.viewAccount("NOPE" + i);
+                fail("Account should not exist");
+            } catch (AccountNotFoundException expected) {
+            }
+        }
+        assertEquals(before + 1000, filter.getDefiniteMisses() + filter.getFalsePositives());
+        assertTrue(filter.getObservedFalsePositiveRate() < 0.05);
+        assertTrue(filter.getExpectedFalsePositiveRate() < 0.01);
+    }
+}
@@ -0,0 +1,122 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.db.TestDatabase;
+import com.banking.model.AccountType;
+import com.banking.model.OperationResult;
+import com.banking.exception.OverloadedException;
+import com.banking.util.AdaptiveConcurrencyLimiter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+
+public class AdmissionControlledAccountServiceTest {
+    private AccountService accountService;
+    private AdmissionControlledAccountService admitted;
+
+    @After
+    public void tearDown() {
+        admitted.close();
+    }
+
+    @Before
+    public void setUp() {
+        TestDatabase.reset();
+        accountService = new AccountService(new BankingSystem());
+        accountService.createAccount(AccountType.CHECKING, "CHK001", new BigDecimal("500.00"));
+
+        // One slot per operation and no queue
+        Map<AdmissionControlledAccountService.Operation, AdaptiveConcurrencyLimiter> limiters =
+                new EnumMap<>(AdmissionControlledAccountService.Operation.class);
+        for (AdmissionControlledAccountService.Operation operation : AdmissionControlledAccountService.Operation.values()) {
+            limiters.put(operation, new AdaptiveConcurrencyLimiter(1, 1, 1, 0, 0, 2.0));
+        }
+        admitted = new AdmissionControlledAccountService(accountService, limiters);
+    }
+
+    @Test
+    public void testPassesThroughWhenThereIsRoom() {
+        assertEquals(OperationResult.OK, admitted.tryDeposit("CHK001", new BigDecimal("10.00")));
+        assertEquals(OperationResult.INSUFFICIENT_FUNDS, admitted.tryWithdraw("CHK001", new BigDecimal("900.00")));
+        assertEquals(new BigDecimal("510.00"), admitted.getBalance("CHK001"));
+    }
+
+    @Test
+    public void testFastFailsWhenOverloaded() throws InterruptedException {
+        AdaptiveConcurrencyLimiter deposits = admitted.getLimiter(AdmissionControlledAccountService.Operation.DEPOSIT);
+        assertTrue(deposits.acquire());
+
+        assertEquals(OperationResult.OVERLOADED, admitted.tryDeposit("CHK001", new BigDecimal("10.00")));
+        assertEquals(new BigDecimal("500.00"), accountService.getBalance("CHK001"));
+
+        // Other operations have their own limits
+        assertEquals(OperationResult.OK, admitted.tryWithdraw("CHK001", new BigDecimal("10.00")));
+
+        AdaptiveConcurrencyLimiter reads = admitted.getLimiter(AdmissionControlledAccountService.Operation.READ);
+        assertTrue(reads.acquire());
+        try {
+            admitted.getBalance("CHK001");
+            fail("Expected overload");
+        } catch (OverloadedException e) {
+            assertEquals(0, e.getStackTrace().length);
+        }
+    }
+
+    @Test
+    public void testConcurrentTransfersConserveMoney() throws Exception {
+        accountService.createAccount(AccountType.CHECKING, "CHK002", new BigDecimal("500.00"));
+        // At its minimum balance, so every transfer out of it is rolled back
+        accountService.createAccount(AccountType.SAVINGS, "SAV001", new BigDecimal("100.00"));
+        AdmissionControlledAccountService service = new AdmissionControlledAccountService(accountService);
+        AtomicInteger moved = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                boolean rejected = t % 2 == 1;
+                done.add(pool.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        if (rejected) {
+                            OperationResult result = service.tryTransfer("SAV001", "CHK002", new BigDecimal("1.00"));
+                            assertTrue(result == OperationResult.INSUFFICIENT_FUNDS
+                                    || result == OperationResult.OVERLOADED);
+                            continue;
+                        }
+                        OperationResult result = service.tryTransfer("CHK001", "CHK002", new BigDecimal("0.50"));
+                        if (result.isSuccess()) {
+                            moved.incrementAndGet();
+                        } else {
+                            assertEquals(OperationResult.OVERLOADED, result);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+            service.close();
+        }
+
+        BigDecimal total = new BigDecimal("0.50").multiply(BigDecimal.valueOf(moved.get()));
+        assertTrue(moved.get() > 0);
+        assertEquals(new BigDecimal("500.00").subtract(total), accountService.getBalance("CHK001"));
+        assertEquals(new BigDecimal("500.00").add(total), accountService.getBalance("CHK002"));
+        assertEquals(new BigDecimal("100.00"), accountService.getBalance("SAV001"));
+        assertEquals(0, new BalanceReconciler(accountService.getBankingSystem()).reconcile(false).getMismatches().size());
+    }
+}
@@ -0,0 +1,133 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.db.TestDatabase;
+import com.banking.model.*;
+import com.banking.exception.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+
+public class AsyncAccountServiceTest {
+    private BankingSystem bankingSystem;
+    private AccountService accountService;
+    private AsyncAccountService asyncService;
+
+    @Before
+    public void setUp() throws BankingException {
+        TestDatabase.reset();
+        bankingSystem = new BankingSystem();
+        accountService = new AccountService(bankingSystem);
+        asyncService = new AsyncAccountService(bankingSystem, 4, 64);
+
+        accountService.createAccount(AccountType.SAVINGS, "SAV001", new BigDecimal("1000.00"));
+        accountService.createAccount(AccountType.CHECKING, "CHK001", new BigDecimal("500.00"));
+    }
+
+    @After
+    public void tearDown() {
+        asyncService.close();
+    }
+
+    @Test
+    public void testListenerAddedWhileWorkersStartIsOnEveryWorkerOnce() {
+        for (int round = 0; round < 10; round++) {
+            AtomicInteger changes = new AtomicInteger();
+            try (AsyncAccountService fresh = new AsyncAccountService(bankingSystem, 8, 256)) {
+                // Workers start while the listener is being added
+                List<CompletableFuture<Void>> starting = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    starting.add(fresh.deposit("CHK001", new BigDecimal("1.00")));
+                }
+                fresh.addChangeListener(new AccountChangeListener() {
+                    @Override
+                    public void accountCreated(String accountId, AccountType type, BigDecimal initialBalance) {
+                    }
+
+                    @Override
+                    public void balanceChanged(String accountId, BigDecimal delta) {
+                        changes.incrementAndGet();
+                    }
+
+                    @Override
+                    public void transactionRecorded(String accountId, BigDecimal amount, Timestamp date) {
+                    }
+                });
+                starting.forEach(CompletableFuture::join);
+
+                int before = changes.get();
+                List<CompletableFuture<Void>> deposits = new ArrayList<>();
+                for (int i = 0; i < 64; i++) {
+                    deposits.add(fresh.deposit("CHK001", new BigDecimal("1.00")));
+                }
+                deposits.forEach(CompletableFuture::join);
+                assertEquals(64, changes.get() - before);
+            }
+        }
+    }
+
+    @Test
+    public void testAsyncDeposit() {
+        asyncService.deposit("SAV001", new BigDecimal("250.00")).join();
+        assertEquals(new BigDecimal("1250.00"), accountService.getBalance("SAV001"));
+    }
+
+    @Test
+    public void testAsyncTransferRecordsBothLegs() {
+        asyncService.transfer("SAV001", "CHK001", new BigDecimal("200.00")).join();
+
+        assertEquals(new BigDecimal("800.00"), asyncService.getBalance("SAV001").join());
+        assertEquals(new BigDecimal("700.00"), asyncService.getBalance("CHK001").join());
+        assertEquals(2, accountService.getAllTransactions().size());
+    }
+
+    @Test
+    public void testTransferWithAFailedLegMovesNothing() throws SQLException {
+        try (Connection conn = AccountService.openConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE transactions ADD CONSTRAINT small_debits CHECK (amount > -150)");
+        }
+        try {
+            asyncService.transfer("SAV001", "CHK001", new BigDecimal("200.00")).join();
+            fail("Expected the debit leg to be rejected");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof BankingException);
+        }
+
+        assertEquals(new BigDecimal("1000.00"), accountService.getBalance("SAV001"));
+        assertEquals(new BigDecimal("500.00"), accountService.getBalance("CHK001"));
+        assertEquals(0, accountService.getAllTransactions().size());
+    }
+
+    @Test
+    public void testManyConcurrentDeposits() {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(asyncService.deposit("CHK001", new BigDecimal("10.00")));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+        assertEquals(new BigDecimal("700.00"), accountService.getBalance("CHK001"));
+    }
+
+    @Test
+    public void testAsyncWithdrawInsufficientFunds() {
+        try {
+            asyncService.withdraw("SAV001", new BigDecimal("2000.00")).join();
+            fail("Expected insufficient funds");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof InsufficientFundsException);
+        }
+        assertEquals(new BigDecimal("1000.00"), accountService.getBalance("SAV001"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.db.TestDatabase;
+import com.banking.model.*;
+import com.banking.exception.BankingException;
+import org.junit.Before;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import static org.junit.Assert.*;
+
+public class BalanceReconcilerTest {
+    private BankingSystem bankingSystem;
+    private AccountService accountService;
+
+    @Before
+    public void setUp() throws BankingException {
+        TestDatabase.reset();
+        bankingSystem = new BankingSystem();
+        accountService = new AccountService(bankingSystem);
+        for (int i = 0; i < 100; i++) {
+            accountService.createAccount(AccountType.CHECKING, String.format("CHK%03d", i), new BigDecimal("100.00"));
+        }
+        accountService.deposit("CHK001", new BigDecimal("12.34"));
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = AccountService.openConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    @Test
+    public void testMatchingSidesTouchNoShards() {
+        ReconciliationReport report = new BalanceReconciler(bankingSystem, 16).reconcile(false);
+        assertTrue(report.isConsistent());
+        assertEquals(0, report.getDifferingShards());
+        assertEquals(0, report.getRowsCompared());
+    }
+
+    @Test
+    public void testFindsAndRepairsDrift() throws SQLException {
+        execute("UPDATE accounts SET balance = 55.00 WHERE account_id = 'CHK002'");
+        execute("INSERT INTO accounts (account_id, account_type, balance) VALUES ('SAV900', 'SAVINGS', 700.00)");
+        bankingSystem.addAccount(new CheckingAccount("CHK999", new BigDecimal("1.00")));
+
+        BalanceReconciler reconciler = new BalanceReconciler(bankingSystem, 16);
+        ReconciliationReport report = reconciler.reconcile(false);
+        assertEquals(3, report.getMismatches().size());
+        assertTrue(report.getDifferingShards() <= 3);
+        assertTrue(report.getRowsCompared() < 101);
+        assertEquals(new BigDecimal("100.00"), bankingSystem.findAccount("CHK002").getBalance());
+
+        report = reconciler.reconcile(true);
+        assertEquals(3, report.getMismatches().size());
+        assertEquals(0, new BigDecimal("55.00").compareTo(bankingSystem.findAccount("CHK002").getBalance()));
+        assertTrue(bankingSystem.findAccount("SAV900") instanceof SavingsAccount);
+
+        // Only the account that exists just in memory is left
+        report = reconciler.reconcile(true);
+        assertEquals(1, report.getMismatches().size());
+        ReconciliationReport.Mismatch mismatch = report.getMismatches().get(0);
+        assertEquals("CHK999", mismatch.getAccountId());
+        assertNull(mismatch.getDbBalance());
+        assertFalse(mismatch.isRepaired());
+    }
+}
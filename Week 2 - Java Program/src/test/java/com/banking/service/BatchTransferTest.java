@@ -0,0 +1,167 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.db.TestDatabase;
+import com.banking.exception.*;
+import com.banking.model.AccountType;
+import com.banking.model.OperationResult;
+import org.junit.Before;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.Assert.*;
+
+public class BatchTransferTest {
+    private BankingSystem bankingSystem;
+    private AccountService accountService;
+
+    @Before
+    public void setUp() throws BankingException {
+        TestDatabase.reset();
+        bankingSystem = new BankingSystem();
+        accountService = new AccountService(bankingSystem);
+
+        accountService.createAccount(AccountType.SAVINGS, "PAYROLL", new BigDecimal("10000.00"));
+        for (int i = 0; i < 50; i++) {
+            accountService.createAccount(AccountType.CHECKING, String.format("EMP%03d", i), BigDecimal.ZERO);
+        }
+    }
+
+    private static long transactionRows() throws SQLException {
+        try (Connection conn = AccountService.openConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM transactions")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static List<TransferLeg> payroll(String amount) {
+        List<TransferLeg> legs = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            legs.add(new TransferLeg("PAYROLL", String.format("EMP%03d", i), new BigDecimal(amount)));
+        }
+        return legs;
+    }
+
+    @Test
+    public void testPayrollPostsEveryLeg() throws SQLException {
+        accountService.transferAll(payroll("150.00"));
+
+        assertEquals(new BigDecimal("2500.00"), accountService.getBalance("PAYROLL"));
+        assertEquals(new BigDecimal("2500.00"), bankingSystem.findAccount("PAYROLL").getBalance());
+        assertEquals(new BigDecimal("150.00"), accountService.getBalance("EMP007"));
+        assertEquals(new BigDecimal("150.00"), bankingSystem.findAccount("EMP049").getBalance());
+        assertEquals(100, transactionRows());
+        assertEquals(0, new BalanceReconciler(bankingSystem).reconcile(false).getMismatches().size());
+
+        // The cached row versions still match, so a plain withdrawal goes through
+        accountService.withdraw("PAYROLL", new BigDecimal("100.00"));
+        assertEquals(new BigDecimal("2400.00"), accountService.getBalance("PAYROLL"));
+    }
+
+    @Test
+    public void testShortfallPostsNothing() throws SQLException {
+        try {
+            accountService.transferAll(payroll("250.00"));
+            fail("Expected insufficient funds");
+        } catch (InsufficientFundsException e) {
+            assertTrue(e.getMessage().contains("PAYROLL"));
+        }
+        assertEquals(OperationResult.INSUFFICIENT_FUNDS, accountService.tryTransferAll(payroll("250.00")));
+
+        assertEquals(new BigDecimal("10000.00"), accountService.getBalance("PAYROLL"));
+        assertEquals(BigDecimal.ZERO.setScale(2), accountService.getBalance("EMP000"));
+        assertEquals(0, transactionRows());
+    }
+
+    @Test
+    public void testProjectedBalancesAreNetted() {
+        // EMP001 is empty, but what it receives in the batch covers what it pays on
+        List<TransferLeg> legs = Arrays.asList(
+                new TransferLeg("EMP001", "EMP002", new BigDecimal("80.00")),
+                new TransferLeg("PAYROLL", "EMP001", new BigDecimal("100.00")));
+
+        assertEquals(OperationResult.OK, accountService.tryTransferAll(legs));
+        assertEquals(new BigDecimal("20.00"), accountService.getBalance("EMP001"));
+        assertEquals(new BigDecimal("80.00"), accountService.getBalance("EMP002"));
+    }
+
+    @Test
+    public void testOneBadLegRejectsTheBatch() throws SQLException {
+        List<TransferLeg> legs = new ArrayList<>(payroll("10.00"));
+        legs.add(new TransferLeg("PAYROLL", "NOSUCH", new BigDecimal("10.00")));
+        try {
+            accountService.transferAll(legs);
+            fail("Expected an unknown account");
+        } catch (AccountNotFoundException e) {
+            assertEquals("NOSUCH", e.getAccountNumber());
+        }
+
+        legs.set(50, new TransferLeg("EMP003", "EMP003", new BigDecimal("1.00")));
+        assertEquals(OperationResult.SAME_ACCOUNT, accountService.tryTransferAll(legs));
+
+        accountService.createAccount(AccountType.CHECKING, "EUR001", BigDecimal.ZERO, Currency.getInstance("EUR"));
+        legs.set(50, new TransferLeg("PAYROLL", "EUR001", new BigDecimal("1.00")));
+        assertEquals(OperationResult.CURRENCY_MISMATCH, accountService.tryTransferAll(legs));
+
+        assertEquals(new BigDecimal("10000.00"), accountService.getBalance("PAYROLL"));
+        assertEquals(0, transactionRows());
+    }
+
+    @Test
+    public void testHotAccountsCountTheirStripes() {
+        accountService.enableHotAccount("EMP010", 4);
+        accountService.deposit("EMP010", new BigDecimal("30.00"));
+
+        // The 30.00 is all in the stripes
+        assertEquals(OperationResult.OK, accountService.tryTransferAll(
+                Arrays.asList(new TransferLeg("EMP010", "EMP011", new BigDecimal("30.00")))));
+        assertEquals(BigDecimal.ZERO.setScale(2), accountService.getBalance("EMP010"));
+        assertEquals(new BigDecimal("30.00"), accountService.getBalance("EMP011"));
+    }
+
+    @Test
+    public void testOverlappingBatchesDoNotDeadlock() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<OperationResult>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                // Alternate directions, so the batches touch the same accounts in different leg orders
+                boolean forward = t % 2 == 0;
+                results.add(pool.submit(() -> {
+                    AccountService worker = new AccountService(bankingSystem, AccountService.openConnection());
+                    List<TransferLeg> legs = new ArrayList<>();
+                    for (int i = 0; i < 20; i++) {
+                        String emp = String.format("EMP%03d", forward ? i : 19 - i);
+                        legs.add(new TransferLeg("PAYROLL", emp, new BigDecimal("1.00")));
+                    }
+                    return worker.tryTransferAll(legs);
+                }));
+            }
+            for (Future<OperationResult> result : results) {
+                assertEquals(OperationResult.OK, result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(new BigDecimal("9840.00"), accountService.getBalance("PAYROLL"));
+        assertEquals(new BigDecimal("8.00"), accountService.getBalance("EMP005"));
+        assertEquals(new BigDecimal("9840.00"), bankingSystem.findAccount("PAYROLL").getBalance());
+    }
+
+    @Test
+    public void testEmptyBatchDoesNothing() {
+        assertEquals(OperationResult.OK, accountService.tryTransferAll(new ArrayList<>()));
+    }
+}
@@ -0,0 +1,103 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.db.TestDatabase;
+import com.banking.exception.*;
+import com.banking.fx.FxRateSnapshot;
+import com.banking.fx.FxRateSource;
+import com.banking.fx.FxRates;
+import com.banking.model.*;
+import org.junit.Before;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import static org.junit.Assert.*;
+
+public class CrossCurrencyTransferTest {
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    private BankingSystem bankingSystem;
+    private AccountService accountService;
+
+    @Before
+    public void setUp() throws BankingException {
+        TestDatabase.reset();
+        bankingSystem = new BankingSystem();
+        accountService = new AccountService(bankingSystem);
+
+        accountService.createAccount(AccountType.CHECKING, "USD001", new BigDecimal("500.00"));
+        accountService.createAccount(AccountType.CHECKING, "EUR001", new BigDecimal("200.00"), EUR);
+    }
+
+    private void useEuroRate(String dollarsPerEuro) {
+        FxRateSnapshot snapshot = new FxRateSnapshot(Account.DEFAULT_CURRENCY, Instant.now(),
+                Collections.singletonMap(EUR, new BigDecimal(dollarsPerEuro)));
+        FxRates fxRates = new FxRates(FxRateSource.fixed(snapshot), Account.DEFAULT_CURRENCY);
+        fxRates.refresh();
+        accountService.setFxRates(fxRates);
+    }
+
+    @Test
+    public void testAccountsKeepTheirCurrency() {
+        assertEquals(EUR, bankingSystem.findAccount("EUR001").getCurrency());
+        assertEquals(Account.DEFAULT_CURRENCY, bankingSystem.findAccount("USD001").getCurrency());
+        assertTrue(accountService.viewAccount("EUR001").contains("Balance: 200.00 EUR"));
+    }
+
+    @Test
+    public void testNoTransferWithoutARate() {
+        assertEquals(OperationResult.CURRENCY_MISMATCH,
+                accountService.tryTransfer("USD001", "EUR001", new BigDecimal("10.00")));
+        try {
+            accountService.transfer("USD001", "EUR001", new BigDecimal("10.00"));
+            fail("Expected a currency mismatch");
+        } catch (BankingException e) {
+            assertTrue(e.getMessage().contains("exchange rate"));
+        }
+        assertEquals(new BigDecimal("500.00"), accountService.getBalance("USD001"));
+        assertEquals(new BigDecimal("200.00"), accountService.getBalance("EUR001"));
+    }
+
+    @Test
+    public void testTransferCreditsTheConvertedAmount() {
+        useEuroRate("1.25");
+
+        accountService.transfer("USD001", "EUR001", new BigDecimal("100.00"));
+        assertEquals(new BigDecimal("400.00"), accountService.getBalance("USD001"));
+        assertEquals(new BigDecimal("280.00"), accountService.getBalance("EUR001"));
+        assertEquals(new BigDecimal("280.00"), bankingSystem.findAccount("EUR001").getBalance());
+
+        assertEquals(OperationResult.OK, accountService.tryTransfer("EUR001", "USD001", new BigDecimal("10.00")));
+        assertEquals(new BigDecimal("412.50"), accountService.getBalance("USD001"));
+        assertEquals(new BigDecimal("270.00"), accountService.getBalance("EUR001"));
+
+        // Each leg is recorded in its own account's currency
+        List<String> transactions = accountService.getAllTransactions();
+        assertTrue(transactions.stream().anyMatch(t -> t.contains("EUR001, Amount: 80.00")));
+        assertTrue(transactions.stream().anyMatch(t -> t.contains("USD001, Amount: 12.50")));
+    }
+
+    @Test
+    public void testInsufficientFundsNamesTheCurrency() {
+        useEuroRate("1.25");
+        try {
+            accountService.transfer("EUR001", "USD001", new BigDecimal("500.00"));
+            fail("Expected insufficient funds");
+        } catch (InsufficientFundsException e) {
+            assertEquals(EUR, e.getCurrency());
+            assertTrue(e.getMessage(), e.getMessage().contains("requested 500.00 EUR, available 200.00 EUR"));
+        }
+    }
+
+    @Test
+    public void testBatcherRejectsMixedCurrencies() throws Exception {
+        useEuroRate("1.25");
+        try (TransferSettlementBatcher batcher = new TransferSettlementBatcher(bankingSystem)) {
+            assertEquals(OperationResult.CURRENCY_MISMATCH,
+                    batcher.submit("USD001", "EUR001", new BigDecimal("10.00")).get());
+        }
+    }
+}
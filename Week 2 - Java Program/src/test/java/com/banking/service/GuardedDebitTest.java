@@ -0,0 +1,132 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.db.TestDatabase;
+import com.banking.model.*;
+import com.banking.exception.*;
+import org.junit.Before;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import static org.junit.Assert.*;
+
+public class GuardedDebitTest {
+    private BankingSystem bankingSystem;
+    private AccountService accountService;
+
+    @Before
+    public void setUp() throws BankingException {
+        TestDatabase.reset();
+        bankingSystem = new BankingSystem();
+        accountService = new AccountService(bankingSystem);
+
+        accountService.createAccount(AccountType.SAVINGS, "SAV001", new BigDecimal("1000.00"));
+        accountService.createAccount(AccountType.CHECKING, "CHK001", new BigDecimal("500.00"));
+    }
+
+    @Test
+    public void testCommittedDebitIsMirroredEvenWhenMemoryLags() {
+        List<String> changes = new CopyOnWriteArrayList<>();
+        accountService.addChangeListener(new AccountChangeListener() {
+            @Override
+            public void accountCreated(String accountId, AccountType type, BigDecimal initialBalance) {
+            }
+
+            @Override
+            public void balanceChanged(String accountId, BigDecimal delta) {
+                changes.add("balance " + accountId + " " + delta);
+            }
+
+            @Override
+            public void transactionRecorded(String accountId, BigDecimal amount, Timestamp transactionDate) {
+                changes.add("transaction " + accountId + " " + amount);
+            }
+        });
+        // Memory is behind the DB, which still holds 500.00
+        bankingSystem.findAccount("CHK001").resetBalance(new BigDecimal("-50.00"));
+
+        assertEquals(OperationResult.OK, accountService.tryWithdraw("CHK001", new BigDecimal("100.00")));
+        assertEquals(new BigDecimal("400.00"), accountService.getBalance("CHK001"));
+        assertEquals(new BigDecimal("-150.00"), bankingSystem.findAccount("CHK001").getBalance());
+
+        assertEquals(OperationResult.OK, accountService.tryTransfer("CHK001", "SAV001", new BigDecimal("100.00")));
+        assertEquals(new BigDecimal("300.00"), accountService.getBalance("CHK001"));
+        assertEquals(new BigDecimal("-250.00"), bankingSystem.findAccount("CHK001").getBalance());
+        assertEquals(new BigDecimal("1100.00"), bankingSystem.findAccount("SAV001").getBalance());
+
+        assertTrue(changes.contains("balance CHK001 -100.00"));
+        assertTrue(changes.contains("transaction CHK001 -100.00"));
+        assertTrue(changes.contains("balance SAV001 100.00"));
+        assertEquals(6, changes.size());
+    }
+
+    @Test
+    public void testWithdrawIsOneConditionalUpdate() throws BankingException {
+        accountService.withdraw("SAV001", new BigDecimal("300.00"));
+
+        DebitStats stats = accountService.getDebitStats();
+        assertEquals(1, stats.getAttempts());
+        assertEquals(1, stats.getSuccesses());
+        assertEquals(0, stats.getConflicts());
+        assertEquals(new BigDecimal("700.00"), accountService.getBalance("SAV001"));
+    }
+
+    @Test
+    public void testStaleVersionIsRetried() throws BankingException {
+        // A second service with its own connection moves the row version on
+        AccountService other = new AccountService(bankingSystem);
+        other.withdraw("SAV001", new BigDecimal("100.00"));
+
+        accountService.withdraw("SAV001", new BigDecimal("100.00"));
+
+        // A stale cache is not contention
+        DebitStats stats = accountService.getDebitStats();
+        assertEquals(1, stats.getStaleVersions());
+        assertEquals(0, stats.getConflicts());
+        assertEquals(0, stats.getRetries());
+        assertEquals(2, stats.getAttempts());
+        assertEquals(new BigDecimal("800.00"), accountService.getBalance("SAV001"));
+    }
+
+    @Test
+    public void testShortFundsAfterAStaleVersionIsNoConflict() throws BankingException {
+        AccountService other = new AccountService(bankingSystem);
+        other.withdraw("SAV001", new BigDecimal("800.00"));
+
+        assertEquals(OperationResult.INSUFFICIENT_FUNDS, accountService.tryWithdraw("SAV001", new BigDecimal("150.00")));
+        DebitStats stats = accountService.getDebitStats();
+        assertEquals(0, stats.getConflicts());
+        assertEquals(0, stats.getStaleVersions());
+        assertEquals(1, stats.getInsufficientFunds());
+    }
+
+    @Test
+    public void testWithdrawKeepsSavingsMinimumBalance() throws BankingException {
+        try {
+            accountService.withdraw("SAV001", new BigDecimal("950.00"));
+            fail("Expected insufficient funds");
+        } catch (InsufficientFundsException e) {
+            assertEquals(new BigDecimal("1000.00"), e.getAvailableBalance());
+        }
+        assertEquals(new BigDecimal("1000.00"), accountService.getBalance("SAV001"));
+        assertEquals(new BigDecimal("1000.00"), bankingSystem.findAccount("SAV001").getBalance());
+    }
+
+    @Test
+    public void testTransferChecksSourceBalance() throws BankingException {
+        try {
+            accountService.transfer("CHK001", "SAV001", new BigDecimal("700.00"));
+            fail("Expected insufficient funds");
+        } catch (InsufficientFundsException e) {
+            assertEquals("CHK001", e.getAccountNumber());
+        }
+        assertEquals(new BigDecimal("500.00"), accountService.getBalance("CHK001"));
+        assertEquals(new BigDecimal("1000.00"), accountService.getBalance("SAV001"));
+
+        // Checking may go 100.00 into overdraft
+        accountService.transfer("CHK001", "SAV001", new BigDecimal("600.00"));
+        assertEquals(new BigDecimal("-100.00"), accountService.getBalance("CHK001"));
+    }
+}
@@ -0,0 +1,157 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.db.TestDatabase;
+import com.banking.exception.BankingException;
+import com.banking.model.AccountType;
+import com.banking.model.OperationResult;
+import com.banking.store.OffHeapAccountStore;
+import org.junit.Before;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import static org.junit.Assert.*;
+
+public class HotAccountTest {
+    private BankingSystem bankingSystem;
+    private AccountService accountService;
+
+    @Before
+    public void setUp() throws BankingException {
+        TestDatabase.reset();
+        bankingSystem = new BankingSystem();
+        accountService = new AccountService(bankingSystem);
+
+        accountService.createAccount(AccountType.CHECKING, "MERCH1", new BigDecimal("100.00"));
+        accountService.createAccount(AccountType.SAVINGS, "PAYER1", new BigDecimal("10000.00"));
+        accountService.enableHotAccount("MERCH1", 8);
+    }
+
+    private static BigDecimal rowBalance(String accountId) throws SQLException {
+        try (Connection conn = AccountService.openConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT balance FROM accounts WHERE account_id = ?")) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getBigDecimal(1);
+            }
+        }
+    }
+
+    @Test
+    public void testCreditsGoToStripesAndReadsIncludeThem() throws SQLException {
+        assertTrue(accountService.getHotAccounts().isHot("MERCH1"));
+        assertEquals(8, accountService.getHotAccounts().stripesOf("MERCH1"));
+        assertEquals(8, bankingSystem.findAccount("MERCH1").getCreditStripes());
+
+        accountService.deposit("MERCH1", new BigDecimal("25.00"));
+        accountService.transfer("PAYER1", "MERCH1", new BigDecimal("75.00"));
+
+        // The row is untouched; the total includes the stripes
+        assertEquals(new BigDecimal("100.00"), rowBalance("MERCH1"));
+        assertEquals(new BigDecimal("200.00"), accountService.getBalance("MERCH1"));
+        assertEquals(new BigDecimal("200.00"), bankingSystem.findAccount("MERCH1").getBalance());
+        assertTrue(accountService.viewAccount("MERCH1").contains("Balance: 200.00"));
+        assertEquals(0, new BalanceReconciler(bankingSystem).reconcile(false).getMismatches().size());
+    }
+
+    @Test
+    public void testConcurrentDepositsAreExact() throws Exception {
+        try (AsyncAccountService async = new AsyncAccountService(bankingSystem)) {
+            assertTrue(async.getHotAccounts().isHot("MERCH1"));
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                futures.add(async.deposit("MERCH1", new BigDecimal("1.25")));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        }
+        assertEquals(new BigDecimal("600.00"), accountService.getBalance("MERCH1"));
+        assertEquals(new BigDecimal("600.00"), bankingSystem.findAccount("MERCH1").getBalance());
+    }
+
+    @Test
+    public void testWithdrawalBorrowsFromStripes() throws SQLException {
+        accountService.deposit("MERCH1", new BigDecimal("400.00"));
+
+        // The row holds 100.00, so this needs the stripes
+        accountService.withdraw("MERCH1", new BigDecimal("450.00"));
+        assertEquals(new BigDecimal("50.00"), accountService.getBalance("MERCH1"));
+        assertEquals(new BigDecimal("50.00"), rowBalance("MERCH1"));
+        assertEquals(new BigDecimal("50.00"), bankingSystem.findAccount("MERCH1").getBalance());
+
+        // Overdraft floor still applies to the total
+        assertEquals(OperationResult.INSUFFICIENT_FUNDS,
+                accountService.tryWithdraw("MERCH1", new BigDecimal("200.00")));
+        assertEquals(new BigDecimal("50.00"), accountService.getBalance("MERCH1"));
+    }
+
+    @Test
+    public void testFoldAndDisableKeepTheTotal() throws SQLException {
+        accountService.deposit("MERCH1", new BigDecimal("40.00"));
+        accountService.deposit("MERCH1", new BigDecimal("60.00"));
+
+        assertEquals(new BigDecimal("100.00"), accountService.foldHotAccount("MERCH1"));
+        assertEquals(new BigDecimal("200.00"), rowBalance("MERCH1"));
+        assertEquals(new BigDecimal("200.00"), accountService.getBalance("MERCH1"));
+
+        accountService.deposit("MERCH1", new BigDecimal("5.00"));
+        accountService.disableHotAccount("MERCH1");
+        assertFalse(accountService.getHotAccounts().isHot("MERCH1"));
+        assertEquals(0, bankingSystem.findAccount("MERCH1").getCreditStripes());
+        assertEquals(new BigDecimal("205.00"), rowBalance("MERCH1"));
+        assertEquals(new BigDecimal("205.00"), bankingSystem.findAccount("MERCH1").getBalance());
+
+        // Back to plain row updates
+        accountService.deposit("MERCH1", new BigDecimal("5.00"));
+        assertEquals(new BigDecimal("210.00"), rowBalance("MERCH1"));
+    }
+
+    @Test
+    public void testHotAccountsSurviveARestart() {
+        AccountService restarted = new AccountService(bankingSystem);
+        assertTrue(restarted.getHotAccounts().isHot("MERCH1"));
+        assertFalse(restarted.getHotAccounts().isHot("PAYER1"));
+    }
+
+    @Test
+    public void testStripeCountIsChecked() {
+        try {
+            accountService.enableHotAccount("PAYER1", 1);
+            fail("Expected a bad stripe count");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            accountService.enableHotAccount("PAYER1", HotAccounts.MAX_STRIPES + 1);
+            fail("Expected a bad stripe count");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(0, bankingSystem.findAccount("PAYER1").getCreditStripes());
+        assertFalse(accountService.getHotAccounts().isHot("PAYER1"));
+    }
+
+    @Test
+    public void testOffHeapAccountsCannotBeMadeHot() throws SQLException {
+        TestDatabase.reset();
+        BankingSystem offHeap = new BankingSystem(new OffHeapAccountStore(16));
+        AccountService service = new AccountService(offHeap);
+        service.createAccount(AccountType.CHECKING, "MERCH2", new BigDecimal("100.00"));
+        try {
+            service.enableHotAccount("MERCH2", 8);
+            fail("Expected an off-heap account to be refused");
+        } catch (BankingException e) {
+            assertTrue(e.getMessage().contains("MERCH2"));
+        }
+
+        assertFalse(service.getHotAccounts().isHot("MERCH2"));
+        service.deposit("MERCH2", new BigDecimal("5.00"));
+        assertEquals(new BigDecimal("105.00"), rowBalance("MERCH2"));
+    }
+}
@@ -0,0 +1,216 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.db.TestDatabase;
+import com.banking.model.AccountType;
+import com.banking.model.SavingsAccount;
+import org.junit.Before;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+
+public class InterestAccrualEngineTest {
+    private BankingSystem bankingSystem;
+    private AccountService accountService;
+
+    @Before
+    public void setUp() {
+        TestDatabase.reset();
+        bankingSystem = new BankingSystem();
+        accountService = new AccountService(bankingSystem);
+    }
+
+    // A savings account with its own rate, in memory and in the DB
+    private void addSavings(String accountId, BigDecimal balance, BigDecimal rate) throws SQLException {
+        addSavings(new SavingsAccount(accountId, balance, rate));
+    }
+
+    private void addSavings(SavingsAccount... accounts) throws SQLException {
+        try (Connection conn = AccountService.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "INSERT INTO accounts (account_id, account_type, balance) VALUES (?, ?, ?)")) {
+            for (SavingsAccount account : accounts) {
+                bankingSystem.addAccount(account);
+                stmt.setString(1, account.getAccountNumber());
+                stmt.setString(2, AccountType.SAVINGS.name());
+                stmt.setBigDecimal(3, account.getBalance());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection conn = AccountService.openConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    private BigDecimal dbBalance(String accountId) throws SQLException {
+        try (Connection conn = AccountService.openConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT balance FROM accounts WHERE account_id = ?")) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getBigDecimal(1);
+            }
+        }
+    }
+
+    @Test
+    public void testAccrueAndPostThirtyDays() throws SQLException {
+        accountService.createAccount(AccountType.SAVINGS, "SAV001", new BigDecimal("1000.00"));
+        accountService.createAccount(AccountType.CHECKING, "CHK001", new BigDecimal("1000.00"));
+
+        try (InterestAccrualEngine engine = new InterestAccrualEngine(bankingSystem, 2)) {
+            assertEquals(1, engine.load());
+            for (int day = 0; day < 30; day++) {
+                engine.accrue(1);
+            }
+            // 1000.00 * 2.5% * 30 / 365 = 2.0547...
+            assertEquals(new BigDecimal("2.05"), engine.getPendingInterest("SAV001"));
+            assertEquals(new BigDecimal("2.05"), engine.post());
+            assertEquals(0, engine.getPendingDays());
+            assertEquals(new BigDecimal("0.00"), engine.getPendingInterest("SAV001"));
+        }
+
+        assertEquals(new BigDecimal("1002.05"), accountService.getBalance("SAV001"));
+        assertEquals(new BigDecimal("1002.05"), dbBalance("SAV001"));
+        assertEquals(new BigDecimal("1000.00"), dbBalance("CHK001"));
+        assertEquals(1, accountService.getAllTransactions().size());
+    }
+
+    @Test
+    public void testHalfCentsRoundToEven() throws SQLException {
+        // 365.00 at 0.5% earns exactly half a cent a day
+        addSavings("SAV001", new BigDecimal("365.00"), new BigDecimal("0.005"));
+        try (InterestAccrualEngine engine = new InterestAccrualEngine(bankingSystem, 1)) {
+            engine.load();
+            engine.accrue(3);
+            assertEquals(new BigDecimal("0.02"), engine.getPendingInterest("SAV001"));
+            engine.accrue(2);
+            assertEquals(new BigDecimal("0.02"), engine.getPendingInterest("SAV001"));
+        }
+    }
+
+    @Test
+    public void testResultDoesNotDependOnThreadCount() throws SQLException {
+        SavingsAccount[] accounts = new SavingsAccount[20_000];
+        for (int i = 0; i < accounts.length; i++) {
+            BigDecimal balance = BigDecimal.valueOf(10_000 + i * 37L, 2);
+            BigDecimal rate = BigDecimal.valueOf(1 + i % 50, 3);
+            accounts[i] = new SavingsAccount(String.format("S%06d", i), balance, rate);
+        }
+        addSavings(accounts);
+        try (InterestAccrualEngine single = new InterestAccrualEngine(bankingSystem, 1);
+             InterestAccrualEngine parallel = new InterestAccrualEngine(bankingSystem, 4)) {
+            single.load();
+            parallel.load();
+            single.accrue(31);
+            for (int day = 0; day < 31; day++) {
+                parallel.accrue(1);
+            }
+            for (int i = 0; i < 20_000; i += 97) {
+                String id = String.format("S%06d", i);
+                assertEquals(single.getPendingInterest(id), parallel.getPendingInterest(id));
+            }
+        }
+    }
+
+    @Test
+    public void testReloadKeepsPendingAccrual() throws SQLException {
+        addSavings("SAV001", new BigDecimal("3650.00"), new BigDecimal("0.01"));
+        try (InterestAccrualEngine engine = new InterestAccrualEngine(bankingSystem, 1)) {
+            engine.load();
+            engine.accrue(10);
+            execute("UPDATE accounts SET balance = balance + 3650.00 WHERE account_id = 'SAV001'");
+            engine.load();
+            engine.accrue(10);
+            // 10 days at 0.10 plus 10 days at 0.20
+            assertEquals(new BigDecimal("3.00"), engine.getPendingInterest("SAV001"));
+        }
+    }
+
+    @Test
+    public void testBalancesComeFromTheDb() throws SQLException {
+        accountService.createAccount(AccountType.SAVINGS, "SAV001", new BigDecimal("3650.00"));
+        accountService.enableHotAccount("SAV001", 4);
+        accountService.deposit("SAV001", new BigDecimal("3650.00"));
+        // Written by another instance: in the DB, never loaded here
+        execute("INSERT INTO accounts (account_id, account_type, balance) VALUES ('SAV002', 'SAVINGS', 3650.00)");
+        // A stale mirror must not change what is accrued
+        bankingSystem.findAccount("SAV001").resetBalance(new BigDecimal("1.00"));
+
+        try (InterestAccrualEngine engine = new InterestAccrualEngine(bankingSystem, 1)) {
+            assertEquals(2, engine.load());
+            engine.accrue(10);
+            // 7300.00 with its stripe at 2.5%, and 3650.00 at the default 2.5%
+            assertEquals(new BigDecimal("5.00"), engine.getPendingInterest("SAV001"));
+            assertEquals(new BigDecimal("2.50"), engine.getPendingInterest("SAV002"));
+            assertEquals(new BigDecimal("7.50"), engine.post());
+        }
+        assertEquals(new BigDecimal("3652.50"), dbBalance("SAV002"));
+    }
+
+    @Test
+    public void testListenersHearAboutPostedInterest() throws SQLException {
+        accountService.createAccount(AccountType.SAVINGS, "SAV001", new BigDecimal("3650.00"));
+        accountService.createAccount(AccountType.SAVINGS, "SAV002", new BigDecimal("7300.00"));
+        List<String> events = new ArrayList<>();
+        AccountChangeListener listener = new AccountChangeListener() {
+            @Override
+            public void accountCreated(String accountId, AccountType type, BigDecimal balance) {
+            }
+
+            @Override
+            public void balanceChanged(String accountId, BigDecimal delta) {
+                events.add("balance " + accountId + " " + delta);
+            }
+
+            @Override
+            public void transactionRecorded(String accountId, BigDecimal amount, Timestamp when) {
+                events.add("transaction " + accountId + " " + amount);
+            }
+
+            @Override
+            public void changeSetStarted() {
+                events.add("start");
+            }
+
+            @Override
+            public void changeSetFinished() {
+                events.add("finish");
+            }
+        };
+
+        try (InterestAccrualEngine engine = new InterestAccrualEngine(bankingSystem, 1)) {
+            engine.addChangeListener(listener);
+            engine.load();
+            engine.accrue(10);
+            engine.post();
+        }
+        assertEquals(Arrays.asList("start",
+                "balance SAV001 2.50", "transaction SAV001 2.50",
+                "balance SAV002 5.00", "transaction SAV002 5.00",
+                "finish"), events);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAccrualMustBePostedWithinAYear() {
+        try (InterestAccrualEngine engine = new InterestAccrualEngine(bankingSystem, 1)) {
+            engine.load();
+            engine.accrue(300);
+            engine.accrue(100);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.batch.BatchJobReport;
+import com.banking.batch.ChunkedBatchJob;
+import com.banking.db.TestDatabase;
+import com.banking.exception.BankingException;
+import com.banking.model.*;
+import org.junit.Before;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+
+public class MonthlyFeeJobTest {
+    private static final YearMonth MONTH = YearMonth.of(2024, 1);
+
+    private BankingSystem bankingSystem;
+    private AccountService accountService;
+
+    @Before
+    public void setUp() throws BankingException {
+        TestDatabase.reset();
+        bankingSystem = new BankingSystem();
+        accountService = new AccountService(bankingSystem);
+        for (int i = 0; i < 20; i++) {
+            accountService.createAccount(AccountType.SAVINGS, String.format("SAV%03d", i), new BigDecimal("1200.00"));
+            accountService.createAccount(AccountType.CHECKING, String.format("CHK%03d", i), new BigDecimal("100.00"));
+        }
+    }
+
+    private long transactionCount(String accountId) throws SQLException {
+        try (PreparedStatement stmt = accountService.conn.prepareStatement(
+                "SELECT COUNT(*) FROM transactions WHERE account_id = ?")) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private void assertChargedOnce(String savingsId, String checkingId) throws SQLException {
+        assertEquals(new BigDecimal("1202.50"), accountService.getBalance(savingsId));
+        assertEquals(new BigDecimal("1202.50"), bankingSystem.findAccount(savingsId).getBalance());
+        assertEquals(new BigDecimal("88.00"), accountService.getBalance(checkingId));
+        assertEquals(new BigDecimal("88.00"), bankingSystem.findAccount(checkingId).getBalance());
+        assertEquals(1, transactionCount(savingsId));
+        assertEquals(1, transactionCount(checkingId));
+    }
+
+    @Test
+    public void testPostsFeesAndInterestOnce() throws SQLException {
+        accountService.deposit("CHK000", new BigDecimal("0.01"));
+        accountService.withdraw("CHK000", new BigDecimal("0.01"));
+        assertEquals(2, ((CheckingAccount) bankingSystem.findAccount("CHK000")).getMonthlyTransactions());
+
+        MonthlyFeeJob job = new MonthlyFeeJob(bankingSystem, MONTH, 6, 3);
+        BatchJobReport report = job.run();
+        assertEquals(40, report.getItems());
+        assertEquals(40, job.getPosted());
+        assertEquals(0, ((CheckingAccount) bankingSystem.findAccount("CHK000")).getMonthlyTransactions());
+        assertChargedOnce("SAV007", "CHK013");
+
+        // Running the month again changes nothing
+        assertEquals(0, new MonthlyFeeJob(bankingSystem, MONTH, 6, 3).run().getItems());
+        assertChargedOnce("SAV007", "CHK013");
+
+        // The next month is a job of its own
+        assertEquals(40, new MonthlyFeeJob(bankingSystem, MONTH.plusMonths(1), 6, 3).run().getItems());
+        assertEquals(new BigDecimal("76.00"), accountService.getBalance("CHK013"));
+    }
+
+    @Test
+    public void testResumesAfterACrashWithoutDoubleCharging() throws SQLException {
+        MonthlyFeeJob fees = new MonthlyFeeJob(bankingSystem, MONTH, 4, 1);
+        // Same job, but the chunk holding SAV005 dies halfway through its work
+        ChunkedBatchJob crashing = new ChunkedBatchJob(MonthlyFeeJob.jobName(MONTH), 4, 1, null);
+        try {
+            crashing.run((conn, accountIds) -> {
+                Runnable afterCommit = fees.process(conn, accountIds);
+                if (accountIds.contains("SAV005")) {
+                    throw new SQLException("Simulated crash");
+                }
+                return afterCommit;
+            });
+            fail("Expected the simulated crash");
+        } catch (BankingException e) {
+            assertTrue(e.getMessage().contains("Simulated crash"));
+        }
+        // CHK000..CHK019 and SAV000..SAV003 were charged, the failed chunk rolled back
+        assertEquals(new BigDecimal("1200.00"), accountService.getBalance("SAV005"));
+        assertEquals(0, transactionCount("SAV005"));
+
+        BatchJobReport resumed = new MonthlyFeeJob(bankingSystem, MONTH, 4, 2).run();
+        assertEquals(6, resumed.getChunksDoneBefore());
+        assertEquals(16, resumed.getItems());
+        for (int i = 0; i < 20; i++) {
+            assertChargedOnce(String.format("SAV%03d", i), String.format("CHK%03d", i));
+        }
+    }
+
+    // Counts change sets and keeps every balance change
+    private static class RecordingListener implements AccountChangeListener {
+        final AtomicInteger started = new AtomicInteger();
+        final AtomicInteger finished = new AtomicInteger();
+        final List<String> changes = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void accountCreated(String accountId, AccountType type, BigDecimal initialBalance) {
+        }
+
+        @Override
+        public void balanceChanged(String accountId, BigDecimal delta) {
+            changes.add(accountId + " " + delta);
+        }
+
+        @Override
+        public void transactionRecorded(String accountId, BigDecimal amount, Timestamp transactionDate) {
+        }
+
+        @Override
+        public void changeSetStarted() {
+            started.incrementAndGet();
+        }
+
+        @Override
+        public void changeSetFinished() {
+            finished.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void testListenersHearAboutEveryChunk() {
+        RecordingListener listener = new RecordingListener();
+        MonthlyFeeJob job = new MonthlyFeeJob(bankingSystem, MONTH, 10, 2);
+        job.addChangeListener(listener);
+        job.run();
+
+        assertEquals(4, listener.started.get());
+        assertEquals(4, listener.finished.get());
+        assertEquals(40, listener.changes.size());
+        assertTrue(listener.changes.contains("SAV007 2.50"));
+        assertTrue(listener.changes.contains("CHK013 -12.00"));
+    }
+
+    @Test
+    public void testAccountNotLoadedFailsItsChunk() throws SQLException {
+        // Created by another process: in the DB, not in memory
+        try (Statement stmt = accountService.conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO accounts (account_id, account_type, balance) VALUES ('SAV999', 'SAVINGS', 1200.00)");
+        }
+        RecordingListener listener = new RecordingListener();
+        // Chunks of 7, so SAV999 shares the last one with SAV015..SAV019
+        MonthlyFeeJob job = new MonthlyFeeJob(bankingSystem, MONTH, 7, 1);
+        job.addChangeListener(listener);
+        try {
+            job.run();
+            fail("Expected the chunk with SAV999 to fail");
+        } catch (BankingException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("SAV999"));
+        }
+        // Its chunk rolled back, and its change set still ended
+        assertEquals(new BigDecimal("1200.00"), accountService.getBalance("SAV019"));
+        assertEquals(0, transactionCount("SAV019"));
+        assertEquals(listener.started.get(), listener.finished.get());
+
+        bankingSystem.addAccount(new SavingsAccount("SAV999", new BigDecimal("1200.00")));
+        job.run();
+        assertChargedOnce("SAV019", "CHK019");
+        assertEquals(new BigDecimal("1202.50"), accountService.getBalance("SAV999"));
+    }
+
+    @Test
+    public void testFeeBeyondOverdraftIsWaived() throws SQLException {
+        accountService.withdraw("CHK001", new BigDecimal("195.00"));
+
+        MonthlyFeeJob job = new MonthlyFeeJob(bankingSystem, MONTH, 10, 2);
+        job.run();
+        assertEquals(1, job.getWaived());
+        assertEquals(new BigDecimal("-95.00"), accountService.getBalance("CHK001"));
+        assertEquals(new BigDecimal("-95.00"), bankingSystem.findAccount("CHK001").getBalance());
+        assertEquals(new BigDecimal("88.00"), accountService.getBalance("CHK002"));
+    }
+}
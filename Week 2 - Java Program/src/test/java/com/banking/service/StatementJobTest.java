@@ -0,0 +1,111 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.db.TestDatabase;
+import com.banking.model.AccountType;
+import com.banking.exception.BankingException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.Assert.*;
+
+public class StatementJobTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AccountService accountService;
+    private final YearMonth month = YearMonth.of(2024, 3);
+
+    @Before
+    public void setUp() throws BankingException {
+        TestDatabase.reset();
+        accountService = new AccountService(new BankingSystem());
+        accountService.createAccount(AccountType.CHECKING, "CHK001", new BigDecimal("500.00"));
+        accountService.createAccount(AccountType.SAVINGS, "SAV001", new BigDecimal("1000.00"));
+    }
+
+    private Timestamp day(YearMonth m, int day) {
+        return Timestamp.from(m.atDay(day).atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    @Test
+    public void testStatementBalancesAndLines() throws Exception {
+        // History rows only; the balance column is today's balance after all of them
+        accountService.recordTransaction("CHK001", new BigDecimal("40.00"), day(month.minusMonths(1), 10));
+        accountService.recordTransaction("CHK001", new BigDecimal("25.00"), day(month, 5));
+        accountService.recordTransaction("CHK001", new BigDecimal("-10.00"), day(month, 20));
+        accountService.recordTransaction("CHK001", new BigDecimal("100.00"), day(month.plusMonths(1), 2));
+
+        StatementJob job = new StatementJob(folder.getRoot().toPath(), 2, 0);
+        assertEquals(2, job.run(month));
+        assertEquals(2, job.getTransactions());
+
+        List<String> lines = Files.readAllLines(job.statementFile("CHK001", month), StandardCharsets.UTF_8);
+        assertEquals(5, lines.size());
+        assertEquals("Opening balance: 385.00", lines.get(1));
+        assertTrue(lines.get(2).endsWith("  25.00"));
+        assertTrue(lines.get(3).endsWith("  -10.00"));
+        assertEquals("Closing balance: 400.00", lines.get(4));
+
+        List<String> savings = Files.readAllLines(job.statementFile("SAV001", month), StandardCharsets.UTF_8);
+        assertEquals("Opening balance: 1000.00", savings.get(1));
+        assertEquals("Closing balance: 1000.00", savings.get(2));
+    }
+
+    @Test
+    public void testManyAccountsWithFewThreads() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            String id = String.format("CHK%04d", i);
+            accountService.createAccount(AccountType.CHECKING, id, new BigDecimal("10.00"));
+            accountService.recordTransaction(id, new BigDecimal("1.00"), day(month, 1 + i % 28));
+        }
+
+        StatementJob job = new StatementJob(folder.getRoot().toPath(), 3, 0);
+        assertEquals(202, job.run(month));
+        assertEquals(200, job.getTransactions());
+        assertTrue(Files.exists(job.statementFile("CHK0199", month)));
+    }
+
+    @Test
+    public void testWritesDuringTheRunStayConsistent() throws Exception {
+        for (int i = 0; i < 300; i++) {
+            accountService.createAccount(AccountType.CHECKING, String.format("CHK%04d", i), new BigDecimal("10.00"));
+        }
+        YearMonth current = YearMonth.now();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread depositor = new Thread(() -> {
+            AccountService other = new AccountService(accountService.getBankingSystem(), AccountService.openConnection());
+            while (!done.get()) {
+                // A transfer commits its balances and rows together
+                other.tryTransfer("SAV001", "CHK001", new BigDecimal("0.01"));
+            }
+        });
+        depositor.start();
+        StatementJob job = new StatementJob(folder.getRoot().toPath(), 4, 0);
+        try {
+            job.run(current);
+        } finally {
+            done.set(true);
+            depositor.join();
+        }
+
+        // Opening plus every line adds up to closing, whatever was committed meanwhile
+        List<String> lines = Files.readAllLines(job.statementFile("CHK001", current), StandardCharsets.UTF_8);
+        BigDecimal opening = new BigDecimal(lines.get(1).substring("Opening balance: ".length()));
+        BigDecimal sum = opening;
+        for (String line : lines.subList(2, lines.size() - 1)) {
+            sum = sum.add(new BigDecimal(line.substring(line.lastIndexOf(' ') + 1)));
+        }
+        assertEquals(new BigDecimal("500.00"), opening);
+        assertEquals(lines.get(lines.size() - 1), "Closing balance: " + sum);
+    }
+}
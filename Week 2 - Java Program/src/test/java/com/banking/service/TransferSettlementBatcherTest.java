@@ -0,0 +1,182 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.db.TestDatabase;
+import com.banking.model.*;
+import com.banking.exception.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+
+public class TransferSettlementBatcherTest {
+    private BankingSystem bankingSystem;
+    private AccountService accountService;
+    private TransferSettlementBatcher batcher;
+
+    @Before
+    public void setUp() throws BankingException {
+        TestDatabase.reset();
+        bankingSystem = new BankingSystem();
+        accountService = new AccountService(bankingSystem);
+        // A long window so all submitted transfers land in the same batch
+        batcher = new TransferSettlementBatcher(bankingSystem, 200, 100);
+
+        accountService.createAccount(AccountType.SAVINGS, "SAV001", new BigDecimal("1000.00"));
+        accountService.createAccount(AccountType.CHECKING, "CHK001", new BigDecimal("500.00"));
+    }
+
+    @After
+    public void tearDown() {
+        batcher.close();
+    }
+
+    @Test
+    public void testSubmitRacingWithCloseNeverHangs() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            TransferSettlementBatcher racing = new TransferSettlementBatcher(bankingSystem, 0, 100);
+            List<CompletableFuture<OperationResult>> results = new CopyOnWriteArrayList<>();
+            CountDownLatch go = new CountDownLatch(1);
+            List<Thread> submitters = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread submitter = new Thread(() -> {
+                    try {
+                        go.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 50; i++) {
+                        results.add(racing.submit("SAV001", "CHK001", new BigDecimal("0.01")));
+                    }
+                });
+                submitter.start();
+                submitters.add(submitter);
+            }
+            go.countDown();
+            racing.close();
+            for (Thread submitter : submitters) {
+                submitter.join();
+            }
+
+            // Settled before the close, or refused: either way, answered
+            for (CompletableFuture<OperationResult> result : results) {
+                try {
+                    assertEquals(OperationResult.OK, result.get(5, TimeUnit.SECONDS));
+                } catch (ExecutionException e) {
+                    assertEquals("Settlement batcher is closed", e.getCause().getMessage());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTransfersAreNettedIntoOneUpdatePerAccount() {
+        List<CompletableFuture<OperationResult>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(batcher.submit("SAV001", "CHK001", new BigDecimal("50.00")));
+            results.add(batcher.submit("CHK001", "SAV001", new BigDecimal("20.00")));
+        }
+        results.forEach(result -> assertEquals(OperationResult.OK, result.join()));
+
+        assertEquals(new BigDecimal("700.00"), accountService.getBalance("SAV001"));
+        assertEquals(new BigDecimal("800.00"), accountService.getBalance("CHK001"));
+        assertEquals(new BigDecimal("700.00"), bankingSystem.findAccount("SAV001").getBalance());
+        assertEquals(40, accountService.getAllTransactions().size());
+        assertEquals(2, batcher.getBalanceUpdates());
+    }
+
+    @Test
+    public void testLegsAreCheckedAgainstProjectedBalance() {
+        // Savings must keep 100.00, so only the first of these fits
+        CompletableFuture<OperationResult> first = batcher.submit("SAV001", "CHK001", new BigDecimal("600.00"));
+        CompletableFuture<OperationResult> second = batcher.submit("SAV001", "CHK001", new BigDecimal("600.00"));
+        CompletableFuture<OperationResult> missing = batcher.submit("SAV001", "NOPE", new BigDecimal("1.00"));
+
+        assertEquals(OperationResult.OK, first.join());
+        assertEquals(OperationResult.INSUFFICIENT_FUNDS, second.join());
+        assertEquals(OperationResult.ACCOUNT_NOT_FOUND, missing.join());
+        assertEquals(new BigDecimal("400.00"), accountService.getBalance("SAV001"));
+    }
+
+    @Test
+    public void testFundsAreCheckedAgainstTheLockedDbBalance() throws SQLException {
+        // Another process drained the account; the in-memory balance still says 1000.00
+        try (Connection conn = AccountService.openConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE accounts SET balance = 150.00 WHERE account_id = 'SAV001'");
+        }
+
+        assertEquals(OperationResult.INSUFFICIENT_FUNDS,
+                batcher.submit("SAV001", "CHK001", new BigDecimal("600.00")).join());
+        assertEquals(OperationResult.OK, batcher.submit("SAV001", "CHK001", new BigDecimal("50.00")).join());
+        assertEquals(new BigDecimal("100.00"), accountService.getBalance("SAV001"));
+    }
+
+    @Test
+    public void testCommittedBatchIsNotFailedByTheInMemoryMirror() {
+        // In memory the account is 550.00 lower than in the DB
+        bankingSystem.findAccount("CHK001").withdraw(new BigDecimal("550.00"));
+
+        assertEquals(OperationResult.OK, batcher.submit("CHK001", "SAV001", new BigDecimal("500.00")).join());
+        assertEquals(BigDecimal.ZERO.setScale(2), accountService.getBalance("CHK001"));
+        assertEquals(new BigDecimal("-550.00"), bankingSystem.findAccount("CHK001").getBalance());
+    }
+
+    @Test
+    public void testSettlementGoesThroughTheServiceHooks() {
+        List<String> seen = new CopyOnWriteArrayList<>();
+        accountService.addChangeListener(new AccountChangeListener() {
+            @Override
+            public void accountCreated(String accountId, AccountType type, BigDecimal initialBalance) {
+            }
+
+            @Override
+            public void balanceChanged(String accountId, BigDecimal delta) {
+                seen.add("balance " + accountId + " " + delta);
+            }
+
+            @Override
+            public void transactionRecorded(String accountId, BigDecimal amount, Timestamp transactionDate) {
+                seen.add("transaction " + accountId + " " + amount);
+            }
+        });
+        VelocityTracker velocity = new VelocityTracker();
+        velocity.setLimit(VelocityTracker.Window.DAY, 100, new BigDecimal("300.00"));
+        accountService.setVelocityTracker(velocity);
+
+        try (TransferSettlementBatcher shared = new TransferSettlementBatcher(accountService, 0, 100)) {
+            assertEquals(OperationResult.OK, shared.submit("SAV001", "CHK001", new BigDecimal("200.00")).join());
+            assertEquals(OperationResult.LIMIT_EXCEEDED,
+                    shared.submit("SAV001", "CHK001", new BigDecimal("200.00")).join());
+        }
+
+        assertTrue(seen.contains("balance SAV001 -200.00"));
+        assertTrue(seen.contains("balance CHK001 200.00"));
+        assertTrue(seen.contains("transaction SAV001 -200.00"));
+        assertTrue(seen.contains("transaction CHK001 200.00"));
+        assertEquals(new BigDecimal("200.00"), velocity.getAmount("SAV001", VelocityTracker.Window.DAY));
+    }
+
+    @Test
+    public void testHotAccountStripesCountAsFunds() {
+        accountService.enableHotAccount("CHK001", 4);
+        accountService.deposit("CHK001", new BigDecimal("300.00"));
+
+        try (TransferSettlementBatcher shared = new TransferSettlementBatcher(accountService, 0, 100)) {
+            // 500.00 on the row, 300.00 in the stripes and a floor of -100.00
+            assertEquals(OperationResult.OK, shared.submit("CHK001", "SAV001", new BigDecimal("850.00")).join());
+        }
+        assertEquals(new BigDecimal("-50.00"), accountService.getBalance("CHK001"));
+    }
+}
@@ -0,0 +1,122 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.db.TestDatabase;
+import com.banking.model.*;
+import com.banking.exception.*;
+import org.junit.Before;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import static org.junit.Assert.*;
+
+public class TryOperationsTest {
+    private BankingSystem bankingSystem;
+    private AccountService accountService;
+
+    @Before
+    public void setUp() throws BankingException {
+        TestDatabase.reset();
+        bankingSystem = new BankingSystem();
+        accountService = new AccountService(bankingSystem);
+
+        accountService.createAccount(AccountType.SAVINGS, "SAV001", new BigDecimal("1000.00"));
+        accountService.createAccount(AccountType.CHECKING, "CHK001", new BigDecimal("500.00"));
+    }
+
+    @Test
+    public void testTryWithdrawReturnsCodes() {
+        assertEquals(OperationResult.OK, accountService.tryWithdraw("SAV001", new BigDecimal("100.00")));
+        assertEquals(OperationResult.INSUFFICIENT_FUNDS, accountService.tryWithdraw("SAV001", new BigDecimal("900.00")));
+        assertEquals(OperationResult.ACCOUNT_NOT_FOUND, accountService.tryWithdraw("NOPE", new BigDecimal("1.00")));
+        assertEquals(OperationResult.INVALID_AMOUNT, accountService.tryWithdraw("SAV001", BigDecimal.ZERO));
+
+        assertEquals(new BigDecimal("900.00"), accountService.getBalance("SAV001"));
+        assertEquals(new BigDecimal("900.00"), bankingSystem.findAccount("SAV001").getBalance());
+    }
+
+    @Test
+    public void testSubCentAmountsAreRejectedBeforeTheDb() throws Exception {
+        BigDecimal subCent = new BigDecimal("10.005");
+        assertEquals(OperationResult.INVALID_AMOUNT, accountService.tryDeposit("CHK001", subCent));
+        assertEquals(OperationResult.INVALID_AMOUNT, accountService.tryWithdraw("CHK001", subCent));
+        assertEquals(OperationResult.INVALID_AMOUNT, accountService.tryTransfer("CHK001", "SAV001", subCent));
+        assertEquals(OperationResult.INVALID_AMOUNT, accountService.tryTransferAll(
+                Arrays.asList(new TransferLeg("CHK001", "SAV001", subCent))));
+        try {
+            accountService.deposit("CHK001", subCent);
+            fail("Expected a sub-cent deposit to be refused");
+        } catch (BankingException expected) {
+        }
+        try (AsyncAccountService async = new AsyncAccountService(bankingSystem)) {
+            async.deposit("CHK001", subCent).get();
+            fail("Expected a sub-cent deposit to be refused");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof BankingException);
+        }
+        try {
+            accountService.createAccount(AccountType.CHECKING, "CHK002", subCent);
+            fail("Expected a sub-cent opening balance to be refused");
+        } catch (BankingException expected) {
+        }
+
+        assertEquals(new BigDecimal("500.00"), accountService.getBalance("CHK001"));
+        assertEquals(new BigDecimal("500.00"), bankingSystem.findAccount("CHK001").getBalance());
+        assertEquals(0, accountService.getAllTransactions().size());
+
+        // Trailing zeros are still whole cents
+        assertEquals(OperationResult.OK, accountService.tryDeposit("CHK001", new BigDecimal("10.000")));
+        assertEquals(new BigDecimal("510.00"), accountService.getBalance("CHK001"));
+    }
+
+    @Test
+    public void testTryTransferRollsBackOnRejection() {
+        assertEquals(OperationResult.INSUFFICIENT_FUNDS,
+                accountService.tryTransfer("CHK001", "SAV001", new BigDecimal("700.00")));
+        assertEquals(OperationResult.ACCOUNT_NOT_FOUND,
+                accountService.tryTransfer("CHK001", "NOPE", new BigDecimal("10.00")));
+        assertEquals(OperationResult.SAME_ACCOUNT,
+                accountService.tryTransfer("CHK001", "CHK001", new BigDecimal("10.00")));
+        assertEquals(new BigDecimal("500.00"), accountService.getBalance("CHK001"));
+
+        assertEquals(OperationResult.OK, accountService.tryTransfer("CHK001", "SAV001", new BigDecimal("600.00")));
+        assertEquals(new BigDecimal("-100.00"), accountService.getBalance("CHK001"));
+        assertEquals(new BigDecimal("1600.00"), accountService.getBalance("SAV001"));
+    }
+
+    @Test
+    public void testTryDeposit() {
+        assertEquals(OperationResult.OK, accountService.tryDeposit("CHK001", new BigDecimal("25.00")));
+        assertEquals(OperationResult.ACCOUNT_NOT_FOUND, accountService.tryDeposit("NOPE", new BigDecimal("25.00")));
+        assertEquals(new BigDecimal("525.00"), accountService.getBalance("CHK001"));
+    }
+
+    @Test
+    public void testBusinessExceptionsAreStackless() {
+        try {
+            accountService.withdraw("SAV001", new BigDecimal("950.00"));
+            fail("Expected insufficient funds");
+        } catch (InsufficientFundsException e) {
+            assertEquals(0, e.getStackTrace().length);
+            assertTrue(e.getMessage().contains("SAV001"));
+        }
+        try {
+            accountService.withdraw("NOPE", new BigDecimal("1.00"));
+            fail("Expected account not found");
+        } catch (AccountNotFoundException e) {
+            assertEquals(0, e.getStackTrace().length);
+            assertEquals("Account not found: NOPE", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testAccountTryWithdrawCountsOnlySuccesses() {
+        CheckingAccount account = new CheckingAccount("CHK999", new BigDecimal("50.00"));
+        assertEquals(OperationResult.INSUFFICIENT_FUNDS, account.tryWithdraw(new BigDecimal("200.00")));
+        assertEquals(0, account.getMonthlyTransactions());
+        assertEquals(OperationResult.OK, account.tryWithdraw(new BigDecimal("100.00")));
+        assertEquals(1, account.getMonthlyTransactions());
+        assertEquals(new BigDecimal("-50.00"), account.getBalance());
+    }
+}
@@ -0,0 +1,102 @@
+package com.banking.service;
+
+import com.banking.BankingSystem;
+import com.banking.db.TestDatabase;
+import com.banking.model.AccountType;
+import com.banking.model.OperationResult;
+import org.junit.Before;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.Assert.*;
+
+public class VelocityTrackerTest {
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+    private VelocityTracker tracker;
+    private AccountService accountService;
+
+    @Before
+    public void setUp() {
+        TestDatabase.reset();
+        accountService = new AccountService(new BankingSystem());
+        accountService.createAccount(AccountType.CHECKING, "CHK001", new BigDecimal("500.00"));
+        accountService.createAccount(AccountType.CHECKING, "CHK002", new BigDecimal("500.00"));
+
+        tracker = new VelocityTracker(clock::get);
+        tracker.setLimit(VelocityTracker.Window.SECOND, 3, new BigDecimal("1000.00"));
+        tracker.setLimit(VelocityTracker.Window.DAY, 100, new BigDecimal("150.00"));
+        accountService.setVelocityTracker(tracker);
+    }
+
+    @Test
+    public void testOperationCountLimitPerSecond() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(OperationResult.OK, accountService.tryDeposit("CHK001", new BigDecimal("1.00")));
+        }
+        assertEquals(OperationResult.LIMIT_EXCEEDED, accountService.tryDeposit("CHK001", new BigDecimal("1.00")));
+        assertEquals(new BigDecimal("503.00"), accountService.getBalance("CHK001"));
+
+        // A second later the window has room again
+        clock.addAndGet(1_000);
+        assertEquals(OperationResult.OK, accountService.tryWithdraw("CHK001", new BigDecimal("1.00")));
+        assertEquals(1, tracker.getCount("CHK001", VelocityTracker.Window.SECOND));
+        assertEquals(4, tracker.getCount("CHK001", VelocityTracker.Window.DAY));
+    }
+
+    @Test
+    public void testAmountLimitPerDayAppliesToTransfers() {
+        assertEquals(OperationResult.OK, accountService.tryTransfer("CHK001", "CHK002", new BigDecimal("100.00")));
+        clock.addAndGet(60_000);
+        assertEquals(OperationResult.LIMIT_EXCEEDED,
+                accountService.tryTransfer("CHK002", "CHK001", new BigDecimal("60.00")));
+        assertEquals(new BigDecimal("100.00"), tracker.getAmount("CHK002", VelocityTracker.Window.DAY));
+        assertEquals(new BigDecimal("600.00"), accountService.getBalance("CHK002"));
+    }
+
+    @Test
+    public void testRejectedOperationsGiveTheirRoomBack() {
+        accountService.createAccount(AccountType.CHECKING, "CHK003", BigDecimal.ZERO);
+
+        // Within the limits, but past the overdraft floor
+        assertEquals(OperationResult.INSUFFICIENT_FUNDS, accountService.tryWithdraw("CHK003", new BigDecimal("120.00")));
+        assertEquals(0, tracker.getCount("CHK003", VelocityTracker.Window.SECOND));
+        assertEquals(new BigDecimal("0.00"), tracker.getAmount("CHK003", VelocityTracker.Window.DAY));
+        assertEquals(OperationResult.OK, accountService.tryDeposit("CHK003", new BigDecimal("150.00")));
+    }
+
+    @Test
+    public void testRacingOperationsCannotOvershootTheLimit() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        AtomicInteger accepted = new AtomicInteger();
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                done.add(pool.submit(() -> {
+                    AccountService worker = accountService.onConnection(AccountService.openConnection());
+                    for (int i = 0; i < 5; i++) {
+                        if (worker.tryDeposit("CHK001", new BigDecimal("1.00")).isSuccess()) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                    worker.conn.close();
+                    return null;
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // The clock stands still, so the count limit of 3 per second holds for all of them
+        assertEquals(3, accepted.get());
+        assertEquals(new BigDecimal("503.00"), accountService.getBalance("CHK001"));
+    }
+}
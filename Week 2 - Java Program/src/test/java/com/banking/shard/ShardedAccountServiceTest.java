@@ -0,0 +1,169 @@
+package com.banking.shard;
+
+import com.banking.BankingSystem;
+import com.banking.model.AccountType;
+import com.banking.model.OperationResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import static org.junit.Assert.*;
+
+public class ShardedAccountServiceTest {
+    private static final int SHARDS = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<String> urls;
+    private Path logPath;
+    private BankingSystem bankingSystem;
+    private ShardedAccountService service;
+
+    // Two accounts on different shards and one sharing a shard with the first
+    private String a;
+    private String b;
+    private String sameShardAsA;
+
+    @Before
+    public void setUp() {
+        urls = new ArrayList<>();
+        for (int i = 0; i < SHARDS; i++) {
+            urls.add("jdbc:h2:file:" + folder.getRoot().toPath().resolve("shard" + i) + ";MODE=MySQL");
+        }
+        logPath = folder.getRoot().toPath().resolve("coordinator.log");
+        bankingSystem = new BankingSystem();
+        service = new ShardedAccountService(bankingSystem, urls, logPath);
+
+        for (int i = 1; i <= 30; i++) {
+            String id = String.format("CHK%03d", i);
+            service.createAccount(AccountType.CHECKING, id, new BigDecimal("100.00"));
+            if (a == null) {
+                a = id;
+            } else if (b == null && service.shardOf(id) != service.shardOf(a)) {
+                b = id;
+            } else if (sameShardAsA == null && service.shardOf(id) == service.shardOf(a)) {
+                sameShardAsA = id;
+            }
+        }
+        assertNotNull(b);
+        assertNotNull(sameShardAsA);
+    }
+
+    @After
+    public void tearDown() {
+        service.close();
+    }
+
+    private ShardedAccountService restart() {
+        return new ShardedAccountService(new BankingSystem(), urls, logPath);
+    }
+
+    @Test
+    public void testTransfersWithinAndAcrossShards() {
+        assertEquals(OperationResult.OK, service.tryTransfer(a, sameShardAsA, new BigDecimal("10.00")));
+        assertEquals(0, service.getCrossShardTransfers());
+
+        assertEquals(OperationResult.OK, service.tryTransfer(a, b, new BigDecimal("50.00")));
+        assertEquals(1, service.getCrossShardTransfers());
+
+        assertEquals(new BigDecimal("40.00"), service.getBalance(a));
+        assertEquals(new BigDecimal("150.00"), service.getBalance(b));
+        assertEquals(new BigDecimal("110.00"), service.getBalance(sameShardAsA));
+    }
+
+    @Test
+    public void testCommittedDebitIsMirroredEvenWhenMemoryLags() {
+        // Memory is behind the shards, which still hold 100.00
+        bankingSystem.findAccount(a).resetBalance(new BigDecimal("-50.00"));
+        bankingSystem.findAccount(sameShardAsA).resetBalance(new BigDecimal("-50.00"));
+
+        assertEquals(OperationResult.OK, service.tryWithdraw(a, new BigDecimal("10.00")));
+        assertEquals(OperationResult.OK, service.tryTransfer(a, b, new BigDecimal("10.00")));
+        assertEquals(OperationResult.OK, service.tryTransfer(sameShardAsA, a, new BigDecimal("10.00")));
+
+        assertEquals(new BigDecimal("90.00"), service.getBalance(a));
+        assertEquals(new BigDecimal("-60.00"), bankingSystem.findAccount(a).getBalance());
+        assertEquals(new BigDecimal("-60.00"), bankingSystem.findAccount(sameShardAsA).getBalance());
+        assertEquals(new BigDecimal("110.00"), bankingSystem.findAccount(b).getBalance());
+    }
+
+    @Test
+    public void testAccountsKeepTheirCurrency() {
+        Currency eur = Currency.getInstance("EUR");
+        service.createAccount(AccountType.CHECKING, "EUR001", new BigDecimal("100.00"), eur);
+        assertEquals(eur, bankingSystem.findAccount("EUR001").getCurrency());
+        assertEquals(OperationResult.CURRENCY_MISMATCH, service.tryTransfer(a, "EUR001", new BigDecimal("1.00")));
+
+        service.close();
+        service = restart();
+        assertEquals(OperationResult.CURRENCY_MISMATCH, service.tryTransfer(a, "EUR001", new BigDecimal("1.00")));
+    }
+
+    @Test
+    public void testRejectedCrossShardTransferChangesNothing() {
+        assertEquals(OperationResult.INSUFFICIENT_FUNDS, service.tryTransfer(a, b, new BigDecimal("250.00")));
+        assertEquals(new BigDecimal("100.00"), service.getBalance(a));
+        assertEquals(new BigDecimal("100.00"), service.getBalance(b));
+
+        service.close();
+        service = restart();
+        assertEquals(0, service.getRecoveredTransactions());
+    }
+
+    @Test
+    public void testRecoveryCommitsDecidedTransfer() {
+        service.setCrashPoint(ShardedAccountService.CrashPoint.AFTER_DECISION);
+        try {
+            service.tryTransfer(a, b, new BigDecimal("30.00"));
+            fail("Expected simulated crash");
+        } catch (ShardedAccountService.SimulatedCrash e) {
+            // expected
+        }
+
+        service = restart();
+        assertEquals(2, service.getRecoveredTransactions());
+        assertEquals(new BigDecimal("70.00"), service.getBalance(a));
+        assertEquals(new BigDecimal("130.00"), service.getBalance(b));
+    }
+
+    @Test
+    public void testRecoveryRollsBackUndecidedTransfer() {
+        service.setCrashPoint(ShardedAccountService.CrashPoint.AFTER_PREPARE);
+        try {
+            service.tryTransfer(a, b, new BigDecimal("30.00"));
+            fail("Expected simulated crash");
+        } catch (ShardedAccountService.SimulatedCrash e) {
+            // expected
+        }
+
+        service = restart();
+        assertEquals(2, service.getRecoveredTransactions());
+        assertEquals(new BigDecimal("100.00"), service.getBalance(a));
+        assertEquals(new BigDecimal("100.00"), service.getBalance(b));
+    }
+
+    @Test
+    public void testLostConnectionInPhaseTwoIsFinishedOnANewOne() {
+        service.setCrashPoint(ShardedAccountService.CrashPoint.CONNECTION_LOST_IN_PHASE_TWO);
+        assertEquals(OperationResult.OK, service.tryTransfer(a, b, new BigDecimal("30.00")));
+        service.setCrashPoint(ShardedAccountService.CrashPoint.NONE);
+
+        assertEquals(new BigDecimal("70.00"), service.getBalance(a));
+        assertEquals(new BigDecimal("130.00"), service.getBalance(b));
+
+        // The destination shard is usable again, and nothing is left for recovery
+        assertEquals(OperationResult.OK, service.tryTransfer(b, a, new BigDecimal("5.00")));
+        assertEquals(new BigDecimal("125.00"), service.getBalance(b));
+        service.close();
+        service = restart();
+        assertEquals(0, service.getRecoveredTransactions());
+        assertEquals(new BigDecimal("75.00"), service.getBalance(a));
+    }
+}
@@ -0,0 +1,113 @@
+package com.banking.store;
+
+import com.banking.BankingSystem;
+import com.banking.model.*;
+import com.banking.exception.*;
+import org.junit.Before;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.util.Currency;
+import static org.junit.Assert.*;
+
+public class OffHeapAccountStoreTest {
+    private OffHeapAccountStore store;
+    private BankingSystem bankingSystem;
+
+    @Before
+    public void setUp() {
+        store = new OffHeapAccountStore(16);
+        bankingSystem = new BankingSystem(store);
+        bankingSystem.addAccount(new SavingsAccount("SAV001", new BigDecimal("1000.00")));
+        bankingSystem.addAccount(new CheckingAccount("CHK001", new BigDecimal("500.00")));
+    }
+
+    @Test
+    public void testViewsShareTheRecord() {
+        bankingSystem.findAccount("SAV001").deposit(new BigDecimal("250.00"));
+        bankingSystem.findAccount("CHK001").withdraw(new BigDecimal("50.00"));
+
+        assertEquals(new BigDecimal("1250.00"), bankingSystem.findAccount("SAV001").getBalance());
+        assertEquals(new BigDecimal("450.00"), bankingSystem.findAccount("CHK001").getBalance());
+        assertEquals(1, ((CheckingAccount) bankingSystem.findAccount("CHK001")).getMonthlyTransactions());
+    }
+
+    @Test
+    public void testAccountRulesStillApply() {
+        Account savings = bankingSystem.findAccount("SAV001");
+        assertTrue(savings instanceof SavingsAccount);
+        assertEquals(new BigDecimal("0.025"), ((SavingsAccount) savings).getInterestRate());
+
+        try {
+            savings.withdraw(new BigDecimal("950.00"));
+            fail("Expected insufficient funds");
+        } catch (InsufficientFundsException e) {
+            assertEquals(new BigDecimal("1000.00"), e.getAvailableBalance());
+        }
+    }
+
+    @Test
+    public void testCurrencyIsStoredInTheRecord() {
+        bankingSystem.addAccount(new CheckingAccount("EUR001", new BigDecimal("10.00"), Currency.getInstance("EUR")));
+
+        assertEquals(Currency.getInstance("EUR"), bankingSystem.findAccount("EUR001").getCurrency());
+        assertEquals(Account.DEFAULT_CURRENCY, bankingSystem.findAccount("CHK001").getCurrency());
+    }
+
+    @Test
+    public void testSubCentAmountsAreRejected() {
+        try {
+            bankingSystem.findAccount("CHK001").deposit(new BigDecimal("0.005"));
+            fail("Expected a sub-cent amount to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            bankingSystem.addAccount(new CheckingAccount("CHK002", new BigDecimal("10.001")));
+            fail("Expected a sub-cent balance to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        assertEquals(new BigDecimal("500.00"), bankingSystem.findAccount("CHK001").getBalance());
+        assertEquals(0, ((CheckingAccount) bankingSystem.findAccount("CHK001")).getMonthlyTransactions());
+    }
+
+    @Test
+    public void testViewsReadTheirStateFromTheRecord() {
+        Account checking = bankingSystem.findAccount("CHK001");
+        checking.deposit(new BigDecimal("1.00"));
+
+        // A later view reports the stored time, not when it was made
+        assertEquals(checking.getLastTransaction(), bankingSystem.findAccount("CHK001").getLastTransaction());
+        assertEquals(SavingsAccount.DEFAULT_INTEREST_RATE,
+                ((SavingsAccount) bankingSystem.findAccount("SAV001")).getInterestRate());
+        bankingSystem.addAccount(new SavingsAccount("SAV002", BigDecimal.ZERO, new BigDecimal("0.031")));
+        assertEquals(new BigDecimal("0.031"), ((SavingsAccount) bankingSystem.findAccount("SAV002")).getInterestRate());
+    }
+
+    @Test
+    public void testViewsCannotBeStriped() {
+        Account checking = bankingSystem.findAccount("CHK001");
+        assertFalse(checking.supportsCreditStripes());
+        try {
+            checking.enableCreditStripes(4);
+            fail("Expected stripes to be refused");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(0, checking.getCreditStripes());
+    }
+
+    @Test(expected = AccountNotFoundException.class)
+    public void testMissingAccount() {
+        bankingSystem.findAccount("NOPE");
+    }
+
+    @Test
+    public void testIndexGrowsPastInitialCapacity() {
+        for (int i = 0; i < 100_000; i++) {
+            bankingSystem.addAccount(new CheckingAccount(String.format("C%07d", i), new BigDecimal("1.00")));
+        }
+
+        assertEquals(100_002, bankingSystem.getNumberOfAccounts());
+        assertEquals(new BigDecimal("1.00"), bankingSystem.findAccount("C0099999").getBalance());
+        assertEquals(new BigDecimal("101500.00"), bankingSystem.getTotalBalance());
+    }
+}
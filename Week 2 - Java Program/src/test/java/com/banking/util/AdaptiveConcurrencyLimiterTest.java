@@ -0,0 +1,93 @@
+package com.banking.util;
+
+import org.junit.Test;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.Assert.*;
+
+public class AdaptiveConcurrencyLimiterTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void testRejectsWhenLimitAndQueueAreFull() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 0, 0, 2.0);
+        assertTrue(limiter.acquire());
+        assertTrue(limiter.acquire());
+        assertFalse(limiter.acquire());
+        assertEquals(1, limiter.getRejected());
+
+        limiter.release(MS);
+        assertTrue(limiter.acquire());
+    }
+
+    @Test
+    public void testSlowCallsShrinkTheLimit() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 2, 50, 0, 0, 2.0);
+        limiter.acquire();
+        limiter.release(MS);
+        for (int i = 0; i < 30; i++) {
+            limiter.acquire();
+            limiter.release(10 * MS);
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void testOneSlowBurstShrinksTheLimitOnce() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 2, 50, 0, 0, 2.0);
+        limiter.acquire();
+        limiter.release(MS);
+
+        // Everything in flight when the backend slowed down comes back slow together
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limiter.acquire());
+        }
+        for (int i = 0; i < 20; i++) {
+            limiter.release(10 * MS);
+        }
+        assertEquals(18, limiter.getLimit());
+    }
+
+    @Test
+    public void testBusyFastCallsGrowTheLimit() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 8, 0, 0, 2.0);
+        for (int round = 0; round < 100; round++) {
+            int slots = limiter.getLimit();
+            for (int i = 0; i < slots; i++) {
+                assertTrue(limiter.acquire());
+            }
+            for (int i = 0; i < slots; i++) {
+                limiter.release(MS);
+            }
+        }
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    public void testQueuedCallerGetsFreedSlot() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 1, 5000, 2.0);
+        assertTrue(limiter.acquire());
+
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicBoolean admitted = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            try {
+                admitted.set(limiter.acquire());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+        waiter.start();
+        while (limiter.getWaiting() == 0) {
+            Thread.sleep(1);
+        }
+
+        // The queue holds one caller, so a third is turned away
+        assertFalse(limiter.acquire());
+        limiter.release(MS);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(admitted.get());
+    }
+}
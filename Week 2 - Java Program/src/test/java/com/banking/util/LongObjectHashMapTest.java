@@ -0,0 +1,59 @@
+package com.banking.util;
+
+import org.junit.Test;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.Assert.*;
+
+public class LongObjectHashMapTest {
+
+    @Test
+    public void testPutGetAndGrow() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>(4);
+        for (long key = 0; key < 10_000; key++) {
+            assertNull(map.put(key, "v" + key));
+        }
+
+        assertEquals(10_000, map.size());
+        assertEquals("v0", map.get(0));
+        assertEquals("v9999", map.get(9_999));
+        assertNull(map.get(10_000));
+        assertEquals("v5", map.put(5, "five"));
+        assertEquals("five", map.get(5));
+    }
+
+    @Test
+    public void testRemoveMatchesHashMap() {
+        LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(2_000) - 1_000;
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key = -1_000; key < 1_000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    public void testLongLongMapMissingValue() {
+        LongLongHashMap map = new LongLongHashMap(-1L);
+        map.put(7, 3);
+
+        assertEquals(3, map.get(7));
+        assertEquals(-1, map.get(8));
+        assertEquals(4, map.addIfPresent(7, 1));
+        assertEquals(-1, map.addIfPresent(8, 1));
+        map.remove(7);
+        assertFalse(map.containsKey(7));
+    }
+}
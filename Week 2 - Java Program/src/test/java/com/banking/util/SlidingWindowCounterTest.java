@@ -0,0 +1,79 @@
+package com.banking.util;
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+
+public class SlidingWindowCounterTest {
+    // A realistic clock value, so slot tags are far from zero
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    public void testEventsSlideOutOfTheWindow() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1_000, 10);
+        counter.record(500, NOW);
+        counter.record(250, NOW + 450);
+
+        assertEquals(2, counter.count(NOW + 500));
+        assertEquals(750, counter.sum(NOW + 500));
+
+        // The first event's bucket has left the window, the second is still in
+        assertEquals(1, counter.count(NOW + 1_050));
+        assertEquals(250, counter.sum(NOW + 1_050));
+        assertEquals(0, counter.count(NOW + 2_000));
+    }
+
+    @Test
+    public void testRemoveTakesBackOnlyFromItsOwnSlot() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1_000, 10);
+        counter.record(500, NOW);
+        counter.record(250, NOW + 450);
+        counter.remove(500, NOW);
+        assertEquals(1, counter.count(NOW + 500));
+        assertEquals(250, counter.sum(NOW + 500));
+
+        // The bucket of NOW now holds a later slot, which is left alone
+        counter.record(40, NOW + 1_000);
+        counter.remove(40, NOW);
+        assertEquals(290, counter.sum(NOW + 1_000));
+    }
+
+    @Test
+    public void testReusedBucketStartsFromZero() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1_000, 10);
+        counter.record(100, NOW);
+        counter.record(7, NOW + 1_000);
+        assertEquals(1, counter.count(NOW + 1_000));
+        assertEquals(7, counter.sum(NOW + 1_000));
+    }
+
+    @Test
+    public void testLateEventForRecycledBucketIsDropped() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1_000, 10);
+        counter.record(7, NOW + 1_000);
+        counter.record(100, NOW);
+        assertEquals(1, counter.count(NOW + 1_000));
+        assertEquals(7, counter.sum(NOW + 1_000));
+    }
+
+    @Test
+    public void testConcurrentRecordsAreNotLost() throws InterruptedException {
+        SlidingWindowCounter counter = new SlidingWindowCounter(60_000, 60);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    counter.record(3, NOW);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40_000, counter.count(NOW));
+        assertEquals(120_000, counter.sum(NOW));
+    }
+}